@@ -35,7 +35,8 @@ public class MemoryCheckFilter implements Filter {
         "/api/health/",
         "/favicon.ico",
         "/assets/",
-        "/.well-known/"
+        "/.well-known/",
+        "/uploadfile/chunked/" // streamed into GridFS one chunk at a time, no heap to protect
     };
     
     @Override
@@ -110,6 +110,18 @@ public class MongoIndexConfig {
             createIndexIfNotExists("comments", Sort.Direction.ASC, 
                 "Index on comments for text search performance");
 
+            // 8b. Multikey index on the accent-folded trigrams (EvenementSearchFields)
+            // Pre-filter of the event search before the substring regex on searchName / searchComments
+            createIndexIfNotExists("searchGrams", Sort.Direction.ASC,
+                "Index on searchGrams for accent-insensitive substring search");
+
+            // 8c. Compound index: beginMonthDay + beginEventDate (EvenementSearchFields)
+            // "On this day" photo card: events of today's month/day in other years
+            createCompoundIndexIfNotExists(
+                new String[]{"beginMonthDay", "beginEventDate"},
+                new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.DESC},
+                "Compound index on beginMonthDay + beginEventDate for the on-this-day lookup");
+
             // 9. Indexes on FileUploaded array fields
             // These indexes help when querying or filtering within the fileUploadeds array
             // Especially important when events have many files (50+)
@@ -179,12 +191,19 @@ public class MongoIndexConfig {
             createAssistantConversationIndexes();
 
             createIssTracePointIndexes();
+
+            createGridFsFileIndexes();
+
+            createGoveeThermometerIndexes();
         } catch (Exception e) {
             log.error("Error creating MongoDB indexes", e);
         }
     }
 
-    /** Assistant : liste par propriétaire JWT ({@code ownerSubject}) triée par {@code updatedAt}. */
+    /**
+     * Assistant : liste par propriétaire JWT ({@code ownerSubject}) triée par {@code updatedAt} ; tours
+     * d’une conversation par position.
+     */
     private void createAssistantConversationIndexes() {
         try {
             log.debug("Creating MongoDB indexes for assistant_conversations");
@@ -193,6 +212,11 @@ public class MongoIndexConfig {
                     new String[] {"ownerSubject", "updatedAt"},
                     new Sort.Direction[] {Sort.Direction.ASC, Sort.Direction.DESC},
                     "Assistant conversations: by owner, newest first");
+            createCompoundIndexIfNotExists(
+                    "assistant_conversation_turns",
+                    new String[] {"conversationId", "seq"},
+                    new Sort.Direction[] {Sort.Direction.ASC, Sort.Direction.ASC},
+                    "Assistant conversation turns: by conversation (cleanup of unlisted turns, deletion)");
             log.debug("MongoDB indexes for assistant_conversations done");
         } catch (Exception e) {
             log.error("Error creating assistant_conversations MongoDB indexes", e);
@@ -216,18 +240,64 @@ public class MongoIndexConfig {
         }
     }
 
-    /** ISS ground-track samples: purge and range queries by {@code recordedAt}. */
+    /** Former ISS ground-track samples: chronological read when they are moved to {@code iss_trace_days}. */
     private void createIssTracePointIndexes() {
         try {
             log.debug("Creating MongoDB indexes for iss_trace_points");
             createIndexIfNotExists("iss_trace_points", "recordedAt", Sort.Direction.ASC,
-                    "ISS trace: retention purge and chronological reads");
+                    "ISS trace: chronological read of the former per-sample documents");
             log.debug("MongoDB indexes for iss_trace_points done");
         } catch (Exception e) {
             log.error("Error creating iss_trace_points MongoDB indexes", e);
         }
     }
 
+    /** GridFS content deduplication ({@code GridFsDeduplicationService}): lookups by digest at upload time. */
+    private void createGridFsFileIndexes() {
+        try {
+            log.debug("Creating MongoDB indexes for fs.files");
+            createCompoundIndexIfNotExists("fs.files",
+                    new String[]{"metadata.sha256", "length"},
+                    new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.ASC},
+                    "GridFS: identical content lookup by SHA-256 + length");
+            createIndexIfNotExists("fs.files", "metadata.sourceSha256", Sort.Direction.ASC,
+                    "GridFS: compressed image lookup by digest of the original");
+            createIndexIfNotExists("fs.files", "metadata.mergedInto", Sort.Direction.ASC,
+                    "GridFS: copies merged into an identical file, deleted by a later merge run");
+            createCompoundIndexIfNotExists("fs.files",
+                    new String[]{"metadata.hlsOf", "metadata.rendition", "metadata.name"},
+                    new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.ASC, Sort.Direction.ASC},
+                    "GridFS: HLS playlists / segments / poster of a video");
+            createCompoundIndexIfNotExists("video_transcode_jobs",
+                    new String[]{"status", "createdAt"},
+                    new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.ASC},
+                    "Video transcoding queue: oldest job by status");
+            log.debug("MongoDB indexes for fs.files done");
+        } catch (Exception e) {
+            log.error("Error creating fs.files MongoDB indexes", e);
+        }
+    }
+
+    /** Govee thermometer history: range reads per device (raw samples and hourly documents). */
+    private void createGoveeThermometerIndexes() {
+        try {
+            log.debug("Creating MongoDB indexes for Govee thermometer history");
+            createCompoundIndexIfNotExists("govee_thermometer_history",
+                    new String[]{"deviceId", "timestamp"},
+                    new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.ASC},
+                    "Govee history: samples of a device by time");
+            createIndexIfNotExists("govee_thermometer_history", "timestamp", Sort.Direction.ASC,
+                    "Govee history: retention purge and all-device range reads");
+            createCompoundIndexIfNotExists("govee_thermometer_hourly",
+                    new String[]{"deviceId", "hour"},
+                    new Sort.Direction[]{Sort.Direction.ASC, Sort.Direction.ASC},
+                    "Govee hourly history: hours of a device by time");
+            log.debug("MongoDB indexes for Govee thermometer history done");
+        } catch (Exception e) {
+            log.error("Error creating Govee thermometer history MongoDB indexes", e);
+        }
+    }
+
     /** Sets {@code upstreamAuthPasswordPresent} for list queries that omit {@code upstreamPassword}. Idempotent. */
     private void backfillIotProxyPasswordPresenceFlags() {
         try {
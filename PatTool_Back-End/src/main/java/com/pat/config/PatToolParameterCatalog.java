@@ -70,7 +70,8 @@ public final class PatToolParameterCatalog {
                     def("spring.servlet.multipart.max-request-size", false),
                     def("app.uploaddir", false),
                     def("file.storage.base-path", false),
-                    def("app.imagemaxsizekb", false)
+                    def("app.imagemaxsizekb", false),
+                    def("app.upload.pipeline.max-parallel", false)
             ),
             section("keycloak", "PATTOOL_PARAMS.SECTION.KEYCLOAK",
                     def("keycloak.realm", false),
@@ -102,6 +103,7 @@ public final class PatToolParameterCatalog {
             ),
             section("assistant", "PATTOOL_PARAMS.SECTION.ASSISTANT",
                     def("assistant.provider", false),
+                    def("assistant.stream.threads", false),
                     def("assistant.billing.openai-billing-url", false),
                     def("assistant.billing.openai-usage-url", false),
                     def("assistant.billing.anthropic-url", false),
@@ -323,6 +325,15 @@ public final class PatToolParameterCatalog {
                     def("app.image.compression.cache.max-entries", false),
                     def("app.image.compression.cache.max-size-mb", false),
                     def("app.image.compression.cache.ttl", false),
+                    def("app.image.wall-preview.disk-cache.enabled", false),
+                    def("app.image.wall-preview.disk-cache.dir", false),
+                    def("app.image.wall-preview.disk-cache.max-size-mb", false),
+                    def("app.map.tile-cache.enabled", false),
+                    def("app.map.tile-cache.dir", false),
+                    def("app.map.tile-cache.max-size-mb", false),
+                    def("app.map.tile-cache.max-age-days", false),
+                    def("app.map.tile-cache.seed.cron", false),
+                    def("app.map.tile-cache.seed.max-tiles", false),
                     def("app.video.ffmpeg.path", false),
                     def("app.video.compression.enabled", false),
                     def("app.video.compression.tempdir", false),
@@ -337,6 +348,8 @@ public final class PatToolParameterCatalog {
                     def("app.holiday-ui-translate.enabled", false),
                     def("app.holiday-ui-translate.cache-ttl-hours", false),
                     def("app.discussion.default.id", false),
+                    def("app.discussion.visibility-index.enabled", false),
+                    def("app.discussion.visibility-index.verify-ms", false),
                     def("app.websocket.max-connections", false),
                     def("app.websocket.connection-max-age-minutes", false),
                     def("app.connection-logs.excluded-users", false)
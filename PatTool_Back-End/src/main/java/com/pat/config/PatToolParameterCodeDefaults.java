@@ -36,6 +36,7 @@ public final class PatToolParameterCodeDefaults {
             Map.entry("spring.data.mongodb.host", ""),
             Map.entry("app.uploaddir", "C:\\temp"),
             Map.entry("app.imagemaxsizekb", "500"),
+            Map.entry("app.upload.pipeline.max-parallel", "4"),
             Map.entry("spring.servlet.multipart.max-file-size", "800MB"),
             Map.entry("spring.servlet.multipart.max-request-size", "810MB"),
             Map.entry("app.tv.recording.enabled", "true"),
@@ -212,6 +213,15 @@ public final class PatToolParameterCodeDefaults {
             Map.entry("app.image.compression.cache.max-entries", "3000"),
             Map.entry("app.image.compression.cache.max-size-mb", "200"),
             Map.entry("app.image.compression.cache.ttl", "PT2H"),
+            Map.entry("app.image.wall-preview.disk-cache.enabled", "true"),
+            Map.entry("app.image.wall-preview.disk-cache.dir", "./cache/wall-previews"),
+            Map.entry("app.image.wall-preview.disk-cache.max-size-mb", "2048"),
+            Map.entry("app.map.tile-cache.enabled", "true"),
+            Map.entry("app.map.tile-cache.dir", "./cache/map-tiles"),
+            Map.entry("app.map.tile-cache.max-size-mb", "1024"),
+            Map.entry("app.map.tile-cache.max-age-days", "30"),
+            Map.entry("app.map.tile-cache.seed.cron", "-"),
+            Map.entry("app.map.tile-cache.seed.max-tiles", "20000"),
             Map.entry("app.video.ffmpeg.path", "ffmpeg"),
             Map.entry("app.video.compression.enabled", "false"),
             Map.entry("app.video.compression.max-concurrency", "2"),
@@ -221,6 +231,8 @@ public final class PatToolParameterCodeDefaults {
             Map.entry("app.holiday-ui-translate.enabled", "true"),
             Map.entry("app.holiday-ui-translate.cache-ttl-hours", "168"),
             Map.entry("app.discussion.default.id", ""),
+            Map.entry("app.discussion.visibility-index.enabled", "true"),
+            Map.entry("app.discussion.visibility-index.verify-ms", "1800000"),
             Map.entry("app.websocket.max-connections", "1000"),
             Map.entry("app.websocket.connection-max-age-minutes", "30"),
             Map.entry("app.connection-logs.excluded-users", "patricou"),
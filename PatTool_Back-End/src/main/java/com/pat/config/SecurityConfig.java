@@ -486,6 +486,9 @@ public class SecurityConfig {
             "Access-Control-Request-Headers",
             "Cache-Control", // Required for SSE streaming
             "Range", // HLS / media segment byte-range requests
+            "If-Range", // Resume / seek against a GridFS file ETag
+            "If-None-Match", // Conditional GET (304) on /api/file/{id}
+            "If-Modified-Since",
             "user-id", // Custom header used by your app
             "visibility-filter", // Custom header for visibility filtering
             "admin-override", // Custom header for admin override to see all events
@@ -506,6 +509,8 @@ public class SecurityConfig {
             "Cache-Control",
             "Content-Range",
             "Accept-Ranges",
+            "ETag",
+            "Last-Modified",
             "X-Upload-Error",
             "X-Pat-Cache"
         ));
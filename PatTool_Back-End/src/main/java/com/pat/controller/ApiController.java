@@ -277,6 +277,12 @@ public class ApiController {
         return emitter;
     }
 
+    /** Upstream forecast latency per source and outcome, coalesced requests, calls in flight. */
+    @GetMapping(value = "/weather/forecast/source-stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getForecastSourceStatistics() {
+        return weatherForecastAggregationService.getSourceStatistics();
+    }
+
     /** MeteoSwiss Open Data cache status (forecast + precip map readiness). */
     @GetMapping(value = "/meteoswiss/status", produces = MediaType.APPLICATION_JSON_VALUE)
     public Map<String, Object> getMeteoSwissStatus() {
@@ -1,10 +1,12 @@
 package com.pat.controller;
 
+import com.mongodb.client.gridfs.model.GridFSFile;
 import com.pat.config.AssistantBillingLinksProperties;
 import com.pat.controller.dto.AssistantChatRequestDto;
 import com.pat.controller.dto.AssistantChatResponseDto;
 import com.pat.controller.dto.AssistantClientConfigDto;
 import com.pat.controller.dto.AssistantModelIdsDto;
+import com.pat.controller.dto.AssistantConversationAppendRequestDto;
 import com.pat.controller.dto.AssistantConversationAssetCreatedDto;
 import com.pat.controller.dto.AssistantConversationAssetUploadDto;
 import com.pat.controller.dto.AssistantConversationCreatedDto;
@@ -19,12 +21,17 @@ import com.pat.service.AssistantConversationService;
 import com.pat.service.AssistantModelsCatalogService;
 import com.pat.service.AssistantPdfExportService;
 import com.pat.service.assistant.AssistantPdfFilenameSupport;
+import com.pat.service.assistant.AssistantStream;
 import com.pat.service.AssistantRoutingPreferenceService;
+import com.pat.service.GridFsRangeService;
 import com.pat.service.OpenAiBillingService;
 import com.pat.service.RoutingAssistantService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -36,11 +43,17 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api")
@@ -49,6 +62,8 @@ public class AssistantController {
 
     private static final Logger log = LoggerFactory.getLogger(AssistantController.class);
 
+    private static final Duration ASSET_CACHE_MAX_AGE = Duration.ofDays(30);
+
     private final RoutingAssistantService routingAssistantService;
     private final OpenAiBillingService openAiBillingService;
     private final AssistantRoutingPreferenceService assistantRoutingPreferenceService;
@@ -57,6 +72,7 @@ public class AssistantController {
     private final AssistantConversationAssetService assistantConversationAssetService;
     private final AssistantBillingLinksProperties assistantBillingLinks;
     private final AssistantModelsCatalogService assistantModelsCatalogService;
+    private final GridFsRangeService gridFsRangeService;
 
     public AssistantController(
             RoutingAssistantService routingAssistantService,
@@ -66,7 +82,8 @@ public class AssistantController {
             AssistantConversationService assistantConversationService,
             AssistantConversationAssetService assistantConversationAssetService,
             AssistantBillingLinksProperties assistantBillingLinks,
-            AssistantModelsCatalogService assistantModelsCatalogService) {
+            AssistantModelsCatalogService assistantModelsCatalogService,
+            GridFsRangeService gridFsRangeService) {
         this.routingAssistantService = routingAssistantService;
         this.openAiBillingService = openAiBillingService;
         this.assistantRoutingPreferenceService = assistantRoutingPreferenceService;
@@ -75,6 +92,7 @@ public class AssistantController {
         this.assistantConversationAssetService = assistantConversationAssetService;
         this.assistantBillingLinks = assistantBillingLinks;
         this.assistantModelsCatalogService = assistantModelsCatalogService;
+        this.gridFsRangeService = gridFsRangeService;
     }
 
     /**
@@ -207,27 +225,92 @@ public class AssistantController {
         return ResponseEntity.status(HttpStatus.CREATED).body(new AssistantConversationAssetCreatedDto(assetId));
     }
 
+    /**
+     * Contenu d’un asset lu en flux depuis GridFS : ETag fort (304 sur {@code If-None-Match}) et plages
+     * {@code Range} / {@code If-Range} comme pour les fichiers d’événements.
+     */
     @GetMapping("/assistant/conversation-assets/{id}")
-    public ResponseEntity<byte[]> getConversationAsset(@PathVariable String id) {
+    public ResponseEntity<InputStreamResource> getConversationAsset(
+            @PathVariable String id, HttpServletRequest request) {
         String sub = currentJwtSubject();
         if (sub == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        Optional<byte[]> bytes =
-                assistantConversationAssetService.readBytesIfOwned(sub, id, assistantAdmin());
-        if (bytes.isEmpty()) {
+        Optional<AssistantConversationAssetService.StoredAsset> asset =
+                assistantConversationAssetService.openIfOwned(sub, id, assistantAdmin());
+        if (asset.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        GridFSFile file = asset.get().file();
         MediaType mt = MediaType.APPLICATION_OCTET_STREAM;
+        String mime = asset.get().mimeType();
         try {
-            Optional<String> mime = assistantConversationAssetService.findMimeIfOwned(sub, id, assistantAdmin());
-            if (mime.isPresent() && mime.get() != null && !mime.get().isBlank()) {
-                mt = MediaType.parseMediaType(mime.get());
+            if (mime != null && !mime.isBlank()) {
+                mt = MediaType.parseMediaType(mime);
             }
         } catch (Exception e) {
             log.debug("assistant conversation-asset mime: {}", e.getMessage());
         }
-        return ResponseEntity.ok().contentType(mt).body(bytes.get());
+        String etag = gridFsRangeService.strongEtag(file, null);
+        long lastModified = gridFsRangeService.lastModified(file);
+        // Un asset n’est jamais réécrit sous le même id : le navigateur peut le garder sans revalider.
+        CacheControl cache = CacheControl.maxAge(ASSET_CACHE_MAX_AGE).cachePrivate();
+        if (gridFsRangeService.isNotModified(etag, lastModified,
+                request.getHeader(HttpHeaders.IF_NONE_MATCH), readDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cache).eTag(etag).build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        headers.setCacheControl(cache);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(mt);
+
+        long length = file.getLength();
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && length > 0
+                && gridFsRangeService.ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE),
+                        readDateHeader(request, HttpHeaders.IF_RANGE), etag, lastModified)) {
+            List<GridFsRangeService.ByteSpan> spans;
+            try {
+                spans = gridFsRangeService.resolveRanges(range, length);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .eTag(etag)
+                        .build();
+            }
+            if (spans != null && spans.size() == 1) {
+                GridFsRangeService.ByteSpan span = spans.get(0);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + span.getStart() + "-" + span.getEnd() + "/" + length);
+                headers.setContentLength(span.length());
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .headers(headers)
+                        .body(new InputStreamResource(gridFsRangeService.openRange(file, span.getStart(), span.getEnd())));
+            }
+            if (spans != null) {
+                GridFsRangeService.MultipartRangeBody multipart =
+                        gridFsRangeService.openMultipartRanges(file, spans, mt.toString());
+                headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + multipart.getBoundary()));
+                headers.setContentLength(multipart.getContentLength());
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .headers(headers)
+                        .body(new InputStreamResource(multipart.getStream()));
+            }
+        }
+        headers.setContentLength(length);
+        InputStream body = length > 0 ? gridFsRangeService.openRange(file, 0, length - 1) : InputStream.nullInputStream();
+        return ResponseEntity.ok().headers(headers).body(new InputStreamResource(body));
+    }
+
+    private static long readDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1L;
+        }
     }
 
     /** Liste des conversations enregistrées (résumés) : les siennes, ou toutes (100 dernières) si rôle {@code Admin}. */
@@ -241,15 +324,21 @@ public class AssistantController {
                 assistantConversationService.listSummaries(sub, preferredUsernameFromJwt(), assistantAdmin()));
     }
 
-    /** Détail d’une conversation (tours + images) : propriétaire ou administrateur PatTool ({@code Admin}). */
+    /**
+     * Détail d’une conversation (tours + images) : propriétaire ou administrateur PatTool ({@code Admin}).
+     * Pagination facultative : {@code limit} derniers tours avant l’index {@code before}.
+     */
     @GetMapping("/assistant/conversations/{id}")
-    public ResponseEntity<AssistantConversationDetailDto> getConversation(@PathVariable String id) {
+    public ResponseEntity<AssistantConversationDetailDto> getConversation(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer limit) {
         String sub = currentJwtSubject();
         if (sub == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         return assistantConversationService
-                .getDetail(sub, id, assistantAdmin())
+                .getDetail(sub, id, assistantAdmin(), before, limit)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -267,7 +356,7 @@ public class AssistantController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
-    /** Remplace le contenu d’une conversation existante (autosauvegarde). */
+    /** Remplace le contenu d’une conversation existante (autosauvegarde ; seuls les tours modifiés sont écrits). */
     @PutMapping("/assistant/conversations/{id}")
     public ResponseEntity<Void> updateConversation(
             @PathVariable String id, @RequestBody @Valid AssistantConversationSaveRequestDto body) {
@@ -279,6 +368,18 @@ public class AssistantController {
         return ResponseEntity.noContent().build();
     }
 
+    /** Ajoute des tours en fin de conversation (409 si {@code baseTurnCount} n’est plus à jour). */
+    @PostMapping("/assistant/conversations/{id}/turns")
+    public ResponseEntity<Void> appendConversationTurns(
+            @PathVariable String id, @RequestBody @Valid AssistantConversationAppendRequestDto body) {
+        String sub = currentJwtSubject();
+        if (sub == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        assistantConversationService.appendTurns(sub, id, body, assistantAdmin(), preferredUsernameFromJwt());
+        return ResponseEntity.noContent().build();
+    }
+
     /** Supprime une conversation du propriétaire. */
     @DeleteMapping("/assistant/conversations/{id}")
     public ResponseEntity<Void> deleteConversation(@PathVariable String id) {
@@ -316,6 +417,58 @@ public class AssistantController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Variante diffusée de {@code /assistant/chat} (Server-Sent Events) : événements {@code delta}
+     * ({@code {"text": …}}) au fil de la génération, puis {@code done} (même corps que {@code /assistant/chat})
+     * ou {@code error} ({@code {"error": …}}). La déconnexion du client annule l’appel au fournisseur.
+     */
+    @PostMapping(value = "/assistant/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody @Valid AssistantChatRequestDto body) {
+        SseEmitter emitter = new SseEmitter(Long.MAX_VALUE); // No timeout (bounded by the provider read timeout)
+        AtomicBoolean alive = new AtomicBoolean(true);
+        AtomicReference<AssistantStream> streamRef = new AtomicReference<>();
+        Runnable cancel = () -> {
+            alive.set(false);
+            AssistantStream stream = streamRef.get();
+            if (stream != null) {
+                stream.cancel();
+            }
+        };
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(e -> cancel.run());
+
+        AssistantStream stream = routingAssistantService.startStream(
+                body,
+                text -> sendStreamEvent(emitter, alive, cancel, "delta", Map.of("text", text)),
+                result -> {
+                    if (!alive.get()) {
+                        return;
+                    }
+                    sendStreamEvent(emitter, alive, cancel, result.error() != null ? "error" : "done", result);
+                    emitter.complete();
+                });
+        streamRef.set(stream);
+        if (!alive.get()) {
+            stream.cancel();
+        }
+        return emitter;
+    }
+
+    private static void sendStreamEvent(
+            SseEmitter emitter, AtomicBoolean alive, Runnable cancel, String name, Object data) {
+        if (!alive.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (Exception e) {
+            // Client disconnected: stop reading from the provider
+            log.debug("Assistant SSE client gone while sending {}: {}", name, e.getMessage());
+            cancel.run();
+        }
+    }
+
     /**
      * Export PDF de la conversation affichée : HTML/Markdown rendus côté serveur (OpenHTMLToPDF).
      * Les libellés et lignes de stats sont déjà localisés par le client.
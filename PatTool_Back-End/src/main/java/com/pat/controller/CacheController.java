@@ -432,6 +432,13 @@ public class CacheController {
             response.put("totalSizeMB", cacheStats.get("totalSizeMB"));
             response.put("maxEntries", cacheStats.get("maxEntries"));
             response.put("cacheSize", cacheStats.get("cacheSize"));
+            response.put("maxSizeMB", cacheStats.get("maxSizeMB"));
+            response.put("hitCount", cacheStats.get("hitCount"));
+            response.put("missCount", cacheStats.get("missCount"));
+            response.put("hitRate", cacheStats.get("hitRate"));
+            response.put("evictionCount", cacheStats.get("evictionCount"));
+            response.put("admissionRejectedCount", cacheStats.get("admissionRejectedCount"));
+            response.put("diskTier", cacheStats.get("diskTier"));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
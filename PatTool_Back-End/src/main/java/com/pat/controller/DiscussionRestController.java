@@ -17,6 +17,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -551,5 +552,41 @@ public class DiscussionRestController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Compare the discussion visibility index with a full scan for one user (Admin diagnostics)
+     * @param userId User to check
+     */
+    @GetMapping("/statistics/visibility-index")
+    public ResponseEntity<java.util.Map<String, Object>> checkVisibilityIndex(
+            @RequestParam String userId,
+            Authentication authentication) {
+        try {
+            String userName = extractUserName(authentication);
+            if (userName == null || membersRepository.findByUserName(userName) == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            if (!hasAdminRole(authentication)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            return ResponseEntity.ok(discussionService.checkVisibilityIndex(userId));
+        } catch (Exception e) {
+            log.error("Error checking discussion visibility index", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Check if the current user has Admin role (case-insensitive)
+     */
+    private boolean hasAdminRole(Authentication authentication) {
+        if (authentication == null) {
+            return false;
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(authority -> authority.equalsIgnoreCase("ROLE_Admin")
+                        || authority.equalsIgnoreCase("ROLE_admin"));
+    }
 }
 
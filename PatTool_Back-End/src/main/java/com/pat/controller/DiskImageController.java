@@ -17,7 +17,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -250,12 +249,12 @@ public class DiskImageController {
                             // Fall through to serve original image without compression (streaming)
                         } else {
                             // Dimensions OK, proceed with loading
-                            originalImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
+                            originalImage = imageCompressionService.decodeForCompression(fileBytes, maxSizeInBytes);
                         }
                     } else {
                         // Cannot read dimensions, try loading anyway (may fail for very large images)
                         log.debug("[FSPhotos][IMAGE] Cannot read dimensions, attempting to load image");
-                        originalImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
+                        originalImage = imageCompressionService.decodeForCompression(fileBytes, maxSizeInBytes);
                     }
 
                     if (originalImage != null) {
@@ -8,12 +8,15 @@ import com.pat.repo.domain.Friend;
 import com.pat.repo.domain.FriendGroup;
 import com.pat.repo.domain.Member;
 import com.pat.repo.domain.UrlEvent;
+import com.pat.repo.EvenementSearchSlice;
 import com.pat.repo.EvenementsRepository;
 import com.pat.repo.FriendGroupRepository;
 import com.pat.repo.FriendRepository;
 import com.pat.repo.MembersRepository;
 import com.pat.repo.DiscussionRepository;
 import com.pat.repo.TodoListRepository;
+import com.pat.service.GridFsDeduplicationService;
+import com.pat.service.VideoTranscodingService;
 import com.pat.service.EvenementTodoListLinkService;
 import com.pat.service.EvenementNoteLinkService;
 import com.pat.service.EvenementPdfConverterLinkService;
@@ -91,6 +94,11 @@ public class EvenementRestController {
     
     @Autowired
     private GridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private GridFsDeduplicationService gridFsDeduplicationService;
+    @Autowired
+    private VideoTranscodingService videoTranscodingService;
     
     @Autowired
     private MongoTemplate mongoTemplate;
@@ -204,6 +212,24 @@ public class EvenementRestController {
         return pageResult;
     }
 
+    /**
+     * Infinite-scroll variant of the list above: same filter and order, paged by cursor
+     * ({@code nextCursor} of the previous response in {@code after}; none for the first slice).
+     */
+    @GetMapping("/search/feed")
+    public EvenementSearchSlice getEvenementFeed(@RequestParam(value = "filter", defaultValue = "*") String filter,
+                                                 @RequestParam(value = "after", required = false) String after,
+                                                 @RequestParam(value = "size", defaultValue = "20") int size,
+                                                 @RequestHeader(value = "user-id", required = false) String userId) {
+        EvenementSearchSlice slice = evenementsRepository.searchByFilterAfter(filter, userId, after, size);
+        if (StringUtils.hasText(userId)) {
+            evenementTodoListLinkService.attachLinkedTodoListsForEvents(slice.content(), userId.trim());
+            evenementNoteLinkService.attachLinkedNotesForEvents(slice.content(), userId.trim());
+            evenementPdfConverterLinkService.attachLinkedPdfDocumentsForEvents(slice.content());
+        }
+        return slice;
+    }
+
     private static final int STREAM_TODO_LINK_BATCH = 8;
     /** Smaller batch when filtering: send first matches immediately instead of waiting for 8. */
     private static final int STREAM_TODO_LINK_BATCH_SEARCH = 1;
@@ -2075,9 +2101,17 @@ public class EvenementRestController {
             log.info("Deleting {} file(s) from GridFS", evenement.getFileUploadeds().size());
             for (var fileUploaded : evenement.getFileUploadeds()) {
                 try {
+                    // Deduplicated content shared with another event stays in GridFS
+                    long otherReferences = gridFsDeduplicationService.countReferences(fileUploaded.getFieldId(), id);
+                    if (otherReferences > 0) {
+                        log.info("Kept file in GridFS, still used by {} other event(s): {} (ID: {})",
+                                otherReferences, fileUploaded.getFileName(), fileUploaded.getFieldId());
+                        continue;
+                    }
                     ObjectId fileObjectId = new ObjectId(fileUploaded.getFieldId());
                     gridFsTemplate.delete(new Query(Criteria.where("_id").is(fileObjectId)));
                     deletedFilesCount++;
+                    videoTranscodingService.forget(fileUploaded.getFieldId());
                     log.info("✓ DELETED FILE from GridFS: {} (ID: {})", fileUploaded.getFileName(), fileUploaded.getFieldId());
                 } catch (Exception e) {
                     log.error("✗ ERROR deleting file from GridFS: {} (ID: {})", fileUploaded.getFileName(), fileUploaded.getFieldId(), e);
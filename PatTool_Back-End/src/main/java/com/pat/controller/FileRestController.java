@@ -9,8 +9,12 @@ import com.pat.repo.domain.FileUploaded;
 import com.pat.repo.domain.Member;
 import com.pat.repo.EvenementsRepository;
 import com.pat.repo.MembersRepository;
+import com.pat.service.ChunkedUploadService;
+import com.pat.service.GridFsDeduplicationService;
+import com.pat.service.GridFsRangeService;
 import com.pat.service.ImageCompressionService;
 import com.pat.service.MemoryMonitoringService;
+import com.pat.service.VideoTranscodingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,12 +31,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -56,7 +63,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
@@ -73,6 +87,10 @@ public class FileRestController {
     @Value("${app.imagemaxsizekb:500}")
     private int imagemaxsizekb;
 
+    /** Max files of one upload processed at the same time (lowered automatically when the heap is busy). */
+    @Value("${app.upload.pipeline.max-parallel:4}")
+    private int uploadPipelineMaxParallel;
+
     /** Same TTL as {@link ImageCompressionService} wall / compression cache (HTTP revalidation hint for browsers). */
     @Value("${app.image.compression.cache.ttl:PT2H}")
     private Duration imageCompressionCacheTtl;
@@ -87,6 +105,14 @@ public class FileRestController {
     private MailController mailController;
     @Autowired
     private ImageCompressionService imageCompressionService;
+    @Autowired
+    private GridFsRangeService gridFsRangeService;
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+    @Autowired
+    private GridFsDeduplicationService gridFsDeduplicationService;
+    @Autowired
+    private VideoTranscodingService videoTranscodingService;
     
     @Autowired
     private MemoryMonitoringService memoryMonitoringService;
@@ -97,6 +123,33 @@ public class FileRestController {
     // Map: sessionId -> UploadLogEntry (contains logs and timestamp)
     private final Map<String, UploadLogEntry> uploadLogs = new ConcurrentHashMap<>();
     
+    // Workers of the upload pipeline, shared by all uploads (per-upload concurrency: uploadPipelineMaxParallel)
+    private final ExecutorService uploadExecutor = newUploadExecutor();
+
+    private static ExecutorService newUploadExecutor() {
+        int poolSize = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 30L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(256),
+            r -> {
+                Thread t = new Thread(r, "upload-pipeline");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy() // queue full: process in the request thread
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdownUploadExecutor() {
+        uploadExecutor.shutdownNow();
+    }
+
+    // Estimated heap held by images being compressed by the pipeline (bytes)
+    private final AtomicLong uploadHeapReserved = new AtomicLong();
+
     // Maximum number of upload sessions to keep in memory
     private static final int MAX_UPLOAD_SESSIONS = 100;
     
@@ -228,6 +281,28 @@ public class FileRestController {
         return baos.toByteArray();
     }
 
+    /**
+     * Date header as epoch ms, or -1 when absent or unparsable (clients sometimes send garbage here).
+     */
+    private static String currentJwtSubject() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof Jwt jwt)) {
+            return null;
+        }
+        return jwt.getSubject();
+    }
+
+    private static long readDateHeader(HttpServletRequest request, String name) {
+        if (request == null) {
+            return -1L;
+        }
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1L;
+        }
+    }
+
     private static String wallPreviewDispositionName(String filename) {
         if (filename == null || filename.isEmpty()) {
             return "wall-preview.jpg";
@@ -525,33 +600,33 @@ public class FileRestController {
             
             log.debug("[GET_FILE] GridFS document found: fileId={}, filename={}, length={}",
                     fileId, gridFsFile.getFilename(), gridFsFile.getLength());
-            // Get the resource from the found file
-            GridFsResource gridFsResource = gridFsTemplate.getResource(gridFsFile);
+
+            // Validators: GridFS files are immutable, so _id + length is a strong ETag.
+            long lastModified = gridFsRangeService.lastModified(gridFsFile);
+            String ifNoneMatch = request != null ? request.getHeader(HttpHeaders.IF_NONE_MATCH) : null;
+            long ifModifiedSince = readDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
 
             HttpHeaders headers = new HttpHeaders();
             
-            // Handle content type with fallback for missing metadata
+            // Handle content type with fallback for missing metadata (read from the GridFS document: the
+            // download stream is only opened once the 304 checks are done)
             String contentType;
-            try {
-                contentType = gridFsResource.getContentType();
-                if (contentType == null || contentType.isEmpty()) {
+            Object storedType = gridFsFile.getMetadata() != null ? gridFsFile.getMetadata().get("_contentType") : null;
+            if (storedType == null) {
+                // No contentType metadata: try to determine content type from filename extension
+                contentType = getContentTypeFromFilename(gridFsFile.getFilename());
+                log.debug("[GET_FILE] No contentType metadata for fileId={}, filename={}, using: {}", fileId, gridFsFile.getFilename(), contentType);
+            } else {
+                contentType = storedType.toString();
+                if (contentType.isEmpty()) {
                     // Fallback to application/octet-stream if no content type is available
                     contentType = "application/octet-stream";
                     log.debug("No content type found for file: " + fileId + ", using fallback: " + contentType);
                 }
-            } catch (com.mongodb.MongoGridFSException e) {
-                // Specifically handle the "No contentType data" exception
-                // Try to determine content type from filename extension
-                String filename = gridFsResource.getFilename();
-                contentType = getContentTypeFromFilename(filename);
-                log.debug("[GET_FILE] No contentType metadata for fileId={}, filename={}, using: {}", fileId, filename, contentType);
-            } catch (Exception e) {
-                log.debug("[GET_FILE] Error getting content type for fileId={}, using fallback: {}", fileId, e.getMessage());
-                contentType = "application/octet-stream";
             }
             
             // Handle filename with fallback (needed for Content-Disposition and for resolving wildcard content-type)
-            String filename = gridFsResource.getFilename();
+            String filename = gridFsFile.getFilename();
             if (filename == null || filename.isEmpty()) {
                 filename = "file_" + fileId; // Fallback filename
                 log.debug("No filename found for file: " + fileId + ", using fallback: " + filename);
@@ -561,11 +636,20 @@ public class FileRestController {
                 int requestedMaxEdge = Math.min(2048, Math.max(64, maxEdgeParam));
                 int canonicalMaxEdge = canonicalWallMaxEdge(requestedMaxEdge);
                 String wallCacheKey = "gfs-wall:" + fileId + ":" + canonicalMaxEdge;
+                String previewEtag = gridFsRangeService.strongEtag(gridFsFile, "w" + canonicalMaxEdge);
+                if (gridFsRangeService.isNotModified(previewEtag, lastModified, ifNoneMatch, ifModifiedSince)) {
+                    log.debug("[GET_FILE] Wall preview not modified (304): fileId={}, canonicalMaxEdge={}", fileId, canonicalMaxEdge);
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .cacheControl(CacheControl.maxAge(wallPreviewHttpCacheMaxAgeSeconds(), TimeUnit.SECONDS).cachePrivate())
+                            .eTag(previewEtag)
+                            .lastModified(lastModified)
+                            .build();
+                }
                 try {
                     ImageCompressionService.CompressionResult preview = imageCompressionService.getFromCache(wallCacheKey);
                     if (preview == null) {
                         byte[] fileBytes = readInputStreamWithLimit(
-                                gridFsResource.getInputStream(), MAX_READ_BYTES_FOR_WALL_PREVIEW);
+                                gridFsTemplate.getResource(gridFsFile).getInputStream(), MAX_READ_BYTES_FOR_WALL_PREVIEW);
                         preview = imageCompressionService.buildMaxEdgeJpegPreview(
                                 wallCacheKey, fileBytes, filename, contentType, canonicalMaxEdge, null);
                         log.debug("[GET_FILE] Wall preview generated: fileId={}, canonicalMaxEdge={}, req={}, jpegBytes={}",
@@ -580,6 +664,10 @@ public class FileRestController {
                     prevHeaders.setContentLength(jpeg.length);
                     prevHeaders.set("Content-Disposition", buildContentDispositionHeader("inline", wallPreviewDispositionName(filename)));
                     prevHeaders.set("X-Pat-Wall-Preview", "maxEdge=" + canonicalMaxEdge + ";req=" + requestedMaxEdge);
+                    prevHeaders.setETag(previewEtag);
+                    if (lastModified >= 0) {
+                        prevHeaders.setLastModified(lastModified);
+                    }
                     prevHeaders.set("Access-Control-Expose-Headers",
                             "X-Pat-Wall-Preview, X-Pat-Compression, X-Pat-Image-Size-Before, X-Pat-Image-Size-After, X-Pat-Exif");
                     return ResponseEntity.ok()
@@ -588,7 +676,6 @@ public class FileRestController {
                             .body(new InputStreamResource(new ByteArrayInputStream(jpeg)));
                 } catch (Exception e) {
                     log.debug("[GET_FILE] Wall preview failed for fileId={}, streaming original: {}", fileId, e.getMessage());
-                    gridFsResource = gridFsTemplate.getResource(gridFsFile);
                 }
             }
             
@@ -599,6 +686,21 @@ public class FileRestController {
                 contentType = resolved != null && !resolved.isEmpty() ? resolved : "application/octet-stream";
             }
             
+            String etag = gridFsRangeService.strongEtag(gridFsFile, null);
+            if (gridFsRangeService.isNotModified(etag, lastModified, ifNoneMatch, ifModifiedSince)) {
+                log.debug("[GET_FILE] Not modified (304): fileId={}", fileId);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .lastModified(lastModified)
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                        .build();
+            }
+            headers.setETag(etag);
+            if (lastModified >= 0) {
+                headers.setLastModified(lastModified);
+            }
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
             headers.setContentType(MediaType.parseMediaType(contentType));
             
             log.debug("Request file " + filename);
@@ -606,32 +708,23 @@ public class FileRestController {
             headers.set("Content-Disposition", buildContentDispositionHeader("inline", filename));
             
             try {
-                // Handle content length with fallback
-                long contentLength = -1; // -1 indicates unknown length
-                try {
-                    contentLength = gridFsResource.contentLength();
-                    if (contentLength > 0) {
-                        headers.set("Content-Length", Long.toString(contentLength));
-                    }
-                } catch (Exception e) {
-                    log.debug("Could not determine content length for file: " + fileId, e);
+                // Content length from the GridFS document (the download stream is only opened for a 200)
+                long contentLength = gridFsFile.getLength();
+                if (contentLength > 0) {
+                    headers.set("Content-Length", Long.toString(contentLength));
                 }
                 
                 // No resizing - return original image as-is
                 // Enrich response with size/EXIF headers (consumed by the front-end)
                 long originalSizeForHeader = contentLength > 0 ? contentLength : -1;
-                if (originalSizeForHeader <= 0) {
-                    try {
-                        originalSizeForHeader = gridFsResource.contentLength();
-                    } catch (Exception ignore) { }
-                }
                 if (originalSizeForHeader > 0) {
                     headers.set("X-Pat-Image-Size-Before", Long.toString(originalSizeForHeader));
                     long kb = Math.max(1, originalSizeForHeader / 1024);
                     headers.set("X-Pat-Exif", "PatOriginalFileSizeBytes=" + originalSizeForHeader + "; PatOriginalFileSizeKB=" + kb);
                 }
                 // Make sure custom headers are readable by browsers (CORS)
-                headers.set("Access-Control-Expose-Headers", "X-Pat-Compression, X-Pat-Image-Size-Before, X-Pat-Image-Size-After, X-Pat-Exif");
+                headers.set("Access-Control-Expose-Headers",
+                        "X-Pat-Compression, X-Pat-Image-Size-Before, X-Pat-Image-Size-After, X-Pat-Exif, ETag, Last-Modified, Accept-Ranges, Content-Range");
                 
                 // Check if client connection is still open before returning response
                 // This helps prevent AsyncRequestNotUsableException when client closes connection
@@ -651,7 +744,46 @@ public class FileRestController {
                     }
                 }
                 
+                // Byte ranges (video seeking, resumed downloads): only the covering GridFS chunks are read.
+                String rangeHeader = request != null ? request.getHeader(HttpHeaders.RANGE) : null;
+                long fileLength = gridFsFile.getLength();
+                if (rangeHeader != null && fileLength > 0
+                        && gridFsRangeService.ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE),
+                                readDateHeader(request, HttpHeaders.IF_RANGE), etag, lastModified)) {
+                    List<GridFsRangeService.ByteSpan> spans;
+                    try {
+                        spans = gridFsRangeService.resolveRanges(rangeHeader, fileLength);
+                    } catch (IllegalArgumentException e) {
+                        log.debug("[GET_FILE] Range not satisfiable (416): fileId={}, range={}", fileId, rangeHeader);
+                        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
+                                .eTag(etag)
+                                .build();
+                    }
+                    if (spans != null && spans.size() == 1) {
+                        GridFsRangeService.ByteSpan span = spans.get(0);
+                        headers.set(HttpHeaders.CONTENT_RANGE,
+                                "bytes " + span.getStart() + "-" + span.getEnd() + "/" + fileLength);
+                        headers.setContentLength(span.length());
+                        log.debug("[GET_FILE] Returning 206: fileId={}, range={}-{}/{}", fileId, span.getStart(), span.getEnd(), fileLength);
+                        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                                .headers(headers)
+                                .body(new InputStreamResource(gridFsRangeService.openRange(gridFsFile, span.getStart(), span.getEnd())));
+                    }
+                    if (spans != null) {
+                        GridFsRangeService.MultipartRangeBody multipart =
+                                gridFsRangeService.openMultipartRanges(gridFsFile, spans, contentType);
+                        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + multipart.getBoundary()));
+                        headers.setContentLength(multipart.getContentLength());
+                        log.debug("[GET_FILE] Returning 206 multipart: fileId={}, ranges={}", fileId, spans.size());
+                        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                                .headers(headers)
+                                .body(new InputStreamResource(multipart.getStream()));
+                    }
+                }
+
                 log.debug("[GET_FILE] Returning 200 OK: fileId={}, filename={}, contentType={}", fileId, filename, contentType);
+                GridFsResource gridFsResource = gridFsTemplate.getResource(gridFsFile);
                 return ResponseEntity.ok()
                         .headers(headers)
                         .body(new InputStreamResource(gridFsResource.getInputStream()));
@@ -747,7 +879,7 @@ public class FileRestController {
                                 byte[] fileBytes = file.getBytes();
                                 
                                 // Read the image from bytes
-                                BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
+                                BufferedImage originalImage = imageCompressionService.decodeForCompression(fileBytes, maxSizeInBytes);
                                 if (originalImage != null) {
                                     // Compress the image
                                     ImageCompressionService.CompressionResult compressionResult = imageCompressionService.resizeImageIfNeeded(
@@ -910,238 +1042,16 @@ public class FileRestController {
             int filesBeforeUpload = evenement.getFileUploadeds().size();
             log.debug("Event {} found. Current files in event: {}", evenementid, filesBeforeUpload);
 
-            // Process each file
+            // Store the files in GridFS (in parallel, see storeUploadedFiles), then attach their metadata in order
+            FileUploaded[] storedFiles = storeUploadedFiles(files, uploaderMember, allowOriginal, finalSessionId);
+            int duplicatesInEvent = 0;
             for (int fileIndex = 0; fileIndex < files.length; fileIndex++) {
-                MultipartFile filedata = files[fileIndex];
-                if (filedata.isEmpty()) {
-                    log.warn("[UPLOAD] Skipping empty file at index {}", fileIndex);
+                FileUploaded fileUploaded = storedFiles[fileIndex];
+                if (fileUploaded == null) {
                     continue;
                 }
-                log.debug("[UPLOAD] Processing file {}/{}: {} ({} bytes) -> will store in GridFS then add metadata to event",
-                        fileIndex + 1, files.length, filedata.getOriginalFilename(), filedata.getSize());
-
-                if (finalSessionId != null) {
-                    addUploadLog(finalSessionId, String.format("📄 Processing file %d/%d: %s (%d KB)", 
-                        fileIndex + 1, files.length, filedata.getOriginalFilename(), filedata.getSize() / 1024));
-                }
-
-                // Use modern Document API instead of deprecated DBObject
-                Document metaData = new Document();
-                metaData.put("UploaderName", uploaderMember.getFirstName()+" "+uploaderMember.getLastName());
-                metaData.put("UploaderId", uploaderMember.getId());
-
-                // Check if file is an image
-                String contentType = filedata.getContentType();
-                long fileSize = filedata.getSize();
-                long maxSizeInBytes = imagemaxsizekb * 1024L; // Convert KB to bytes
-                
-                // Determine correct content type from filename (more reliable than browser's contentType)
-                String correctContentType = getContentTypeFromFilename(filedata.getOriginalFilename());
-                // Use browser's contentType if it's valid, otherwise use filename-based detection
-                if (contentType == null || contentType.isEmpty() || contentType.equals("application/octet-stream")) {
-                    contentType = correctContentType;
-                } else {
-                    // Validate browser's contentType matches the file extension
-                    String browserType = contentType.toLowerCase();
-                    String filenameType = correctContentType != null ? correctContentType.toLowerCase() : "";
-                    // If they don't match, prefer filename-based detection for images and videos
-                    if ((browserType.startsWith("image/") && !filenameType.startsWith("image/")) ||
-                        (browserType.startsWith("video/") && !filenameType.startsWith("video/"))) {
-                        log.warn("ContentType mismatch for file {}: browser says {}, filename suggests {}. Using filename-based type.",
-                                filedata.getOriginalFilename(), contentType, correctContentType);
-                        contentType = correctContentType;
-                    }
-                }
-                // Wildcard types (e.g. image/*) are stored by GridFS but rejected when serving; normalize to concrete type
-                if (contentType != null && contentType.contains("*")) {
-                    log.debug("[UPLOAD] Resolving wildcard contentType '{}' from filename to: {}", contentType, correctContentType);
-                    contentType = (correctContentType != null && !correctContentType.isEmpty()) ? correctContentType : "application/octet-stream";
-                }
-
-                // Save the doc ( all type ) in  MongoDB
-                // Use try-with-resources to ensure InputStream is properly closed
-                String fieldId;
-
-                // Safety threshold: skip in-memory compression to prevent OutOfMemoryError that crashes the JVM.
-                // We only skip when the *decoded* image (width*height*4 bytes for an RGB BufferedImage) plus a
-                // working copy plus the raw file bytes wouldn't safely fit in the available heap.
-                // We deliberately avoid using the raw file size as a gate: a 10+ MB JPEG of a normal photo
-                // (e.g. 24 MP, 6000x4000) decodes to ~96 MB and is perfectly fine to compress on a typical heap.
-                long availableHeap = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
-                boolean fileTooLargeForCompression = false;
-                String tooLargeReason = null;
-                byte[] preReadImageBytes = null;
-                int[] preReadDimensions = null;
-                if (imageCompressionService.isImageType(contentType) && !allowOriginal) {
-                    // First defence: never load a file into memory that's already bigger than ~1/4 of the heap.
-                    if (fileSize > (availableHeap / 4)) {
-                        fileTooLargeForCompression = true;
-                        tooLargeReason = String.format("file %d MB > 1/4 of available heap (%d MB)",
-                                fileSize / (1024 * 1024), availableHeap / (1024 * 1024));
-                    } else {
-                        try {
-                            preReadImageBytes = filedata.getBytes();
-                            preReadDimensions = ImageCompressionService.getImageDimensions(preReadImageBytes);
-                            if (preReadDimensions != null) {
-                                long estimatedDecoded = (long) preReadDimensions[0] * preReadDimensions[1] * 4L;
-                                // Need ~2x estimatedDecoded (decoded image + a working copy/resize buffer) on top
-                                // of the file bytes we're already holding.
-                                long requiredHeap = estimatedDecoded * 2L + preReadImageBytes.length;
-                                if (requiredHeap > availableHeap) {
-                                    fileTooLargeForCompression = true;
-                                    tooLargeReason = String.format("decoded image ~%d MB (%dx%d) won't fit in available heap (%d MB)",
-                                            estimatedDecoded / (1024 * 1024), preReadDimensions[0], preReadDimensions[1],
-                                            availableHeap / (1024 * 1024));
-                                }
-                            } else {
-                                // Couldn't read dimensions cheaply — fall back to a conservative file-size heuristic
-                                // (decoded RGB + working copy is typically ~8x JPEG file size).
-                                if (fileSize * 8L > availableHeap) {
-                                    fileTooLargeForCompression = true;
-                                    tooLargeReason = String.format("dimensions unreadable, file %d MB * 8 > available heap (%d MB)",
-                                            fileSize / (1024 * 1024), availableHeap / (1024 * 1024));
-                                }
-                            }
-                        } catch (IOException e) {
-                            log.warn("Could not pre-read image bytes for safety check: {}. Will try compression anyway.", e.getMessage());
-                            preReadImageBytes = null;
-                            preReadDimensions = null;
-                        } catch (OutOfMemoryError oom) {
-                            log.warn("OOM while pre-reading bytes for {} — falling back to streaming original",
-                                    filedata.getOriginalFilename());
-                            preReadImageBytes = null;
-                            preReadDimensions = null;
-                            fileTooLargeForCompression = true;
-                            tooLargeReason = "OOM while reading file bytes";
-                            try { System.gc(); } catch (Throwable ignored) {}
-                        }
-                    }
-                }
-
-                if (fileTooLargeForCompression && imageCompressionService.isImageType(contentType) && !allowOriginal) {
-                    log.warn("File {} too large for in-memory compression ({}). Streaming directly to GridFS.",
-                            filedata.getOriginalFilename(), tooLargeReason);
-                    if (finalSessionId != null) {
-                        addUploadLog(finalSessionId, String.format("⚠️ File too large for compression (%s) — saving original to avoid server crash",
-                                tooLargeReason));
-                    }
-                    // Drop any pre-read bytes we couldn't use, then stream from the multipart input
-                    preReadImageBytes = null;
-                    try (java.io.InputStream inputStream = filedata.getInputStream()) {
-                        fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                        log.debug("[UPLOAD] GridFS store (stream, file too large for compression): fieldId={}, filename={}, bytes sent via stream",
-                                fieldId, filedata.getOriginalFilename());
-                    }
-                } else if (imageCompressionService.isImageType(contentType) && !allowOriginal) {
-                    // Image compression path (switch ON in UI: allowOriginal=false)
-                    log.debug("[UPLOAD] Compression applied (allowOriginal=false): filename={}, originalSize={} bytes", filedata.getOriginalFilename(), fileSize);
-                    if (finalSessionId != null) {
-                        addUploadLog(finalSessionId, String.format("⚙️ Image detected (%d KB) - Compression in progress... (allowOriginal=%s)", 
-                            fileSize / 1024, allowOriginal));
-                    }
-                    
-                    log.debug("Starting compression for {} ({} KB), available heap: {} MB",
-                            filedata.getOriginalFilename(), fileSize / 1024, availableHeap / (1024 * 1024));
-                    
-                    try {
-                        // Reuse the bytes we already read for the safety check (avoid reading twice from the multipart).
-                        byte[] fileBytes = preReadImageBytes != null ? preReadImageBytes : filedata.getBytes();
-                        preReadImageBytes = null;
-
-                        // Read the image from bytes
-                        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(fileBytes));
-                        if (originalImage != null) {
-                            if (finalSessionId != null) {
-                                addUploadLog(finalSessionId, String.format("🖼️ Starting image compression for: %s", 
-                                    filedata.getOriginalFilename()));
-                            }
-                            
-                            // Compress the image
-                            ImageCompressionService.CompressionResult compressionResult = imageCompressionService.resizeImageIfNeeded(
-                                filedata.getOriginalFilename(), 
-                                originalImage, 
-                                contentType, 
-                                fileSize, 
-                                maxSizeInBytes,
-                                fileBytes,
-                                finalSessionId != null ? message -> addUploadLog(finalSessionId, message) : null
-                            );
-                            
-                            // Release references to free memory before storing
-                            originalImage = null;
-                            fileBytes = null;
-                            
-                            // Create input stream from compressed bytes (ByteArrayInputStream doesn't need closing)
-                            byte[] compressedBytes = compressionResult.getData();
-                            try (java.io.InputStream inputStream = new ByteArrayInputStream(compressedBytes)) {
-                                fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                            }
-                            long compressedSize = compressedBytes.length;
-                            log.debug("[UPLOAD] GridFS store (compressed image): fieldId={}, filename={}, originalSize={} bytes, compressedSize={} bytes (switch ON)",
-                                    fieldId, filedata.getOriginalFilename(), fileSize, compressedSize);
-                            if (finalSessionId != null) {
-                                addUploadLog(finalSessionId, String.format("✅ Compression completed: %d KB → %d KB", 
-                                    fileSize / 1024, compressionResult.getCompressedSize() / 1024));
-                            }
-                            log.debug("Image compressed from {} to {} bytes", fileSize, compressedSize);
-                        } else {
-                            // ImageIO couldn't read it, use original bytes
-                            try (java.io.InputStream inputStream = new ByteArrayInputStream(fileBytes)) {
-                                fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                            }
-                            log.debug("[UPLOAD] GridFS store (original bytes, ImageIO could not read): fieldId={}, filename={}, size={} bytes",
-                                    fieldId, filedata.getOriginalFilename(), fileBytes.length);
-                        }
-                    } catch (OutOfMemoryError oom) {
-                        log.error("OutOfMemoryError during compression of {} ({} KB). Attempting stream fallback.",
-                                filedata.getOriginalFilename(), fileSize / 1024);
-                        System.err.println("OOM during compression of " + filedata.getOriginalFilename() + " - attempting stream fallback");
-                        try { System.gc(); } catch (Throwable ignored) {}
-                        if (finalSessionId != null) {
-                            try { addUploadLog(finalSessionId, "⚠️ Out of memory during compression — saving original"); } catch (Throwable ignored) {}
-                        }
-                        try (java.io.InputStream inputStream = filedata.getInputStream()) {
-                            fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                            log.debug("[UPLOAD] GridFS store (OOM fallback stream): fieldId={}, filename={}", fieldId, filedata.getOriginalFilename());
-                        }
-                    } catch (Exception e) {
-                        if (finalSessionId != null) {
-                            addUploadLog(finalSessionId, "⚠️ Compression error, using original file");
-                        }
-                        log.debug("[UPLOAD] Compression error for {}: {}, storing original via stream", filedata.getOriginalFilename(), e.getMessage());
-                        // Fallback to original file bytes
-                        try (java.io.InputStream inputStream = filedata.getInputStream()) {
-                            fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                            log.debug("[UPLOAD] GridFS store (compression fallback): fieldId={}, filename={}", fieldId, filedata.getOriginalFilename());
-                        }
-                    }
-                } else if (imageCompressionService.isImageType(contentType) && allowOriginal) {
-                    // O button upload path: allow non-compressed upload
-                    if (finalSessionId != null) {
-                        addUploadLog(finalSessionId, String.format("✓ O button upload: Allowing original quality image (%d KB)", fileSize / 1024));
-                    }
-                    log.debug("[UPLOAD] O button / allowOriginal: storing original image ({} bytes) in GridFS", fileSize);
-                    // Use try-with-resources to ensure InputStream from MultipartFile is properly closed
-                    try (java.io.InputStream inputStream = filedata.getInputStream()) {
-                        fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                        log.debug("[UPLOAD] GridFS store (original image): fieldId={}, filename={}, size={} bytes",
-                                fieldId, filedata.getOriginalFilename(), fileSize);
-                    }
-                } else {
-                    // Non-image file: use original
-                    if (finalSessionId != null && imageCompressionService.isImageType(contentType)) {
-                        addUploadLog(finalSessionId, String.format("✓ Image OK, no compression needed (%d KB)", fileSize / 1024));
-                    }
-                    // Use try-with-resources to ensure InputStream from MultipartFile is properly closed
-                    try (java.io.InputStream inputStream = filedata.getInputStream()) {
-                        fieldId = gridFsTemplate.store(inputStream, filedata.getOriginalFilename(), contentType, metaData).toString();
-                    }
-                    log.debug("[UPLOAD] GridFS store (non-image or no compression): fieldId={}, filename={}, size={} bytes",
-                            fieldId, filedata.getOriginalFilename(), fileSize);
-                }
-
-                // create the file info with correct content type (metadata only; binary is in GridFS under fieldId)
-                FileUploaded fileUploaded = new FileUploaded(fieldId, filedata.getOriginalFilename(), contentType, uploaderMember);
+                MultipartFile filedata = files[fileIndex];
+                String fieldId = fileUploaded.getFieldId();
                 uploadedFiles.add(fileUploaded);
                 
                 // Ensure fileUploadeds list is still initialized (defensive check)
@@ -1150,6 +1060,13 @@ public class FileRestController {
                     log.error("[UPLOAD] fileUploadeds became null during upload for event {}! Re-initializing.", evenementid);
                 }
                 
+                // Identical content already attached to this event (deduplicated to the same fieldId): keep one entry
+                if (evenement.getFileUploadeds().stream().anyMatch(f -> f != null && fieldId.equals(f.getFieldId()))) {
+                    duplicatesInEvent++;
+                    log.debug("[UPLOAD] {} already attached to event {} as {}", filedata.getOriginalFilename(), evenementid, fieldId);
+                    continue;
+                }
+
                 // Add file metadata to evenement (binary is already in GridFS under fieldId)
                 evenement.getFileUploadeds().add(fileUploaded);
                 log.debug("[UPLOAD] Metadata added to event: eventId={}, fieldId={}, fileName={}, totalFilesInEvent={}",
@@ -1183,7 +1100,7 @@ public class FileRestController {
             Evenement verifyEvent = evenementsRepository.findById(evenementid).orElse(null);
             int savedFileCount = verifyEvent != null && verifyEvent.getFileUploadeds() != null 
                 ? verifyEvent.getFileUploadeds().size() : 0;
-            int expectedFileCount = filesBeforeUpload + uploadedFiles.size();
+            int expectedFileCount = filesBeforeUpload + uploadedFiles.size() - duplicatesInEvent;
             String fieldIds = uploadedFiles.stream().map(FileUploaded::getFieldId).reduce("", (a, b) -> a.isEmpty() ? b : a + "," + b);
             log.debug("[UPLOAD] Event saved. Verification: eventId={}, filesInEventAfterSave={}, expected={} ({} existing + {} new). GridFS binaries stored under fieldIds: {}",
                     evenementid, savedFileCount, expectedFileCount, filesBeforeUpload, uploadedFiles.size(), fieldIds);
@@ -1253,6 +1170,476 @@ public class FileRestController {
 
     }
 
+    /**
+     * Resumable upload, step 1: open a session for one file of {@code size} bytes. The bytes are then sent with
+     * {@code PUT /uploadfile/chunked/{uploadId}?offset=} (raw body, see {@link ChunkedUploadService} for the part
+     * rules) and attached to the event by {@code POST /uploadfile/chunked/{uploadId}/complete}.
+     * Unlike {@link #postFile}, nothing is held in memory beyond one GridFS chunk, so there is no heap gate.
+     * The session belongs to the caller's JWT subject: the other endpoints answer 404 to anyone else.
+     */
+    @PostMapping("/uploadfile/chunked/{userId}/{evenementid}")
+    public ResponseEntity<ChunkedUploadService.Session> openChunkedUpload(
+            @PathVariable String userId,
+            @PathVariable String evenementid,
+            @RequestParam("fileName") String fileName,
+            @RequestParam("size") long size,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "allowOriginal", required = false, defaultValue = "false") boolean allowOriginal) {
+        String subject = currentJwtSubject();
+        if (subject == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!membersRepository.existsById(userId) || !evenementsRepository.existsById(evenementid)) {
+            log.debug("[UPLOAD] Chunked upload rejected: user {} or event {} not found", userId, evenementid);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        try {
+            ChunkedUploadService.Session session = chunkedUploadService.create(subject, userId, evenementid, fileName,
+                    resolveUploadContentType(contentType, fileName), size, allowOriginal);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).header("X-Upload-Error", e.getMessage()).build();
+        }
+    }
+
+    /** Resumable upload: current state, {@code received} is where the next part must start. */
+    @GetMapping("/uploadfile/chunked/{uploadId}")
+    public ResponseEntity<ChunkedUploadService.Session> getChunkedUpload(@PathVariable String uploadId) {
+        ChunkedUploadService.Session session = chunkedUploadService.get(uploadId, currentJwtSubject());
+        return session != null ? ResponseEntity.ok(session) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Resumable upload, step 2: append the request body at {@code offset}. Answers 409 with the session when the
+     * offset is not the number of bytes already received (the client then resumes from {@code received}).
+     */
+    @PutMapping(value = "/uploadfile/chunked/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ChunkedUploadService.Session> putChunkedUploadPart(@PathVariable String uploadId,
+                                                                             @RequestParam("offset") long offset,
+                                                                             HttpServletRequest request) {
+        if (chunkedUploadService.get(uploadId, currentJwtSubject()) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream body = request.getInputStream()) {
+            return ResponseEntity.ok(chunkedUploadService.appendPart(uploadId, offset, body));
+        } catch (ChunkedUploadService.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getSession());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).header("X-Upload-Error", e.getMessage()).build();
+        } catch (IOException e) {
+            log.debug("[UPLOAD] Chunked upload {}: part at {} interrupted: {}", uploadId, offset, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).header("X-Upload-Error", "IO: " + e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Resumable upload, step 3: create the GridFS file and attach it to the event. An optional client-side
+     * {@code sha256} is checked against the digest computed while receiving. Images are compressed first (unless
+     * {@code allowOriginal}), so the event and the response carry the compressed file and the original is dropped.
+     */
+    @PostMapping("/uploadfile/chunked/{uploadId}/complete")
+    public ResponseEntity<FileUploaded> completeChunkedUpload(@PathVariable String uploadId,
+                                                              @RequestParam(value = "sha256", required = false) String sha256,
+                                                              @RequestParam(value = "sessionId", required = false) String sessionId) {
+        ChunkedUploadService.Session session = chunkedUploadService.get(uploadId, currentJwtSubject());
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Member uploaderMember = membersRepository.findById(session.userId()).orElse(null);
+        Evenement evenement = evenementsRepository.findById(session.evenementId()).orElse(null);
+        if (uploaderMember == null || evenement == null) {
+            chunkedUploadService.abort(uploadId);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Document metaData = new Document();
+        metaData.put("UploaderName", uploaderMember.getFirstName()+" "+uploaderMember.getLastName());
+        metaData.put("UploaderId", uploaderMember.getId());
+        ChunkedUploadService.Completed completed;
+        try {
+            completed = chunkedUploadService.complete(uploadId, metaData, sha256);
+        } catch (ChunkedUploadService.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header("X-Upload-Error", e.getMessage()).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).header("X-Upload-Error", e.getMessage()).build();
+        }
+
+        String fieldId = completed.fieldId();
+        if (imageCompressionService.isImageType(completed.contentType()) && !session.allowOriginal()) {
+            fieldId = chunkedUploadService.compress(completed);
+        }
+        String attachedId = fieldId;
+        FileUploaded fileUploaded = new FileUploaded(attachedId, completed.fileName(), completed.contentType(), uploaderMember);
+        if (evenement.getFileUploadeds() == null) {
+            evenement.setFileUploadeds(new ArrayList<>());
+        }
+        if (evenement.getFileUploadeds().stream().noneMatch(f -> f != null && attachedId.equals(f.getFieldId()))) {
+            evenement.getFileUploadeds().add(fileUploaded);
+        }
+        if (completed.fileName() != null && completed.fileName().toLowerCase().contains("thumbnail")) {
+            evenement.setThumbnail(fileUploaded);
+        }
+        evenementsRepository.save(evenement);
+        log.debug("[UPLOAD] Chunked upload attached: eventId={}, fieldId={}, fileName={}, {} bytes",
+                session.evenementId(), attachedId, completed.fileName(), completed.length());
+
+        if (!attachedId.equals(completed.fieldId())) {
+            chunkedUploadService.dropIfUnreferenced(completed.fieldId());
+        } else if (isVideoFile(completed.fileName())) {
+            videoTranscodingService.enqueue(completed.fieldId(), false);
+        }
+        if (sessionId != null && !sessionId.isEmpty()) {
+            addUploadLog(sessionId, String.format("💾 File saved: %s", completed.fileName()));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("X-Upload-Sha256", completed.sha256())
+                .body(fileUploaded);
+    }
+
+    @DeleteMapping("/uploadfile/chunked/{uploadId}")
+    public ResponseEntity<Void> abortChunkedUpload(@PathVariable String uploadId) {
+        if (chunkedUploadService.get(uploadId, currentJwtSubject()) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        chunkedUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Store one uploaded part in GridFS (compressing images unless {@code allowOriginal}).
+     * Safe to call from pipeline worker threads: progress goes to the shared {@link #uploadLogs} session and
+     * the heap estimate of an image being compressed is held in {@link #uploadHeapReserved} meanwhile.
+     *
+     * @return the file metadata to attach to the event, or {@code null} for an empty part
+     */
+    private FileUploaded storeUploadedFile(MultipartFile filedata, int fileIndex, int fileCount, Member uploaderMember,
+                                           boolean allowOriginal, String finalSessionId) throws IOException {
+        if (filedata.isEmpty()) {
+            log.warn("[UPLOAD] Skipping empty file at index {}", fileIndex);
+            return null;
+        }
+        log.debug("[UPLOAD] Processing file {}/{}: {} ({} bytes) -> will store in GridFS then add metadata to event",
+                fileIndex + 1, fileCount, filedata.getOriginalFilename(), filedata.getSize());
+
+        long reservedHeap = 0;
+        try {
+            if (finalSessionId != null) {
+                addUploadLog(finalSessionId, String.format("📄 Processing file %d/%d: %s (%d KB)", 
+                    fileIndex + 1, fileCount, filedata.getOriginalFilename(), filedata.getSize() / 1024));
+            }
+
+            // Use modern Document API instead of deprecated DBObject
+            Document metaData = new Document();
+            metaData.put("UploaderName", uploaderMember.getFirstName()+" "+uploaderMember.getLastName());
+            metaData.put("UploaderId", uploaderMember.getId());
+
+            // Check if file is an image
+            String contentType = resolveUploadContentType(filedata.getContentType(), filedata.getOriginalFilename());
+            long fileSize = filedata.getSize();
+            long maxSizeInBytes = imagemaxsizekb * 1024L; // Convert KB to bytes
+
+            // Save the doc ( all type ) in  MongoDB
+            // Use try-with-resources to ensure InputStream is properly closed
+            String fieldId;
+
+            // Safety threshold: skip in-memory compression to prevent OutOfMemoryError that crashes the JVM.
+            // We only skip when the *decoded* image (width*height*4 bytes for an RGB BufferedImage) plus a
+            // working copy plus the raw file bytes wouldn't safely fit in the available heap.
+            // We deliberately avoid using the raw file size as a gate: a 10+ MB JPEG of a normal photo
+            // (e.g. 24 MP, 6000x4000) decodes to ~96 MB and is perfectly fine to compress on a typical heap.
+            // Heap already claimed by files compressed in parallel by the same pipeline is not available.
+            Runtime rt = Runtime.getRuntime();
+            long availableHeap = rt.maxMemory() - rt.totalMemory() + rt.freeMemory() - uploadHeapReserved.get();
+            boolean fileTooLargeForCompression = false;
+            String tooLargeReason = null;
+            byte[] preReadImageBytes = null;
+            int[] preReadDimensions = null;
+            if (imageCompressionService.isImageType(contentType) && !allowOriginal) {
+                // First defence: never load a file into memory that's already bigger than ~1/4 of the heap.
+                if (fileSize > (availableHeap / 4)) {
+                    fileTooLargeForCompression = true;
+                    tooLargeReason = String.format("file %d MB > 1/4 of available heap (%d MB)",
+                            fileSize / (1024 * 1024), availableHeap / (1024 * 1024));
+                } else {
+                    try {
+                        preReadImageBytes = filedata.getBytes();
+                        preReadDimensions = ImageCompressionService.getImageDimensions(preReadImageBytes);
+                        if (preReadDimensions != null) {
+                            // Very large sources are decoded with subsampling (see decodeForCompression)
+                            long estimatedDecoded = ImageCompressionService.estimateDecodedBytesForCompression(
+                                    preReadDimensions[0], preReadDimensions[1], maxSizeInBytes);
+                            // Need ~2x estimatedDecoded (decoded image + a working copy/resize buffer) on top
+                            // of the file bytes we're already holding.
+                            long requiredHeap = estimatedDecoded * 2L + preReadImageBytes.length;
+                            if (requiredHeap > availableHeap) {
+                                fileTooLargeForCompression = true;
+                                tooLargeReason = String.format("decoded image ~%d MB (%dx%d) won't fit in available heap (%d MB)",
+                                        estimatedDecoded / (1024 * 1024), preReadDimensions[0], preReadDimensions[1],
+                                        availableHeap / (1024 * 1024));
+                            } else {
+                                reservedHeap = requiredHeap;
+                            }
+                        } else {
+                            // Couldn't read dimensions cheaply — fall back to a conservative file-size heuristic
+                            // (decoded RGB + working copy is typically ~8x JPEG file size).
+                            if (fileSize * 8L > availableHeap) {
+                                fileTooLargeForCompression = true;
+                                tooLargeReason = String.format("dimensions unreadable, file %d MB * 8 > available heap (%d MB)",
+                                        fileSize / (1024 * 1024), availableHeap / (1024 * 1024));
+                            } else {
+                                reservedHeap = fileSize * 8L;
+                            }
+                        }
+                    } catch (IOException e) {
+                        log.warn("Could not pre-read image bytes for safety check: {}. Will try compression anyway.", e.getMessage());
+                        preReadImageBytes = null;
+                        preReadDimensions = null;
+                    } catch (OutOfMemoryError oom) {
+                        log.warn("OOM while pre-reading bytes for {} — falling back to streaming original",
+                                filedata.getOriginalFilename());
+                        preReadImageBytes = null;
+                        preReadDimensions = null;
+                        fileTooLargeForCompression = true;
+                        tooLargeReason = "OOM while reading file bytes";
+                        try { System.gc(); } catch (Throwable ignored) {}
+                    }
+                }
+            }
+
+            uploadHeapReserved.addAndGet(reservedHeap);
+
+            if (fileTooLargeForCompression && imageCompressionService.isImageType(contentType) && !allowOriginal) {
+                log.warn("File {} too large for in-memory compression ({}). Streaming directly to GridFS.",
+                        filedata.getOriginalFilename(), tooLargeReason);
+                if (finalSessionId != null) {
+                    addUploadLog(finalSessionId, String.format("⚠️ File too large for compression (%s) — saving original to avoid server crash",
+                            tooLargeReason));
+                }
+                // Drop any pre-read bytes we couldn't use, then stream from the multipart input
+                preReadImageBytes = null;
+                try (java.io.InputStream inputStream = filedata.getInputStream()) {
+                    fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                    log.debug("[UPLOAD] GridFS store (stream, file too large for compression): fieldId={}, filename={}, bytes sent via stream",
+                            fieldId, filedata.getOriginalFilename());
+                }
+            } else if (imageCompressionService.isImageType(contentType) && !allowOriginal) {
+                // Image compression path (switch ON in UI: allowOriginal=false)
+                log.debug("[UPLOAD] Compression applied (allowOriginal=false): filename={}, originalSize={} bytes", filedata.getOriginalFilename(), fileSize);
+                if (finalSessionId != null) {
+                    addUploadLog(finalSessionId, String.format("⚙️ Image detected (%d KB) - Compression in progress... (allowOriginal=%s)", 
+                        fileSize / 1024, allowOriginal));
+                }
+                
+                log.debug("Starting compression for {} ({} KB), available heap: {} MB",
+                        filedata.getOriginalFilename(), fileSize / 1024, availableHeap / (1024 * 1024));
+                
+                try {
+                    // Reuse the bytes we already read for the safety check (avoid reading twice from the multipart).
+                    byte[] fileBytes = preReadImageBytes != null ? preReadImageBytes : filedata.getBytes();
+                    preReadImageBytes = null;
+
+                    // Same original already compressed with the same settings (e.g. for another event): reuse it
+                    String sourceSha256 = GridFsDeduplicationService.sha256Hex(fileBytes);
+                    String alreadyCompressed = gridFsDeduplicationService.findCompressed(sourceSha256, imagemaxsizekb);
+
+                    // Read the image from bytes
+                    BufferedImage originalImage = alreadyCompressed == null
+                            ? imageCompressionService.decodeForCompression(fileBytes, maxSizeInBytes) : null;
+                    if (alreadyCompressed != null) {
+                        fieldId = alreadyCompressed;
+                        log.debug("[UPLOAD] Image already stored compressed: fieldId={}, filename={}", fieldId, filedata.getOriginalFilename());
+                        if (finalSessionId != null) {
+                            addUploadLog(finalSessionId, String.format("♻️ Image already stored, reusing it: %s", filedata.getOriginalFilename()));
+                        }
+                    } else if (originalImage != null) {
+                        if (finalSessionId != null) {
+                            addUploadLog(finalSessionId, String.format("🖼️ Starting image compression for: %s", 
+                                filedata.getOriginalFilename()));
+                        }
+                        
+                        // Compress the image
+                        ImageCompressionService.CompressionResult compressionResult = imageCompressionService.resizeImageIfNeeded(
+                            filedata.getOriginalFilename(), 
+                            originalImage, 
+                            contentType, 
+                            fileSize, 
+                            maxSizeInBytes,
+                            fileBytes,
+                            finalSessionId != null ? message -> addUploadLog(finalSessionId, message) : null
+                        );
+                        
+                        // Release references to free memory before storing
+                        originalImage = null;
+                        fileBytes = null;
+                        
+                        // Create input stream from compressed bytes (ByteArrayInputStream doesn't need closing)
+                        byte[] compressedBytes = compressionResult.getData();
+                        metaData.put(GridFsDeduplicationService.SOURCE_SHA256, sourceSha256);
+                        metaData.put(GridFsDeduplicationService.COMPRESSED_MAX_KB, imagemaxsizekb);
+                        try (java.io.InputStream inputStream = new ByteArrayInputStream(compressedBytes)) {
+                            fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                        }
+                        long compressedSize = compressedBytes.length;
+                        log.debug("[UPLOAD] GridFS store (compressed image): fieldId={}, filename={}, originalSize={} bytes, compressedSize={} bytes (switch ON)",
+                                fieldId, filedata.getOriginalFilename(), fileSize, compressedSize);
+                        if (finalSessionId != null) {
+                            addUploadLog(finalSessionId, String.format("✅ Compression completed: %d KB → %d KB", 
+                                fileSize / 1024, compressionResult.getCompressedSize() / 1024));
+                        }
+                        log.debug("Image compressed from {} to {} bytes", fileSize, compressedSize);
+                    } else {
+                        // ImageIO couldn't read it, use original bytes
+                        try (java.io.InputStream inputStream = new ByteArrayInputStream(fileBytes)) {
+                            fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                        }
+                        log.debug("[UPLOAD] GridFS store (original bytes, ImageIO could not read): fieldId={}, filename={}, size={} bytes",
+                                fieldId, filedata.getOriginalFilename(), fileBytes.length);
+                    }
+                } catch (OutOfMemoryError oom) {
+                    log.error("OutOfMemoryError during compression of {} ({} KB). Attempting stream fallback.",
+                            filedata.getOriginalFilename(), fileSize / 1024);
+                    System.err.println("OOM during compression of " + filedata.getOriginalFilename() + " - attempting stream fallback");
+                    try { System.gc(); } catch (Throwable ignored) {}
+                    if (finalSessionId != null) {
+                        try { addUploadLog(finalSessionId, "⚠️ Out of memory during compression — saving original"); } catch (Throwable ignored) {}
+                    }
+                    try (java.io.InputStream inputStream = filedata.getInputStream()) {
+                        fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                        log.debug("[UPLOAD] GridFS store (OOM fallback stream): fieldId={}, filename={}", fieldId, filedata.getOriginalFilename());
+                    }
+                } catch (Exception e) {
+                    if (finalSessionId != null) {
+                        addUploadLog(finalSessionId, "⚠️ Compression error, using original file");
+                    }
+                    log.debug("[UPLOAD] Compression error for {}: {}, storing original via stream", filedata.getOriginalFilename(), e.getMessage());
+                    // Fallback to original file bytes
+                    try (java.io.InputStream inputStream = filedata.getInputStream()) {
+                        fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                        log.debug("[UPLOAD] GridFS store (compression fallback): fieldId={}, filename={}", fieldId, filedata.getOriginalFilename());
+                    }
+                }
+            } else if (imageCompressionService.isImageType(contentType) && allowOriginal) {
+                // O button upload path: allow non-compressed upload
+                if (finalSessionId != null) {
+                    addUploadLog(finalSessionId, String.format("✓ O button upload: Allowing original quality image (%d KB)", fileSize / 1024));
+                }
+                log.debug("[UPLOAD] O button / allowOriginal: storing original image ({} bytes) in GridFS", fileSize);
+                // Use try-with-resources to ensure InputStream from MultipartFile is properly closed
+                try (java.io.InputStream inputStream = filedata.getInputStream()) {
+                    fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                    log.debug("[UPLOAD] GridFS store (original image): fieldId={}, filename={}, size={} bytes",
+                            fieldId, filedata.getOriginalFilename(), fileSize);
+                }
+            } else {
+                // Non-image file: use original
+                if (finalSessionId != null && imageCompressionService.isImageType(contentType)) {
+                    addUploadLog(finalSessionId, String.format("✓ Image OK, no compression needed (%d KB)", fileSize / 1024));
+                }
+                // Use try-with-resources to ensure InputStream from MultipartFile is properly closed
+                try (java.io.InputStream inputStream = filedata.getInputStream()) {
+                    fieldId = gridFsDeduplicationService.store(inputStream, filedata.getOriginalFilename(), contentType, metaData);
+                }
+                log.debug("[UPLOAD] GridFS store (non-image or no compression): fieldId={}, filename={}, size={} bytes",
+                        fieldId, filedata.getOriginalFilename(), fileSize);
+            }
+
+            if (finalSessionId != null) {
+                addUploadLog(finalSessionId, String.format("💾 File %d/%d saved: %s", fileIndex + 1, fileCount, filedata.getOriginalFilename()));
+            }
+
+            if (isVideoFile(filedata.getOriginalFilename())) {
+                videoTranscodingService.enqueue(fieldId, false);
+            }
+
+            // create the file info with correct content type (metadata only; binary is in GridFS under fieldId)
+            return new FileUploaded(fieldId, filedata.getOriginalFilename(), contentType, uploaderMember);
+        } finally {
+            if (reservedHeap > 0) {
+                uploadHeapReserved.addAndGet(-reservedHeap);
+            }
+        }
+    }
+
+    /**
+     * Upload pipeline: each part is read, decoded/resized, encoded and written to GridFS by a worker of
+     * {@link #uploadExecutor}, so several photos of one upload progress at the same time. The number of
+     * parts in flight is capped by {@code app.upload.pipeline.max-parallel} and lowered while the heap is busy
+     * (re-evaluated before each submission). Results keep the order of {@code files}.
+     */
+    private FileUploaded[] storeUploadedFiles(MultipartFile[] files, Member uploaderMember, boolean allowOriginal,
+                                              String finalSessionId) throws IOException {
+        FileUploaded[] stored = new FileUploaded[files.length];
+        int maxParallel = Math.max(1, Math.min(uploadPipelineMaxParallel, files.length));
+        if (maxParallel == 1) {
+            for (int i = 0; i < files.length; i++) {
+                stored[i] = storeUploadedFile(files[i], i, files.length, uploaderMember, allowOriginal, finalSessionId);
+            }
+            return stored;
+        }
+
+        ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<>(uploadExecutor);
+        List<Future<Integer>> submitted = new ArrayList<>();
+        Throwable failure = null;
+        int next = 0;
+        int inFlight = 0;
+        try {
+            while (next < files.length || inFlight > 0) {
+                if (failure == null && next < files.length && inFlight < uploadParallelism(maxParallel)) {
+                    final int index = next++;
+                    submitted.add(completion.submit(() -> {
+                        stored[index] = storeUploadedFile(files[index], index, files.length, uploaderMember,
+                                allowOriginal, finalSessionId);
+                        return index;
+                    }));
+                    inFlight++;
+                    continue;
+                }
+                if (failure != null) {
+                    next = files.length; // stop feeding the pipeline, only drain what is running
+                }
+                Future<Integer> done = completion.take();
+                inFlight--;
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() != null ? e.getCause() : e;
+                        log.warn("[UPLOAD] Pipeline stopped after failure: {}", failure.toString());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            submitted.forEach(f -> f.cancel(true));
+            throw new IOException("Upload interrupted", e);
+        }
+
+        if (failure instanceof IOException io) {
+            throw io;
+        }
+        if (failure instanceof RuntimeException re) {
+            throw re;
+        }
+        if (failure instanceof Error err) {
+            throw err;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return stored;
+    }
+
+    /** Parts allowed in flight for one upload given current heap usage. */
+    private int uploadParallelism(int maxParallel) {
+        double usagePercent = memoryMonitoringService.getMemoryUsagePercent();
+        if (usagePercent >= 80.0) {
+            return 1;
+        }
+        if (usagePercent >= 65.0) {
+            return Math.max(1, maxParallel / 2);
+        }
+        return maxParallel;
+    }
+
     @RequestMapping( value = "/api/file", method = RequestMethod.PUT )
     public ResponseEntity<Evenement> updateFile(@RequestBody Evenement evenement){
 
@@ -1383,6 +1770,13 @@ public class FileRestController {
         boolean isVideo = isVideoFile(fileName);
         String fileType = isVideo ? "VIDEO" : "FILE";
 
+        // Deduplicated content: the chunks go with the last event using them
+        long references = gridFsDeduplicationService.countReferences(fileId, null);
+        if (references > 0) {
+            log.info("{} kept in GridFS, still used by {} event(s): id={}, name={}", fileType, references, fileId, fileName);
+            return true;
+        }
+
         log.info("Deleting {} from GridFS: id={}, name={}", fileType, fileId, fileName);
 
         try {
@@ -1403,6 +1797,10 @@ public class FileRestController {
             }
 
             log.info("Deleted {} from GridFS: id={}, name={}, size={} bytes", fileType, fileId, fileName, fileSize);
+            imageCompressionService.evictWallPreviews(fileId);
+            if (isVideo) {
+                videoTranscodingService.forget(fileId);
+            }
             return true;
         } catch (IllegalArgumentException invalidObjectId) {
             log.warn("Invalid ObjectId for GridFS delete, retrying with string id: id={}, name={}", fileId, fileName);
@@ -1461,6 +1859,37 @@ public class FileRestController {
     /**
      * Helper method to determine content type from filename extension
      */
+    /**
+     * Content type of an upload: the browser's unless missing, generic, contradicted by the file extension
+     * (images / videos) or a wildcard.
+     */
+    private String resolveUploadContentType(String browserContentType, String fileName) {
+        String contentType = browserContentType;
+        // Determine correct content type from filename (more reliable than browser's contentType)
+        String correctContentType = getContentTypeFromFilename(fileName);
+        // Use browser's contentType if it's valid, otherwise use filename-based detection
+        if (contentType == null || contentType.isEmpty() || contentType.equals("application/octet-stream")) {
+            contentType = correctContentType;
+        } else {
+            // Validate browser's contentType matches the file extension
+            String browserType = contentType.toLowerCase();
+            String filenameType = correctContentType != null ? correctContentType.toLowerCase() : "";
+            // If they don't match, prefer filename-based detection for images and videos
+            if ((browserType.startsWith("image/") && !filenameType.startsWith("image/")) ||
+                (browserType.startsWith("video/") && !filenameType.startsWith("video/"))) {
+                log.warn("ContentType mismatch for file {}: browser says {}, filename suggests {}. Using filename-based type.",
+                        fileName, contentType, correctContentType);
+                contentType = correctContentType;
+            }
+        }
+        // Wildcard types (e.g. image/*) are stored by GridFS but rejected when serving; normalize to concrete type
+        if (contentType != null && contentType.contains("*")) {
+            log.debug("[UPLOAD] Resolving wildcard contentType '{}' from filename to: {}", contentType, correctContentType);
+            contentType = (correctContentType != null && !correctContentType.isEmpty()) ? correctContentType : "application/octet-stream";
+        }
+        return contentType;
+    }
+
     private String getContentTypeFromFilename(String filename) {
         if (filename == null || filename.isEmpty()) {
             return "application/octet-stream";
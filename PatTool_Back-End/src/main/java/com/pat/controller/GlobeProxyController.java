@@ -413,6 +413,32 @@ public class GlobeProxyController {
         }
     }
 
+    /**
+     * Samples recorded after {@code since} (ISO-8601 instant, typically the last point the client holds), so an
+     * open globe only fetches new points. Not simplified; same body as {@code GET /iss/trace}.
+     */
+    @GetMapping("/iss/trace/since")
+    public ResponseEntity<IssTraceResponseDto> issTraceSince(@RequestParam("since") String since) {
+        Instant after;
+        try {
+            after = Instant.parse(since);
+        } catch (Exception parseEx) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            List<IssTracePointView> points = issTraceService.getTraceSince(after);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .body(new IssTraceResponseDto(
+                            points,
+                            issTraceService.getRetentionDays(),
+                            issTraceService.getSampleIntervalSeconds()));
+        } catch (Exception e) {
+            log.warn("ISS trace since {} read failed: {}", since, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /** Persist one ISS sample while the globe overlay is active (deduped server-side). */
     @PostMapping("/iss/trace")
     public ResponseEntity<Void> recordIssTracePoint(@RequestBody IssTraceRecordRequest body) {
@@ -1,9 +1,9 @@
 package com.pat.controller;
 
-import com.pat.repo.GoveeThermometerHistoryRepository;
 import com.pat.repo.domain.GoveeThermometerHistory;
 import com.pat.repo.domain.Member;
 import com.pat.service.GoveeService;
+import com.pat.service.GoveeThermometerHistoryService;
 import com.pat.service.GoveeThermometerScheduler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -12,6 +12,11 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +32,7 @@ public class GoveeController {
     private GoveeThermometerScheduler thermometerScheduler;
 
     @Autowired
-    private GoveeThermometerHistoryRepository historyRepository;
+    private GoveeThermometerHistoryService historyService;
 
     /**
      * Check if the current user has Iot role (case-insensitive)
@@ -94,7 +99,9 @@ public class GoveeController {
     }
 
     /**
-     * Get history for a specific thermometer device or all thermometers
+     * Get history for a specific thermometer device or all thermometers.
+     * Optional {@code from} / {@code to} (ISO date or date-time), {@code points} (per device budget, default
+     * {@value GoveeThermometerHistoryService#DEFAULT_POINTS}) and {@code mode} ({@code lttb} or {@code minmax}).
      */
     @PostMapping(value = "/govee/thermometer/history", produces = MediaType.APPLICATION_JSON_VALUE)
     public Map<String, Object> getThermometerHistory(@RequestBody Map<String, String> request) {
@@ -102,37 +109,23 @@ public class GoveeController {
         
         if (hasIotRole()) {
             try {
+                LocalDateTime from = parseDateTime(request.get("from"), false);
+                LocalDateTime to = parseDateTime(request.get("to"), true);
+                int points = parsePoints(request.get("points"));
+                String mode = request.getOrDefault("mode", "lttb");
                 Map<String, Object> result = new HashMap<>();
                 result.put("success", true);
+                result.put("points", points);
+                result.put("mode", "minmax".equalsIgnoreCase(mode) ? "minmax" : "lttb");
                 
+                Map<String, List<GoveeThermometerHistory>> historyByDevice =
+                        historyService.getHistory(deviceId, from, to, points, mode);
                 if (deviceId == null || deviceId.trim().isEmpty()) {
-                    // Get all history, grouped by deviceId
-                    List<GoveeThermometerHistory> allHistory = historyRepository.findAll();
-                    Map<String, List<GoveeThermometerHistory>> historyByDevice = new HashMap<>();
-                    
-                    for (GoveeThermometerHistory entry : allHistory) {
-                        String entryDeviceId = entry.getDeviceId();
-                        if (entryDeviceId != null) {
-                            historyByDevice.computeIfAbsent(entryDeviceId, k -> new java.util.ArrayList<>()).add(entry);
-                        }
-                    }
-                    
-                    // Sort each device's history by timestamp
-                    for (List<GoveeThermometerHistory> deviceHistory : historyByDevice.values()) {
-                        deviceHistory.sort((a, b) -> {
-                            if (a.getTimestamp() == null && b.getTimestamp() == null) return 0;
-                            if (a.getTimestamp() == null) return -1;
-                            if (b.getTimestamp() == null) return 1;
-                            return a.getTimestamp().compareTo(b.getTimestamp());
-                        });
-                    }
-                    
                     result.put("historyByDevice", historyByDevice);
-                    result.put("totalCount", allHistory.size());
+                    result.put("totalCount", historyByDevice.values().stream().mapToInt(List::size).sum());
                     result.put("deviceCount", historyByDevice.size());
                 } else {
-                    // Get history for specific device
-                    List<GoveeThermometerHistory> history = historyRepository.findByDeviceIdOrderByTimestampAsc(deviceId);
+                    List<GoveeThermometerHistory> history = historyByDevice.getOrDefault(deviceId, List.of());
                     result.put("deviceId", deviceId);
                     result.put("history", history);
                     result.put("count", history.size());
@@ -151,6 +144,49 @@ public class GoveeController {
         }
     }
 
+    /**
+     * Rebuild the hourly thermometer history from the raw records still stored (done automatically on the
+     * first start with hourly history).
+     */
+    @PostMapping(value = "/govee/thermometer/history/rebuild-hourly", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> rebuildHourlyThermometerHistory() {
+        Map<String, Object> result = new HashMap<>();
+        if (!hasIotRole()) {
+            result.put("Unauthorized", "You are not Authorized to rebuild thermometer history. Iot role required.");
+            return result;
+        }
+        long written = historyService.rebuildHourlyFromRaw();
+        result.put("success", written >= 0);
+        if (written < 0) {
+            result.put("error", "Hourly history rebuild already running");
+        } else {
+            result.put("hourCount", written);
+        }
+        return result;
+    }
+
+    private static LocalDateTime parseDateTime(String value, boolean endOfDay) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String v = value.trim();
+        if (v.length() == 10) {
+            LocalDate date = LocalDate.parse(v);
+            return endOfDay ? date.atTime(LocalTime.MAX) : date.atStartOfDay();
+        }
+        if (v.endsWith("Z") || v.matches(".*[+-]\\d{2}:\\d{2}$")) {
+            return LocalDateTime.ofInstant(OffsetDateTime.parse(v).toInstant(), ZoneId.systemDefault());
+        }
+        return LocalDateTime.parse(v);
+    }
+
+    private static int parsePoints(String value) {
+        if (value == null || value.isBlank()) {
+            return GoveeThermometerHistoryService.DEFAULT_POINTS;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
     /**
      * Clear history for a specific thermometer device
      */
@@ -161,20 +197,19 @@ public class GoveeController {
         if (hasIotRole()) {
             try {
                 if (deviceId == null || deviceId.trim().isEmpty()) {
-                    // Clear all history if no deviceId specified
-                    historyRepository.deleteAll();
+                    // Clear all history (raw and hourly) if no deviceId specified
+                    historyService.clear(null);
                     Map<String, Object> result = new HashMap<>();
                     result.put("success", true);
                     result.put("message", "All thermometer history cleared");
                     return result;
                 } else {
                     // Clear history for specific device
-                    long countBefore = historyRepository.countByDeviceId(deviceId);
-                    historyRepository.deleteByDeviceId(deviceId);
+                    long deletedCount = historyService.clear(deviceId);
                     Map<String, Object> result = new HashMap<>();
                     result.put("success", true);
                     result.put("deviceId", deviceId);
-                    result.put("deletedCount", countBefore);
+                    result.put("deletedCount", deletedCount);
                     result.put("message", "Thermometer history cleared for device: " + deviceId);
                     return result;
                 }
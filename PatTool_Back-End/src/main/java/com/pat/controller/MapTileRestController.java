@@ -1,14 +1,21 @@
 package com.pat.controller;
 
 import com.pat.service.MapTileProxyService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 /**
  * Same-origin raster tile proxy for GPS 3D navigation (Three.js textures).
  */
@@ -30,4 +37,53 @@ public class MapTileRestController {
             @RequestParam(value = "style", defaultValue = "voyager") String style) {
         return mapTileProxyService.getTile(style, z, x, y);
     }
+
+    @GetMapping("/tile-cache/stats")
+    public ResponseEntity<Map<String, Object>> getTileCacheStatistics() {
+        return ResponseEntity.ok(mapTileProxyService.getStatistics());
+    }
+
+    /**
+     * Admin: warm the tile cache for a bounding box (runs in the background; progress in /tile-cache/stats).
+     */
+    @PostMapping("/tile-cache/seed")
+    public ResponseEntity<Map<String, Object>> seedBoundingBox(
+            @RequestParam("south") double south,
+            @RequestParam("west") double west,
+            @RequestParam("north") double north,
+            @RequestParam("east") double east,
+            @RequestParam(value = "minZoom", defaultValue = "10") int minZoom,
+            @RequestParam(value = "maxZoom", defaultValue = "15") int maxZoom,
+            @RequestParam(value = "style", defaultValue = "voyager") String style) {
+        if (!hasAdminRole()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean started = mapTileProxyService.seedBoundingBox(style, south, west, north, east, minZoom, maxZoom);
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(Map.of("started", started));
+    }
+
+    /**
+     * Admin: warm the tile cache around the most recently updated GPS itineraries.
+     */
+    @PostMapping("/tile-cache/seed/itineraries")
+    public ResponseEntity<Map<String, Object>> seedItineraries() {
+        if (!hasAdminRole()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean started = mapTileProxyService.seedItineraries();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(Map.of("started", started));
+    }
+
+    private boolean hasAdminRole() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return false;
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(authority -> authority.equalsIgnoreCase("ROLE_Admin")
+                        || authority.equalsIgnoreCase("ROLE_admin"));
+    }
 }
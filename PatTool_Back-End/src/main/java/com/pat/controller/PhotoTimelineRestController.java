@@ -1,5 +1,6 @@
 package com.pat.controller;
 
+import com.pat.repo.EvenementSearchFields;
 import com.pat.repo.FriendGroupRepository;
 import com.pat.repo.FriendRepository;
 import com.pat.repo.MembersRepository;
@@ -13,7 +14,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.MediaType;
@@ -21,12 +25,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import com.pat.service.GridFsDeduplicationService;
 import com.pat.service.EvenementTodoListLinkService;
 import com.pat.service.EvenementNoteLinkService;
 import com.pat.service.EvenementPdfConverterLinkService;
 import com.pat.repo.domain.PdfConverterDocumentLink;
 
-import java.text.Normalizer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
@@ -136,12 +143,24 @@ public class PhotoTimelineRestController {
     @Autowired
     private EvenementPdfConverterLinkService evenementPdfConverterLinkService;
 
+    @Autowired
+    private EvenementSearchFields evenementSearchFields;
+
     /**
      * Cache the expensive access criteria per user so it's only computed once
      * and reused across all page requests within the TTL.
      */
     private final ConcurrentHashMap<String, CachedAccessCriteria> accessCriteriaCache = new ConcurrentHashMap<>();
 
+    /**
+     * "On this day" photos per access-criteria hash; an entry only answers on the day it was computed.
+     * Cleared whenever an event is saved or deleted, or its files are repointed by the GridFS deduplication.
+     */
+    private final ConcurrentHashMap<String, OnThisDayMemo> onThisDayCache = new ConcurrentHashMap<>();
+
+    private record OnThisDayMemo(LocalDate day, List<TimelinePhoto> photos) {
+    }
+
     private static class CachedAccessCriteria {
         final Criteria criteria;
         final long createdAt;
@@ -1157,6 +1176,8 @@ public class PhotoTimelineRestController {
     /**
      * Text search criteria (name, description, type) — same as home-evenements.
      * Case-insensitive and accent-insensitive (NFD normalization), word at any position.
+     * Served by the folded search fields and their trigram index once they are backfilled;
+     * until then, by an accent-expanded regex on the raw fields (collection scan).
      */
     private Criteria buildSearchCriteria(String search) {
         if (search == null || search.trim().isEmpty()) {
@@ -1166,6 +1187,9 @@ public class PhotoTimelineRestController {
         if (normalized.isEmpty()) {
             return new Criteria();
         }
+        if (evenementSearchFields.isReady()) {
+            return EvenementSearchFields.containsCriteria(normalized, true);
+        }
         String regexPattern = ".*" + buildAccentInsensitiveRegex(normalized) + ".*";
         Criteria nameMatch = Criteria.where("evenementName").regex(regexPattern);
         Criteria commentsMatch = Criteria.where("comments").regex(regexPattern);
@@ -1175,10 +1199,7 @@ public class PhotoTimelineRestController {
 
     /** Normalization matching EvenementsRepositoryImpl: lowercase + NFD without accents. */
     private static String normalizeForSearch(String value) {
-        if (value == null || value.isEmpty()) return "";
-        String lower = value.toLowerCase(Locale.ROOT);
-        String nfd = Normalizer.normalize(lower, Normalizer.Form.NFD);
-        return nfd.replaceAll("\\p{M}", "");
+        return EvenementSearchFields.fold(value);
     }
 
     /** Builds a regex where each letter can match its accented variants (a → [aàâäáå], etc.). */
@@ -1343,17 +1364,38 @@ public class PhotoTimelineRestController {
 
     private List<TimelinePhoto> findOnThisDayPhotos(Criteria accessCriteria) {
         LocalDate today = LocalDate.now();
+        String key = onThisDayKey(accessCriteria);
+        OnThisDayMemo memo = onThisDayCache.get(key);
+        if (memo != null && memo.day().equals(today)) {
+            return memo.photos();
+        }
+        List<TimelinePhoto> photos = Collections.unmodifiableList(queryOnThisDayPhotos(accessCriteria, today));
+        onThisDayCache.values().removeIf(m -> !m.day().equals(today));
+        onThisDayCache.put(key, new OnThisDayMemo(today, photos));
+        return photos;
+    }
+
+    private List<TimelinePhoto> queryOnThisDayPhotos(Criteria accessCriteria, LocalDate today) {
         int todayMonth = today.getMonthValue();
         int todayDay = today.getDayOfMonth();
         int thisYear = today.getYear();
 
-        // Only fetch events with matching month/day from previous years
-        // MongoDB can't filter by month/day directly on Date, so we use a
-        // lightweight query that only returns date + file metadata
         Criteria hasPhotoSignal = new Criteria().orOperator(
                 criteriaUploadedImageSignal(), criteriaThumbnailImageSignal());
+        List<Criteria> filters = new ArrayList<>();
+        filters.add(accessCriteria);
+        filters.add(hasPhotoSignal);
+        if (evenementSearchFields.isReady()) {
+            // Index on beginMonthDay + beginEventDate: today's month/day, any other year
+            ZoneId zone = ZoneId.systemDefault();
+            filters.add(Criteria.where(EvenementSearchFields.BEGIN_MONTH_DAY).is(EvenementSearchFields.monthDay(today)));
+            filters.add(new Criteria().orOperator(
+                    Criteria.where("beginEventDate").lt(Date.from(LocalDate.of(thisYear, 1, 1).atStartOfDay(zone).toInstant())),
+                    Criteria.where("beginEventDate").gte(Date.from(LocalDate.of(thisYear + 1, 1, 1).atStartOfDay(zone).toInstant()))));
+        }
+        // Otherwise (key still being backfilled) every event with a photo is scanned and filtered below.
         // Single andOperator: two addCriteria() calls both using $or break BasicDocument merge in Spring Data MongoDB
-        Query query = new Query(new Criteria().andOperator(accessCriteria, hasPhotoSignal));
+        Query query = new Query(new Criteria().andOperator(filters.toArray(new Criteria[0])));
         query.fields()
                 .include("id")
                 .include("evenementName")
@@ -1382,6 +1424,36 @@ public class PhotoTimelineRestController {
         return result;
     }
 
+    /** SHA-256 of the access criteria: equal criteria (same friends, groups, visibility) share one memo. */
+    private static String onThisDayKey(Criteria accessCriteria) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(accessCriteria.getCriteriaObject().toJson().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @EventListener
+    public void onEvenementSaved(AfterSaveEvent<?> event) {
+        if (event.getSource() instanceof Evenement) {
+            onThisDayCache.clear();
+        }
+    }
+
+    @EventListener
+    public void onEvenementDeleted(AfterDeleteEvent<?> event) {
+        if (event.getType() == Evenement.class) {
+            onThisDayCache.clear();
+        }
+    }
+
+    @EventListener
+    public void onEventFilesRepointed(GridFsDeduplicationService.EventFilesRepointed event) {
+        onThisDayCache.clear();
+    }
+
     private Criteria buildAccessCriteria(String userId) {
         List<Criteria> accessCriteria = new ArrayList<>();
         accessCriteria.add(Criteria.where("visibility").is("public"));
@@ -27,6 +27,7 @@ import com.pat.service.TvLastChannelService;
 import com.pat.service.TvRecordingService;
 import com.pat.service.TvStreamProxyService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
@@ -592,13 +593,14 @@ public class TvWatcherRestController {
     public ResponseEntity<byte[]> stream(
             @PathVariable("encodedUrl") String encodedUrl,
             @RequestHeader(value = "Range", required = false) String range,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         Optional<String> upstream = TvStreamProxyService.decodeUpstreamUrl(encodedUrl);
         if (upstream.isEmpty()) {
             return TvStreamProxyService.jsonError(HttpStatus.BAD_REQUEST, "invalid_encoded_url",
                     "URL de flux encodée invalide");
         }
-        return proxyResolvedStream(upstream.get(), range, request);
+        return proxyResolvedStream(upstream.get(), range, request, response);
     }
 
     /**
@@ -608,7 +610,8 @@ public class TvWatcherRestController {
     public ResponseEntity<byte[]> streamQuery(
             @RequestParam("url") String url,
             @RequestHeader(value = "Range", required = false) String range,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         if (!StringUtils.hasText(url)) {
             return TvStreamProxyService.jsonError(HttpStatus.BAD_REQUEST, "missing_url",
                     "URL de flux manquante");
@@ -626,7 +629,15 @@ public class TvWatcherRestController {
             return TvStreamProxyService.jsonError(HttpStatus.BAD_REQUEST, "invalid_url",
                     "L’URL doit être http(s) ou un flux live virtuel supporté");
         }
-        return proxyResolvedStream(trimmed, range, request);
+        return proxyResolvedStream(trimmed, range, request, response);
+    }
+
+    /**
+     * Stream proxy relay totals (bytes and first-byte latency per mode: streamed / buffered / cache).
+     */
+    @GetMapping("/proxy/stats")
+    public ResponseEntity<Map<String, Object>> proxyStats() {
+        return ResponseEntity.ok(tvStreamProxyService.getRelayStatistics());
     }
 
     /**
@@ -750,8 +761,10 @@ public class TvWatcherRestController {
     /**
      * Resolve virtual live URLs then proxy. On 401/403/404/5xx for france.tv / TF1 / M6,
      * invalidate the cached upstream and retry once with a fresh resolve (new token or mirror).
+     * Media bodies are streamed to {@code response}; {@code null} is returned in that case.
      */
-    private ResponseEntity<byte[]> proxyResolvedStream(String upstream, String range, HttpServletRequest request) {
+    private ResponseEntity<byte[]> proxyResolvedStream(String upstream, String range, HttpServletRequest request,
+                                                       HttpServletResponse response) {
         String normalized = TvStreamProxyService.normalizeShareVirtualUrl(upstream);
         ResponseEntity<byte[]> resolveError = resolveLiveUpstreamOrError(normalized);
         if (resolveError != null) {
@@ -760,7 +773,10 @@ public class TvWatcherRestController {
         Optional<String> resolved = resolveLiveUpstream(normalized);
         String proxyBase = buildProxyBase(request);
         String target = resolved.orElse(normalized);
-        ResponseEntity<byte[]> first = tvStreamProxyService.proxy(target, proxyBase, range);
+        ResponseEntity<byte[]> first = tvStreamProxyService.proxy(target, proxyBase, range, response);
+        if (first == null) {
+            return null;
+        }
         // Absolute CDN segment URLs are not virtual — still drop sticky official TF1
         // URLs on 403 so the next playlist resolve switches to an IPTV mirror.
         if (first.getStatusCode().value() == 403 && isTf1OfficialCdnHost(target)) {
@@ -777,7 +793,7 @@ public class TvWatcherRestController {
         if (refreshed.get().equalsIgnoreCase(target)) {
             return first;
         }
-        return tvStreamProxyService.proxy(refreshed.get(), proxyBase, range);
+        return tvStreamProxyService.proxy(refreshed.get(), proxyBase, range, response);
     }
 
     private static boolean shouldRefreshVirtualLive(ResponseEntity<byte[]> response, String upstream) {
@@ -3,6 +3,7 @@ package com.pat.controller;
 import com.pat.repo.domain.Member;
 import com.pat.service.TvRecordingService;
 import com.pat.service.VideoService;
+import com.pat.service.VideoTranscodingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,14 +11,19 @@ import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.mongodb.gridfs.GridFsResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.ByteArrayInputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -35,6 +41,11 @@ public class VideoController {
 
     @Autowired
     private TvRecordingService tvRecordingService;
+
+    @Autowired
+    private VideoTranscodingService videoTranscodingService;
+
+    private static final MediaType HLS_PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
     
     // Compression service disabled - requires FFmpeg
     // @Autowired(required = false)
@@ -122,6 +133,7 @@ public class VideoController {
             
             metadata.put("availableQualities", availableQualities);
             metadata.put("currentQuality", "high"); // Default to high
+            metadata.put("hls", hlsInfo(fileId));
             
             return ResponseEntity.ok(metadata);
             
@@ -131,6 +143,123 @@ public class VideoController {
         }
     }
 
+    /**
+     * Adaptive (HLS) master playlist, once the video has been transcoded.
+     * {@code quality=low|medium} caps the renditions offered to the player (360p / 720p).
+     */
+    @GetMapping("/{fileId}/hls/master.m3u8")
+    public ResponseEntity<String> getHlsMasterPlaylist(
+            @PathVariable String fileId,
+            @RequestParam(value = "quality", required = false, defaultValue = "auto") String quality,
+            @RequestParam(value = "access_token", required = false) String accessToken) {
+        if (!canAccessTvRecordingMedia(fileId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String playlist = videoTranscodingService.masterPlaylist(fileId,
+                VideoService.VideoQuality.fromString(quality), tokenSuffix(accessToken));
+        if (playlist == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(HLS_PLAYLIST)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(playlist);
+    }
+
+    /**
+     * Rendition playlist or segment ({@code 720p/index.m3u8}, {@code 720p/seg_00001.ts}).
+     */
+    @GetMapping("/{fileId}/hls/{rendition}/{name:.+}")
+    public ResponseEntity<?> getHlsFile(
+            @PathVariable String fileId,
+            @PathVariable String rendition,
+            @PathVariable String name,
+            @RequestParam(value = "access_token", required = false) String accessToken) {
+        try {
+            if (!canAccessTvRecordingMedia(fileId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            if (VideoTranscodingService.POSTER.equals(rendition)) {
+                return ResponseEntity.notFound().build();
+            }
+            GridFsResource resource = videoTranscodingService.findOutput(fileId, rendition, name);
+            if (resource == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (name.endsWith(".m3u8")) {
+                return ResponseEntity.ok()
+                        .contentType(HLS_PLAYLIST)
+                        .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                        .body(videoTranscodingService.renditionPlaylist(resource, tokenSuffix(accessToken)));
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("video/mp2t"))
+                    .contentLength(resource.contentLength())
+                    .header(HttpHeaders.CACHE_CONTROL, "private, max-age=86400")
+                    .body(new InputStreamResource(resource.getInputStream()));
+        } catch (Exception e) {
+            log.error("Error serving HLS file {}/{} of video {}", rendition, name, fileId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Poster frame extracted while transcoding.
+     */
+    @GetMapping("/{fileId}/poster")
+    public ResponseEntity<InputStreamResource> getPoster(@PathVariable String fileId) {
+        try {
+            if (!canAccessTvRecordingMedia(fileId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            GridFsResource poster = videoTranscodingService.findPoster(fileId);
+            if (poster == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .contentLength(poster.contentLength())
+                    .header(HttpHeaders.CACHE_CONTROL, "private, max-age=86400")
+                    .body(new InputStreamResource(poster.getInputStream()));
+        } catch (Exception e) {
+            log.error("Error serving poster of video {}", fileId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Admin: (re)queue one video for transcoding.
+     */
+    @PostMapping("/{fileId}/transcode")
+    public ResponseEntity<Map<String, Object>> transcodeVideo(@PathVariable String fileId) {
+        if (!hasAdminRole()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean queued = videoTranscodingService.enqueue(fileId, true);
+        return ResponseEntity.status(queued ? HttpStatus.ACCEPTED : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("queued", queued));
+    }
+
+    /**
+     * Admin: queue every event video that was never transcoded.
+     */
+    @PostMapping("/transcode/backfill")
+    public ResponseEntity<Map<String, Object>> transcodeEventVideos() {
+        if (!hasAdminRole()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("queued", videoTranscodingService.enqueueEventVideos()));
+    }
+
+    @GetMapping("/transcode/stats")
+    public ResponseEntity<Map<String, Object>> getTranscodeStatistics() {
+        if (!hasAdminRole()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(videoTranscodingService.getStatistics());
+    }
+
     /**
      * Check if a file is a video
      */
@@ -145,6 +274,39 @@ public class VideoController {
         return ResponseEntity.ok(response);
     }
 
+    /** Transcoding state for the metadata endpoint: player URLs once the renditions exist. */
+    private Map<String, Object> hlsInfo(String fileId) {
+        Map<String, Object> hls = new LinkedHashMap<>();
+        VideoTranscodingService.Job job = videoTranscodingService.getJob(fileId);
+        hls.put("status", job != null ? job.status().name().toLowerCase() : "none");
+        if (job != null && job.status() == VideoTranscodingService.Status.DONE) {
+            hls.put("masterUrl", "/api/video/" + fileId + "/hls/master.m3u8");
+            hls.put("renditions", job.renditions().stream().map(VideoTranscodingService.Rendition::name).toList());
+            if (job.posterId() != null) {
+                hls.put("posterUrl", "/api/video/" + fileId + "/poster");
+            }
+        }
+        return hls;
+    }
+
+    /** Playlist URIs carry the query token on, for players that cannot send an Authorization header. */
+    private static String tokenSuffix(String accessToken) {
+        return StringUtils.hasText(accessToken)
+                ? "?access_token=" + URLEncoder.encode(accessToken, StandardCharsets.UTF_8)
+                : null;
+    }
+
+    private boolean hasAdminRole() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return false;
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(authority -> authority.equalsIgnoreCase("ROLE_Admin")
+                        || authority.equalsIgnoreCase("ROLE_admin"));
+    }
+
     /**
      * Gate GridFS files that belong to a TV recording by visibility.
      * Other videos keep the previous JWT-only behaviour.
@@ -0,0 +1,23 @@
+package com.pat.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Ajout de tours en fin de conversation : {@code baseTurnCount} est le nombre de tours connu du client,
+ * refusé (409) si la conversation a changé entre-temps.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AssistantConversationAppendRequestDto(
+        @NotNull @Min(0) Integer baseTurnCount,
+        @NotEmpty @Size(max = 40) @Valid List<AssistantConversationTurnPersistDto> turns,
+        @NotBlank @Size(max = 32) String routingProvider,
+        @Size(max = 160) String providerLabel,
+        @NotBlank @Size(max = 200) String model) {}
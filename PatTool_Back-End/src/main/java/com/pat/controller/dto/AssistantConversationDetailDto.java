@@ -3,6 +3,10 @@ package com.pat.controller.dto;
 import java.time.Instant;
 import java.util.List;
 
+/**
+ * @param totalTurns nombre total de tours de la conversation
+ * @param firstTurnIndex position du premier élément de {@code turns} (pagination {@code before} / {@code limit})
+ */
 public record AssistantConversationDetailDto(
         String id,
         Instant createdAt,
@@ -10,4 +14,6 @@ public record AssistantConversationDetailDto(
         String routingProvider,
         String providerLabel,
         String model,
-        List<AssistantConversationTurnPersistDto> turns) {}
+        List<AssistantConversationTurnPersistDto> turns,
+        int totalTurns,
+        int firstTurnIndex) {}
@@ -13,4 +13,6 @@ public interface EuromillionsDrawRepository extends MongoRepository<Euromillions
     long countByDrawDateGreaterThanEqual(LocalDate drawDate);
 
     List<EuromillionsDraw> findByDrawDateGreaterThanEqualOrderByDrawDateAsc(LocalDate drawDate);
+
+    List<EuromillionsDraw> findByDrawDateGreaterThanOrderByDrawDateAsc(LocalDate drawDate);
 }
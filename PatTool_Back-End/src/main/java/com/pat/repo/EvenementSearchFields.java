@@ -0,0 +1,239 @@
+package com.pat.repo;
+
+import com.pat.repo.domain.Evenement;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Search helper fields stored on each {@code evenements} document (never mapped on {@link Evenement}):
+ * <ul>
+ *   <li>{@code searchName} / {@code searchComments} / {@code searchType} – lower-cased, accent-folded copies used
+ *       for substring matching;</li>
+ *   <li>{@code searchGrams} – distinct trigrams of all three (multikey index), an index-friendly pre-filter;</li>
+ *   <li>{@code searchGramsOverflow} – set instead of the trigrams when a text is too long to index;</li>
+ *   <li>{@code beginMonthDay} – {@code month * 100 + day} of {@code beginEventDate} in the server time zone, the
+ *       key of the "on this day" photo card.</li>
+ * </ul>
+ * Written on every save; documents from older versions are backfilled once at startup, after which
+ * {@link #isReady()} lets the event search and the photo timeline use {@link #containsCriteria} and
+ * {@link #BEGIN_MONTH_DAY}.
+ */
+@Component
+public class EvenementSearchFields extends AbstractMongoEventListener<Evenement> {
+
+    private static final Logger log = LoggerFactory.getLogger(EvenementSearchFields.class);
+
+    static final String NAME = "searchName";
+    static final String COMMENTS = "searchComments";
+    static final String TYPE = "searchType";
+    static final String GRAMS = "searchGrams";
+    static final String GRAMS_OVERFLOW = "searchGramsOverflow";
+    public static final String BEGIN_MONTH_DAY = "beginMonthDay";
+    static final String VERSION_FIELD = "searchVersion";
+    static final int VERSION = 3;
+
+    private static final int GRAM = 3;
+    private static final int MAX_GRAMS = 4000;
+    private static final int BACKFILL_BATCH = 500;
+    /** Trigrams of the needle used as index pre-filter; the regex does the exact check. */
+    private static final int MAX_NEEDLE_GRAMS = 6;
+
+    private final MongoTemplate mongoTemplate;
+    private volatile boolean ready;
+
+    public EvenementSearchFields(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /** {@code true} once every document carries the current search fields. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Evenement> event) {
+        Document document = event.getDocument();
+        if (document != null) {
+            Evenement source = event.getSource();
+            apply(document, source.getEvenementName(), source.getComments(), source.getType(),
+                    source.getBeginEventDate());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread worker = new Thread(this::backfill, "evenement-search-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void backfill() {
+        long start = System.currentTimeMillis();
+        int updated = 0;
+        try {
+            while (true) {
+                Query stale = new Query(Criteria.where(VERSION_FIELD).ne(VERSION)).limit(BACKFILL_BATCH);
+                stale.fields().include("_id").include("evenementName").include("comments").include("type")
+                        .include("beginEventDate");
+                List<Document> batch = mongoTemplate.find(stale, Document.class, "evenements");
+                if (batch.isEmpty()) {
+                    break;
+                }
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "evenements");
+                for (Document doc : batch) {
+                    Document fields = new Document();
+                    apply(fields, doc.getString("evenementName"), doc.getString("comments"), asString(doc.get("type")),
+                            doc.get("beginEventDate") instanceof Date date ? date : null);
+                    Update update = new Update();
+                    fields.forEach(update::set);
+                    if (!fields.containsKey(GRAMS)) {
+                        update.unset(GRAMS);
+                    }
+                    if (!fields.containsKey(GRAMS_OVERFLOW)) {
+                        update.unset(GRAMS_OVERFLOW);
+                    }
+                    if (!fields.containsKey(BEGIN_MONTH_DAY)) {
+                        update.unset(BEGIN_MONTH_DAY);
+                    }
+                    bulk.updateOne(new Query(Criteria.where("_id").is(doc.get("_id"))), update);
+                }
+                int modified = bulk.execute().getModifiedCount();
+                updated += modified;
+                if (batch.size() < BACKFILL_BATCH || modified == 0) {
+                    break;
+                }
+            }
+            long remaining = mongoTemplate.count(new Query(Criteria.where(VERSION_FIELD).ne(VERSION)), "evenements");
+            ready = remaining == 0;
+            if (ready) {
+                log.info("Evenement search fields ready ({} document(s) backfilled in {} ms)",
+                        updated, System.currentTimeMillis() - start);
+            } else {
+                log.warn("Evenement search fields: {} document(s) could not be backfilled, search stays in memory",
+                        remaining);
+            }
+        } catch (Exception e) {
+            log.warn("Evenement search fields backfill failed, search stays in memory: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Events whose folded name or comments (and type, if {@code includeType}) contain {@code foldedNeedle}.
+     * Only valid once {@link #isReady()}; an empty needle matches everything.
+     */
+    public static Criteria containsCriteria(String foldedNeedle, boolean includeType) {
+        if (foldedNeedle == null || foldedNeedle.isEmpty()) {
+            return new Criteria();
+        }
+        String pattern = regexLiteral(foldedNeedle);
+        List<Criteria> fields = new ArrayList<>();
+        fields.add(Criteria.where(NAME).regex(pattern));
+        fields.add(Criteria.where(COMMENTS).regex(pattern));
+        if (includeType) {
+            fields.add(Criteria.where(TYPE).regex(pattern));
+        }
+        Criteria text = new Criteria().orOperator(fields.toArray(new Criteria[0]));
+        List<String> grams = needleGrams(foldedNeedle, MAX_NEEDLE_GRAMS);
+        if (grams.isEmpty()) {
+            return text; // shorter than a trigram: no index pre-filter
+        }
+        return new Criteria().andOperator(
+                new Criteria().orOperator(
+                        Criteria.where(GRAMS).all(grams),
+                        Criteria.where(GRAMS_OVERFLOW).is(true)),
+                text);
+    }
+
+    /** {@code month * 100 + day} of {@code date} in the server time zone (the {@code beginMonthDay} key). */
+    public static int monthDay(LocalDate date) {
+        return date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    /** Writes the search fields for the given name / comments / type / begin date into {@code target}. */
+    static void apply(Document target, String name, String comments, String type, Date beginEventDate) {
+        String foldedName = fold(name);
+        String foldedComments = fold(comments);
+        String foldedType = fold(type);
+        target.put(NAME, foldedName);
+        target.put(COMMENTS, foldedComments);
+        target.put(TYPE, foldedType);
+        Set<String> grams = new LinkedHashSet<>();
+        addGrams(grams, foldedName);
+        addGrams(grams, foldedComments);
+        addGrams(grams, foldedType);
+        if (grams.size() > MAX_GRAMS) {
+            target.remove(GRAMS);
+            target.put(GRAMS_OVERFLOW, true);
+        } else {
+            target.put(GRAMS, new ArrayList<>(grams));
+            target.remove(GRAMS_OVERFLOW);
+        }
+        if (beginEventDate != null) {
+            target.put(BEGIN_MONTH_DAY, monthDay(beginEventDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate()));
+        } else {
+            target.remove(BEGIN_MONTH_DAY);
+        }
+        target.put(VERSION_FIELD, VERSION);
+    }
+
+    /** Trigrams a document must contain to match {@code foldedNeedle} (at most {@code max}, spread over the needle). */
+    static List<String> needleGrams(String foldedNeedle, int max) {
+        Set<String> grams = new LinkedHashSet<>();
+        addGrams(grams, foldedNeedle);
+        List<String> all = new ArrayList<>(grams);
+        if (all.size() <= max) {
+            return all;
+        }
+        List<String> picked = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            picked.add(all.get((int) ((long) i * (all.size() - 1) / (max - 1))));
+        }
+        return picked;
+    }
+
+    /** Lower case, diacritics removed: the normalisation used by the event searches on both sides. */
+    public static String fold(String value) {
+        if (!StringUtils.hasText(value)) {
+            return "";
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        String normalized = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        return normalized.replaceAll("\\p{M}", "");
+    }
+
+    static String regexLiteral(String value) {
+        return value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static void addGrams(Set<String> grams, String text) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+    }
+}
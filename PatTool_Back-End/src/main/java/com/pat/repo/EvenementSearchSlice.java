@@ -0,0 +1,14 @@
+package com.pat.repo;
+
+import com.pat.repo.domain.Evenement;
+
+import java.util.List;
+
+/**
+ * One slice of the event search feed.
+ *
+ * @param content    events in feed order
+ * @param nextCursor opaque cursor for the next slice, {@code null} at the end
+ */
+public record EvenementSearchSlice(List<Evenement> content, String nextCursor) {
+}
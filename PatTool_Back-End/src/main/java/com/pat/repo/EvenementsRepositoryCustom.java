@@ -17,6 +17,12 @@ public interface EvenementsRepositoryCustom {
 	 */
 	List<Evenement> searchByFilterStream(String filter, String userId);
 
+	/**
+	 * Same filter and order as {@link #searchByFilter}, paged by cursor for infinite scroll: pass the
+	 * {@code nextCursor} of the previous slice ({@code null} for the first one).
+	 */
+	EvenementSearchSlice searchByFilterAfter(String filter, String userId, String cursor, int limit);
+
 	/**
 	 * Activities overlapping the date range, with the same visibility rules as the activity list
 	 * search. Non-blank {@code userId} adds own, friends, and friend-group visibility; blank means public only.
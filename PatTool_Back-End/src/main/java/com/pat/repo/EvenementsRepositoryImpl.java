@@ -5,19 +5,25 @@ import com.pat.repo.domain.Friend;
 import com.pat.repo.domain.FriendGroup;
 import com.pat.service.AgendaSocialGraphCache;
 import com.pat.service.MemberSocialEdges;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
-import java.text.Normalizer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -29,11 +35,22 @@ import java.util.stream.Collectors;
 @Repository
 public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 
+	private static final String EVENEMENTS = "evenements";
+	private static final int MAX_SLICE_SIZE = 200;
+	private static final String SORT_DATE = "_sortDate";
+	private static final String SORT_SCORE = "_sortScore";
+	private static final String SORT_NAME = "_sortName";
+	/** Sort key of events without a name (after every name, like {@code nullsLast}). */
+	private static final String NAME_SORT_NULL = "\uffff";
+
 	private final MongoTemplate mongoTemplate;
 	
 	@Autowired
 	private AgendaSocialGraphCache agendaSocialGraphCache;
 
+	@Autowired
+	private EvenementSearchFields evenementSearchFields;
+
 	private static final Map<String, String> TYPE_ALIAS_LOOKUP = new HashMap<>();
 	private static final Map<String, List<String>> TYPE_KEYWORDS = buildTypeKeywords();
 
@@ -45,43 +62,38 @@ public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 	@Override
 	public Page<Evenement> searchByFilter(String filter, String userId, Pageable pageable) {
 		String normalizedFilter = normalizeFilter(filter);
-
-		Query query = new Query();
-		query.addCriteria(buildAccessCriteria(userId));
-		
-		// PERFORMANCE OPTIMIZATION: Exclude fileUploadeds from query results
-		// All files will be loaded on-demand via /api/even/{id}/files endpoint
-		// This dramatically reduces document size for events with many files
-		query.fields().exclude("fileUploadeds");
-
-		List<Evenement> events = mongoTemplate.find(query, Evenement.class);
-
-		if (events.isEmpty()) {
-			return Page.empty(pageable);
-		}
-
-		if (!normalizedFilter.isEmpty()) {
-			events = events.stream()
-					.filter(event -> matchesFilter(event, normalizedFilter))
-					.collect(Collectors.toList());
-
-			if (events.isEmpty()) {
-				return Page.empty(pageable);
-			}
+		if (!normalizedFilter.isEmpty() && !evenementSearchFields.isReady()) {
+			return toPage(searchInMemory(normalizedFilter, userId), pageable);
 		}
 
-		List<EvenementScore> scoredEvents = scoreEvents(events, normalizedFilter);
-		scoredEvents.sort(Comparator
-				.comparing(EvenementScore::getBeginEventDate, Comparator.nullsLast(Comparator.reverseOrder()))
-				.thenComparing(EvenementScore::getScore, Comparator.reverseOrder())
-				.thenComparing(e -> e.getEvenement().getEvenementName(), Comparator.nullsLast(String::compareToIgnoreCase)));
-
-		List<Evenement> sortedEvents = new ArrayList<>(scoredEvents.size());
-		for (EvenementScore scoredEvent : scoredEvents) {
-			sortedEvents.add(scoredEvent.getEvenement());
+		List<String> types = matchingTypes(normalizedFilter);
+		Criteria criteria = buildSearchCriteria(userId, normalizedFilter, types);
+		long total = mongoTemplate.count(new Query(criteria), EVENEMENTS);
+		if (total == 0 || pageable.getOffset() >= total) {
+			return new PageImpl<>(List.of(), pageable, total);
 		}
+		List<Document> ranked = rankedSearch(criteria, normalizedFilter, types, null,
+				pageable.getOffset(), pageable.getPageSize());
+		return new PageImpl<>(toEvenements(ranked), pageable, total);
+	}
 
-		return toPage(sortedEvents, pageable);
+	@Override
+	public EvenementSearchSlice searchByFilterAfter(String filter, String userId, String cursor, int limit) {
+		String normalizedFilter = normalizeFilter(filter);
+		int size = Math.max(1, Math.min(limit, MAX_SLICE_SIZE));
+		SearchCursor after = SearchCursor.decode(cursor);
+		if (!normalizedFilter.isEmpty() && !evenementSearchFields.isReady()) {
+			return sliceInMemory(searchInMemory(normalizedFilter, userId), normalizedFilter, after, size);
+		}
+
+		List<String> types = matchingTypes(normalizedFilter);
+		Criteria criteria = buildSearchCriteria(userId, normalizedFilter, types);
+		// one extra row tells whether there is a next slice
+		List<Document> ranked = rankedSearch(criteria, normalizedFilter, types, after, 0, size + 1);
+		boolean more = ranked.size() > size;
+		List<Document> page = more ? ranked.subList(0, size) : ranked;
+		String next = more ? SearchCursor.of(page.get(page.size() - 1)).encode() : null;
+		return new EvenementSearchSlice(toEvenements(page), next);
 	}
 
 	@Override
@@ -131,7 +143,19 @@ public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 	@Override
 	public List<Evenement> searchByFilterStream(String filter, String userId) {
 		String normalizedFilter = normalizeFilter(filter);
+		if (!normalizedFilter.isEmpty() && !evenementSearchFields.isReady()) {
+			return searchInMemory(normalizedFilter, userId);
+		}
+		List<String> types = matchingTypes(normalizedFilter);
+		Criteria criteria = buildSearchCriteria(userId, normalizedFilter, types);
+		return toEvenements(rankedSearch(criteria, normalizedFilter, types, null, 0, 0));
+	}
 
+	/**
+	 * Former search path: loads every accessible event and filters / ranks in Java. Used until
+	 * {@link EvenementSearchFields} has backfilled the folded search fields.
+	 */
+	private List<Evenement> searchInMemory(String normalizedFilter, String userId) {
 		Query query = new Query();
 		query.addCriteria(buildAccessCriteria(userId));
 		
@@ -170,6 +194,130 @@ public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 		return sortedEvents;
 	}
 
+	private EvenementSearchSlice sliceInMemory(List<Evenement> sorted, String normalizedFilter, SearchCursor after, int size) {
+		int from = 0;
+		if (after != null) {
+			from = sorted.size();
+			for (int i = 0; i < sorted.size(); i++) {
+				if (after.id().equals(sorted.get(i).getId())) {
+					from = i + 1;
+					break;
+				}
+			}
+		}
+		int to = Math.min(sorted.size(), from + size);
+		List<Evenement> page = new ArrayList<>(sorted.subList(from, to));
+		String next = null;
+		if (to < sorted.size() && !page.isEmpty()) {
+			Evenement last = page.get(page.size() - 1);
+			int score = scoreEvents(List.of(last), normalizedFilter).get(0).getScore();
+			String name = last.getEvenementName() != null ? last.getEvenementName().toLowerCase(Locale.ROOT) : NAME_SORT_NULL;
+			next = new SearchCursor(last.getBeginEventDate(), score, name, last.getId()).encode();
+		}
+		return new EvenementSearchSlice(page, next);
+	}
+
+	/**
+	 * Access rules plus, for a non-empty filter, the same match as {@link #matchesFilter}: canonical type, or
+	 * folded name / comments containing the filter (trigram pre-filter first, so the index narrows the scan).
+	 */
+	private Criteria buildSearchCriteria(String userId, String normalizedFilter, List<String> types) {
+		Criteria access = buildAccessCriteria(userId);
+		if (normalizedFilter.isEmpty()) {
+			return new Criteria().andOperator(access);
+		}
+		Criteria text = EvenementSearchFields.containsCriteria(normalizedFilter, false);
+		Criteria match = types.isEmpty() ? text
+				: new Criteria().orOperator(Criteria.where("type").in(types), text);
+		return new Criteria().andOperator(access, match);
+	}
+
+	/**
+	 * Ranks in MongoDB with the in-memory order: {@code beginEventDate} desc (missing last), score desc
+	 * (type 400 + name 200 + comments 100), lower-cased name, then {@code _id} so that cursors are stable.
+	 *
+	 * @param limit {@code 0} for no limit
+	 */
+	private List<Document> rankedSearch(Criteria criteria, String normalizedFilter, List<String> types,
+			SearchCursor after, long skip, int limit) {
+		List<AggregationOperation> stages = new ArrayList<>();
+		if (after != null && after.beginEventDate() != null) {
+			// index-friendly part of the keyset condition
+			stages.add(Aggregation.match(new Criteria().andOperator(criteria, new Criteria().orOperator(
+					Criteria.where("beginEventDate").lte(after.beginEventDate()),
+					Criteria.where("beginEventDate").is(null)))));
+		} else if (after != null) {
+			stages.add(Aggregation.match(new Criteria().andOperator(criteria, Criteria.where("beginEventDate").is(null))));
+		} else {
+			stages.add(Aggregation.match(criteria));
+		}
+		stages.add(context -> new Document("$project", new Document("fileUploadeds", 0)
+				.append(EvenementSearchFields.GRAMS, 0)
+				.append(EvenementSearchFields.GRAMS_OVERFLOW, 0)
+				.append(EvenementSearchFields.VERSION_FIELD, 0)));
+
+		Document sortKeys = new Document(SORT_DATE, new Document("$ifNull", Arrays.asList("$beginEventDate", null)))
+				.append(SORT_SCORE, scoreExpression(normalizedFilter, types))
+				.append(SORT_NAME, new Document("$cond", List.of(
+						new Document("$eq", List.of(new Document("$type", "$evenementName"), "string")),
+						new Document("$toLower", "$evenementName"),
+						NAME_SORT_NULL)));
+		stages.add(context -> new Document("$addFields", sortKeys));
+		if (after != null) {
+			stages.add(context -> new Document("$match", new Document("$expr", after.isAfterExpression())));
+		}
+		stages.add(context -> new Document("$sort", new Document(SORT_DATE, -1).append(SORT_SCORE, -1)
+				.append(SORT_NAME, 1).append("_id", 1)));
+		if (skip > 0) {
+			stages.add(Aggregation.skip(skip));
+		}
+		if (limit > 0) {
+			stages.add(Aggregation.limit(limit));
+		}
+		Aggregation aggregation = Aggregation.newAggregation(stages)
+				.withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+		return mongoTemplate.aggregate(aggregation, EVENEMENTS, Document.class).getMappedResults();
+	}
+
+	private static Document scoreExpression(String normalizedFilter, List<String> types) {
+		if (normalizedFilter.isEmpty()) {
+			return new Document("$literal", 0);
+		}
+		String pattern = EvenementSearchFields.regexLiteral(normalizedFilter);
+		return new Document("$add", List.of(
+				new Document("$cond", List.of(
+						new Document("$in", List.of(new Document("$ifNull", Arrays.asList("$type", null)), types)), 400, 0)),
+				new Document("$cond", List.of(regexMatch(EvenementSearchFields.NAME, pattern), 200, 0)),
+				new Document("$cond", List.of(regexMatch(EvenementSearchFields.COMMENTS, pattern), 100, 0))));
+	}
+
+	private static Document regexMatch(String field, String pattern) {
+		return new Document("$regexMatch", new Document("input", new Document("$ifNull", List.of("$" + field, "")))
+				.append("regex", pattern));
+	}
+
+	/** Type values present in the collection that {@link #matchesType} accepts for the filter. */
+	private List<String> matchingTypes(String normalizedFilter) {
+		if (normalizedFilter.isEmpty()) {
+			return List.of();
+		}
+		List<String> types = new ArrayList<>();
+		for (String type : mongoTemplate.findDistinct(new Query(), "type", EVENEMENTS, String.class)) {
+			if (matchesType(type, normalizedFilter)) {
+				types.add(type);
+			}
+		}
+		return types;
+	}
+
+	private List<Evenement> toEvenements(List<Document> documents) {
+		List<Evenement> events = new ArrayList<>(documents.size());
+		for (Document document : documents) {
+			events.add(mongoTemplate.getConverter().read(Evenement.class, document));
+		}
+		return events;
+	}
+
 	private Criteria buildAccessCriteria(String userId) {
 		List<Criteria> accessCriteria = new ArrayList<>();
 		accessCriteria.add(Criteria.where("visibility").is("public"));
@@ -417,12 +565,7 @@ public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 	}
 
 	private static String normalizeForSearch(String value) {
-		if (!StringUtils.hasText(value)) {
-			return "";
-		}
-		String lower = value.toLowerCase(Locale.ROOT);
-		String normalized = Normalizer.normalize(lower, Normalizer.Form.NFD);
-		return normalized.replaceAll("\\p{M}", "");
+		return EvenementSearchFields.fold(value);
 	}
 
 	private static Map<String, List<String>> buildTypeKeywords() {
@@ -557,6 +700,70 @@ public class EvenementsRepositoryImpl implements EvenementsRepositoryCustom {
 		return null;
 	}
 
+	/**
+	 * Position after the last event of a slice, in the sort order of {@link #rankedSearch}. Opaque to clients
+	 * (URL-safe Base64).
+	 */
+	record SearchCursor(Date beginEventDate, int score, String name, String id) {
+
+		static SearchCursor of(Document last) {
+			Object date = last.get(SORT_DATE);
+			Object score = last.get(SORT_SCORE);
+			return new SearchCursor(date instanceof Date d ? d : null,
+					score instanceof Number n ? n.intValue() : 0,
+					last.getString(SORT_NAME),
+					String.valueOf(last.get("_id")));
+		}
+
+		String encode() {
+			String raw = (beginEventDate != null ? Long.toString(beginEventDate.getTime()) : "")
+					+ "|" + score + "|" + id + "|" + name;
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/** @return {@code null} for a blank or malformed cursor (first slice) */
+		static SearchCursor decode(String cursor) {
+			if (!StringUtils.hasText(cursor)) {
+				return null;
+			}
+			try {
+				String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+				String[] parts = raw.split("\\|", 4);
+				if (parts.length != 4 || parts[2].isEmpty()) {
+					return null;
+				}
+				Date date = parts[0].isEmpty() ? null : new Date(Long.parseLong(parts[0]));
+				return new SearchCursor(date, Integer.parseInt(parts[1]), parts[3], parts[2]);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		/** {@code $expr}: the row sorts strictly after this cursor. */
+		Document isAfterExpression() {
+			Object idValue = ObjectId.isValid(id) ? new ObjectId(id) : id;
+			String sd = "$" + SORT_DATE;
+			String ss = "$" + SORT_SCORE;
+			String sn = "$" + SORT_NAME;
+			Document tie = new Document("$or", List.of(
+					new Document("$lt", List.of(ss, score)),
+					new Document("$and", List.of(
+							new Document("$eq", List.of(ss, score)),
+							new Document("$gt", List.of(sn, name)))),
+					new Document("$and", List.of(
+							new Document("$eq", List.of(ss, score)),
+							new Document("$eq", List.of(sn, name)),
+							new Document("$gt", List.of("$_id", idValue))))));
+			if (beginEventDate == null) {
+				return new Document("$and", List.of(new Document("$eq", Arrays.asList(sd, null)), tie));
+			}
+			// a missing date compares lower than any date, i.e. after it in descending order
+			return new Document("$or", List.of(
+					new Document("$lt", List.of(sd, beginEventDate)),
+					new Document("$and", List.of(new Document("$eq", List.of(sd, beginEventDate)), tie))));
+		}
+	}
+
 	private static class EvenementScore {
 		private final Evenement evenement;
 		private final int score;
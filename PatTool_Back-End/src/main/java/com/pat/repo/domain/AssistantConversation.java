@@ -10,6 +10,11 @@ import java.util.List;
 /**
  * Historique de conversation assistant PatTool, propriété de l’utilisateur ({@link #ownerSubject}
  * = {@code sub} JWT Keycloak).
+ * <p>
+ * Les tours sont stockés un par document ({@link AssistantConversationTurnEntry}) ; ce document ne garde que
+ * l’en-tête, le résumé de liste et l’empreinte de chaque tour. {@link #turns} n’est renseigné que pour les
+ * conversations enregistrées avant ce découpage ({@link #turnCount} {@code null}), migrées à la première
+ * lecture ou au démarrage.
  */
 @Document(collection = "assistant_conversations")
 public class AssistantConversation {
@@ -35,8 +40,23 @@ public class AssistantConversation {
     /** Modèle effectif */
     private String model;
 
+    /** Ancien stockage embarqué (vide une fois migré). */
     private List<AssistantConversationTurn> turns = new ArrayList<>();
 
+    /** Nombre de tours stockés ; {@code null} tant que la conversation n’est pas migrée. */
+    private Integer turnCount;
+
+    /** Incrémenté à chaque écriture des tours (garde contre les autosauvegardes concurrentes). */
+    private long turnsVersion;
+
+    /** Empreinte de chaque tour, dans l’ordre ({@link AssistantConversationTurnEntry#getHash()}). */
+    private List<String> turnHashes = new ArrayList<>();
+
+    /** Début du premier message utilisateur (liste des conversations). */
+    private String preview;
+
+    private int userQuestionCount;
+
     public String getId() {
         return id;
     }
@@ -108,4 +128,44 @@ public class AssistantConversation {
     public void setTurns(List<AssistantConversationTurn> turns) {
         this.turns = turns != null ? turns : new ArrayList<>();
     }
+
+    public Integer getTurnCount() {
+        return turnCount;
+    }
+
+    public void setTurnCount(Integer turnCount) {
+        this.turnCount = turnCount;
+    }
+
+    public long getTurnsVersion() {
+        return turnsVersion;
+    }
+
+    public void setTurnsVersion(long turnsVersion) {
+        this.turnsVersion = turnsVersion;
+    }
+
+    public List<String> getTurnHashes() {
+        return turnHashes;
+    }
+
+    public void setTurnHashes(List<String> turnHashes) {
+        this.turnHashes = turnHashes != null ? turnHashes : new ArrayList<>();
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    public int getUserQuestionCount() {
+        return userQuestionCount;
+    }
+
+    public void setUserQuestionCount(int userQuestionCount) {
+        this.userQuestionCount = userQuestionCount;
+    }
 }
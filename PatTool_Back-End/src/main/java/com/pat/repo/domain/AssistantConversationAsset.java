@@ -7,6 +7,7 @@ import java.time.Instant;
 
 /**
  * Image générée par l’assistant, stockée hors document de conversation pour éviter les payloads JSON énormes.
+ * Le document ne porte que les métadonnées ; le contenu est un fichier GridFS ({@link #fileId}), lu en flux.
  */
 @Document(collection = "assistant_conversation_assets")
 public class AssistantConversationAsset {
@@ -19,6 +20,12 @@ public class AssistantConversationAsset {
 
     private String mimeType;
 
+    /** {@code _id} (hex) du fichier GridFS contenant l’image. */
+    private String fileId;
+
+    private long length;
+
+    /** Ancien stockage en ligne, vidé par la migration vers GridFS. */
     private byte[] data;
 
     private Instant createdAt;
@@ -47,6 +54,22 @@ public class AssistantConversationAsset {
         this.mimeType = mimeType;
     }
 
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
     public byte[] getData() {
         return data;
     }
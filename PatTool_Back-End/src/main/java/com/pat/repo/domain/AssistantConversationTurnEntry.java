@@ -0,0 +1,96 @@
+package com.pat.repo.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Un tour de {@link AssistantConversation} stocké dans son propre document ({@code _id} =
+ * {@code conversationId:seq:hash}) : une autosauvegarde n’écrit que les tours ajoutés ou modifiés, sans relire
+ * ni réécrire toute la conversation (images comprises).
+ * <p>
+ * L’identifiant dépend du contenu : les tours sont écrits avant que la conversation ne bascule sur leurs
+ * empreintes, et seuls ceux que désignent {@link AssistantConversation#getTurnHashes()} sont lus. Un tour écrit
+ * par une sauvegarde interrompue ou perdante n’est jamais visible, il est supprimé par l’écriture suivante.
+ */
+@Document(collection = "assistant_conversation_turns")
+public class AssistantConversationTurnEntry {
+
+    @Id
+    private String id;
+
+    private String conversationId;
+
+    /** Position du tour dans la conversation (0 = premier). */
+    private int seq;
+
+    /** Empreinte du contenu, recopiée dans {@link AssistantConversation#getTurnHashes()}. */
+    private String hash;
+
+    /** {@code turnsVersion} visée par l’écriture (nettoyage des tours non retenus). */
+    private long version;
+
+    /** Question utilisateur (texte ou image) : compteur {@code userQuestionCount} de la conversation. */
+    private boolean question;
+
+    private AssistantConversationTurn turn;
+
+    public static String idFor(String conversationId, int seq, String hash) {
+        return conversationId + ":" + seq + ":" + hash;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public void setSeq(int seq) {
+        this.seq = seq;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isQuestion() {
+        return question;
+    }
+
+    public void setQuestion(boolean question) {
+        this.question = question;
+    }
+
+    public AssistantConversationTurn getTurn() {
+        return turn;
+    }
+
+    public void setTurn(AssistantConversationTurn turn) {
+        this.turn = turn;
+    }
+}
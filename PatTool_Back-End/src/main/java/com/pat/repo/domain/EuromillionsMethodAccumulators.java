@@ -0,0 +1,137 @@
+package com.pat.repo.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Accumulateurs persistés avec {@link EuromillionsMethodAnalyticsDocument} : tout ce dont les blocs descriptifs
+ * (χ², entropie, écarts, corrélation) ont besoin, mis à jour tirage par tirage quand un import n’ajoute que des
+ * tirages postérieurs au dernier agrégé.
+ */
+public class EuromillionsMethodAccumulators {
+
+    /** Tirages agrégés (ordre chronologique). */
+    private int drawCount;
+    /** Date du dernier tirage agrégé : les tirages ajoutés ensuite sont strictement postérieurs. */
+    private LocalDate lastDrawDate;
+    /** Effectifs des boules, index 1–50. */
+    private int[] mains;
+    /** Effectifs des étoiles par période : {@code période * 13 + étoile}. */
+    private int[] stars;
+    /** Tirages par période d’étoiles (P1, P2, P3). */
+    private int[] periodDrawCount;
+    /** Indice du premier tirage de chaque boule ({@code -1} si jamais sortie). */
+    private int[] firstSeen;
+    /** Indice du dernier tirage de chaque boule. */
+    private int[] lastSeen;
+    /** Grilles complètes valides retenues pour la corrélation, et leurs sommes. */
+    private int completeGrids;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumYY;
+    private double sumXY;
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public void setDrawCount(int drawCount) {
+        this.drawCount = drawCount;
+    }
+
+    public LocalDate getLastDrawDate() {
+        return lastDrawDate;
+    }
+
+    public void setLastDrawDate(LocalDate lastDrawDate) {
+        this.lastDrawDate = lastDrawDate;
+    }
+
+    public int[] getMains() {
+        return mains;
+    }
+
+    public void setMains(int[] mains) {
+        this.mains = mains;
+    }
+
+    public int[] getStars() {
+        return stars;
+    }
+
+    public void setStars(int[] stars) {
+        this.stars = stars;
+    }
+
+    public int[] getPeriodDrawCount() {
+        return periodDrawCount;
+    }
+
+    public void setPeriodDrawCount(int[] periodDrawCount) {
+        this.periodDrawCount = periodDrawCount;
+    }
+
+    public int[] getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(int[] firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public int[] getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(int[] lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public int getCompleteGrids() {
+        return completeGrids;
+    }
+
+    public void setCompleteGrids(int completeGrids) {
+        this.completeGrids = completeGrids;
+    }
+
+    public double getSumX() {
+        return sumX;
+    }
+
+    public void setSumX(double sumX) {
+        this.sumX = sumX;
+    }
+
+    public double getSumY() {
+        return sumY;
+    }
+
+    public void setSumY(double sumY) {
+        this.sumY = sumY;
+    }
+
+    public double getSumXX() {
+        return sumXX;
+    }
+
+    public void setSumXX(double sumXX) {
+        this.sumXX = sumXX;
+    }
+
+    public double getSumYY() {
+        return sumYY;
+    }
+
+    public void setSumYY(double sumYY) {
+        this.sumYY = sumYY;
+    }
+
+    public double getSumXY() {
+        return sumXY;
+    }
+
+    public void setSumXY(double sumXY) {
+        this.sumXY = sumXY;
+    }
+}
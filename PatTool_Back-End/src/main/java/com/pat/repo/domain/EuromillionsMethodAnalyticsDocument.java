@@ -10,6 +10,7 @@ import java.util.Map;
 /**
  * Instantané agrégé : cinq familles de métriques statistiques sur le périmètre assistant
  * (tirages dont la date est ≥ {@link #sinceInclusive}), persisté pour éviter de recalculer à chaque GET.
+ * Les {@link #accumulators} permettent de mettre à jour l’instantané sans relire tout l’historique.
  */
 @Document(collection = "euromillions_method_analytics")
 public class EuromillionsMethodAnalyticsDocument {
@@ -24,6 +25,8 @@ public class EuromillionsMethodAnalyticsDocument {
     private long drawCount;
     /** Identifiant méthode → métriques sérialisables (nombres, tableaux, sous-cartes). */
     private Map<String, Map<String, Object>> methods = new LinkedHashMap<>();
+    /** Agrégats des {@link #drawCount} tirages, pour n’ajouter que les nouveaux tirages au prochain import. */
+    private EuromillionsMethodAccumulators accumulators;
 
     public String getId() {
         return id;
@@ -64,4 +67,12 @@ public class EuromillionsMethodAnalyticsDocument {
     public void setMethods(Map<String, Map<String, Object>> methods) {
         this.methods = methods != null ? methods : new LinkedHashMap<>();
     }
+
+    public EuromillionsMethodAccumulators getAccumulators() {
+        return accumulators;
+    }
+
+    public void setAccumulators(EuromillionsMethodAccumulators accumulators) {
+        this.accumulators = accumulators;
+    }
 }
@@ -0,0 +1,167 @@
+package com.pat.repo.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One hour of Govee thermometer samples for one device (min / max / sum per measure).
+ * Kept beyond the raw history retention; {@code _id} is {@code deviceId|yyyy-MM-ddTHH}.
+ */
+@Document(collection = "govee_thermometer_hourly")
+public class GoveeThermometerHourly {
+
+    @Id
+    private String id;
+
+    private String deviceId;
+    private String deviceName;
+    private String model;
+
+    private LocalDateTime hour;          // Start of the hour (server local time, like the raw timestamps)
+    private LocalDateTime lastTimestamp; // Most recent sample of the hour
+    private int sampleCount;
+
+    private int temperatureCount;
+    private Double temperatureSum;
+    private Double temperatureMin;
+    private Double temperatureMax;
+
+    private int humidityCount;
+    private Double humiditySum;
+    private Double humidityMin;
+    private Double humidityMax;
+
+    public GoveeThermometerHourly() {
+    }
+
+    public Double getTemperatureAvg() {
+        return temperatureCount > 0 && temperatureSum != null ? temperatureSum / temperatureCount : null;
+    }
+
+    public Double getHumidityAvg() {
+        return humidityCount > 0 && humiditySum != null ? humiditySum / humidityCount : null;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public void setDeviceName(String deviceName) {
+        this.deviceName = deviceName;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public LocalDateTime getHour() {
+        return hour;
+    }
+
+    public void setHour(LocalDateTime hour) {
+        this.hour = hour;
+    }
+
+    public LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(LocalDateTime lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public int getTemperatureCount() {
+        return temperatureCount;
+    }
+
+    public void setTemperatureCount(int temperatureCount) {
+        this.temperatureCount = temperatureCount;
+    }
+
+    public Double getTemperatureSum() {
+        return temperatureSum;
+    }
+
+    public void setTemperatureSum(Double temperatureSum) {
+        this.temperatureSum = temperatureSum;
+    }
+
+    public Double getTemperatureMin() {
+        return temperatureMin;
+    }
+
+    public void setTemperatureMin(Double temperatureMin) {
+        this.temperatureMin = temperatureMin;
+    }
+
+    public Double getTemperatureMax() {
+        return temperatureMax;
+    }
+
+    public void setTemperatureMax(Double temperatureMax) {
+        this.temperatureMax = temperatureMax;
+    }
+
+    public int getHumidityCount() {
+        return humidityCount;
+    }
+
+    public void setHumidityCount(int humidityCount) {
+        this.humidityCount = humidityCount;
+    }
+
+    public Double getHumiditySum() {
+        return humiditySum;
+    }
+
+    public void setHumiditySum(Double humiditySum) {
+        this.humiditySum = humiditySum;
+    }
+
+    public Double getHumidityMin() {
+        return humidityMin;
+    }
+
+    public void setHumidityMin(Double humidityMin) {
+        this.humidityMin = humidityMin;
+    }
+
+    public Double getHumidityMax() {
+        return humidityMax;
+    }
+
+    public void setHumidityMax(Double humidityMax) {
+        this.humidityMax = humidityMax;
+    }
+}
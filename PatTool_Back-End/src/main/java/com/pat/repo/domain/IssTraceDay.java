@@ -0,0 +1,87 @@
+package com.pat.repo.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * ISS ground-track samples of one UTC day, stored as parallel arrays: latitude / longitude in 1e-5 degree units
+ * and seconds since {@link #day}. {@code _id} is the day ({@code yyyy-MM-dd}), so ids sort chronologically.
+ */
+@Document(collection = "iss_trace_days")
+public class IssTraceDay {
+
+    /** Fixed-point scale of {@link #lat} / {@link #lon} (1e-5 degree, about 1 m). */
+    public static final double COORDINATE_SCALE = 1e5;
+
+    @Id
+    private String id;
+
+    private Instant day;
+    private Instant lastAt;
+    private int count;
+
+    private int[] lat;
+    private int[] lon;
+    private int[] t;
+
+    public IssTraceDay() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Instant getDay() {
+        return day;
+    }
+
+    public void setDay(Instant day) {
+        this.day = day;
+    }
+
+    public Instant getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(Instant lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int[] getLat() {
+        return lat;
+    }
+
+    public void setLat(int[] lat) {
+        this.lat = lat;
+    }
+
+    public int[] getLon() {
+        return lon;
+    }
+
+    public void setLon(int[] lon) {
+        this.lon = lon;
+    }
+
+    public int[] getT() {
+        return t;
+    }
+
+    public void setT(int[] t) {
+        this.t = t;
+    }
+}
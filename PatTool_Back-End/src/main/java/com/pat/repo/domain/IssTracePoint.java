@@ -7,6 +7,7 @@ import java.time.Instant;
 
 /**
  * One recorded ISS sub-point sample (latitude / longitude + UTC timestamp).
+ * Former storage: samples are now packed per day in {@link IssTraceDay}; remaining documents are moved on startup.
  */
 @Document(collection = "iss_trace_points")
 public class IssTracePoint {
@@ -10,6 +10,9 @@ import com.pat.service.assistant.AssistantHttpErrorParser;
 import com.pat.service.assistant.AssistantMessageSupport;
 import com.pat.service.assistant.AssistantMessageSupport.DecodedImage;
 import com.pat.service.assistant.AssistantMessageSupport.ResolvedImage;
+import com.pat.service.assistant.AssistantSseSupport;
+import com.pat.service.assistant.AssistantSseSupport.StreamedCompletion;
+import com.pat.service.assistant.AssistantStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -89,6 +92,18 @@ public class AnthropicAssistantService {
     }
 
     public AssistantChatResponseDto complete(AssistantChatRequestDto request) {
+        return complete(request, null);
+    }
+
+    /**
+     * Comme {@link #complete}, en relayant les événements {@code content_block_delta} ({@code stream: true})
+     * à {@code stream}. Avec la recherche web (citations à agréger), la réponse complète est renvoyée en fin d’appel.
+     */
+    public AssistantChatResponseDto stream(AssistantChatRequestDto request, AssistantStream stream) {
+        return complete(request, stream);
+    }
+
+    private AssistantChatResponseDto complete(AssistantChatRequestDto request, AssistantStream stream) {
         if (apiKey == null || apiKey.isBlank()) {
             log.error("Anthropic API key is not configured (anthropic.key).");
             return AssistantChatResponseDto.err(
@@ -162,6 +177,10 @@ public class AnthropicAssistantService {
             }
             body.put("tools", List.of(webTool));
         }
+        boolean streamed = stream != null && !body.containsKey("tools");
+        if (streamed) {
+            body.put("stream", true);
+        }
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -171,6 +190,15 @@ public class AnthropicAssistantService {
         try {
             long startNs = System.nanoTime();
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            if (streamed) {
+                String label =
+                        assistantProviderLabel != null && !assistantProviderLabel.isBlank()
+                                ? assistantProviderLabel.trim()
+                                : "Anthropic";
+                return AssistantSseSupport.exchange(
+                                restTemplate, objectMapper, apiUrl.trim(), entity, stream, this::onStreamEvent)
+                        .toResponse(label, requestModel, startNs);
+            }
             ResponseEntity<String> response =
                     restTemplate.exchange(apiUrl.trim(), HttpMethod.POST, entity, String.class);
             int elapsedMs = (int) Math.min((System.nanoTime() - startNs) / 1_000_000L, Integer.MAX_VALUE);
@@ -212,6 +240,39 @@ public class AnthropicAssistantService {
         }
     }
 
+    /** Événements Messages en flux : {@code message_start}, {@code content_block_delta}, {@code message_delta}, {@code error}. */
+    private void onStreamEvent(String event, JsonNode data, StreamedCompletion out) {
+        String type = data.path("type").asText(event != null ? event : "");
+        switch (type) {
+            case "message_start" -> {
+                JsonNode message = data.path("message");
+                out.setId(message.path("id").asText(""));
+                out.setModel(message.path("model").asText(""));
+                JsonNode usage = message.path("usage");
+                if (usage.has("input_tokens")) {
+                    out.setInputTokens(usage.get("input_tokens").asInt());
+                }
+            }
+            case "content_block_delta" -> {
+                JsonNode delta = data.path("delta");
+                if ("text_delta".equals(delta.path("type").asText(""))) {
+                    out.appendText(delta.path("text").asText(""));
+                }
+            }
+            case "message_delta" -> {
+                out.setFinishReason(data.path("delta").path("stop_reason").asText(""));
+                JsonNode usage = data.path("usage");
+                if (usage.has("output_tokens")) {
+                    out.setOutputTokens(usage.get("output_tokens").asInt());
+                }
+            }
+            case "error" -> out.setError(data.path("error").path("message").asText("Erreur Anthropic"));
+            default -> {
+                // ping, content_block_start / stop, message_stop
+            }
+        }
+    }
+
     private List<Map<String, Object>> anthropicVisionBlocks(String userText, DecodedImage image) {
         Map<String, Object> imgBlock = new HashMap<>();
         imgBlock.put("type", "image");
@@ -1,30 +1,90 @@
 package com.pat.service;
 
+import com.mongodb.client.gridfs.model.GridFSFile;
 import com.pat.controller.dto.AssistantConversationAssetUploadDto;
 import com.pat.repo.AssistantConversationAssetRepository;
 import com.pat.repo.domain.AssistantConversationAsset;
 import com.pat.service.assistant.AssistantMessageSupport;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Images des conversations de l’assistant : document de métadonnées dans {@code assistant_conversation_assets},
+ * contenu dans GridFS (lu en flux, par plages, par le contrôleur). Les assets enregistrés avec le contenu en ligne
+ * ({@code data}) sont déplacés dans GridFS au démarrage, ou à la première lecture.
+ */
 @Service
 public class AssistantConversationAssetService {
 
+    private static final Logger log = LoggerFactory.getLogger(AssistantConversationAssetService.class);
+
     static final int MAX_DECODED_BYTES = AssistantMessageSupport.MAX_IMAGE_DECODED_BYTES;
 
+    private static final String GRIDFS_FILENAME = "assistant-conversation-asset";
+    /** Marque des fichiers GridFS de l’assistant ({@code metadata.assistantAssetOwner}). */
+    public static final String GRIDFS_OWNER_FIELD = "assistantAssetOwner";
+
     private final AssistantConversationAssetRepository repository;
     private final UserOwnerService userOwnerService;
+    private final MongoTemplate mongoTemplate;
+    private final GridFsTemplate gridFsTemplate;
 
     public AssistantConversationAssetService(
-            AssistantConversationAssetRepository repository, UserOwnerService userOwnerService) {
+            AssistantConversationAssetRepository repository,
+            UserOwnerService userOwnerService,
+            MongoTemplate mongoTemplate,
+            GridFsTemplate gridFsTemplate) {
         this.repository = repository;
         this.userOwnerService = userOwnerService;
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    /** Fichier GridFS d’un asset et son type MIME enregistré. */
+    public record StoredAsset(GridFSFile file, String mimeType) {}
+
+    /** Assets encore stockés en ligne : copie dans GridFS en arrière-plan, un asset à la fois. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        CompletableFuture.runAsync(() -> {
+            Query legacy = new Query(Criteria.where("data").exists(true));
+            legacy.fields().include("_id");
+            int migrated = 0;
+            try {
+                for (Document row : mongoTemplate.find(legacy, Document.class, "assistant_conversation_assets")) {
+                    Optional<AssistantConversationAsset> doc = repository.findById(String.valueOf(row.get("_id")));
+                    if (doc.isPresent() && doc.get().getFileId() == null && doc.get().getData() != null) {
+                        moveToGridFs(doc.get());
+                        migrated++;
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Assistant asset GridFS migration failed after {} assets: {}", migrated, e.getMessage());
+                return;
+            }
+            if (migrated > 0) {
+                log.info("Assistant conversation assets: {} moved to GridFS", migrated);
+            }
+        });
     }
 
     public String saveForOwner(String ownerSubject, AssistantConversationAssetUploadDto dto) {
@@ -57,24 +117,30 @@ public class AssistantConversationAssetService {
         if (decoded.length > MAX_DECODED_BYTES) {
             throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Image too large");
         }
+        ObjectId fileId = storeFile(decoded, mime, writeOwner);
         AssistantConversationAsset doc = new AssistantConversationAsset();
         doc.setOwnerSubject(writeOwner);
         doc.setMimeType(mime);
-        doc.setData(decoded);
+        doc.setFileId(fileId.toHexString());
+        doc.setLength(decoded.length);
         doc.setCreatedAt(Instant.now());
-        AssistantConversationAsset saved = repository.save(doc);
-        return saved.getId();
+        try {
+            return repository.save(doc).getId();
+        } catch (RuntimeException e) {
+            deleteFile(fileId.toHexString());
+            throw e;
+        }
     }
 
     /**
      * @param jwtSubject sujet JWT de l’appelant
      * @param assistantAdmin si vrai, lecture autorisée même si l’asset appartient à un autre utilisateur
      */
-    public Optional<byte[]> readBytesIfOwned(String jwtSubject, String assetId, boolean assistantAdmin) {
+    public Optional<StoredAsset> openIfOwned(String jwtSubject, String assetId, boolean assistantAdmin) {
         if (jwtSubject == null || jwtSubject.isBlank() || assetId == null || assetId.isBlank()) {
             return Optional.empty();
         }
-        Optional<AssistantConversationAsset> row = repository.findById(assetId.strip());
+        Optional<AssistantConversationAsset> row = findMeta(assetId.strip());
         if (row.isEmpty()) {
             return Optional.empty();
         }
@@ -82,17 +148,18 @@ public class AssistantConversationAssetService {
         if (!assistantAdmin && !userOwnerService.ownsStored(doc.getOwnerSubject(), jwtSubject)) {
             return Optional.empty();
         }
-        return Optional.ofNullable(doc.getData());
-    }
-
-    public Optional<String> findMimeIfOwned(String jwtSubject, String assetId, boolean assistantAdmin) {
-        if (jwtSubject == null || jwtSubject.isBlank() || assetId == null || assetId.isBlank()) {
-            return Optional.empty();
+        if (doc.getFileId() == null) {
+            Optional<AssistantConversationAsset> legacy = repository.findById(doc.getId());
+            if (legacy.isEmpty()) {
+                return Optional.empty();
+            }
+            doc = legacy.get().getData() != null ? moveToGridFs(legacy.get()) : legacy.get();
+            if (doc.getFileId() == null) {
+                return Optional.empty();
+            }
         }
-        return repository
-                .findById(assetId.strip())
-                .filter(a -> assistantAdmin || userOwnerService.ownsStored(a.getOwnerSubject(), jwtSubject))
-                .map(AssistantConversationAsset::getMimeType);
+        GridFSFile file = findFile(doc.getFileId());
+        return file == null ? Optional.empty() : Optional.of(new StoredAsset(file, doc.getMimeType()));
     }
 
     /** Vérifie que l’asset existe ; propriété du JWT sauf si administrateur assistant. */
@@ -101,7 +168,7 @@ public class AssistantConversationAssetService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid asset id");
         }
         AssistantConversationAsset a =
-                repository.findById(assetId.strip()).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+                findMeta(assetId.strip()).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
         if (assistantAdmin) {
             return;
         }
@@ -117,10 +184,14 @@ public class AssistantConversationAssetService {
                 || assetId.isBlank()) {
             return;
         }
-        repository
-                .findById(assetId.strip())
+        findMeta(assetId.strip())
                 .filter(a -> userOwnerService.ownsStored(a.getOwnerSubject(), ownerSubject))
-                .ifPresent(a -> repository.deleteById(a.getId()));
+                .ifPresent(a -> {
+                    repository.deleteById(a.getId());
+                    if (a.getFileId() != null) {
+                        deleteFile(a.getFileId());
+                    }
+                });
     }
 
     public void deleteAllIfOwned(String ownerSubject, Collection<String> assetIds) {
@@ -131,4 +202,54 @@ public class AssistantConversationAssetService {
             deleteIfOwned(ownerSubject, id);
         }
     }
+
+    /** Document de l’asset sans l’éventuel contenu en ligne (ancien stockage). */
+    private Optional<AssistantConversationAsset> findMeta(String assetId) {
+        Query q = new Query(Criteria.where("_id").is(assetId));
+        q.fields().exclude("data");
+        return Optional.ofNullable(mongoTemplate.findOne(q, AssistantConversationAsset.class));
+    }
+
+    /**
+     * Copie le contenu en ligne dans GridFS puis retire {@code data}. Si un autre appel a migré l’asset entre-temps
+     * (ou l’a supprimé), la copie est supprimée et le document relu.
+     */
+    private AssistantConversationAsset moveToGridFs(AssistantConversationAsset doc) {
+        byte[] data = doc.getData();
+        ObjectId fileId = storeFile(data, doc.getMimeType(), doc.getOwnerSubject());
+        long matched = mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(doc.getId()).and("data").exists(true)),
+                        new Update().set("fileId", fileId.toHexString()).set("length", data.length).unset("data"),
+                        AssistantConversationAsset.class)
+                .getMatchedCount();
+        if (matched == 0) {
+            deleteFile(fileId.toHexString());
+            return findMeta(doc.getId()).orElse(doc);
+        }
+        doc.setFileId(fileId.toHexString());
+        doc.setLength(data.length);
+        doc.setData(null);
+        return doc;
+    }
+
+    private ObjectId storeFile(byte[] data, String mimeType, String owner) {
+        return gridFsTemplate.store(
+                new ByteArrayInputStream(data),
+                GRIDFS_FILENAME,
+                mimeType,
+                new Document(GRIDFS_OWNER_FIELD, owner));
+    }
+
+    private GridFSFile findFile(String fileId) {
+        if (!ObjectId.isValid(fileId)) {
+            return null;
+        }
+        return gridFsTemplate.findOne(new Query(Criteria.where("_id").is(new ObjectId(fileId))));
+    }
+
+    private void deleteFile(String fileId) {
+        if (ObjectId.isValid(fileId)) {
+            gridFsTemplate.delete(new Query(Criteria.where("_id").is(new ObjectId(fileId))));
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.pat.service;
 
+import com.pat.controller.dto.AssistantConversationAppendRequestDto;
 import com.pat.controller.dto.AssistantConversationCreatedDto;
 import com.pat.controller.dto.AssistantConversationDetailDto;
 import com.pat.controller.dto.AssistantConversationSaveRequestDto;
@@ -9,39 +10,99 @@ import com.pat.controller.dto.AssistantTurnMetaPersistDto;
 import com.pat.repo.AssistantConversationRepository;
 import com.pat.repo.domain.AssistantConversation;
 import com.pat.repo.domain.AssistantConversationTurn;
+import com.pat.repo.domain.AssistantConversationTurnEntry;
 import com.pat.repo.domain.AssistantConversationTurnMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+/**
+ * Conversations assistant persistées. Chaque tour est un document {@code assistant_conversation_turns} ;
+ * la conversation garde l’empreinte de ses tours, si bien qu’une autosauvegarde (liste complète) ou un ajout
+ * n’écrit que les tours nouveaux ou modifiés, sous garde de version ({@code turnsVersion}, 409 en cas
+ * d’écriture concurrente). Le coût d’écriture ne dépend plus de la longueur de la conversation.
+ */
 @Service
 public class AssistantConversationService {
 
+    private static final Logger log = LoggerFactory.getLogger(AssistantConversationService.class);
+
     static final int MAX_TURNS = 40;
     /** Limite conservative sous le plafond BSON (~16 Mo). */
     static final int MAX_TOTAL_CHAR_WEIGHT = 11_000_000;
     static final int MAX_SINGLE_IMAGE_DATA_URL_CHARS = 11_000_000;
     static final int MAX_GENERATED_ASSETS_PER_TURN = 16;
     private static final int PREVIEW_MAX = 160;
+    /** Longueur (Base64) de l’empreinte SHA-256 tronquée d’un tour. */
+    private static final int TURN_HASH_CHARS = 22;
+    /** Autosauvegardes concurrentes : relectures de l’empreinte avant de renoncer (409). */
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    /** Réservation de migration d’une conversation abandonnée (arrêt du serveur) au-delà de ce délai. */
+    private static final Duration MIGRATION_CLAIM_TIMEOUT = Duration.ofMinutes(5);
 
     private final AssistantConversationRepository repository;
     private final AssistantConversationAssetService assetService;
     private final UserOwnerService userOwnerService;
+    private final MongoTemplate mongoTemplate;
 
     public AssistantConversationService(
             AssistantConversationRepository repository,
             AssistantConversationAssetService assetService,
-            UserOwnerService userOwnerService) {
+            UserOwnerService userOwnerService,
+            MongoTemplate mongoTemplate) {
         this.repository = repository;
         this.assetService = assetService;
         this.userOwnerService = userOwnerService;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /** Conversations enregistrées avec les tours embarqués : découpage en documents de tours en arrière-plan. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        CompletableFuture.runAsync(() -> {
+            Query legacy = new Query(Criteria.where("turnCount").exists(false));
+            int migrated = 0;
+            try (Stream<AssistantConversation> docs = mongoTemplate.stream(legacy, AssistantConversation.class)) {
+                Iterator<AssistantConversation> it = docs.iterator();
+                while (it.hasNext()) {
+                    ensureTurnEntries(it.next());
+                    migrated++;
+                }
+            } catch (Exception e) {
+                log.warn("Assistant conversation turn migration failed after {} conversations: {}",
+                        migrated, e.getMessage());
+                return;
+            }
+            if (migrated > 0) {
+                log.info("Assistant conversations: {} migrated to per-turn documents", migrated);
+            }
+        });
     }
 
     /**
@@ -69,18 +130,33 @@ public class AssistantConversationService {
     }
 
     public Optional<AssistantConversationDetailDto> getDetail(String ownerSubject, String id, boolean assistantAdmin) {
+        return getDetail(ownerSubject, id, assistantAdmin, null, null);
+    }
+
+    /**
+     * @param before tours d’index strictement inférieur ({@code null} = jusqu’au dernier)
+     * @param limit au plus ce nombre de tours, les plus récents avant {@code before} ({@code null} = tous)
+     */
+    public Optional<AssistantConversationDetailDto> getDetail(
+            String ownerSubject, String id, boolean assistantAdmin, Integer before, Integer limit) {
         if (ownerSubject == null || ownerSubject.isBlank() || id == null || id.isBlank()) {
             return Optional.empty();
         }
         return repository
                 .findById(id.strip())
                 .filter(d -> assistantAdmin || userOwnerService.ownsStored(d.getOwnerSubject(), ownerSubject))
-                .map(this::toDetail);
+                .map(d -> {
+                    AssistantConversation migrated = ensureTurnEntries(d);
+                    // Migration en cours ailleurs : les tours embarqués lus avec le document font foi
+                    return toDetail(migrated != null ? migrated : d, before, limit);
+                });
     }
 
     public AssistantConversationCreatedDto create(
             String ownerSubject, String ownerPreferredUsername, AssistantConversationSaveRequestDto req) {
-        validate(ownerSubject, req, false);
+        validateTurns(ownerSubject, req.routingProvider(), req.turns(), 0);
+        List<AssistantConversationTurn> turns = mapIncomingTurns(req.turns());
+        requireOwnedAssets(ownerSubject, turns, false);
         UserOwnerService.Owner owner = userOwnerService.require(ownerSubject);
         AssistantConversation doc = new AssistantConversation();
         doc.setOwnerSubject(owner.username());
@@ -94,18 +170,64 @@ public class AssistantConversationService {
         doc.setRoutingProvider(req.routingProvider().trim().toLowerCase());
         doc.setProviderLabel(trimOrEmpty(req.providerLabel()));
         doc.setModel(req.model().trim());
-        doc.setTurns(mapIncomingTurns(req.turns()));
+        doc.setTurnCount(0);
         AssistantConversation saved = repository.save(doc);
+        storeTurns(saved, 0, turns, turnHashes(turns), new Update(), saved.getOwnerSubject());
         return new AssistantConversationCreatedDto(saved.getId());
     }
 
+    /**
+     * Autosauvegarde avec la liste complète des tours : seuls les tours qui diffèrent de l’empreinte stockée
+     * (à partir du premier tour modifié) sont réécrits. La dernière écriture l’emporte, comme avant le
+     * découpage : en cas d’écriture concurrente, l’empreinte est relue et la comparaison refaite.
+     */
     public void update(
             String ownerSubject,
             String id,
             AssistantConversationSaveRequestDto req,
             boolean assistantAdmin,
             String jwtPreferredUsername) {
-        validate(ownerSubject, req, assistantAdmin);
+        validateTurns(ownerSubject, req.routingProvider(), req.turns(), 0);
+        List<AssistantConversationTurn> turns = mapIncomingTurns(req.turns());
+        List<String> hashes = turnHashes(turns);
+        String assetOwner = userOwnerService.require(ownerSubject).username();
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            AssistantConversation doc = requireWritable(ownerSubject, id, assistantAdmin);
+            int from = commonPrefix(doc.getTurnHashes(), hashes);
+            List<AssistantConversationTurn> tail = turns.subList(from, turns.size());
+            requireOwnedAssets(ownerSubject, tail, assistantAdmin);
+            Update header = headerUpdate(doc, ownerSubject, jwtPreferredUsername,
+                    req.routingProvider(), req.providerLabel(), req.model());
+            if (storeTurns(doc, from, tail, hashes.subList(from, hashes.size()), header, assetOwner)) {
+                return;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Conversation modified concurrently");
+    }
+
+    /** Ajoute des tours en fin de conversation ; 409 si {@code baseTurnCount} n’est plus le nombre de tours stockés. */
+    public void appendTurns(
+            String ownerSubject,
+            String id,
+            AssistantConversationAppendRequestDto req,
+            boolean assistantAdmin,
+            String jwtPreferredUsername) {
+        validateTurns(ownerSubject, req.routingProvider(), req.turns(), req.baseTurnCount());
+        AssistantConversation doc = requireWritable(ownerSubject, id, assistantAdmin);
+        if (doc.getTurnCount() != req.baseTurnCount().intValue()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Conversation has " + doc.getTurnCount() + " turns");
+        }
+        List<AssistantConversationTurn> turns = mapIncomingTurns(req.turns());
+        requireOwnedAssets(ownerSubject, turns, assistantAdmin);
+        Update header = headerUpdate(doc, ownerSubject, jwtPreferredUsername,
+                req.routingProvider(), req.providerLabel(), req.model());
+        if (!storeTurns(doc, doc.getTurnCount(), turns, turnHashes(turns), header,
+                userOwnerService.require(ownerSubject).username())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Conversation modified concurrently");
+        }
+    }
+
+    private AssistantConversation requireWritable(String ownerSubject, String id, boolean assistantAdmin) {
         if (id == null || id.isBlank()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "id required");
         }
@@ -114,30 +236,251 @@ public class AssistantConversationService {
         if (!assistantAdmin && !userOwnerService.ownsStored(doc.getOwnerSubject(), ownerSubject)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
+        AssistantConversation migrated = ensureTurnEntries(doc);
+        if (migrated == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Conversation migration in progress");
+        }
+        return migrated;
+    }
+
+    private Update headerUpdate(
+            AssistantConversation doc,
+            String ownerSubject,
+            String jwtPreferredUsername,
+            String routingProvider,
+            String providerLabel,
+            String model) {
+        Update update = new Update()
+                .set("routingProvider", routingProvider.trim().toLowerCase())
+                .set("providerLabel", trimOrEmpty(providerLabel))
+                .set("model", model.trim());
         String username = userOwnerService.require(ownerSubject).username();
         if (!username.equals(doc.getOwnerSubject())) {
-            doc.setOwnerSubject(username);
+            update.set("ownerSubject", username);
         }
-        final String assetOwner = doc.getOwnerSubject();
-        List<String> previousAssets = collectGeneratedAssetIds(doc.getTurns());
-        doc.setUpdatedAt(Instant.now());
-        doc.setRoutingProvider(req.routingProvider().trim().toLowerCase());
-        doc.setProviderLabel(trimOrEmpty(req.providerLabel()));
-        doc.setModel(req.model().trim());
-        doc.setTurns(mapIncomingTurns(req.turns()));
         if ((doc.getOwnerPreferredUsername() == null || doc.getOwnerPreferredUsername().isBlank())
                 && jwtPreferredUsername != null
-                && !jwtPreferredUsername.isBlank()
-                && userOwnerService.ownsStored(doc.getOwnerSubject(), ownerSubject)) {
-            doc.setOwnerPreferredUsername(jwtPreferredUsername.strip());
-        }
-        repository.save(doc);
-        Set<String> kept = new HashSet<>(collectGeneratedAssetIds(doc.getTurns()));
-        for (String aid : previousAssets) {
-            if (!kept.contains(aid)) {
-                assetService.deleteIfOwned(assetOwner, aid);
+                && !jwtPreferredUsername.isBlank()) {
+            update.set("ownerPreferredUsername", jwtPreferredUsername.strip());
+        }
+        return update;
+    }
+
+    /**
+     * Remplace les tours d’index {@code >= from} par {@code tail} (les précédents sont inchangés).
+     * Les documents de tours sont écrits d’abord (identifiants dépendant du contenu, invisibles tant que
+     * l’en-tête ne les désigne pas), puis l’en-tête bascule sous garde de version. Une interruption entre les deux
+     * ne laisse que des tours orphelins, supprimés ensuite comme ceux d’une écriture concurrente perdante ; les
+     * images générées des tours remplacés qui ne sont plus référencées sont supprimées.
+     *
+     * @return {@code false} si la conversation a été modifiée depuis sa lecture (l’en-tête n’est pas modifié)
+     */
+    private boolean storeTurns(
+            AssistantConversation doc,
+            int from,
+            List<AssistantConversationTurn> tail,
+            List<String> tailHashes,
+            Update update,
+            String assetOwner) {
+        String conversationId = doc.getId();
+        List<String> oldHashes = doc.getTurnHashes();
+        long newVersion = doc.getTurnsVersion() + 1;
+
+        List<AssistantConversationTurnEntry> replaced = List.of();
+        if (from < oldHashes.size()) {
+            Query q = turnsByHash(conversationId, oldHashes, from, oldHashes.size());
+            q.fields().include("seq").include("question").include("turn.generatedImageAssetIds");
+            replaced = mongoTemplate.find(q, AssistantConversationTurnEntry.class);
+        }
+        int questions = doc.getUserQuestionCount();
+        for (AssistantConversationTurnEntry e : replaced) {
+            if (e.isQuestion()) {
+                questions--;
             }
         }
+        for (AssistantConversationTurn t : tail) {
+            if (isUserQuestion(t)) {
+                questions++;
+            }
+        }
+        String preview = doc.getPreview();
+        if (from == 0 || preview == null || preview.isEmpty()) {
+            preview = previewFrom(tail);
+        }
+        List<String> hashes = new ArrayList<>(oldHashes.subList(0, Math.min(from, oldHashes.size())));
+        hashes.addAll(tailHashes);
+
+        writeEntries(conversationId, from, tail, tailHashes, newVersion);
+
+        update.set("turnCount", hashes.size())
+                .set("turnHashes", hashes)
+                .set("preview", preview)
+                .set("userQuestionCount", Math.max(0, questions))
+                .set("updatedAt", Instant.now())
+                .set("turnsVersion", newVersion);
+        Query guard = new Query(Criteria.where("_id").is(conversationId).and("turnsVersion").is(doc.getTurnsVersion()));
+        if (mongoTemplate.updateFirst(guard, update, AssistantConversation.class).getMatchedCount() == 0) {
+            return false;
+        }
+        removeUnlistedEntries(conversationId, hashes, newVersion);
+
+        Set<String> kept = new HashSet<>(collectGeneratedAssetIds(tail));
+        for (AssistantConversationTurnEntry e : replaced) {
+            if (e.getTurn() == null) {
+                continue;
+            }
+            for (String aid : collectGeneratedAssetIds(List.of(e.getTurn()))) {
+                if (!kept.contains(aid)) {
+                    assetService.deleteIfOwned(assetOwner, aid);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void writeEntries(
+            String conversationId, int from, List<AssistantConversationTurn> turns, List<String> hashes, long version) {
+        if (turns.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AssistantConversationTurnEntry.class);
+        for (int i = 0; i < turns.size(); i++) {
+            AssistantConversationTurnEntry entry = toEntry(conversationId, from + i, turns.get(i), hashes.get(i), version);
+            bulk.replaceOne(
+                    new Query(Criteria.where("_id").is(entry.getId())), entry, FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Supprime les tours que l’en-tête {@code version} ne désigne pas. Les tours d’une écriture plus récente
+     * (version supérieure, en-tête pas encore basculé) sont laissés.
+     */
+    private void removeUnlistedEntries(String conversationId, List<String> hashes, long version) {
+        List<String> listed = new ArrayList<>(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            listed.add(AssistantConversationTurnEntry.idFor(conversationId, i, hashes.get(i)));
+        }
+        mongoTemplate.remove(
+                new Query(Criteria.where("conversationId").is(conversationId)
+                        .and("_id").nin(listed)
+                        .and("version").lte(version)),
+                AssistantConversationTurnEntry.class);
+    }
+
+    /**
+     * Conversation enregistrée avec les tours embarqués : la migration est d’abord réservée par une mise à jour
+     * conditionnelle ({@code turnsMigrationAt}), puis seul l’appel qui l’a obtenue écrit les documents de tours et
+     * bascule l’en-tête en retirant {@code turns}. Une réservation plus ancienne que
+     * {@link #MIGRATION_CLAIM_TIMEOUT} (arrêt en cours de migration) peut être reprise.
+     *
+     * @return la conversation migrée, ou {@code null} si une autre migration est en cours
+     */
+    private AssistantConversation ensureTurnEntries(AssistantConversation doc) {
+        if (doc.getTurnCount() != null) {
+            return doc;
+        }
+        Instant claim = Instant.now();
+        Query claimable = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(doc.getId()),
+                Criteria.where("turnCount").exists(false),
+                new Criteria().orOperator(
+                        Criteria.where("turnsMigrationAt").exists(false),
+                        Criteria.where("turnsMigrationAt").lt(claim.minus(MIGRATION_CLAIM_TIMEOUT)))));
+        if (mongoTemplate.updateFirst(claimable, new Update().set("turnsMigrationAt", claim), AssistantConversation.class)
+                .getMatchedCount() == 0) {
+            AssistantConversation current = mongoTemplate.findById(doc.getId(), AssistantConversation.class);
+            return current != null && current.getTurnCount() != null ? current : null;
+        }
+        List<AssistantConversationTurn> turns = doc.getTurns() != null ? doc.getTurns() : List.of();
+        List<String> hashes = turnHashes(turns);
+        writeEntries(doc.getId(), 0, turns, hashes, 0L);
+        String preview = previewFrom(turns);
+        int questions = countUserQuestions(turns);
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(doc.getId()).and("turnsMigrationAt").is(claim)),
+                new Update()
+                        .set("turnCount", turns.size())
+                        .set("turnHashes", hashes)
+                        .set("preview", preview)
+                        .set("userQuestionCount", questions)
+                        .set("turnsVersion", 0L)
+                        .unset("turns")
+                        .unset("turnsMigrationAt"),
+                AssistantConversation.class);
+        AssistantConversation current = mongoTemplate.findById(doc.getId(), AssistantConversation.class);
+        return current != null && current.getTurnCount() != null ? current : null;
+    }
+
+    private static AssistantConversationTurnEntry toEntry(
+            String conversationId, int seq, AssistantConversationTurn turn, String hash, long version) {
+        AssistantConversationTurnEntry entry = new AssistantConversationTurnEntry();
+        entry.setId(AssistantConversationTurnEntry.idFor(conversationId, seq, hash));
+        entry.setConversationId(conversationId);
+        entry.setSeq(seq);
+        entry.setHash(hash);
+        entry.setVersion(version);
+        entry.setQuestion(isUserQuestion(turn));
+        entry.setTurn(turn);
+        return entry;
+    }
+
+    /** Tours {@code [fromInclusive, toExclusive)} désignés par {@code hashes}, dans l’ordre. */
+    private static Query turnsByHash(String conversationId, List<String> hashes, int fromInclusive, int toExclusive) {
+        List<String> ids = new ArrayList<>(Math.max(0, toExclusive - fromInclusive));
+        for (int i = fromInclusive; i < toExclusive; i++) {
+            ids.add(AssistantConversationTurnEntry.idFor(conversationId, i, hashes.get(i)));
+        }
+        return new Query(Criteria.where("_id").in(ids)).with(Sort.by(Sort.Direction.ASC, "seq"));
+    }
+
+    static int commonPrefix(List<String> stored, List<String> incoming) {
+        int n = Math.min(stored.size(), incoming.size());
+        int i = 0;
+        while (i < n && stored.get(i).equals(incoming.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static List<String> turnHashes(List<AssistantConversationTurn> turns) {
+        List<String> out = new ArrayList<>(turns.size());
+        for (AssistantConversationTurn t : turns) {
+            out.add(turnHash(t));
+        }
+        return out;
+    }
+
+    /** Empreinte de tout ce qui est persisté pour un tour (texte, image, images générées, méta). */
+    static String turnHash(AssistantConversationTurn t) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        hashField(md, t.getRole());
+        hashField(md, t.getContent());
+        hashField(md, Boolean.TRUE.equals(t.getHasImage()) ? "1" : "0");
+        hashField(md, t.getImageDataUrl());
+        if (t.getGeneratedImageAssetIds() != null) {
+            for (String aid : t.getGeneratedImageAssetIds()) {
+                hashField(md, aid);
+            }
+        }
+        AssistantConversationTurnMeta m = t.getMeta();
+        if (m != null) {
+            hashField(md, m.getElapsedMs() + "|" + m.getInputTokens() + "|" + m.getOutputTokens()
+                    + "|" + m.getProvider() + "|" + m.getModel());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest()).substring(0, TURN_HASH_CHARS);
+    }
+
+    private static void hashField(MessageDigest md, String value) {
+        if (value != null) {
+            md.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        md.update((byte) 0);
     }
 
     /** @return {@code true} si une ligne a été supprimée */
@@ -152,8 +495,17 @@ public class AssistantConversationService {
         if (!assistantAdmin && !userOwnerService.ownsStored(doc.get().getOwnerSubject(), ownerSubject)) {
             return false;
         }
-        List<String> assets = collectGeneratedAssetIds(doc.get().getTurns());
+        List<String> assets = new ArrayList<>(collectGeneratedAssetIds(doc.get().getTurns()));
+        Query turnsOfConversation = new Query(Criteria.where("conversationId").is(doc.get().getId()));
+        Query assetsQuery = Query.of(turnsOfConversation);
+        assetsQuery.fields().include("turn.generatedImageAssetIds");
+        for (AssistantConversationTurnEntry e : mongoTemplate.find(assetsQuery, AssistantConversationTurnEntry.class)) {
+            if (e.getTurn() != null) {
+                assets.addAll(collectGeneratedAssetIds(List.of(e.getTurn())));
+            }
+        }
         repository.deleteById(doc.get().getId());
+        mongoTemplate.remove(turnsOfConversation, AssistantConversationTurnEntry.class);
         assetService.deleteAllIfOwned(doc.get().getOwnerSubject(), assets);
         return true;
     }
@@ -193,20 +545,30 @@ public class AssistantConversationService {
         return out;
     }
 
-    private void validate(String ownerSubject, AssistantConversationSaveRequestDto req, boolean assistantAdmin) {
+    /**
+     * Contrôles en mémoire des tours reçus ; la propriété des images générées n’est vérifiée que pour les tours
+     * effectivement écrits ({@link #requireOwnedAssets}).
+     *
+     * @param existingTurns tours déjà stockés qui précèdent {@code turns} (ajout), {@code 0} pour une liste complète
+     */
+    private void validateTurns(
+            String ownerSubject,
+            String routingProvider,
+            List<AssistantConversationTurnPersistDto> turns,
+            int existingTurns) {
         if (ownerSubject == null || ownerSubject.isBlank()) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
         }
-        String rp = req.routingProvider().trim().toLowerCase();
+        String rp = routingProvider.trim().toLowerCase();
         if (!"openai".equals(rp) && !"anthropic".equals(rp) && !"gemini".equals(rp) && !"mistral".equals(rp)) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST, "routingProvider must be openai, anthropic, gemini or mistral");
         }
-        if (req.turns().size() > MAX_TURNS) {
+        if (existingTurns + turns.size() > MAX_TURNS) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many turns");
         }
         int weight = 0;
-        for (AssistantConversationTurnPersistDto t : req.turns()) {
+        for (AssistantConversationTurnPersistDto t : turns) {
             String role = t.role().trim().toLowerCase();
             if (!"user".equals(role) && !"assistant".equals(role)) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid role");
@@ -219,9 +581,6 @@ public class AssistantConversationService {
             if ("assistant".equals(role) && gAssets.size() > MAX_GENERATED_ASSETS_PER_TURN) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many generated images on one turn");
             }
-            for (String aid : gAssets) {
-                assetService.requireOwnedAsset(ownerSubject, aid, assistantAdmin);
-            }
 
             weight += t.content() != null ? t.content().length() : 0;
             weight += gAssets.size() * 48;
@@ -252,6 +611,13 @@ public class AssistantConversationService {
         }
     }
 
+    private void requireOwnedAssets(
+            String ownerSubject, List<AssistantConversationTurn> turns, boolean assistantAdmin) {
+        for (String aid : collectGeneratedAssetIds(turns)) {
+            assetService.requireOwnedAsset(ownerSubject, aid, assistantAdmin);
+        }
+    }
+
     private static int estimateMetaChars(AssistantTurnMetaPersistDto meta) {
         if (meta == null) {
             return 0;
@@ -328,38 +694,42 @@ public class AssistantConversationService {
                 doc.getRoutingProvider(),
                 doc.getProviderLabel(),
                 doc.getModel(),
-                previewFrom(doc),
+                doc.getTurnCount() != null ? doc.getPreview() : previewFrom(doc.getTurns()),
                 doc.getOwnerSubject(),
                 preferredForApi,
-                countUserQuestions(doc));
+                doc.getTurnCount() != null ? doc.getUserQuestionCount() : countUserQuestions(doc.getTurns()));
     }
 
-    private int countUserQuestions(AssistantConversation doc) {
-        if (doc.getTurns() == null || doc.getTurns().isEmpty()) {
+    private static int countUserQuestions(List<AssistantConversationTurn> turns) {
+        if (turns == null || turns.isEmpty()) {
             return 0;
         }
         int n = 0;
-        for (AssistantConversationTurn t : doc.getTurns()) {
-            if (!"user".equalsIgnoreCase(t.getRole())) {
-                continue;
-            }
-            String content = t.getContent();
-            boolean hasText = content != null && !content.trim().isEmpty();
-            boolean hasImage =
-                    Boolean.TRUE.equals(t.getHasImage())
-                            || (t.getImageDataUrl() != null && !t.getImageDataUrl().isBlank());
-            if (hasText || hasImage) {
+        for (AssistantConversationTurn t : turns) {
+            if (isUserQuestion(t)) {
                 n++;
             }
         }
         return n;
     }
 
-    private String previewFrom(AssistantConversation doc) {
-        if (doc.getTurns() == null) {
+    private static boolean isUserQuestion(AssistantConversationTurn t) {
+        if (!"user".equalsIgnoreCase(t.getRole())) {
+            return false;
+        }
+        String content = t.getContent();
+        boolean hasText = content != null && !content.trim().isEmpty();
+        boolean hasImage =
+                Boolean.TRUE.equals(t.getHasImage())
+                        || (t.getImageDataUrl() != null && !t.getImageDataUrl().isBlank());
+        return hasText || hasImage;
+    }
+
+    private static String previewFrom(List<AssistantConversationTurn> turns) {
+        if (turns == null) {
             return "";
         }
-        for (AssistantConversationTurn t : doc.getTurns()) {
+        for (AssistantConversationTurn t : turns) {
             if ("user".equalsIgnoreCase(t.getRole()) && t.getContent() != null) {
                 String s = t.getContent().trim().replaceAll("\\s+", " ");
                 if (s.isEmpty()) {
@@ -371,9 +741,24 @@ public class AssistantConversationService {
         return "";
     }
 
-    private AssistantConversationDetailDto toDetail(AssistantConversation doc) {
-        List<AssistantConversationTurnPersistDto> turns =
-                doc.getTurns() == null ? List.of() : doc.getTurns().stream().map(this::turnToDto).toList();
+    private AssistantConversationDetailDto toDetail(AssistantConversation doc, Integer before, Integer limit) {
+        List<AssistantConversationTurn> legacy = doc.getTurnCount() == null && doc.getTurns() != null
+                ? doc.getTurns() : List.of();
+        int total = doc.getTurnCount() != null ? doc.getTurnHashes().size() : legacy.size();
+        int end = before != null ? Math.max(0, Math.min(before, total)) : total;
+        int start = limit != null && limit > 0 ? Math.max(0, end - limit) : 0;
+        List<AssistantConversationTurnPersistDto> turns;
+        if (start >= end) {
+            turns = List.of();
+        } else if (doc.getTurnCount() == null) {
+            turns = legacy.subList(start, end).stream().map(this::turnToDto).toList();
+        } else {
+            turns = mongoTemplate.find(turnsByHash(doc.getId(), doc.getTurnHashes(), start, end),
+                            AssistantConversationTurnEntry.class).stream()
+                    .filter(e -> e.getTurn() != null)
+                    .map(e -> turnToDto(e.getTurn()))
+                    .toList();
+        }
         return new AssistantConversationDetailDto(
                 doc.getId(),
                 doc.getCreatedAt(),
@@ -381,7 +766,9 @@ public class AssistantConversationService {
                 doc.getRoutingProvider(),
                 doc.getProviderLabel(),
                 doc.getModel(),
-                turns);
+                turns,
+                total,
+                start);
     }
 
     private AssistantConversationTurnPersistDto turnToDto(AssistantConversationTurn t) {
@@ -1,6 +1,7 @@
 package com.pat.service;
 
 import com.pat.controller.MailController;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,20 +9,54 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
 
 /**
  * Service for persisting and loading the image compression cache to/from the file system.
+ * <p>
+ * File format (version 2, big-endian), append-only:
+ * <pre>
+ * data  (image-cache.dat):     "PATCACHE" int version, then records:
+ *                              int bodyLength, body, int crc32(body)
+ *                              body = long createdAt, long originalSize, UTF key,
+ *                                     int exifCount, (UTF name, UTF value)*, int dataLength, byte[] data
+ * index (image-cache.dat.idx): "PATCIDX2" long coveredDataLength, int count,
+ *                              (UTF key, long createdAt, long recordOffset, int bodyLength)*
+ * </pre>
+ * A save appends only entries that are not in the file yet and then rewrites the small index; the data file
+ * is compacted (rewritten) once more than half of it is dead. Loading only reads the index: entries are read
+ * on demand with positional reads when {@link ImageCompressionService} misses, so the first preview after a
+ * restart does not wait for the whole file. Files written by the former ObjectOutputStream snapshot are still
+ * loaded (eagerly) and replaced by the new format on the next save.
  */
 @Service
 public class CachePersistenceService {
 
     private static final Logger log = LoggerFactory.getLogger(CachePersistenceService.class);
+
+    private static final byte[] DATA_MAGIC = "PATCACHE".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "PATCIDX2".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 2;
+    private static final int DATA_HEADER_LENGTH = DATA_MAGIC.length + 4;
+    private static final String INDEX_SUFFIX = ".idx";
+    /** Sanity bound for a single record (a compressed image plus its key and EXIF). */
+    private static final int MAX_RECORD_BODY = 256 * 1024 * 1024;
     
     @Autowired
     private ImageCompressionService imageCompressionService;
@@ -34,157 +69,134 @@ public class CachePersistenceService {
     
     @Value("${app.cache.persistence.filename:image-cache.dat}")
     private String cacheFilename;
+
+    /** Entries present in the data file (key → location). */
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+    /** Serialises save / load / clear (writers of the data file and of {@link #index}). */
+    private final Object fileLock = new Object();
+    /** Guards {@link #reader}: lookups share it, close/replace is exclusive. */
+    private final ReentrantReadWriteLock readerLock = new ReentrantReadWriteLock();
+    private FileChannel reader;
+
+    private record IndexEntry(long createdAt, long offset, int bodyLength) {
+    }
+
+    /**
+     * Attach the persisted tier whatever the startup state: lookups simply miss until a data file is loaded or
+     * written.
+     */
+    @PostConstruct
+    void registerPersistedTier() {
+        imageCompressionService.setPersistedCacheLookup(this::readEntry);
+        imageCompressionService.setPersistedCacheEviction(this::forgetByPrefix);
+    }
     
     /**
-     * Save the current cache to the file system.
+     * Save the current cache to the file system (incremental: only entries not yet in the file are written).
      * @return Statistics about the saved cache
      */
     public CacheSaveResult saveCache() {
-        try {
-            Path cachePath = getCacheFilePath();
-            Files.createDirectories(cachePath.getParent());
-            
-            Map<String, Object> stats = imageCompressionService.getCacheStatistics();
-            int entryCount = (Integer) stats.get("entryCount");
-            
-            if (entryCount == 0) {
-                log.info("Cache is empty, nothing to save");
-                return new CacheSaveResult(false, 0, 0, 0, "Cache is empty");
-            }
-            
-            // Get the cache map
-            Map<String, ImageCompressionService.CacheEntry> cacheMap = imageCompressionService.getAllCacheEntries();
-            
-            // First pass: count valid entries
-            long now = System.currentTimeMillis();
-            int validCount = 0;
-            for (ImageCompressionService.CacheEntry cacheEntry : cacheMap.values()) {
-                if (!isExpired(cacheEntry, now)) {
-                    validCount++;
-                }
-            }
-            
-            if (validCount == 0) {
-                log.info("No valid cache entries to save");
-                return new CacheSaveResult(false, 0, 0, 0, "No valid cache entries to save");
-            }
-            
-            // Second pass: write to file
-            int savedCount = 0;
-            long savedSize = 0;
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new BufferedOutputStream(Files.newOutputStream(cachePath)))) {
-                oos.writeInt(validCount);
-                
+        synchronized (fileLock) {
+            try {
+                Path cachePath = getCacheFilePath();
+                Files.createDirectories(cachePath.getParent());
+
+                Map<String, ImageCompressionService.CacheEntry> cacheMap = imageCompressionService.getAllCacheEntries();
+                long now = System.currentTimeMillis();
+                Map<String, ImageCompressionService.CacheEntry> valid = new LinkedHashMap<>();
                 for (Map.Entry<String, ImageCompressionService.CacheEntry> entry : cacheMap.entrySet()) {
-                    ImageCompressionService.CacheEntry cacheEntry = entry.getValue();
-                    // Only save non-expired entries
-                    if (!isExpired(cacheEntry, now)) {
-                        oos.writeUTF(entry.getKey());
-                        oos.writeLong(cacheEntry.getCreatedAt());
-                        ImageCompressionService.CompressionResult result = cacheEntry.getResult();
-                        oos.writeLong(result.getOriginalSize());
-                        oos.writeLong(result.getCompressedSize());
-                        byte[] data = result.getData();
-                        oos.writeInt(data.length);
-                        oos.write(data);
-                        // Write EXIF metadata
-                        Map<String, String> exifMetadata = result.getExifMetadata();
-                        oos.writeInt(exifMetadata.size());
-                        for (Map.Entry<String, String> exifEntry : exifMetadata.entrySet()) {
-                            oos.writeUTF(exifEntry.getKey());
-                            oos.writeUTF(exifEntry.getValue());
-                        }
-                        savedCount++;
-                        savedSize += data.length;
+                    if (!isExpired(entry.getValue().getCreatedAt(), now)) {
+                        valid.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                // Persisted entries that expired are dead weight from now on
+                index.entrySet().removeIf(e -> isExpired(e.getValue().createdAt(), now));
+
+                if (valid.isEmpty() && index.isEmpty()) {
+                    log.info("No valid cache entries to save");
+                    return new CacheSaveResult(false, 0, 0, 0, "No valid cache entries to save");
+                }
+
+                boolean currentFormat = Files.exists(cachePath) && isCurrentFormat(cachePath);
+                if (currentFormat && index.isEmpty() && Files.size(cachePath) > DATA_HEADER_LENGTH) {
+                    openIndex(cachePath); // saved before any load in this JVM
+                    index.entrySet().removeIf(e -> isExpired(e.getValue().createdAt(), now));
+                }
+
+                Map<String, ImageCompressionService.CacheEntry> toAppend = new LinkedHashMap<>();
+                for (Map.Entry<String, ImageCompressionService.CacheEntry> entry : valid.entrySet()) {
+                    IndexEntry persisted = index.get(entry.getKey());
+                    if (persisted == null || persisted.createdAt() != entry.getValue().getCreatedAt()) {
+                        toAppend.put(entry.getKey(), entry.getValue());
                     }
                 }
+
+                long liveBytes = liveRecordBytes();
+                long fileBytes = currentFormat ? Files.size(cachePath) : 0;
+                boolean rewrite = !currentFormat || liveBytes * 2 < fileBytes - DATA_HEADER_LENGTH;
+
+                String message;
+                int written;
+                if (rewrite) {
+                    written = rewriteDataFile(cachePath, valid);
+                    message = String.format("Cache file rewritten: %d entries", written);
+                } else {
+                    written = appendRecords(cachePath, toAppend);
+                    message = String.format("Cache saved incrementally: %d new entries appended", written);
+                }
+                writeIndex(cachePath);
+
+                long fileSize = Files.size(cachePath);
+                long savedSize = 0;
+                for (IndexEntry e : index.values()) {
+                    savedSize += e.bodyLength();
+                }
+                log.info("{} ({} entries in file, {} bytes): {}", message, index.size(), fileSize, cachePath);
+                return new CacheSaveResult(true, index.size(), savedSize, fileSize, message);
+
+            } catch (Exception e) {
+                log.error("Failed to save cache to file system", e);
+                return new CacheSaveResult(false, 0, 0, 0,
+                        "Error: " + e.getMessage());
             }
-            
-            long fileSize = Files.size(cachePath);
-            log.info("Cache saved successfully: {} entries, {} bytes to file: {}", 
-                    savedCount, fileSize, cachePath);
-            
-            return new CacheSaveResult(true, savedCount, savedSize, fileSize, 
-                    "Cache saved successfully");
-                    
-        } catch (Exception e) {
-            log.error("Failed to save cache to file system", e);
-            return new CacheSaveResult(false, 0, 0, 0, 
-                    "Error: " + e.getMessage());
         }
     }
     
     /**
-     * Load the cache from the file system.
+     * Load the cache from the file system: reads the index only, entries are read from the file when first
+     * requested through the lookup registered in {@link ImageCompressionService}.
      * @return Statistics about the loaded cache
      */
     public CacheLoadResult loadCache() {
-        try {
-            Path cachePath = getCacheFilePath();
-            
-            if (!Files.exists(cachePath)) {
-                log.info("Cache file does not exist: {}", cachePath);
-                return new CacheLoadResult(false, 0, 0, "Cache file does not exist");
-            }
-            
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new BufferedInputStream(Files.newInputStream(cachePath)))) {
-                
-                int entryCount = ois.readInt();
-                int loadedCount = 0;
-                long loadedSize = 0;
-                
-                for (int i = 0; i < entryCount; i++) {
-                    try {
-                        String key = ois.readUTF();
-                        long createdAt = ois.readLong();
-                        long originalSize = ois.readLong();
-                        ois.readLong(); // Skip compressedSize (we'll calculate it from data length)
-                        int dataLength = ois.readInt();
-                        byte[] data = new byte[dataLength];
-                        ois.readFully(data);
-                        
-                        // Read EXIF metadata
-                        int metadataSize = ois.readInt();
-                        Map<String, String> exifMetadata = new java.util.LinkedHashMap<>();
-                        for (int j = 0; j < metadataSize; j++) {
-                            String exifKey = ois.readUTF();
-                            String exifValue = ois.readUTF();
-                            exifMetadata.put(exifKey, exifValue);
-                        }
-                        
-                        // Create CompressionResult
-                        ImageCompressionService.CompressionResult result = 
-                            createCompressionResult(data, originalSize, exifMetadata);
-                        
-                        // Add to cache using the service method
-                        imageCompressionService.addCacheEntry(key, result, createdAt);
-                        loadedCount++;
-                        loadedSize += data.length;
-                        
-                    } catch (Exception e) {
-                        log.warn("Failed to load cache entry {}: {}", i, e.getMessage());
-                        // Continue loading other entries
-                    }
+        synchronized (fileLock) {
+            try {
+                Path cachePath = getCacheFilePath();
+
+                if (!Files.exists(cachePath)) {
+                    log.info("Cache file does not exist: {}", cachePath);
+                    return new CacheLoadResult(false, 0, 0, "Cache file does not exist");
+                }
+
+                if (!isCurrentFormat(cachePath)) {
+                    return loadLegacyCache(cachePath);
                 }
-                
-                log.info("Cache loaded successfully: {} entries, {} bytes from file: {}", 
-                        loadedCount, loadedSize, cachePath);
-                
-                return new CacheLoadResult(true, loadedCount, loadedSize, 
-                        "Cache loaded successfully");
-                        
-            } catch (EOFException e) {
-                log.warn("Cache file appears to be corrupted or incomplete: {}", e.getMessage());
-                return new CacheLoadResult(false, 0, 0, 
-                        "Cache file is corrupted: " + e.getMessage());
+
+                long start = System.currentTimeMillis();
+                openIndex(cachePath);
+                long now = System.currentTimeMillis();
+                index.entrySet().removeIf(e -> isExpired(e.getValue().createdAt(), now));
+
+                long loadedSize = liveRecordBytes();
+                log.info("Cache index loaded in {} ms: {} entries, {} bytes available on demand from file: {}",
+                        System.currentTimeMillis() - start, index.size(), loadedSize, cachePath);
+                return new CacheLoadResult(true, index.size(), loadedSize,
+                        "Cache loaded successfully (entries are read on demand)");
+
+            } catch (Exception e) {
+                log.error("Failed to load cache from file system", e);
+                return new CacheLoadResult(false, 0, 0,
+                        "Error: " + e.getMessage());
             }
-            
-        } catch (Exception e) {
-            log.error("Failed to load cache from file system", e);
-            return new CacheLoadResult(false, 0, 0, 
-                    "Error: " + e.getMessage());
         }
     }
     
@@ -192,33 +204,56 @@ public class CachePersistenceService {
      * Clear the cache from both memory and file system.
      */
     public CacheClearResult clearCache() {
-        try {
-            // Clear from memory
-            Map<String, ImageCompressionService.CacheEntry> cacheMap = imageCompressionService.getAllCacheEntries();
-            int memoryEntries = cacheMap.size();
-            imageCompressionService.clearAllCacheEntries();
-            
-            // Clear from file system
-            Path cachePath = getCacheFilePath();
-            boolean fileDeleted = false;
-            if (Files.exists(cachePath)) {
-                Files.delete(cachePath);
-                fileDeleted = true;
+        synchronized (fileLock) {
+            try {
+                // Detach the file first so a concurrent miss cannot promote an entry back into memory
+                closeReader();
+                index.clear();
+
+                // Clear from memory
+                Map<String, ImageCompressionService.CacheEntry> cacheMap = imageCompressionService.getAllCacheEntries();
+                int memoryEntries = cacheMap.size();
+                imageCompressionService.clearAllCacheEntries();
+
+                // Clear from file system
+                Path cachePath = getCacheFilePath();
+                boolean fileDeleted = Files.deleteIfExists(cachePath);
+                Files.deleteIfExists(indexPath(cachePath));
+
+                log.info("Cache cleared: {} entries from memory, file deleted: {}",
+                        memoryEntries, fileDeleted);
+
+                return new CacheClearResult(true, memoryEntries, fileDeleted,
+                        "Cache cleared successfully");
+
+            } catch (Exception e) {
+                log.error("Failed to clear cache", e);
+                return new CacheClearResult(false, 0, false,
+                        "Error: " + e.getMessage());
             }
-            
-            log.info("Cache cleared: {} entries from memory, file deleted: {}", 
-                    memoryEntries, fileDeleted);
-            
-            return new CacheClearResult(true, memoryEntries, fileDeleted, 
-                    "Cache cleared successfully");
-                    
-        } catch (Exception e) {
-            log.error("Failed to clear cache", e);
-            return new CacheClearResult(false, 0, false, 
-                    "Error: " + e.getMessage());
         }
     }
     
+    /**
+     * Drops persisted entries whose key starts with {@code prefix} and rewrites the index, so they are not
+     * served again after a restart. Their records stay in the data file as dead bytes until compaction.
+     */
+    public void forgetByPrefix(String prefix) {
+        synchronized (fileLock) {
+            if (!index.keySet().removeIf(k -> k.startsWith(prefix))) {
+                return;
+            }
+            try {
+                Path cachePath = getCacheFilePath();
+                if (Files.exists(cachePath)) {
+                    writeIndex(cachePath);
+                }
+            } catch (IOException e) {
+                log.warn("Could not rewrite cache index after evicting {}*: {}", prefix, e.getMessage());
+            }
+        }
+    }
+
     /**
      * Check if cache file exists.
      * @return true if cache file exists, false otherwise
@@ -239,24 +274,423 @@ public class CachePersistenceService {
     private Path getCacheFilePath() {
         return Paths.get(cacheDir, cacheFilename).toAbsolutePath().normalize();
     }
+
+    private static Path indexPath(Path cachePath) {
+        return cachePath.resolveSibling(cachePath.getFileName() + INDEX_SUFFIX);
+    }
     
     /**
-     * Check if cache entry is expired.
+     * Check if a cache entry created at {@code createdAt} is expired.
+     */
+    private boolean isExpired(long createdAt, long now) {
+        long cacheTtlMillis = imageCompressionService.getCacheTtlMillis();
+        return cacheTtlMillis > 0 && (now - createdAt) >= cacheTtlMillis;
+    }
+
+    private long liveRecordBytes() {
+        long total = 0;
+        for (IndexEntry e : index.values()) {
+            total += 8L + e.bodyLength();
+        }
+        return total;
+    }
+
+    // --- Read side ------------------------------------------------------------------------------
+
+    /**
+     * Read one entry from the data file (positional read, safe for concurrent callers).
+     * @return the entry, or {@code null} if unknown or unreadable
+     */
+    private ImageCompressionService.CacheEntry readEntry(String key) {
+        IndexEntry location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        readerLock.readLock().lock();
+        try {
+            if (reader == null) {
+                return null;
+            }
+            byte[] body = readRecordBody(reader, location.offset(), location.bodyLength());
+            DecodedRecord record = decodeBody(body);
+            if (!key.equals(record.key)) {
+                throw new IOException("index points at another key");
+            }
+            return new ImageCompressionService.CacheEntry(
+                    createCompressionResult(record.data, record.originalSize, record.exif), record.createdAt);
+        } catch (Exception e) {
+            log.warn("Unreadable persisted cache entry {}: {}", key, e.getMessage());
+            index.remove(key, location);
+            return null;
+        } finally {
+            readerLock.readLock().unlock();
+        }
+    }
+
+    /** Reads {@code int length, body, int crc} at {@code offset} and verifies the checksum. */
+    private static byte[] readRecordBody(FileChannel channel, long offset, int expectedLength) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        readFully(channel, head, offset);
+        int length = head.flip().getInt();
+        if (length <= 0 || length > MAX_RECORD_BODY || (expectedLength > 0 && length != expectedLength)) {
+            throw new IOException("bad record length " + length + " at " + offset);
+        }
+        ByteBuffer bodyAndCrc = ByteBuffer.allocate(length + 4);
+        readFully(channel, bodyAndCrc, offset + 4);
+        bodyAndCrc.flip();
+        byte[] body = new byte[length];
+        bodyAndCrc.get(body);
+        int crc = bodyAndCrc.getInt();
+        CRC32 check = new CRC32();
+        check.update(body);
+        if ((int) check.getValue() != crc) {
+            throw new IOException("checksum mismatch at " + offset);
+        }
+        return body;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("record truncated at " + position);
+            }
+        }
+    }
+
+    private static final class DecodedRecord {
+        long createdAt;
+        long originalSize;
+        String key;
+        Map<String, String> exif;
+        byte[] data;
+    }
+
+    private static DecodedRecord decodeBody(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        DecodedRecord r = new DecodedRecord();
+        r.createdAt = in.readLong();
+        r.originalSize = in.readLong();
+        r.key = in.readUTF();
+        int exifCount = in.readInt();
+        r.exif = new LinkedHashMap<>();
+        for (int i = 0; i < exifCount; i++) {
+            String name = in.readUTF();
+            r.exif.put(name, in.readUTF());
+        }
+        int dataLength = in.readInt();
+        r.data = new byte[dataLength];
+        in.readFully(r.data);
+        return r;
+    }
+
+    private static boolean isCurrentFormat(Path cachePath) throws IOException {
+        try (InputStream in = Files.newInputStream(cachePath)) {
+            byte[] magic = in.readNBytes(DATA_MAGIC.length);
+            return java.util.Arrays.equals(magic, DATA_MAGIC);
+        }
+    }
+
+    /**
+     * (Re)open the data file and rebuild {@link #index}: from the index file when it is valid, then by
+     * scanning records appended after it (a torn last record is cut off).
+     */
+    private void openIndex(Path cachePath) throws IOException {
+        index.clear();
+        long covered = DATA_HEADER_LENGTH;
+        Path indexPath = indexPath(cachePath);
+        long dataSize = Files.size(cachePath);
+        if (Files.exists(indexPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+                byte[] magic = new byte[INDEX_MAGIC.length];
+                in.readFully(magic);
+                if (!java.util.Arrays.equals(magic, INDEX_MAGIC)) {
+                    throw new IOException("bad index magic");
+                }
+                long coveredLength = in.readLong();
+                if (coveredLength > dataSize) {
+                    throw new IOException("index covers more than the data file");
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    index.put(key, new IndexEntry(in.readLong(), in.readLong(), in.readInt()));
+                }
+                covered = coveredLength;
+            } catch (IOException e) {
+                log.warn("Cache index {} unusable ({}), rebuilding from data file", indexPath, e.getMessage());
+                index.clear();
+                covered = DATA_HEADER_LENGTH;
+            }
+        }
+
+        FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ);
+        long offset = covered;
+        int scanned = 0;
+        try {
+            while (offset < dataSize) {
+                byte[] body;
+                try {
+                    body = readRecordBody(channel, offset, -1);
+                } catch (IOException torn) {
+                    log.warn("Cache file {} has an incomplete record at {} ({}), ignoring the tail",
+                            cachePath, offset, torn.getMessage());
+                    break;
+                }
+                DecodedRecord r = decodeBody(body);
+                index.put(r.key, new IndexEntry(r.createdAt, offset, body.length));
+                offset += 8L + body.length;
+                scanned++;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        replaceReader(channel);
+        if (offset < dataSize) {
+            try (FileChannel truncate = FileChannel.open(cachePath, StandardOpenOption.WRITE)) {
+                truncate.truncate(offset);
+            }
+        }
+        if (scanned > 0) {
+            log.debug("Cache file {}: {} record(s) recovered beyond the index", cachePath, scanned);
+        }
+    }
+
+    private void replaceReader(FileChannel channel) throws IOException {
+        readerLock.writeLock().lock();
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+            reader = channel;
+        } finally {
+            readerLock.writeLock().unlock();
+        }
+    }
+
+    private void closeReader() throws IOException {
+        replaceReader(null);
+    }
+
+    // --- Write side -----------------------------------------------------------------------------
+
+    private static byte[] encodeBody(String key, ImageCompressionService.CacheEntry entry) throws IOException {
+        ImageCompressionService.CompressionResult result = entry.getResult();
+        byte[] data = result.getData();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length + 256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeLong(entry.getCreatedAt());
+        out.writeLong(result.getOriginalSize());
+        out.writeUTF(key);
+        Map<String, String> exifMetadata = result.getExifMetadata();
+        out.writeInt(exifMetadata.size());
+        for (Map.Entry<String, String> exifEntry : exifMetadata.entrySet()) {
+            out.writeUTF(exifEntry.getKey());
+            out.writeUTF(exifEntry.getValue());
+        }
+        out.writeInt(data.length);
+        out.write(data);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /** Writes one record at the channel position; returns the record offset. */
+    private static long writeRecord(FileChannel channel, byte[] body) throws IOException {
+        long offset = channel.position();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer head = ByteBuffer.allocate(4).putInt(body.length).flip();
+        ByteBuffer tail = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] parts = { head, ByteBuffer.wrap(body), tail };
+        while (tail.hasRemaining()) {
+            channel.write(parts);
+        }
+        return offset;
+    }
+
+    private int appendRecords(Path cachePath, Map<String, ImageCompressionService.CacheEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        try (FileChannel out = FileChannel.open(cachePath, StandardOpenOption.WRITE)) {
+            out.position(out.size());
+            for (Map.Entry<String, ImageCompressionService.CacheEntry> entry : entries.entrySet()) {
+                byte[] body = encodeBody(entry.getKey(), entry.getValue());
+                long offset = writeRecord(out, body);
+                index.put(entry.getKey(), new IndexEntry(entry.getValue().getCreatedAt(), offset, body.length));
+                written++;
+            }
+            out.force(false);
+        }
+        if (reader == null) {
+            replaceReader(FileChannel.open(cachePath, StandardOpenOption.READ));
+        }
+        return written;
+    }
+
+    /**
+     * Compaction / format upgrade: writes every live entry (persisted ones not in memory any more are kept)
+     * to a new file and swaps it in. Records already in the data file are copied channel to channel, the
+     * others are encoded one at a time, so no more than one entry is held in memory.
+     */
+    private int rewriteDataFile(Path cachePath, Map<String, ImageCompressionService.CacheEntry> inMemory) throws IOException {
+        Path tmp = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        Map<String, IndexEntry> rewritten = new LinkedHashMap<>();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_LENGTH).put(DATA_MAGIC).putInt(FORMAT_VERSION).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (Map.Entry<String, IndexEntry> entry : new ArrayList<>(index.entrySet())) {
+                ImageCompressionService.CacheEntry current = inMemory.get(entry.getKey());
+                if (current != null && current.getCreatedAt() != entry.getValue().createdAt()) {
+                    continue; // superseded, written from memory below
+                }
+                IndexEntry copied = copyRecord(entry.getValue(), out);
+                if (copied != null) {
+                    rewritten.put(entry.getKey(), copied);
+                }
+            }
+            for (Map.Entry<String, ImageCompressionService.CacheEntry> entry : inMemory.entrySet()) {
+                if (rewritten.containsKey(entry.getKey())) {
+                    continue;
+                }
+                byte[] body = encodeBody(entry.getKey(), entry.getValue());
+                long offset = writeRecord(out, body);
+                rewritten.put(entry.getKey(), new IndexEntry(entry.getValue().getCreatedAt(), offset, body.length));
+            }
+            out.force(false);
+        }
+
+        closeReader(); // Windows cannot replace a file that is still open
+        Files.deleteIfExists(indexPath(cachePath));
+        try {
+            Files.move(tmp, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        index.clear();
+        index.putAll(rewritten);
+        replaceReader(FileChannel.open(cachePath, StandardOpenOption.READ));
+        return rewritten.size();
+    }
+
+    /**
+     * Copies one record (length, body, crc) from the current data file to the end of {@code out}.
+     * @return its location in {@code out}, or {@code null} if the record could not be read
      */
-    private boolean isExpired(ImageCompressionService.CacheEntry entry, long now) {
+    private IndexEntry copyRecord(IndexEntry location, FileChannel out) throws IOException {
+        long offset = out.position();
+        readerLock.readLock().lock();
+        try {
+            if (reader == null) {
+                return null;
+            }
+            long length = 8L + location.bodyLength();
+            long copied = 0;
+            while (copied < length) {
+                long n = reader.transferTo(location.offset() + copied, length - copied, out);
+                if (n <= 0) {
+                    throw new EOFException("record truncated at " + location.offset());
+                }
+                copied += n;
+            }
+            return new IndexEntry(location.createdAt(), offset, location.bodyLength());
+        } catch (IOException e) {
+            log.warn("Persisted cache record at {} dropped during compaction: {}", location.offset(), e.getMessage());
+            out.truncate(offset);
+            out.position(offset);
+            return null;
+        } finally {
+            readerLock.readLock().unlock();
+        }
+    }
+
+    private void writeIndex(Path cachePath) throws IOException {
+        Path indexPath = indexPath(cachePath);
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.write(INDEX_MAGIC);
+            out.writeLong(Files.size(cachePath));
+            Map<String, IndexEntry> snapshot = new LinkedHashMap<>(index);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, IndexEntry> e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().createdAt());
+                out.writeLong(e.getValue().offset());
+                out.writeInt(e.getValue().bodyLength());
+            }
+        }
         try {
-            java.lang.reflect.Field ttlField = ImageCompressionService.class.getDeclaredField("cacheTtlMillis");
-            ttlField.setAccessible(true);
-            long cacheTtlMillis = ttlField.getLong(imageCompressionService);
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Former format: one ObjectOutputStream snapshot, loaded eagerly into memory. The next save rewrites
+     * the file in the current format.
+     */
+    private CacheLoadResult loadLegacyCache(Path cachePath) {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(cachePath)))) {
+            
+            int entryCount = ois.readInt();
+            int loadedCount = 0;
+            long loadedSize = 0;
             
-            if (cacheTtlMillis <= 0) {
-                return false;
+            for (int i = 0; i < entryCount; i++) {
+                try {
+                    String key = ois.readUTF();
+                    long createdAt = ois.readLong();
+                    long originalSize = ois.readLong();
+                    ois.readLong(); // Skip compressedSize (we'll calculate it from data length)
+                    int dataLength = ois.readInt();
+                    byte[] data = new byte[dataLength];
+                    ois.readFully(data);
+                    
+                    // Read EXIF metadata
+                    int metadataSize = ois.readInt();
+                    Map<String, String> exifMetadata = new java.util.LinkedHashMap<>();
+                    for (int j = 0; j < metadataSize; j++) {
+                        String exifKey = ois.readUTF();
+                        String exifValue = ois.readUTF();
+                        exifMetadata.put(exifKey, exifValue);
+                    }
+                    
+                    // Create CompressionResult
+                    ImageCompressionService.CompressionResult result = 
+                        createCompressionResult(data, originalSize, exifMetadata);
+                    
+                    // Add to cache using the service method
+                    imageCompressionService.addCacheEntry(key, result, createdAt);
+                    loadedCount++;
+                    loadedSize += data.length;
+                    
+                } catch (Exception e) {
+                    log.warn("Failed to load cache entry {}: {}", i, e.getMessage());
+                    // Continue loading other entries
+                }
             }
             
-            return (now - entry.getCreatedAt()) >= cacheTtlMillis;
+            log.info("Legacy cache loaded successfully: {} entries, {} bytes from file: {}", 
+                    loadedCount, loadedSize, cachePath);
+            
+            return new CacheLoadResult(true, loadedCount, loadedSize, 
+                    "Cache loaded successfully");
+                    
+        } catch (EOFException e) {
+            log.warn("Cache file appears to be corrupted or incomplete: {}", e.getMessage());
+            return new CacheLoadResult(false, 0, 0, 
+                    "Cache file is corrupted: " + e.getMessage());
         } catch (Exception e) {
-            log.warn("Could not check expiration, assuming not expired", e);
-            return false;
+            log.error("Failed to load cache from file system", e);
+            return new CacheLoadResult(false, 0, 0, 
+                    "Error: " + e.getMessage());
         }
     }
     
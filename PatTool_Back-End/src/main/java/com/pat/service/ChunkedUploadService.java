@@ -0,0 +1,525 @@
+package com.pat.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumable uploads written straight into GridFS.
+ * <p>
+ * A session reserves the GridFS {@code _id} of the future file. Each part is read from the request stream one
+ * GridFS chunk at a time and inserted into {@code fs.chunks}, while a SHA-256 of the content is updated; the
+ * {@code fs.files} document is only written by {@link #complete}, so an unfinished upload is never visible.
+ * Heap per upload is one chunk, whatever the file size.
+ * <p>
+ * Parts must start at the number of bytes already received and, except the last one, be a multiple of the
+ * GridFS chunk size. A failed part is rolled back, so the client resumes from {@link Session#received()}.
+ * Sessions belong to the JWT subject that opened them; other callers see them as unknown.
+ * Images that need compressing are compressed from a temp file before the upload is attached to its event,
+ * one at a time ({@link #compress}), so the client only ever sees the final file id.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final String FILES_COLLECTION = "fs.files";
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+    private static final String SESSIONS_COLLECTION = "upload_sessions";
+
+    /** Same chunk size as {@link GridFsTemplate#store} (GridFS default). */
+    public static final int GRIDFS_CHUNK_SIZE = 255 * 1024;
+
+    /** Chunks read per batch when the digest has to be rebuilt after a restart. */
+    private static final int CHUNK_BATCH_SIZE = 4;
+
+    /** Upload state as returned to the client. */
+    public record Session(String uploadId, String userId, String evenementId, String fileName, String contentType,
+                          long length, long received, boolean allowOriginal, int partSize, int chunkSize) {
+    }
+
+    /** A finished upload: the new GridFS file. */
+    public record Completed(String fieldId, String fileName, String contentType, long length, String sha256) {
+    }
+
+    /** The part does not start where the upload stands (a retry, or parts sent out of order). */
+    public static class OffsetMismatchException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Session session;
+
+        OffsetMismatchException(Session session, long offset) {
+            super("Part offset " + offset + " does not match received bytes " + session.received());
+            this.session = session;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+
+    /** In-memory state of an active session: the running digest and a lock serialising its parts. */
+    private static final class Live {
+        MessageDigest digest;
+        long digestedBytes = -1;
+    }
+
+    @Value("${app.upload.chunked.part-size-mb:8}")
+    private int partSizeMb;
+
+    @Value("${app.upload.chunked.max-file-size-mb:8192}")
+    private long maxFileSizeMb;
+
+    @Value("${app.upload.chunked.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    @Value("${app.imagemaxsizekb:500}")
+    private int imagemaxsizekb;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private GridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private ImageCompressionService imageCompressionService;
+
+    @Autowired
+    private GridFsDeduplicationService gridFsDeduplicationService;
+
+    private final ConcurrentHashMap<String, Live> live = new ConcurrentHashMap<>();
+
+    // One image at a time: compression needs the whole file in memory, uploads no longer do
+    private final Semaphore compressionPermit = new Semaphore(1);
+
+    /**
+     * @param ownerSubject JWT subject of the caller; only this subject can then use the session
+     */
+    public Session create(String ownerSubject, String userId, String evenementId, String fileName, String contentType,
+                          long length, boolean allowOriginal) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Empty file");
+        }
+        if (length > maxFileSizeMb * 1024L * 1024L) {
+            throw new IllegalArgumentException("File larger than " + maxFileSizeMb + " MB");
+        }
+        ObjectId fileId = new ObjectId();
+        Date now = new Date();
+        Document doc = new Document("_id", fileId)
+                .append("ownerSubject", ownerSubject)
+                .append("userId", userId)
+                .append("evenementId", evenementId)
+                .append("fileName", fileName)
+                .append("contentType", contentType)
+                .append("length", length)
+                .append("received", 0L)
+                .append("allowOriginal", allowOriginal)
+                .append("createdAt", now)
+                .append("updatedAt", now);
+        mongoTemplate.getCollection(SESSIONS_COLLECTION).insertOne(doc);
+        log.debug("[UPLOAD] Chunked session {} opened: file={}, {} bytes, event={}", fileId, fileName, length, evenementId);
+        return toSession(doc);
+    }
+
+    /**
+     * @return the session, or {@code null} if unknown (completed, aborted or expired) or opened by another subject
+     */
+    public Session get(String uploadId, String ownerSubject) {
+        Document doc = findSession(uploadId);
+        return doc != null && ownerSubject != null && ownerSubject.equals(doc.getString("ownerSubject"))
+                ? toSession(doc) : null;
+    }
+
+    /**
+     * Append one part read from {@code body}.
+     *
+     * @throws OffsetMismatchException  if {@code offset} is not the number of bytes received so far
+     * @throws IllegalArgumentException if the part is empty, overruns the file or is not chunk aligned; nothing
+     *                                  stored is touched for an empty part or an upload already fully received
+     * @throws IOException              if the client stream fails (the part is rolled back)
+     */
+    public Session appendPart(String uploadId, long offset, InputStream body) throws IOException {
+        Live state = live.computeIfAbsent(uploadId, k -> new Live());
+        synchronized (state) {
+            Document doc = requireSession(uploadId);
+            ObjectId fileId = doc.getObjectId("_id");
+            long length = doc.get("length", Number.class).longValue();
+            long received = doc.get("received", Number.class).longValue();
+            if (offset != received) {
+                throw new OffsetMismatchException(toSession(doc), offset);
+            }
+            // Only a complete upload ends on a partial chunk: the chunks from firstChunk on are all leftovers
+            if (received >= length) {
+                throw new IllegalArgumentException("Upload already received all " + length + " bytes");
+            }
+            byte[] buffer = new byte[GRIDFS_CHUNK_SIZE];
+            int read = body.readNBytes(buffer, 0, GRIDFS_CHUNK_SIZE);
+            if (read == 0) {
+                throw new IllegalArgumentException("Empty part");
+            }
+            int firstChunk = (int) (received / GRIDFS_CHUNK_SIZE);
+            MongoCollection<Document> chunks = mongoTemplate.getCollection(CHUNKS_COLLECTION);
+            // Leftovers of a part interrupted by a crash
+            chunks.deleteMany(Filters.and(Filters.eq("files_id", fileId), Filters.gte("n", firstChunk)));
+
+            MessageDigest digest = cloneDigest(digestAt(state, fileId, received));
+            long position = received;
+            int n = firstChunk;
+            try {
+                while (read > 0) {
+                    if (position + read > length) {
+                        throw new IllegalArgumentException("Part overruns the declared length " + length);
+                    }
+                    boolean last = position + read == length;
+                    if (read < GRIDFS_CHUNK_SIZE && !last) {
+                        throw new IllegalArgumentException("Parts must be multiples of " + GRIDFS_CHUNK_SIZE
+                                + " bytes except the last one");
+                    }
+                    byte[] data = read == GRIDFS_CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, read);
+                    chunks.insertOne(new Document("files_id", fileId).append("n", n).append("data", new Binary(data)));
+                    digest.update(buffer, 0, read);
+                    position += read;
+                    n++;
+                    if (read < GRIDFS_CHUNK_SIZE) {
+                        break;
+                    }
+                    read = body.readNBytes(buffer, 0, GRIDFS_CHUNK_SIZE);
+                }
+            } catch (IOException | RuntimeException e) {
+                chunks.deleteMany(Filters.and(Filters.eq("files_id", fileId), Filters.gte("n", firstChunk)));
+                throw e;
+            }
+
+            state.digest = digest;
+            state.digestedBytes = position;
+            mongoTemplate.getCollection(SESSIONS_COLLECTION).updateOne(Filters.eq("_id", fileId),
+                    new Document("$set", new Document("received", position).append("updatedAt", new Date())));
+            doc.put("received", position);
+            return toSession(doc);
+        }
+    }
+
+    /**
+     * Turn a fully received session into a GridFS file ({@code fs.files} document with the SHA-256 in its metadata).
+     *
+     * @param metadata       extra GridFS metadata (uploader)
+     * @param expectedSha256 optional hex digest computed by the client; the upload is discarded on mismatch
+     */
+    public Completed complete(String uploadId, Document metadata, String expectedSha256) {
+        Live state = live.computeIfAbsent(uploadId, k -> new Live());
+        synchronized (state) {
+            Document doc = requireSession(uploadId);
+            ObjectId fileId = doc.getObjectId("_id");
+            long length = doc.get("length", Number.class).longValue();
+            long received = doc.get("received", Number.class).longValue();
+            if (received != length) {
+                throw new OffsetMismatchException(toSession(doc), length);
+            }
+            String sha256 = HexFormat.of().formatHex(cloneDigest(digestAt(state, fileId, received)).digest());
+            if (expectedSha256 != null && !expectedSha256.isBlank() && !expectedSha256.trim().equalsIgnoreCase(sha256)) {
+                abort(uploadId);
+                throw new IllegalArgumentException("SHA-256 mismatch: expected " + expectedSha256 + ", received " + sha256);
+            }
+            String contentType = doc.getString("contentType");
+            String existing = gridFsDeduplicationService.findByContent(sha256, length);
+            if (existing != null) {
+                mongoTemplate.getCollection(CHUNKS_COLLECTION).deleteMany(Filters.eq("files_id", fileId));
+                mongoTemplate.getCollection(SESSIONS_COLLECTION).deleteOne(Filters.eq("_id", fileId));
+                live.remove(uploadId);
+                log.debug("[UPLOAD] Chunked session {}: same content already stored as {}, chunks dropped", fileId, existing);
+                return new Completed(existing, doc.getString("fileName"), contentType, length, sha256);
+            }
+            Document fileMetadata = new Document(metadata != null ? metadata : Map.of());
+            if (contentType != null && !contentType.isEmpty()) {
+                fileMetadata.put("_contentType", contentType);
+            }
+            fileMetadata.put(GridFsDeduplicationService.SHA256, sha256);
+            mongoTemplate.getCollection(FILES_COLLECTION).insertOne(new Document("_id", fileId)
+                    .append("length", length)
+                    .append("chunkSize", GRIDFS_CHUNK_SIZE)
+                    .append("uploadDate", new Date())
+                    .append("filename", doc.getString("fileName"))
+                    .append("metadata", fileMetadata));
+            mongoTemplate.getCollection(SESSIONS_COLLECTION).deleteOne(Filters.eq("_id", fileId));
+            live.remove(uploadId);
+            log.debug("[UPLOAD] Chunked session {} completed: {} bytes, sha256={}", fileId, length, sha256);
+            return new Completed(fileId.toHexString(), doc.getString("fileName"), contentType, length, sha256);
+        }
+    }
+
+    public void abort(String uploadId) {
+        ObjectId fileId = parseId(uploadId);
+        if (fileId == null) {
+            return;
+        }
+        Live state = live.computeIfAbsent(uploadId, k -> new Live());
+        synchronized (state) {
+            mongoTemplate.getCollection(CHUNKS_COLLECTION).deleteMany(Filters.eq("files_id", fileId));
+            mongoTemplate.getCollection(SESSIONS_COLLECTION).deleteOne(Filters.eq("_id", fileId));
+            live.remove(uploadId);
+        }
+    }
+
+    /** Drops sessions not touched for {@code app.upload.chunked.session-ttl-hours}, with their chunks. */
+    @Scheduled(fixedRate = 3600000) // Every hour
+    public void purgeExpiredSessions() {
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(Math.max(1, sessionTtlHours)));
+        try {
+            int purged = 0;
+            for (Document doc : mongoTemplate.getCollection(SESSIONS_COLLECTION)
+                    .find(Filters.lt("updatedAt", cutoff)).projection(Projections.include("_id"))) {
+                abort(doc.getObjectId("_id").toHexString());
+                purged++;
+            }
+            if (purged > 0) {
+                log.info("[UPLOAD] Purged {} abandoned chunked upload(s)", purged);
+            }
+        } catch (Exception e) {
+            log.warn("[UPLOAD] Could not purge abandoned chunked uploads: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compress an uploaded image before it is attached to its event: the GridFS file is copied to a temp file, the
+     * decoded size is checked against the free heap and the compressed version is stored as a new GridFS file.
+     * Images are compressed one at a time. Whenever something does not fit or fails the original is kept.
+     *
+     * @return the file id to attach to the event: the compressed file, or the original
+     */
+    public String compress(Completed upload) {
+        long maxSizeInBytes = imagemaxsizekb * 1024L;
+        if (upload.length() <= maxSizeInBytes) {
+            return upload.fieldId();
+        }
+        // Same original already compressed with the same settings: no need to decode it again
+        String reused = gridFsDeduplicationService.findCompressed(upload.sha256(), imagemaxsizekb);
+        if (reused != null) {
+            log.debug("[UPLOAD] {} already stored compressed as {}", upload.fileName(), reused);
+            return reused;
+        }
+        try {
+            compressionPermit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return upload.fieldId();
+        }
+        try {
+            return compressStoredImage(upload, maxSizeInBytes);
+        } finally {
+            compressionPermit.release();
+        }
+    }
+
+    private String compressStoredImage(Completed upload, long maxSizeInBytes) {
+        ObjectId originalId = new ObjectId(upload.fieldId());
+        Path temp = null;
+        try {
+            GridFSFile original = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(originalId)));
+            if (original == null) {
+                return upload.fieldId();
+            }
+            temp = Files.createTempFile("pattool-upload-", ".img");
+            try (InputStream in = gridFsTemplate.getResource(original).getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            int[] dims = readDimensions(temp);
+            Runtime rt = Runtime.getRuntime();
+            long availableHeap = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+            long requiredHeap = dims != null
+                    ? ImageCompressionService.estimateDecodedBytesForCompression(dims[0], dims[1], maxSizeInBytes) * 2L + upload.length()
+                    : upload.length() * 9L;
+            if (requiredHeap > availableHeap) {
+                log.warn("[UPLOAD] Not compressing {} ({}): needs ~{} MB, {} MB available. Keeping original.",
+                        upload.fileName(), upload.fieldId(), requiredHeap / (1024 * 1024), availableHeap / (1024 * 1024));
+                return upload.fieldId();
+            }
+
+            byte[] fileBytes = Files.readAllBytes(temp);
+            BufferedImage image = imageCompressionService.decodeForCompression(fileBytes, maxSizeInBytes);
+            if (image == null) {
+                return upload.fieldId();
+            }
+            ImageCompressionService.CompressionResult result = imageCompressionService.resizeImageIfNeeded(
+                    upload.fileName(), image, upload.contentType(), upload.length(), maxSizeInBytes, fileBytes, null);
+            image = null;
+            fileBytes = null;
+            byte[] compressed = result.getData();
+            if (compressed == null || compressed.length >= upload.length()) {
+                return upload.fieldId();
+            }
+
+            Document metadata = original.getMetadata() != null ? new Document(original.getMetadata()) : new Document();
+            metadata.remove("_contentType");
+            metadata.remove(GridFsDeduplicationService.SHA256);
+            metadata.put(GridFsDeduplicationService.SOURCE_SHA256, upload.sha256());
+            metadata.put(GridFsDeduplicationService.COMPRESSED_MAX_KB, imagemaxsizekb);
+            String compressedId = gridFsDeduplicationService.store(new ByteArrayInputStream(compressed), upload.fileName(),
+                    upload.contentType(), metadata);
+            log.debug("[UPLOAD] Compression of {}: {} KB -> {} KB (new fieldId {})",
+                    upload.fileName(), upload.length() / 1024, compressed.length / 1024, compressedId);
+            return compressedId;
+        } catch (OutOfMemoryError oom) {
+            log.error("[UPLOAD] Out of memory while compressing {}, keeping original", upload.fileName());
+        } catch (Exception e) {
+            log.warn("[UPLOAD] Compression of {} failed, keeping original: {}", upload.fileName(), e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // temp dir is cleaned by the OS
+                }
+            }
+        }
+        return upload.fieldId();
+    }
+
+    /**
+     * Delete an uploaded file that ended up not attached (replaced by its compressed version), unless an event
+     * uses it: a deduplicated upload may be a file other events already share.
+     */
+    public void dropIfUnreferenced(String fileId) {
+        if (gridFsDeduplicationService.countReferences(fileId, null) == 0) {
+            gridFsTemplate.delete(new Query(Criteria.where("_id").is(new ObjectId(fileId))));
+            imageCompressionService.evictWallPreviews(fileId);
+        }
+    }
+
+    /** Image width / height from the file header, or {@code null}. */
+    private static int[] readDimensions(Path file) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file.toFile())) {
+            if (iis == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Digest of the first {@code received} bytes: the running one, or rebuilt from the stored chunks
+     * (after a restart or a failed part on another node).
+     */
+    private MessageDigest digestAt(Live state, ObjectId fileId, long received) {
+        if (state.digest != null && state.digestedBytes == received) {
+            return state.digest;
+        }
+        MessageDigest digest = newDigest();
+        long expectedChunks = (received + GRIDFS_CHUNK_SIZE - 1) / GRIDFS_CHUNK_SIZE;
+        long seen = 0;
+        if (expectedChunks > 0) {
+            try (MongoCursor<Document> cursor = mongoTemplate.getCollection(CHUNKS_COLLECTION)
+                    .find(Filters.and(Filters.eq("files_id", fileId), Filters.lt("n", expectedChunks)))
+                    .sort(Sorts.ascending("n"))
+                    .batchSize(CHUNK_BATCH_SIZE)
+                    .iterator()) {
+                while (cursor.hasNext()) {
+                    Document chunk = cursor.next();
+                    if (chunk.getInteger("n", -1) != seen) {
+                        break;
+                    }
+                    byte[] data = chunk.get("data", Binary.class).getData();
+                    digest.update(data);
+                    seen++;
+                }
+            }
+        }
+        if (seen != expectedChunks) {
+            throw new IllegalStateException("Upload " + fileId + " is missing chunks (" + seen + "/" + expectedChunks + ")");
+        }
+        state.digest = digest;
+        state.digestedBytes = received;
+        return digest;
+    }
+
+    private Document findSession(String uploadId) {
+        ObjectId fileId = parseId(uploadId);
+        return fileId != null ? mongoTemplate.getCollection(SESSIONS_COLLECTION).find(Filters.eq("_id", fileId)).first() : null;
+    }
+
+    private Document requireSession(String uploadId) {
+        Document doc = findSession(uploadId);
+        if (doc == null) {
+            throw new IllegalArgumentException("Unknown upload session " + uploadId);
+        }
+        return doc;
+    }
+
+    private Session toSession(Document doc) {
+        int partSize = Math.max(1, (int) ((long) partSizeMb * 1024 * 1024 / GRIDFS_CHUNK_SIZE)) * GRIDFS_CHUNK_SIZE;
+        return new Session(doc.getObjectId("_id").toHexString(), doc.getString("userId"), doc.getString("evenementId"),
+                doc.getString("fileName"), doc.getString("contentType"),
+                doc.get("length", Number.class).longValue(), doc.get("received", Number.class).longValue(),
+                Boolean.TRUE.equals(doc.getBoolean("allowOriginal")), partSize, GRIDFS_CHUNK_SIZE);
+    }
+
+    private static ObjectId parseId(String uploadId) {
+        return uploadId != null && ObjectId.isValid(uploadId) ? new ObjectId(uploadId) : null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -60,6 +60,9 @@ public class DiscussionService {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private DiscussionVisibilityIndex visibilityIndex;
+
     @Value("${app.discussion.default.id:}")
     private String defaultDiscussionId;
 
@@ -672,8 +675,110 @@ public class DiscussionService {
      * Filters based on user visibility (events and friend groups)
      * Ignores discussions without associated event or friend group (except default/general discussion)
      * OPTIMIZED VERSION: Batch loads discussions to avoid N+1 query problem
+     * Uses {@link DiscussionVisibilityIndex} when it is built: only the visible events and groups are loaded
      */
     public List<DiscussionItemDTO> getAccessibleDiscussions(Member user) {
+        DiscussionVisibilityIndex.Accessible accessible = visibilityIndex.accessibleFor(user != null ? user.getId() : null);
+        if (accessible == null) {
+            return getAccessibleDiscussionsFullScan(user);
+        }
+        List<DiscussionItemDTO> result = new java.util.ArrayList<>();
+        java.util.Set<String> addedDiscussionIds = new java.util.HashSet<>();
+        addDefaultDiscussionItem(result, addedDiscussionIds);
+
+        // User's own events first (same precedence as the full scan when events share a discussion)
+        java.util.Map<String, com.pat.repo.domain.Evenement> eventByDiscussionId = new java.util.HashMap<>();
+        List<com.pat.repo.domain.Evenement> otherEvents = new java.util.ArrayList<>();
+        for (com.pat.repo.domain.Evenement event : evenementsRepository.findAllById(accessible.eventIds())) {
+            if (event.getDiscussionId() == null || event.getDiscussionId().trim().isEmpty()) {
+                continue;
+            }
+            if (event.getAuthor() != null && user.getId().equals(event.getAuthor().getId())) {
+                eventByDiscussionId.put(event.getDiscussionId(), event);
+            } else {
+                otherEvents.add(event);
+            }
+        }
+        for (com.pat.repo.domain.Evenement event : otherEvents) {
+            eventByDiscussionId.putIfAbsent(event.getDiscussionId(), event);
+        }
+
+        java.util.Map<String, com.pat.repo.domain.FriendGroup> groupByDiscussionId = new java.util.HashMap<>();
+        for (com.pat.repo.domain.FriendGroup group : friendGroupRepository.findAllById(accessible.friendGroupIds())) {
+            if (group.getDiscussionId() != null && !group.getDiscussionId().trim().isEmpty()) {
+                groupByDiscussionId.put(group.getDiscussionId(), group);
+            }
+        }
+
+        addEventAndGroupDiscussionItems(user, eventByDiscussionId, groupByDiscussionId, result, addedDiscussionIds);
+        return result;
+    }
+
+    /**
+     * Compare the visibility index with the full scan for one user (admin diagnostics).
+     * A mismatch triggers a rebuild of the index.
+     */
+    public java.util.Map<String, Object> checkVisibilityIndex(String userId) {
+        java.util.Map<String, Object> report = new java.util.LinkedHashMap<>();
+        report.put("indexReady", visibilityIndex.isReady());
+        Member user = userId != null ? membersRepository.findById(userId).orElse(null) : null;
+        if (user == null) {
+            report.put("error", "Unknown user");
+            return report;
+        }
+        DiscussionVisibilityIndex.Accessible accessible = visibilityIndex.accessibleFor(user.getId());
+        if (accessible == null) {
+            return report;
+        }
+
+        java.util.Set<String> friendIds = loadFriendIds(user);
+        java.util.Map<String, com.pat.repo.domain.FriendGroup> accessibleGroups = loadAccessibleFriendGroups(user);
+        java.util.Set<String> expectedEvents = new java.util.HashSet<>();
+        // Only the fields used by the access check
+        Query eventsQuery = new Query(Criteria.where("discussionId").exists(true).ne(null).ne(""));
+        eventsQuery.fields().include("id", "discussionId", "visibility", "author", "friendGroupId");
+        for (com.pat.repo.domain.Evenement event : mongoTemplate.find(eventsQuery, com.pat.repo.domain.Evenement.class)) {
+            if (event.getDiscussionId() != null && !event.getDiscussionId().trim().isEmpty()
+                    && canUserAccessEvent(event, user, friendIds, accessibleGroups)) {
+                expectedEvents.add(event.getId());
+            }
+        }
+        java.util.Set<String> expectedGroups = new java.util.HashSet<>();
+        for (com.pat.repo.domain.FriendGroup group : accessibleGroups.values()) {
+            if (group.getDiscussionId() != null && !group.getDiscussionId().trim().isEmpty()) {
+                expectedGroups.add(group.getId());
+            }
+        }
+
+        java.util.Set<String> missingEvents = new java.util.TreeSet<>(expectedEvents);
+        missingEvents.removeAll(accessible.eventIds());
+        java.util.Set<String> extraEvents = new java.util.TreeSet<>(accessible.eventIds());
+        extraEvents.removeAll(expectedEvents);
+        java.util.Set<String> missingGroups = new java.util.TreeSet<>(expectedGroups);
+        missingGroups.removeAll(accessible.friendGroupIds());
+        java.util.Set<String> extraGroups = new java.util.TreeSet<>(accessible.friendGroupIds());
+        extraGroups.removeAll(expectedGroups);
+
+        boolean consistent = missingEvents.isEmpty() && extraEvents.isEmpty()
+                && missingGroups.isEmpty() && extraGroups.isEmpty();
+        report.put("consistent", consistent);
+        report.put("eventCount", expectedEvents.size());
+        report.put("friendGroupCount", expectedGroups.size());
+        report.put("eventsMissingFromIndex", missingEvents);
+        report.put("eventsOnlyInIndex", extraEvents);
+        report.put("friendGroupsMissingFromIndex", missingGroups);
+        report.put("friendGroupsOnlyInIndex", extraGroups);
+        if (!consistent) {
+            log.warn("Discussion visibility index inconsistent for user {}: {}", user.getUserName(), report);
+            visibilityIndex.rebuild();
+        }
+        return report;
+    }
+
+    /**
+     * Full scan of all events (used until the visibility index is built, or when it is disabled)
+     */
+    private List<DiscussionItemDTO> getAccessibleDiscussionsFullScan(Member user) {
         List<DiscussionItemDTO> result = new java.util.ArrayList<>();
         // Track discussion IDs already added to avoid duplicates
         java.util.Set<String> addedDiscussionIds = new java.util.HashSet<>();
@@ -715,23 +820,10 @@ public class DiscussionService {
         
         // OPTIMIZATION: Get default discussion FIRST and add immediately (most important)
         // This ensures the default discussion appears instantly
-        Discussion defaultDiscussion = getDefaultDiscussion();
-        if (defaultDiscussion != null) {
-            DiscussionItemDTO defaultItem = createDiscussionItemDTO(
-                defaultDiscussion.getId(),
-                defaultDiscussion.getTitle() != null ? defaultDiscussion.getTitle() : "Discussion Générale",
-                "general",
-                defaultDiscussion,
-                null,
-                null
-            );
-            result.add(defaultItem);
-            addedDiscussionIds.add(defaultDiscussion.getId());
-        }
+        addDefaultDiscussionItem(result, addedDiscussionIds);
         
         // OPTIMIZATION: Only query events/groups that have discussionId and user can access
         // This reduces the dataset significantly compared to loading everything
-        java.util.Set<String> discussionIdsToLoad = new java.util.HashSet<>();
         java.util.Map<String, com.pat.repo.domain.Evenement> eventByDiscussionId = new java.util.HashMap<>();
         java.util.Map<String, com.pat.repo.domain.FriendGroup> groupByDiscussionId = new java.util.HashMap<>();
         
@@ -742,7 +834,6 @@ public class DiscussionService {
         List<com.pat.repo.domain.Evenement> userOwnEvents = evenementsRepository.findByAuthorId(user.getId());
         for (com.pat.repo.domain.Evenement event : userOwnEvents) {
             if (event.getDiscussionId() != null && !event.getDiscussionId().trim().isEmpty()) {
-                discussionIdsToLoad.add(event.getDiscussionId());
                 eventByDiscussionId.put(event.getDiscussionId(), event);
             }
         }
@@ -759,7 +850,6 @@ public class DiscussionService {
             
             // Check if user can access this event
             if (canUserAccessEvent(event, user, friendIds, accessibleGroupsMap)) {
-                discussionIdsToLoad.add(event.getDiscussionId());
                 eventByDiscussionId.put(event.getDiscussionId(), event);
             }
         }
@@ -768,11 +858,40 @@ public class DiscussionService {
         // Process accessible groups that have discussionId
         for (com.pat.repo.domain.FriendGroup group : accessibleGroupsMap.values()) {
             if (group.getDiscussionId() != null && !group.getDiscussionId().trim().isEmpty()) {
-                discussionIdsToLoad.add(group.getDiscussionId());
                 groupByDiscussionId.put(group.getDiscussionId(), group);
             }
         }
         
+        addEventAndGroupDiscussionItems(user, eventByDiscussionId, groupByDiscussionId, result, addedDiscussionIds);
+        return result;
+    }
+
+    private void addDefaultDiscussionItem(List<DiscussionItemDTO> result, java.util.Set<String> addedDiscussionIds) {
+        Discussion defaultDiscussion = getDefaultDiscussion();
+        if (defaultDiscussion != null) {
+            DiscussionItemDTO defaultItem = createDiscussionItemDTO(
+                defaultDiscussion.getId(),
+                defaultDiscussion.getTitle() != null ? defaultDiscussion.getTitle() : "Discussion Générale",
+                "general",
+                defaultDiscussion,
+                null,
+                null
+            );
+            result.add(defaultItem);
+            addedDiscussionIds.add(defaultDiscussion.getId());
+        }
+    }
+
+    /**
+     * Build the items of the accessible event and group discussions, creating discussions that are missing
+     */
+    private void addEventAndGroupDiscussionItems(Member user,
+            java.util.Map<String, com.pat.repo.domain.Evenement> eventByDiscussionId,
+            java.util.Map<String, com.pat.repo.domain.FriendGroup> groupByDiscussionId,
+            List<DiscussionItemDTO> result, java.util.Set<String> addedDiscussionIds) {
+        java.util.Set<String> discussionIdsToLoad = new java.util.HashSet<>(eventByDiscussionId.keySet());
+        discussionIdsToLoad.addAll(groupByDiscussionId.keySet());
+
         // OPTIMIZATION: Batch load all discussions at once (single query instead of N queries)
         // Use projection to exclude messages field for better performance (we'll calculate count/date separately)
         java.util.Map<String, Discussion> discussionMap = new java.util.HashMap<>();
@@ -865,8 +984,6 @@ public class DiscussionService {
             result.add(item);
             addedDiscussionIds.add(discussion.getId());
         }
-        
-        return result;
     }
     
     /**
@@ -1563,6 +1680,10 @@ public class DiscussionService {
         } else {
             allUsers = membersRepository.findAll();
         }
+
+        if (visibilityIndex.isReady()) {
+            return getDiscussionStatisticsFromIndex(allUsers);
+        }
         
         // Pre-load ALL data once - this is the key optimization
         List<Discussion> allDiscussions = discussionRepository.findAll();
@@ -1783,6 +1904,131 @@ public class DiscussionService {
         return result;
     }
     
+    /**
+     * Statistics from the visibility index: only the events, groups and discussions visible to the requested users
+     * are loaded (instead of every event, group, friendship and discussion)
+     */
+    private List<DiscussionStatisticsDTO> getDiscussionStatisticsFromIndex(List<Member> users) {
+        java.util.Map<String, DiscussionVisibilityIndex.Accessible> accessibleByUser = new java.util.LinkedHashMap<>();
+        java.util.Set<String> eventIds = new java.util.HashSet<>();
+        java.util.Set<String> groupIds = new java.util.HashSet<>();
+        for (Member user : users) {
+            if (user == null || user.getId() == null) {
+                continue;
+            }
+            DiscussionVisibilityIndex.Accessible accessible = visibilityIndex.accessibleFor(user.getId());
+            if (accessible == null) {
+                continue;
+            }
+            accessibleByUser.put(user.getId(), accessible);
+            eventIds.addAll(accessible.eventIds());
+            groupIds.addAll(accessible.memberGroupIds());
+        }
+
+        java.util.Map<String, com.pat.repo.domain.Evenement> eventByIdMap = new java.util.HashMap<>();
+        java.util.Set<String> discussionIds = new java.util.HashSet<>();
+        for (com.pat.repo.domain.Evenement e : evenementsRepository.findAllById(eventIds)) {
+            eventByIdMap.put(e.getId(), e);
+            if (e.getDiscussionId() != null) {
+                discussionIds.add(e.getDiscussionId());
+            }
+        }
+        java.util.Map<String, com.pat.repo.domain.FriendGroup> friendGroupByIdMap = new java.util.HashMap<>();
+        for (com.pat.repo.domain.FriendGroup g : friendGroupRepository.findAllById(groupIds)) {
+            friendGroupByIdMap.put(g.getId(), g);
+            if (g.getDiscussionId() != null) {
+                discussionIds.add(g.getDiscussionId());
+            }
+        }
+        java.util.Map<String, Discussion> discussionMap = new java.util.HashMap<>();
+        for (Discussion d : discussionRepository.findAllById(discussionIds)) {
+            discussionMap.put(d.getId(), d);
+        }
+
+        Discussion defaultDiscussion = getDefaultDiscussion();
+        List<DiscussionStatisticsDTO> result = new java.util.ArrayList<>();
+        for (Member user : users) {
+            DiscussionVisibilityIndex.Accessible accessible = user != null ? accessibleByUser.get(user.getId()) : null;
+            if (accessible == null) {
+                continue;
+            }
+            java.util.Set<String> friendIds = accessible.friendIds();
+            java.util.Map<String, com.pat.repo.domain.FriendGroup> accessibleGroups = new java.util.HashMap<>();
+            for (String groupId : accessible.memberGroupIds()) {
+                com.pat.repo.domain.FriendGroup group = friendGroupByIdMap.get(groupId);
+                if (group != null) {
+                    accessibleGroups.put(groupId, group);
+                }
+            }
+
+            java.util.Set<String> addedDiscussionIds = new java.util.HashSet<>();
+            List<DiscussionStatisticsDTO.DiscussionAccessInfo> accessInfoList = new java.util.ArrayList<>();
+            if (defaultDiscussion != null && defaultDiscussion.getId() != null) {
+                accessInfoList.add(new DiscussionStatisticsDTO.DiscussionAccessInfo(
+                    defaultDiscussion.getId(),
+                    defaultDiscussion.getTitle() != null ? defaultDiscussion.getTitle() : "Discussion Générale",
+                    "general",
+                    java.util.Arrays.asList("general")
+                ));
+                addedDiscussionIds.add(defaultDiscussion.getId());
+            }
+
+            for (String eventId : accessible.eventIds()) {
+                com.pat.repo.domain.Evenement event = eventByIdMap.get(eventId);
+                if (event == null || event.getDiscussionId() == null) {
+                    continue;
+                }
+                Discussion discussion = discussionMap.get(event.getDiscussionId());
+                if (discussion == null || !addedDiscussionIds.add(event.getDiscussionId())) {
+                    continue;
+                }
+                DiscussionStatisticsDTO.DiscussionAccessInfo accessInfo = new DiscussionStatisticsDTO.DiscussionAccessInfo(
+                    event.getDiscussionId(),
+                    "Discussion - " + (event.getEvenementName() != null ? event.getEvenementName() : "Event"),
+                    "event",
+                    determineAccessReasonsOptimized(discussion, event, null, user, friendIds, accessibleGroups, null)
+                );
+                accessInfo.setEventName(event.getEvenementName());
+                accessInfoList.add(accessInfo);
+            }
+
+            for (String groupId : accessible.friendGroupIds()) {
+                com.pat.repo.domain.FriendGroup group = friendGroupByIdMap.get(groupId);
+                if (group == null || group.getDiscussionId() == null) {
+                    continue;
+                }
+                Discussion discussion = discussionMap.get(group.getDiscussionId());
+                if (discussion == null || !addedDiscussionIds.add(group.getDiscussionId())) {
+                    continue;
+                }
+                DiscussionStatisticsDTO.DiscussionAccessInfo accessInfo = new DiscussionStatisticsDTO.DiscussionAccessInfo(
+                    group.getDiscussionId(),
+                    "Discussion - " + (group.getName() != null ? group.getName() : "Friend Group"),
+                    "friendGroup",
+                    determineAccessReasonsOptimized(discussion, null, group, user, friendIds, accessibleGroups, group.getName())
+                );
+                accessInfo.setFriendGroupName(group.getName());
+                accessInfoList.add(accessInfo);
+            }
+
+            result.add(new DiscussionStatisticsDTO(
+                user.getId(),
+                user.getUserName() != null ? user.getUserName() : "Unknown",
+                user.getFirstName() != null ? user.getFirstName() : "",
+                user.getLastName() != null ? user.getLastName() : "",
+                (long) accessInfoList.size(),
+                accessInfoList
+            ));
+        }
+
+        result.sort((a, b) -> {
+            String nameA = a.getUserName() != null ? a.getUserName() : "";
+            String nameB = b.getUserName() != null ? b.getUserName() : "";
+            return nameA.compareToIgnoreCase(nameB);
+        });
+        return result;
+    }
+    
     /**
      * Optimized version of canUserAccessEvent that uses pre-loaded data
      */
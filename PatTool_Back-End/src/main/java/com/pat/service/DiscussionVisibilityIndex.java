@@ -0,0 +1,453 @@
+package com.pat.service;
+
+import com.mongodb.DBRef;
+import com.pat.repo.domain.Evenement;
+import com.pat.repo.domain.Friend;
+import com.pat.repo.domain.FriendGroup;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * In-memory visibility index for discussions: which events (with a discussion) and which friend groups a user
+ * can see, without loading every event, group and friendship.
+ * <p>
+ * Only ids and the fields the visibility rules use are kept, in inverted form (public events, events by author,
+ * "friends" events by author, group-restricted events by group id / legacy group name, groups by user, friends by
+ * user). A lookup is therefore proportional to the user's friends, groups and result size. The index is built once
+ * at startup, kept up to date from Spring Data's after-save / after-delete events of {@link Evenement},
+ * {@link FriendGroup} and {@link Friend}, and periodically compared with a fresh build (writes that bypass the
+ * mapping layer would otherwise go unnoticed).
+ */
+@Service
+public class DiscussionVisibilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DiscussionVisibilityIndex.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.discussion.visibility-index.enabled:true}")
+    private boolean enabled;
+
+    /** Current index, {@code null} until the first build completed. */
+    private volatile State state;
+    /** Changes received while a rebuild runs; replayed onto the new state before it is published. */
+    private final List<Consumer<State>> replay = new ArrayList<>();
+    private boolean rebuilding;
+
+    /** Event and friend-group ids (each with a discussion) visible to one user. */
+    public record Accessible(Set<String> eventIds, Set<String> friendGroupIds, Set<String> friendIds,
+                             Set<String> memberGroupIds) {
+    }
+
+    public boolean isReady() {
+        return enabled && state != null;
+    }
+
+    /**
+     * @return visible event / group ids for {@code userId}, or {@code null} if the index is not available
+     *         (callers then use the full scan)
+     */
+    public Accessible accessibleFor(String userId) {
+        State current = state;
+        if (!enabled || current == null || userId == null) {
+            return null;
+        }
+        return current.accessibleFor(userId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            log.info("Discussion visibility index disabled (app.discussion.visibility-index.enabled=false)");
+            return;
+        }
+        Thread t = new Thread(this::rebuild, "discussion-visibility-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Rebuilds from MongoDB and compares with the live index; a difference means some write was missed and is
+     * logged before the fresh index replaces the old one.
+     */
+    @Scheduled(initialDelayString = "${app.discussion.visibility-index.verify-ms:1800000}",
+            fixedDelayString = "${app.discussion.visibility-index.verify-ms:1800000}")
+    public void verify() {
+        if (!enabled || state == null) {
+            return;
+        }
+        State before = state;
+        State fresh = buildAndPublish();
+        if (fresh != null && !fresh.sameContent(before)) {
+            log.warn("Discussion visibility index drifted from the database (index: {} events / {} groups / {} friendships, "
+                    + "database: {} / {} / {}) - replaced by a fresh build",
+                    before.events.size(), before.groups.size(), before.friendships.size(),
+                    fresh.events.size(), fresh.groups.size(), fresh.friendships.size());
+        }
+    }
+
+    /** Full build from the three collections (projected documents, no DBRef resolution). */
+    public void rebuild() {
+        buildAndPublish();
+    }
+
+    private State buildAndPublish() {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            rebuilding = true;
+            replay.clear();
+        }
+        long start = System.currentTimeMillis();
+        State fresh = new State();
+        try {
+            for (Document doc : mongoTemplate.getCollection(mongoTemplate.getCollectionName(FriendGroup.class))
+                    .find().projection(new Document("name", 1).append("discussionId", 1).append("owner", 1)
+                            .append("members", 1).append("authorizedUsers", 1))) {
+                fresh.putGroup(doc);
+            }
+            for (Document doc : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Friend.class))
+                    .find().projection(new Document("user1", 1).append("user2", 1))) {
+                fresh.putFriendship(doc);
+            }
+            for (Document doc : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Evenement.class))
+                    .find(new Document("discussionId", new Document("$nin", java.util.Arrays.asList(null, ""))))
+                    .projection(new Document("discussionId", 1).append("visibility", 1).append("author", 1)
+                            .append("friendGroupId", 1))) {
+                fresh.putEvent(doc);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                rebuilding = false;
+                replay.clear();
+            }
+            log.error("Discussion visibility index build failed, discussions are listed by full scan", e);
+            return null;
+        }
+        synchronized (this) {
+            replay.forEach(change -> change.accept(fresh));
+            replay.clear();
+            rebuilding = false;
+            state = fresh;
+        }
+        log.info("Discussion visibility index built in {} ms: {} events with discussion, {} groups, {} friendships",
+                System.currentTimeMillis() - start, fresh.events.size(), fresh.groups.size(), fresh.friendships.size());
+        return fresh;
+    }
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        Object source = event.getSource();
+        Document doc = event.getDocument();
+        if (doc == null) {
+            return;
+        }
+        if (source instanceof Evenement) {
+            apply(s -> s.putEvent(doc));
+        } else if (source instanceof FriendGroup) {
+            apply(s -> s.putGroup(doc));
+        } else if (source instanceof Friend) {
+            apply(s -> s.putFriendship(doc));
+        }
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        Class<?> type = event.getType();
+        if (type != Evenement.class && type != FriendGroup.class && type != Friend.class) {
+            return;
+        }
+        Document filter = event.getSource();
+        Object rawId = filter != null && filter.size() == 1 ? filter.get("_id") : null;
+        String id = rawId instanceof Document ? null : idOf(rawId);
+        if (id == null) {
+            // deleteAll / delete by query: the affected ids are unknown
+            if (enabled && state != null) {
+                Thread t = new Thread(this::rebuild, "discussion-visibility-index");
+                t.setDaemon(true);
+                t.start();
+            }
+            return;
+        }
+        if (type == Evenement.class) {
+            apply(s -> s.removeEvent(id));
+        } else if (type == FriendGroup.class) {
+            apply(s -> s.removeGroup(id));
+        } else {
+            apply(s -> s.removeFriendship(id));
+        }
+    }
+
+    private synchronized void apply(Consumer<State> change) {
+        if (!enabled) {
+            return;
+        }
+        if (state != null) {
+            change.accept(state);
+        }
+        if (rebuilding) {
+            replay.add(change);
+        }
+    }
+
+    static String idOf(Object raw) {
+        if (raw == null) {
+            return null;
+        }
+        if (raw instanceof ObjectId objectId) {
+            return objectId.toHexString();
+        }
+        if (raw instanceof DBRef ref) {
+            return idOf(ref.getId());
+        }
+        if (raw instanceof Document embedded) {
+            return idOf(embedded.get("_id"));
+        }
+        return raw.toString();
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    private static <K> void addTo(Map<K, Set<String>> map, K key, String value) {
+        if (key != null) {
+            map.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> map, K key, String value) {
+        if (key == null) {
+            return;
+        }
+        Set<String> set = map.get(key);
+        if (set != null && set.remove(value) && set.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private record EventRef(String discussionId, String visibility, String authorId, String friendGroupId) {
+    }
+
+    private record GroupRef(String name, String discussionId, Set<String> userIds) {
+    }
+
+    private record FriendshipRef(String user1, String user2) {
+    }
+
+    /**
+     * Primary maps (id → ref) plus the inverted indexes derived from them; the same visibility rules as
+     * {@code DiscussionService.canUserAccessEvent} apply. All access is synchronized on the instance.
+     */
+    static final class State {
+        private final Map<String, EventRef> events = new HashMap<>();
+        private final Map<String, GroupRef> groups = new HashMap<>();
+        private final Map<String, FriendshipRef> friendships = new HashMap<>();
+
+        private final Set<String> publicEvents = new HashSet<>();
+        private final Map<String, Set<String>> eventsByAuthor = new HashMap<>();
+        private final Map<String, Set<String>> friendsEventsByAuthor = new HashMap<>();
+        private final Map<String, Set<String>> eventsByGroupId = new HashMap<>();
+        private final Map<String, Set<String>> eventsByGroupName = new HashMap<>();
+        private final Map<String, Set<String>> groupsByUser = new HashMap<>();
+        /** user → friend → number of friendship documents (duplicates happen) */
+        private final Map<String, Map<String, Integer>> friendsByUser = new HashMap<>();
+
+        synchronized void putEvent(Document doc) {
+            String id = idOf(doc.get("_id"));
+            if (id == null) {
+                return;
+            }
+            removeEvent(id);
+            String discussionId = doc.getString("discussionId");
+            if (isBlank(discussionId)) {
+                return;
+            }
+            EventRef ref = new EventRef(discussionId, doc.getString("visibility"), idOf(doc.get("author")),
+                    doc.getString("friendGroupId"));
+            events.put(id, ref);
+            forEachSlot(id, ref, true);
+        }
+
+        synchronized void removeEvent(String id) {
+            EventRef old = events.remove(id);
+            if (old != null) {
+                forEachSlot(id, old, false);
+            }
+        }
+
+        private void forEachSlot(String id, EventRef ref, boolean add) {
+            String visibility = ref.visibility();
+            if (visibility == null || "public".equals(visibility)) {
+                if (add) {
+                    publicEvents.add(id);
+                } else {
+                    publicEvents.remove(id);
+                }
+            }
+            update(eventsByAuthor, ref.authorId(), id, add);
+            if (visibility == null || "public".equals(visibility) || "private".equals(visibility)) {
+                return;
+            }
+            if ("friends".equals(visibility)) {
+                update(friendsEventsByAuthor, ref.authorId(), id, add);
+            } else if (!isBlank(ref.friendGroupId())) {
+                update(eventsByGroupId, ref.friendGroupId(), id, add);
+            } else {
+                update(eventsByGroupName, visibility, id, add);
+            }
+        }
+
+        private static void update(Map<String, Set<String>> map, String key, String id, boolean add) {
+            if (add) {
+                addTo(map, key, id);
+            } else {
+                removeFrom(map, key, id);
+            }
+        }
+
+        synchronized void putGroup(Document doc) {
+            String id = idOf(doc.get("_id"));
+            if (id == null) {
+                return;
+            }
+            removeGroup(id);
+            Set<String> userIds = new HashSet<>();
+            String ownerId = idOf(doc.get("owner"));
+            if (ownerId != null) {
+                userIds.add(ownerId);
+            }
+            collectIds(doc.get("members"), userIds);
+            collectIds(doc.get("authorizedUsers"), userIds);
+            groups.put(id, new GroupRef(doc.getString("name"), doc.getString("discussionId"), userIds));
+            for (String userId : userIds) {
+                addTo(groupsByUser, userId, id);
+            }
+        }
+
+        private static void collectIds(Object list, Set<String> into) {
+            if (list instanceof Collection<?> items) {
+                for (Object item : items) {
+                    String id = idOf(item);
+                    if (id != null) {
+                        into.add(id);
+                    }
+                }
+            }
+        }
+
+        synchronized void removeGroup(String id) {
+            GroupRef old = groups.remove(id);
+            if (old != null) {
+                for (String userId : old.userIds()) {
+                    removeFrom(groupsByUser, userId, id);
+                }
+            }
+        }
+
+        synchronized void putFriendship(Document doc) {
+            String id = idOf(doc.get("_id"));
+            if (id == null) {
+                return;
+            }
+            removeFriendship(id);
+            String user1 = idOf(doc.get("user1"));
+            String user2 = idOf(doc.get("user2"));
+            if (user1 == null || user2 == null) {
+                return;
+            }
+            friendships.put(id, new FriendshipRef(user1, user2));
+            friendsByUser.computeIfAbsent(user1, k -> new HashMap<>()).merge(user2, 1, Integer::sum);
+            friendsByUser.computeIfAbsent(user2, k -> new HashMap<>()).merge(user1, 1, Integer::sum);
+        }
+
+        synchronized void removeFriendship(String id) {
+            FriendshipRef old = friendships.remove(id);
+            if (old != null) {
+                unlinkFriend(old.user1(), old.user2());
+                unlinkFriend(old.user2(), old.user1());
+            }
+        }
+
+        private void unlinkFriend(String user, String friend) {
+            Map<String, Integer> friends = friendsByUser.get(user);
+            if (friends == null) {
+                return;
+            }
+            friends.computeIfPresent(friend, (k, n) -> n > 1 ? n - 1 : null);
+            if (friends.isEmpty()) {
+                friendsByUser.remove(user);
+            }
+        }
+
+        synchronized Accessible accessibleFor(String userId) {
+            Set<String> friendIds = new LinkedHashSet<>(friendsByUser.getOrDefault(userId, Map.of()).keySet());
+            friendIds.remove(userId);
+            Set<String> memberGroupIds = new LinkedHashSet<>(groupsByUser.getOrDefault(userId, Set.of()));
+
+            Set<String> eventIds = new LinkedHashSet<>(eventsByAuthor.getOrDefault(userId, Set.of()));
+            eventIds.addAll(publicEvents);
+            for (String friendId : friendIds) {
+                eventIds.addAll(friendsEventsByAuthor.getOrDefault(friendId, Set.of()));
+            }
+            Set<String> groupIds = new LinkedHashSet<>();
+            Set<String> groupNames = new HashSet<>();
+            for (String groupId : memberGroupIds) {
+                eventIds.addAll(eventsByGroupId.getOrDefault(groupId, Set.of()));
+                GroupRef group = groups.get(groupId);
+                if (group != null) {
+                    if (group.name() != null) {
+                        groupNames.add(group.name());
+                    }
+                    if (!isBlank(group.discussionId())) {
+                        groupIds.add(groupId);
+                    }
+                }
+            }
+            for (String name : groupNames) {
+                eventIds.addAll(eventsByGroupName.getOrDefault(name, Set.of()));
+            }
+            return new Accessible(eventIds, groupIds, friendIds, memberGroupIds);
+        }
+
+        /** Compares the primary maps (the inverted indexes are derived from them). */
+        boolean sameContent(State other) {
+            Map<String, EventRef> e1;
+            Map<String, GroupRef> g1;
+            Map<String, FriendshipRef> f1;
+            synchronized (this) {
+                e1 = new HashMap<>(events);
+                g1 = new HashMap<>(groups);
+                f1 = new HashMap<>(friendships);
+            }
+            synchronized (other) {
+                return Objects.equals(e1, other.events) && Objects.equals(g1, other.groups)
+                        && Objects.equals(f1, other.friendships);
+            }
+        }
+    }
+}
@@ -77,7 +77,7 @@ public class EuromillionsCsvImportService {
         entity.setDrawDate(newDate);
         entity.setSyncedAt(Instant.now());
         EuromillionsDrawDto dto = toDto(repository.save(entity));
-        methodAnalyticsService.refreshSnapshotBestEffort();
+        methodAnalyticsService.rebuildSnapshotBestEffort();
         return dto;
     }
 
@@ -1,13 +1,16 @@
 package com.pat.service;
 
 import com.pat.repo.domain.EuromillionsDraw;
+import com.pat.repo.domain.EuromillionsMethodAccumulators;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * Cinq blocs de métriques sur une liste chronologique de tirages (statistiques descriptives &
@@ -20,7 +23,17 @@ final class EuromillionsMethodAnalyticsCalculator {
 
     private EuromillionsMethodAnalyticsCalculator() {}
 
+    /** Réplications Monte Carlo par défaut (p-value empirique résolue à ~1e-5). */
+    static final int DEFAULT_MONTE_CARLO_REPLICATIONS = 100_000;
+
+    /** Réplications par tâche parallèle : chaque tâche a son flux {@link SplittableRandom} dérivé dans l'ordre. */
+    private static final int MONTE_CARLO_CHUNK = 2_048;
+
     static Map<String, Map<String, Object>> computeAll(List<EuromillionsDraw> chronologic) {
+        return computeAll(chronologic, DEFAULT_MONTE_CARLO_REPLICATIONS);
+    }
+
+    static Map<String, Map<String, Object>> computeAll(List<EuromillionsDraw> chronologic, int monteCarloReplications) {
         Map<String, Map<String, Object>> out = new LinkedHashMap<>();
         int n = chronologic.size();
         if (n <= 0) {
@@ -32,14 +45,163 @@ final class EuromillionsMethodAnalyticsCalculator {
             return out;
         }
 
-        out.put(EuromillionsMethodIds.CHI2_GOF_UNIFORM, chi2Block(chronologic));
-        out.put(EuromillionsMethodIds.ENTROPY_NORMALIZED, entropyBlock(chronologic));
-        out.put(EuromillionsMethodIds.GAP_RECURRENCE, gapBlock(chronologic));
-        out.put(EuromillionsMethodIds.SUM_CORRELATION, correlationBlock(chronologic));
-        out.put(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ, monteCarloBlock(chronologic));
+        DrawMatrix matrix = DrawMatrix.of(chronologic);
+        out.putAll(computeDescriptive(matrix));
+        out.put(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ, monteCarloBlock(matrix, Math.max(1, monteCarloReplications)));
         return out;
     }
 
+    /** Blocs χ², entropie, écarts et corrélation, calculés sur les seuls agrégats (sans relire les tirages). */
+    static Map<String, Map<String, Object>> computeDescriptive(DrawMatrix matrix) {
+        Map<String, Map<String, Object>> out = new LinkedHashMap<>();
+        out.put(EuromillionsMethodIds.CHI2_GOF_UNIFORM, chi2Block(matrix));
+        out.put(EuromillionsMethodIds.ENTROPY_NORMALIZED, entropyBlock(matrix));
+        out.put(EuromillionsMethodIds.GAP_RECURRENCE, gapBlock(matrix));
+        out.put(EuromillionsMethodIds.SUM_CORRELATION, correlationBlock(matrix));
+        return out;
+    }
+
+    /**
+     * Tirages réduits une seule fois en tableaux primitifs : effectifs des boules, des étoiles par période,
+     * première / dernière apparition de chaque boule et sommes de la corrélation. Les cinq blocs lisent ces
+     * agrégats au lieu de reparcourir les {@code List<Integer>} des tirages.
+     */
+    static final class DrawMatrix {
+        int draws;
+        LocalDate lastDrawDate;
+        final int[] mains = new int[51];
+        final int[][] stars = new int[3][13];
+        final int[] periodDrawCount = new int[3];
+        final int[] firstSeen = new int[51];
+        final int[] lastSeen = new int[51];
+        int completeGrids;
+        double sumX;
+        double sumY;
+        double sumXX;
+        double sumYY;
+        double sumXY;
+
+        DrawMatrix() {
+            Arrays.fill(firstSeen, -1);
+        }
+
+        static DrawMatrix of(List<EuromillionsDraw> chronologic) {
+            DrawMatrix m = new DrawMatrix();
+            for (EuromillionsDraw d : chronologic) {
+                m.append(d);
+            }
+            return m;
+        }
+
+        /** Ajoute le tirage suivant (postérieur à tous ceux déjà agrégés). */
+        void append(EuromillionsDraw d) {
+            int idx = draws++;
+            int pi = starPeriod(d.getDrawDate());
+            int sm = starMax(pi);
+            periodDrawCount[pi]++;
+            if (d.getDrawDate() != null) {
+                lastDrawDate = d.getDrawDate();
+            }
+            List<Integer> nums = d.getNumbers();
+            List<Integer> drawStars = d.getStars();
+            boolean complete = nums != null && nums.size() == 5 && drawStars != null && drawStars.size() == 2;
+            int sx = 0;
+            if (nums != null) {
+                for (Integer b : nums) {
+                    if (b != null && b >= 1 && b <= 50) {
+                        mains[b]++;
+                        if (firstSeen[b] < 0) {
+                            firstSeen[b] = idx;
+                        }
+                        lastSeen[b] = idx;
+                        sx += b;
+                    } else {
+                        complete = false;
+                    }
+                }
+            }
+            int sy = 0;
+            if (drawStars != null) {
+                for (Integer st : drawStars) {
+                    if (st != null && st >= 1 && st <= sm) {
+                        stars[pi][st]++;
+                        sy += st;
+                    } else {
+                        complete = false;
+                    }
+                }
+            }
+            if (complete) {
+                sumX += sx;
+                sumY += sy;
+                sumXX += (double) sx * sx;
+                sumYY += (double) sy * sy;
+                sumXY += (double) sx * sy;
+                completeGrids++;
+            }
+        }
+
+        /** Matrice relue depuis les accumulateurs persistés, ou {@code null} s’ils sont incomplets. */
+        static DrawMatrix fromAccumulators(EuromillionsMethodAccumulators acc) {
+            if (acc == null || !hasLength(acc.getMains(), 51) || !hasLength(acc.getStars(), 3 * 13)
+                    || !hasLength(acc.getPeriodDrawCount(), 3) || !hasLength(acc.getFirstSeen(), 51)
+                    || !hasLength(acc.getLastSeen(), 51)) {
+                return null;
+            }
+            DrawMatrix m = new DrawMatrix();
+            m.draws = acc.getDrawCount();
+            m.lastDrawDate = acc.getLastDrawDate();
+            System.arraycopy(acc.getMains(), 0, m.mains, 0, 51);
+            for (int pi = 0; pi < 3; pi++) {
+                System.arraycopy(acc.getStars(), pi * 13, m.stars[pi], 0, 13);
+            }
+            System.arraycopy(acc.getPeriodDrawCount(), 0, m.periodDrawCount, 0, 3);
+            System.arraycopy(acc.getFirstSeen(), 0, m.firstSeen, 0, 51);
+            System.arraycopy(acc.getLastSeen(), 0, m.lastSeen, 0, 51);
+            m.completeGrids = acc.getCompleteGrids();
+            m.sumX = acc.getSumX();
+            m.sumY = acc.getSumY();
+            m.sumXX = acc.getSumXX();
+            m.sumYY = acc.getSumYY();
+            m.sumXY = acc.getSumXY();
+            return m;
+        }
+
+        EuromillionsMethodAccumulators toAccumulators() {
+            EuromillionsMethodAccumulators acc = new EuromillionsMethodAccumulators();
+            acc.setDrawCount(draws);
+            acc.setLastDrawDate(lastDrawDate);
+            acc.setMains(mains.clone());
+            int[] flatStars = new int[3 * 13];
+            for (int pi = 0; pi < 3; pi++) {
+                System.arraycopy(stars[pi], 0, flatStars, pi * 13, 13);
+            }
+            acc.setStars(flatStars);
+            acc.setPeriodDrawCount(periodDrawCount.clone());
+            acc.setFirstSeen(firstSeen.clone());
+            acc.setLastSeen(lastSeen.clone());
+            acc.setCompleteGrids(completeGrids);
+            acc.setSumX(sumX);
+            acc.setSumY(sumY);
+            acc.setSumXX(sumXX);
+            acc.setSumYY(sumYY);
+            acc.setSumXY(sumXY);
+            return acc;
+        }
+
+        private static boolean hasLength(int[] values, int length) {
+            return values != null && values.length == length;
+        }
+
+        int maxMainCount() {
+            int max = 0;
+            for (int b = 1; b <= 50; b++) {
+                max = Math.max(max, mains[b]);
+            }
+            return max;
+        }
+    }
+
     private static int starPeriod(LocalDate d) {
         if (d == null) {
             return 2;
@@ -68,25 +230,11 @@ final class EuromillionsMethodAnalyticsCalculator {
     /**
      * χ² Pearson sur effectifs agrégés : boules 1–50 sur 5n places ; étoiles par période réglementaire.
      */
-    private static Map<String, Object> chi2Block(List<EuromillionsDraw> draws) {
-        int n = draws.size();
-        int[] mains = new int[51];
+    private static Map<String, Object> chi2Block(DrawMatrix matrix) {
+        int n = matrix.draws;
+        int[] mains = matrix.mains;
         List<Map<String, Object>> starPeriods = new ArrayList<>();
-        int[] periodDrawCount = new int[3];
-
-        for (EuromillionsDraw d : draws) {
-            LocalDate date = d.getDrawDate();
-            int pi = starPeriod(date);
-            periodDrawCount[pi]++;
-            List<Integer> nums = d.getNumbers();
-            if (nums != null) {
-                for (Integer b : nums) {
-                    if (b != null && b >= 1 && b <= 50) {
-                        mains[b]++;
-                    }
-                }
-            }
-        }
+        int[] periodDrawCount = matrix.periodDrawCount;
 
         int totalMainSlots = 5 * n;
         double expMain = totalMainSlots > 0 ? (double) totalMainSlots / 50d : 0d;
@@ -101,21 +249,7 @@ final class EuromillionsMethodAnalyticsCalculator {
         for (int pi = 0; pi < 3; pi++) {
             int pn = periodDrawCount[pi];
             int sm = starMax(pi);
-            int[] sc = new int[sm + 1];
-            for (EuromillionsDraw d : draws) {
-                if (starPeriod(d.getDrawDate()) != pi) {
-                    continue;
-                }
-                List<Integer> stars = d.getStars();
-                if (stars == null) {
-                    continue;
-                }
-                for (Integer s : stars) {
-                    if (s != null && s >= 1 && s <= sm) {
-                        sc[s]++;
-                    }
-                }
-            }
+            int[] sc = matrix.stars[pi];
             int slots = 2 * pn;
             double expS = sm > 0 && slots > 0 ? (double) slots / (double) sm : 0d;
             double chi2S = 0d;
@@ -146,24 +280,11 @@ final class EuromillionsMethodAnalyticsCalculator {
     }
 
     /** Entropie de Shannon normalisée (logs naturels) pour boules et étoiles par période. */
-    private static Map<String, Object> entropyBlock(List<EuromillionsDraw> draws) {
-        int n = draws.size();
-        int[] mains = new int[51];
+    private static Map<String, Object> entropyBlock(DrawMatrix matrix) {
+        int n = matrix.draws;
+        int[] mains = matrix.mains;
         List<Map<String, Object>> perStar = new ArrayList<>();
-        int[] periodDrawCount = new int[3];
-
-        for (EuromillionsDraw d : draws) {
-            int pi = starPeriod(d.getDrawDate());
-            periodDrawCount[pi]++;
-            List<Integer> nums = d.getNumbers();
-            if (nums != null) {
-                for (Integer b : nums) {
-                    if (b != null && b >= 1 && b <= 50) {
-                        mains[b]++;
-                    }
-                }
-            }
-        }
+        int[] periodDrawCount = matrix.periodDrawCount;
 
         double totalMain = 5d * n;
         double hm = shannonNormalized(mains, 50, totalMain);
@@ -174,21 +295,7 @@ final class EuromillionsMethodAnalyticsCalculator {
         for (int pi = 0; pi < 3; pi++) {
             int pn = periodDrawCount[pi];
             int sm = starMax(pi);
-            int[] sc = new int[sm + 1];
-            for (EuromillionsDraw d : draws) {
-                if (starPeriod(d.getDrawDate()) != pi) {
-                    continue;
-                }
-                List<Integer> stars = d.getStars();
-                if (stars == null) {
-                    continue;
-                }
-                for (Integer s : stars) {
-                    if (s != null && s >= 1 && s <= sm) {
-                        sc[s]++;
-                    }
-                }
-            }
+            int[] sc = matrix.stars[pi];
             double totSlots = 2d * pn;
             double hs = shannonNormalized(sc, sm, totSlots);
             Map<String, Object> row = new LinkedHashMap<>();
@@ -218,35 +325,16 @@ final class EuromillionsMethodAnalyticsCalculator {
     }
 
     /** Écarts moyens entre apparitions successives d'une même boule (indices de tirage). */
-    private static Map<String, Object> gapBlock(List<EuromillionsDraw> draws) {
-        int n = draws.size();
-        List<List<Integer>> appearances = new ArrayList<>(51);
-        for (int i = 0; i <= 50; i++) {
-            appearances.add(new ArrayList<>());
-        }
-        for (int idx = 0; idx < n; idx++) {
-            EuromillionsDraw d = draws.get(idx);
-            List<Integer> nums = d.getNumbers();
-            if (nums == null) {
-                continue;
-            }
-            for (Integer b : nums) {
-                if (b != null && b >= 1 && b <= 50) {
-                    appearances.get(b).add(idx);
-                }
-            }
-        }
+    private static Map<String, Object> gapBlock(DrawMatrix matrix) {
+        int n = matrix.draws;
         List<Double> meanGaps = new ArrayList<>();
         for (int b = 1; b <= 50; b++) {
-            List<Integer> ap = appearances.get(b);
-            if (ap.size() < 2) {
+            int appearances = matrix.mains[b];
+            if (appearances < 2) {
                 continue;
             }
-            double sum = 0d;
-            for (int i = 1; i < ap.size(); i++) {
-                sum += ap.get(i) - ap.get(i - 1);
-            }
-            meanGaps.add(sum / (ap.size() - 1));
+            // Somme des écarts consécutifs = dernière - première apparition
+            meanGaps.add((double) (matrix.lastSeen[b] - matrix.firstSeen[b]) / (appearances - 1));
         }
         if (meanGaps.isEmpty()) {
             Map<String, Object> block = new LinkedHashMap<>();
@@ -272,44 +360,10 @@ final class EuromillionsMethodAnalyticsCalculator {
     }
 
     /** Corrélation Pearson entre somme des 5 boules et somme des 2 étoiles (par tirage). */
-    private static Map<String, Object> correlationBlock(List<EuromillionsDraw> draws) {
-        int n = draws.size();
-        double sumX = 0, sumY = 0, sumXX = 0, sumYY = 0, sumXY = 0;
-        int used = 0;
-        for (EuromillionsDraw d : draws) {
-            List<Integer> nums = d.getNumbers();
-            List<Integer> stars = d.getStars();
-            if (nums == null || nums.size() != 5 || stars == null || stars.size() != 2) {
-                continue;
-            }
-            int sx = 0;
-            boolean ok = true;
-            for (Integer b : nums) {
-                if (b == null || b < 1 || b > 50) {
-                    ok = false;
-                    break;
-                }
-                sx += b;
-            }
-            int sm = starMax(starPeriod(d.getDrawDate()));
-            int sy = 0;
-            for (Integer s : stars) {
-                if (s == null || s < 1 || s > sm) {
-                    ok = false;
-                    break;
-                }
-                sy += s;
-            }
-            if (!ok) {
-                continue;
-            }
-            sumX += sx;
-            sumY += sy;
-            sumXX += (double) sx * sx;
-            sumYY += (double) sy * sy;
-            sumXY += (double) sx * sy;
-            used++;
-        }
+    private static Map<String, Object> correlationBlock(DrawMatrix matrix) {
+        int n = matrix.draws;
+        double sumX = matrix.sumX, sumY = matrix.sumY, sumXX = matrix.sumXX, sumYY = matrix.sumYY, sumXY = matrix.sumXY;
+        int used = matrix.completeGrids;
         Map<String, Object> block = new LinkedHashMap<>();
         block.put("drawsTotal", n);
         block.put("drawsUsedCompleteGrid", used);
@@ -336,48 +390,32 @@ final class EuromillionsMethodAnalyticsCalculator {
 
     /**
      * Fréquence maximale observée sur les 50 boules vs simulations sous uniforme sans remplacement (n tirages).
+     * Les réplications sont réparties par paquets sur les cœurs ; chaque paquet a son flux {@link SplittableRandom}
+     * dérivé d'une graine tirée des effectifs observés : même résultat quel que soit le nombre de threads, et
+     * d'un recalcul à l'autre tant que les tirages ne changent pas.
      */
-    private static Map<String, Object> monteCarloBlock(List<EuromillionsDraw> draws) {
-        int n = draws.size();
-        int[] obs = new int[51];
-        for (EuromillionsDraw d : draws) {
-            List<Integer> nums = d.getNumbers();
-            if (nums == null) {
-                continue;
-            }
-            for (Integer b : nums) {
-                if (b != null && b >= 1 && b <= 50) {
-                    obs[b]++;
-                }
-            }
-        }
-        int maxObs = 0;
-        for (int b = 1; b <= 50; b++) {
-            maxObs = Math.max(maxObs, obs[b]);
-        }
+    static Map<String, Object> monteCarloBlock(DrawMatrix matrix, int reps) {
+        int n = matrix.draws;
+        int maxObs = matrix.maxMainCount();
+        long seed = monteCarloSeed(matrix);
 
-        final int reps = 800;
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-        int ge = 0;
-        for (int rep = 0; rep < reps; rep++) {
-            int[] sim = new int[51];
-            for (int i = 0; i < n; i++) {
-                drawFiveDistinct(sim, rnd);
-            }
-            int maxSim = 0;
-            for (int b = 1; b <= 50; b++) {
-                maxSim = Math.max(maxSim, sim[b]);
-            }
-            if (maxSim >= maxObs) {
-                ge++;
-            }
+        int chunks = (reps + MONTE_CARLO_CHUNK - 1) / MONTE_CARLO_CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            streams[c] = root.split();
         }
+        int ge = IntStream.range(0, chunks).parallel()
+                .map(c -> countMaxAtLeast(streams[c], Math.min(MONTE_CARLO_CHUNK, reps - c * MONTE_CARLO_CHUNK), n, maxObs))
+                .sum();
+
         double pEmp = (ge + 1d) / (reps + 1d);
         Map<String, Object> block = new LinkedHashMap<>();
         block.put("maxBallFrequencyObserved", maxObs);
         block.put("monteCarloReplications", reps);
         block.put("countSimMaxGeObserved", ge);
         block.put("empiricalPValueMaxFreq", rnd4(pEmp));
+        block.put("monteCarloSeed", seed);
         block.put("draws", n);
         block.put(
                 "note",
@@ -385,16 +423,55 @@ final class EuromillionsMethodAnalyticsCalculator {
         return block;
     }
 
-    private static void drawFiveDistinct(int[] counts1to50, ThreadLocalRandom rnd) {
-        boolean[] taken = new boolean[51];
-        int picked = 0;
-        while (picked < 5) {
-            int x = rnd.nextInt(1, 51);
-            if (!taken[x]) {
-                taken[x] = true;
-                counts1to50[x]++;
-                picked++;
+    /**
+     * Réplications d'un paquet dont la fréquence max simulée atteint {@code maxObs}. Les effectifs ne font que
+     * croître : une réplication s'arrête dès qu'une boule atteint {@code maxObs}. Tableaux alloués une fois par paquet.
+     */
+    static int countMaxAtLeast(SplittableRandom rnd, int reps, int draws, int maxObs) {
+        int[] sim = new int[51];
+        int[] balls = new int[50];
+        for (int i = 0; i < 50; i++) {
+            balls[i] = i + 1;
+        }
+        int ge = 0;
+        for (int rep = 0; rep < reps; rep++) {
+            Arrays.fill(sim, 0);
+            boolean reached = maxObs <= 0;
+            for (int i = 0; i < draws && !reached; i++) {
+                // Fisher–Yates partiel : les 5 premières cases reçoivent 5 boules distinctes uniformes.
+                // Indices par multiplication-décalage sur 32 bits (biais < 50 / 2^32), 3 nextLong() pour 5 boules.
+                long r0 = rnd.nextLong();
+                long r1 = rnd.nextLong();
+                long r2 = rnd.nextLong();
+                reached |= pick(balls, sim, 0, r0 & 0xFFFFFFFFL, maxObs);
+                reached |= pick(balls, sim, 1, r0 >>> 32, maxObs);
+                reached |= pick(balls, sim, 2, r1 & 0xFFFFFFFFL, maxObs);
+                reached |= pick(balls, sim, 3, r1 >>> 32, maxObs);
+                reached |= pick(balls, sim, 4, r2 & 0xFFFFFFFFL, maxObs);
             }
+            if (reached) {
+                ge++;
+            }
+        }
+        return ge;
+    }
+
+    /** Échange la case {@code k} avec une case uniforme de {@code [k, 50)} ; {@code true} si la boule atteint {@code maxObs}. */
+    private static boolean pick(int[] balls, int[] sim, int k, long word32, int maxObs) {
+        int j = k + (int) ((word32 * (50 - k)) >>> 32);
+        int ball = balls[j];
+        balls[j] = balls[k];
+        balls[k] = ball;
+        return ++sim[ball] >= maxObs;
+    }
+
+    /** Graine reproductible : fonction des seuls effectifs observés et du nombre de tirages. */
+    private static long monteCarloSeed(DrawMatrix matrix) {
+        long h = 0x9E3779B97F4A7C15L ^ matrix.draws;
+        for (int b = 1; b <= 50; b++) {
+            h = (h ^ matrix.mains[b]) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
         }
+        return h;
     }
 }
@@ -6,8 +6,10 @@ import com.pat.repo.EuromillionsDrawRepository;
 import com.pat.repo.EuromillionsMethodAnalyticsRepository;
 import com.pat.repo.domain.EuromillionsDraw;
 import com.pat.repo.domain.EuromillionsMethodAnalyticsDocument;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -17,7 +19,12 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class EuromillionsMethodAnalyticsService {
@@ -27,69 +34,209 @@ public class EuromillionsMethodAnalyticsService {
     private final EuromillionsDrawRepository drawRepository;
     private final EuromillionsMethodAnalyticsRepository snapshotRepository;
     private final EuromillionsAiSettingsService aiSettingsService;
+    private final int monteCarloReplications;
+
+    /** Monte Carlo du snapshot, hors du chemin des imports et des GET. */
+    private final ExecutorService monteCarloExecutor = new ThreadPoolExecutor(
+        1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(4),
+        r -> {
+            Thread t = new Thread(r, "euromillions-monte-carlo");
+            t.setDaemon(true);
+            return t;
+        }
+    );
+    /** Clé (périmètre | tirages | réplications) du dernier Monte Carlo en file ou en cours. */
+    private final AtomicReference<String> monteCarloScheduled = new AtomicReference<>();
 
     public EuromillionsMethodAnalyticsService(
             EuromillionsDrawRepository drawRepository,
             EuromillionsMethodAnalyticsRepository snapshotRepository,
-            EuromillionsAiSettingsService aiSettingsService) {
+            EuromillionsAiSettingsService aiSettingsService,
+            @Value("${euromillions.method-analytics.monte-carlo-replications:100000}") int monteCarloReplications) {
         this.drawRepository = drawRepository;
         this.snapshotRepository = snapshotRepository;
         this.aiSettingsService = aiSettingsService;
+        this.monteCarloReplications = Math.max(1, monteCarloReplications);
     }
 
     /**
-     * @param forceRecompute si {@code true}, ignore le snapshot Mongo même si encore aligné sur les tirages.
+     * @param forceRecompute si {@code true}, ignore le snapshot Mongo même si encore aligné sur les tirages
+     *                       et reconstruit les accumulateurs depuis tout l’historique.
      */
     public EuromillionsMethodAnalyticsDto getSnapshot(boolean forceRecompute) {
         String sinceInclusive =
                 aiSettingsService.effectiveMinDrawDate().minDrawDateIso().substring(0, 10);
         LocalDate min = LocalDate.parse(sinceInclusive);
         long liveCount = drawRepository.countByDrawDateGreaterThanEqual(min);
+        return toDto(update(sinceInclusive, min, liveCount, forceRecompute));
+    }
 
-        if (!forceRecompute) {
-            Optional<EuromillionsMethodAnalyticsDocument> opt =
-                    snapshotRepository.findById(EuromillionsMethodAnalyticsDocument.SINGLETON_ID);
-            if (opt.isPresent()) {
-                EuromillionsMethodAnalyticsDocument doc = opt.get();
-                if (sinceInclusive.equals(doc.getSinceInclusive()) && liveCount == doc.getDrawCount()) {
-                    return toDto(doc);
-                }
-            }
+    /**
+     * À appeler après import CSV — silence les erreurs pour ne pas masquer le résultat d’import.
+     * Les tirages postérieurs au dernier agrégé sont ajoutés aux accumulateurs ; seul le Monte Carlo est relancé.
+     */
+    public void refreshSnapshotBestEffort() {
+        try {
+            getSnapshot(false);
+        } catch (RuntimeException e) {
+            log.warn("Euromillions method-analytics refresh after import failed: {}", e.getMessage());
         }
-
-        return computePersistAndReturn(sinceInclusive, min, liveCount);
     }
 
-    /** À appeler après import CSV — silence les erreurs pour ne pas masquer le résultat d’import. */
-    public void refreshSnapshotBestEffort() {
+    /** Après modification d’un tirage existant (date, ordre) : reconstruction complète, erreurs silencieuses. */
+    public void rebuildSnapshotBestEffort() {
         try {
             getSnapshot(true);
         } catch (RuntimeException e) {
-            log.warn("Euromillions method-analytics recompute after import failed: {}", e.getMessage());
+            log.warn("Euromillions method-analytics recompute failed: {}", e.getMessage());
         }
     }
 
-    private EuromillionsMethodAnalyticsDto computePersistAndReturn(
-            String sinceInclusive, LocalDate min, long liveCount) {
-        List<EuromillionsDraw> ascending =
-                liveCount > 0 ? drawRepository.findByDrawDateGreaterThanEqualOrderByDrawDateAsc(min)
-                        : List.of();
+    @PreDestroy
+    void shutdown() {
+        monteCarloExecutor.shutdownNow();
+    }
+
+    private synchronized EuromillionsMethodAnalyticsDocument update(
+            String sinceInclusive, LocalDate min, long liveCount, boolean rebuild) {
+        long start = System.currentTimeMillis();
+        EuromillionsMethodAnalyticsDocument previous =
+                snapshotRepository.findById(EuromillionsMethodAnalyticsDocument.SINGLETON_ID).orElse(null);
+        boolean sameScope = previous != null && sinceInclusive.equals(previous.getSinceInclusive())
+                && (previous.getAccumulators() != null || previous.getDrawCount() == 0);
+        if (!rebuild && sameScope && liveCount == previous.getDrawCount()) {
+            scheduleMonteCarloIfStale(previous);
+            return previous;
+        }
 
-        Map<String, Map<String, Object>> computed =
-                EuromillionsMethodAnalyticsCalculator.computeAll(ascending);
+        EuromillionsMethodAnalyticsCalculator.DrawMatrix matrix = null;
+        if (!rebuild && sameScope && liveCount > previous.getDrawCount()) {
+            matrix = appendNewDraws(previous, liveCount);
+        }
+        boolean incremental = matrix != null;
+        if (matrix == null) {
+            List<EuromillionsDraw> ascending =
+                    liveCount > 0 ? drawRepository.findByDrawDateGreaterThanEqualOrderByDrawDateAsc(min)
+                            : List.of();
+            matrix = EuromillionsMethodAnalyticsCalculator.DrawMatrix.of(ascending);
+        }
 
         EuromillionsMethodAnalyticsDocument doc = new EuromillionsMethodAnalyticsDocument();
         doc.setId(EuromillionsMethodAnalyticsDocument.SINGLETON_ID);
         doc.setComputedAt(Instant.now());
         doc.setSinceInclusive(sinceInclusive);
-        doc.setDrawCount(liveCount);
+        doc.setDrawCount(matrix.draws);
         Map<String, Map<String, Object>> persisted = new LinkedHashMap<>();
-        for (Map.Entry<String, Map<String, Object>> e : computed.entrySet()) {
-            persisted.put(e.getKey(), deepCopyMap(e.getValue()));
+        if (matrix.draws == 0) {
+            persisted.putAll(EuromillionsMethodAnalyticsCalculator.computeAll(List.of()));
+        } else {
+            for (Map.Entry<String, Map<String, Object>> e :
+                    EuromillionsMethodAnalyticsCalculator.computeDescriptive(matrix).entrySet()) {
+                persisted.put(e.getKey(), deepCopyMap(e.getValue()));
+            }
+            persisted.put(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ,
+                    pendingMonteCarlo(sameScope ? previous : null, matrix.draws));
+            doc.setAccumulators(matrix.toAccumulators());
         }
         doc.setMethods(persisted);
         EuromillionsMethodAnalyticsDocument saved = snapshotRepository.save(doc);
-        return toDto(saved);
+        log.debug("Euromillions method-analytics {} for {} draw(s) in {} ms",
+                incremental ? "updated incrementally" : "rebuilt", matrix.draws, System.currentTimeMillis() - start);
+        scheduleMonteCarloIfStale(saved);
+        return saved;
+    }
+
+    /**
+     * Accumulateurs du snapshot complétés par les tirages postérieurs à son dernier tirage, ou {@code null} si
+     * l’historique a changé autrement (tirage inséré avant, supprimé ou déplacé) : reconstruction complète.
+     */
+    private EuromillionsMethodAnalyticsCalculator.DrawMatrix appendNewDraws(
+            EuromillionsMethodAnalyticsDocument previous, long liveCount) {
+        EuromillionsMethodAnalyticsCalculator.DrawMatrix matrix =
+                EuromillionsMethodAnalyticsCalculator.DrawMatrix.fromAccumulators(previous.getAccumulators());
+        if (matrix == null || matrix.draws != previous.getDrawCount() || matrix.lastDrawDate == null) {
+            return null;
+        }
+        List<EuromillionsDraw> added = drawRepository.findByDrawDateGreaterThanOrderByDrawDateAsc(matrix.lastDrawDate);
+        if (matrix.draws + added.size() != liveCount) {
+            return null;
+        }
+        for (EuromillionsDraw d : added) {
+            matrix.append(d);
+        }
+        return matrix;
+    }
+
+    /** Bloc Monte Carlo en attente du recalcul : dernières valeurs connues, marquées {@code pending}. */
+    private static Map<String, Object> pendingMonteCarlo(EuromillionsMethodAnalyticsDocument previous, int draws) {
+        Map<String, Object> last = previous != null && previous.getMethods() != null
+                ? previous.getMethods().get(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ)
+                : null;
+        Map<String, Object> block = last != null ? deepCopyMap(last) : new LinkedHashMap<>();
+        if (last == null) {
+            block.put("draws", draws);
+            block.put("note", "Réplications Monte Carlo en cours de calcul.");
+        }
+        block.put("pending", true);
+        return block;
+    }
+
+    /** Relance le Monte Carlo en arrière-plan si le bloc persisté ne correspond pas au snapshot. */
+    private void scheduleMonteCarloIfStale(EuromillionsMethodAnalyticsDocument doc) {
+        if (doc.getDrawCount() == 0 || doc.getMethods() == null) {
+            return;
+        }
+        Map<String, Object> monteCarlo = doc.getMethods().get(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ);
+        boolean fresh = monteCarlo != null
+                && !Boolean.TRUE.equals(monteCarlo.get("pending"))
+                && monteCarlo.get("draws") instanceof Number draws && draws.longValue() == doc.getDrawCount()
+                && monteCarlo.get("monteCarloReplications") instanceof Number reps
+                && reps.intValue() == monteCarloReplications;
+        if (fresh) {
+            return;
+        }
+        EuromillionsMethodAnalyticsCalculator.DrawMatrix matrix =
+                EuromillionsMethodAnalyticsCalculator.DrawMatrix.fromAccumulators(doc.getAccumulators());
+        if (matrix == null) {
+            return;
+        }
+        String sinceInclusive = doc.getSinceInclusive();
+        long drawCount = doc.getDrawCount();
+        String key = sinceInclusive + "|" + drawCount + "|" + monteCarloReplications;
+        if (key.equals(monteCarloScheduled.getAndSet(key))) {
+            return;
+        }
+        try {
+            monteCarloExecutor.execute(() -> runMonteCarlo(key, sinceInclusive, drawCount, matrix));
+        } catch (RejectedExecutionException e) {
+            monteCarloScheduled.compareAndSet(key, null);
+            log.warn("Euromillions Monte Carlo not scheduled: {}", e.getMessage());
+        }
+    }
+
+    private void runMonteCarlo(
+            String key, String sinceInclusive, long drawCount, EuromillionsMethodAnalyticsCalculator.DrawMatrix matrix) {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, Object> block =
+                    EuromillionsMethodAnalyticsCalculator.monteCarloBlock(matrix, monteCarloReplications);
+            synchronized (this) {
+                EuromillionsMethodAnalyticsDocument doc =
+                        snapshotRepository.findById(EuromillionsMethodAnalyticsDocument.SINGLETON_ID).orElse(null);
+                // Snapshot replaced meanwhile (new draws, other scope): its own run will fill it
+                if (doc != null && sinceInclusive.equals(doc.getSinceInclusive()) && doc.getDrawCount() == drawCount) {
+                    doc.getMethods().put(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ, deepCopyMap(block));
+                    snapshotRepository.save(doc);
+                }
+            }
+            log.debug("Euromillions Monte Carlo ({} replications, {} draws) done in {} ms",
+                    monteCarloReplications, drawCount, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Euromillions Monte Carlo failed: {}", e.getMessage());
+        } finally {
+            monteCarloScheduled.compareAndSet(key, null);
+        }
     }
 
     private static Map<String, Object> deepCopyMap(Map<String, Object> src) {
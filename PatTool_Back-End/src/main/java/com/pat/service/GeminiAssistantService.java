@@ -10,6 +10,9 @@ import com.pat.service.assistant.AssistantHttpErrorParser;
 import com.pat.service.assistant.AssistantMessageSupport;
 import com.pat.service.assistant.AssistantMessageSupport.DecodedImage;
 import com.pat.service.assistant.AssistantMessageSupport.ResolvedImage;
+import com.pat.service.assistant.AssistantSseSupport;
+import com.pat.service.assistant.AssistantSseSupport.StreamedCompletion;
+import com.pat.service.assistant.AssistantStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -109,6 +112,19 @@ public class GeminiAssistantService {
     }
 
     public AssistantChatResponseDto complete(AssistantChatRequestDto request) {
+        return complete(request, null);
+    }
+
+    /**
+     * Comme {@link #complete}, via {@code streamGenerateContent?alt=sse} en relayant les fragments à {@code stream}.
+     * Recherche web (sources, repli d’outil) et génération d’images ne sont pas diffusées : réponse complète
+     * en fin d’appel.
+     */
+    public AssistantChatResponseDto stream(AssistantChatRequestDto request, AssistantStream stream) {
+        return complete(request, stream);
+    }
+
+    private AssistantChatResponseDto complete(AssistantChatRequestDto request, AssistantStream stream) {
         if (apiKey == null || apiKey.isBlank()) {
             log.error("Gemini API key is not configured (gemini.key).");
             return AssistantChatResponseDto.err(
@@ -147,7 +163,8 @@ public class GeminiAssistantService {
 
         String requestModel = resolveRequestModel(request);
         String effectiveModel = resolveEffectiveModel(requestModel, wantImage);
-        String url = buildGenerateContentUrl(effectiveModel);
+        boolean streamed = stream != null && !wantWeb && !wantImage;
+        String url = buildGenerateContentUrl(effectiveModel, streamed);
 
         List<Map<String, Object>> contents = new ArrayList<>();
         int lastIdx = turns.size() - 1;
@@ -196,6 +213,15 @@ public class GeminiAssistantService {
             try {
                 long startNs = System.nanoTime();
                 HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+                if (streamed) {
+                    String label =
+                            assistantProviderLabel != null && !assistantProviderLabel.isBlank()
+                                    ? assistantProviderLabel.trim()
+                                    : "Google";
+                    return AssistantSseSupport.exchange(
+                                    restTemplate, objectMapper, url, entity, stream, GeminiAssistantService::onStreamChunk)
+                            .toResponse(label, effectiveModel, startNs);
+                }
                 ResponseEntity<String> response =
                         restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
                 int elapsedMs = (int) Math.min((System.nanoTime() - startNs) / 1_000_000L, Integer.MAX_VALUE);
@@ -328,14 +354,63 @@ public class GeminiAssistantService {
         return s.contains("unknown name \"google_search\"") && s.contains("tools");
     }
 
-    private String buildGenerateContentUrl(String modelId) {
+    /**
+     * Fragment {@code GenerateContentResponse} du flux SSE : texte des {@code parts}, {@code usageMetadata}
+     * (cumulée, la dernière valeur l’emporte) et blocages de sécurité.
+     */
+    private static void onStreamChunk(String event, JsonNode data, StreamedCompletion out) {
+        JsonNode err = data.get("error");
+        if (err != null && !err.isNull()) {
+            out.setError(err.path("message").asText("Erreur Gemini"));
+            return;
+        }
+        String block = data.path("promptFeedback").path("blockReason").asText("");
+        if (!block.isBlank() && !"BLOCK_REASON_UNSPECIFIED".equals(block)) {
+            out.setError("Requête Gemini bloquée (promptFeedback=" + block + ").");
+            return;
+        }
+        out.setId(data.path("responseId").asText(""));
+        out.setModel(data.path("modelVersion").asText(""));
+        JsonNode cands = data.get("candidates");
+        if (cands != null && cands.isArray() && !cands.isEmpty()) {
+            JsonNode first = cands.get(0);
+            String finish = first.path("finishReason").asText("");
+            if ("SAFETY".equals(finish) || "BLOCKLIST".equals(finish)) {
+                out.setError("Réponse Gemini bloquée pour raisons de sécurité (finishReason=" + finish + ").");
+                return;
+            }
+            out.setFinishReason(finish);
+            JsonNode parts = first.path("content").path("parts");
+            if (parts.isArray()) {
+                for (JsonNode part : parts) {
+                    out.appendText(part.path("text").asText(""));
+                }
+            }
+        }
+        JsonNode usage = data.get("usageMetadata");
+        if (usage != null && !usage.isNull()) {
+            if (usage.has("promptTokenCount")) {
+                out.setInputTokens(usage.get("promptTokenCount").asInt());
+            }
+            if (usage.has("candidatesTokenCount")) {
+                out.setOutputTokens(usage.get("candidatesTokenCount").asInt());
+            }
+        }
+    }
+
+    private String buildGenerateContentUrl(String modelId, boolean streamed) {
         String base = apiBase != null ? apiBase.trim() : "https://generativelanguage.googleapis.com/v1beta";
         if (base.endsWith("/")) {
             base = base.substring(0, base.length() - 1);
         }
         String mid = modelId != null ? modelId.trim() : "gemini-2.0-flash";
-        return UriComponentsBuilder.fromUriString(base + "/models/" + mid + ":generateContent")
-                .queryParam("key", apiKey.trim())
+        UriComponentsBuilder uri =
+                UriComponentsBuilder.fromUriString(
+                        base + "/models/" + mid + (streamed ? ":streamGenerateContent" : ":generateContent"));
+        if (streamed) {
+            uri.queryParam("alt", "sse");
+        }
+        return uri.queryParam("key", apiKey.trim())
                 .encode()
                 .build()
                 .toUriString();
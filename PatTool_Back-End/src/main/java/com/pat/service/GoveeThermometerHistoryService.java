@@ -0,0 +1,315 @@
+package com.pat.service;
+
+import com.pat.repo.domain.GoveeThermometerHistory;
+import com.pat.repo.domain.GoveeThermometerHourly;
+import com.pat.util.SeriesDownsampling;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Govee thermometer history for charts: raw samples ({@code govee_thermometer_history}, purged after
+ * {@code govee.thermometer.history.retention.days}) plus hourly min / max / average documents
+ * ({@code govee_thermometer_hourly}) kept indefinitely.
+ * <p>
+ * The scheduler adds every sample to its hour with one upsert. A range read returns the raw samples where they
+ * still exist and the hourly averages before that, downsampled per device to a point budget (LTTB on the
+ * temperature, or min / max per slot) so a year of history stays a few thousand points.
+ */
+@Service
+public class GoveeThermometerHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(GoveeThermometerHistoryService.class);
+
+    static final String HISTORY_COLLECTION = "govee_thermometer_history";
+    static final String HOURLY_COLLECTION = "govee_thermometer_hourly";
+    /** One marker document per completed one-shot migration. */
+    static final String MIGRATIONS_COLLECTION = "govee_thermometer_migrations";
+    private static final String HOURLY_MIGRATION_ID = "hourly-from-raw";
+
+    public static final int DEFAULT_POINTS = 2000;
+    public static final int MAX_POINTS = 20000;
+
+    private static final DateTimeFormatter HOUR_KEY = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+    private static final int BULK_BATCH = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /** Add one sample to the hourly document of its device and hour. */
+    public void recordHourlySample(String deviceId, String deviceName, String model,
+                                   Double temperature, Double humidity, LocalDateTime timestamp) {
+        if (deviceId == null || timestamp == null) {
+            return;
+        }
+        LocalDateTime hour = timestamp.truncatedTo(ChronoUnit.HOURS);
+        Update update = new Update()
+                .setOnInsert("deviceId", deviceId)
+                .setOnInsert("hour", hour)
+                .set("deviceName", deviceName)
+                .set("model", model)
+                .max("lastTimestamp", timestamp)
+                .inc("sampleCount", 1);
+        if (temperature != null) {
+            update.inc("temperatureCount", 1).inc("temperatureSum", temperature)
+                    .min("temperatureMin", temperature).max("temperatureMax", temperature);
+        }
+        if (humidity != null) {
+            update.inc("humidityCount", 1).inc("humiditySum", humidity)
+                    .min("humidityMin", humidity).max("humidityMax", humidity);
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(hourlyId(deviceId, hour))), update, HOURLY_COLLECTION);
+    }
+
+    /**
+     * First start with hourly documents: build them from the raw history still in the database. Gated on a
+     * marker written once the rebuild has completed (samples recorded by the scheduler in the meantime already
+     * create hourly documents, so their count says nothing about the migration); an interrupted rebuild is
+     * simply run again on the next start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                Query marker = new Query(Criteria.where("_id").is(HOURLY_MIGRATION_ID));
+                if (mongoTemplate.exists(marker, MIGRATIONS_COLLECTION)) {
+                    return;
+                }
+                if (mongoTemplate.estimatedCount(HISTORY_COLLECTION) > 0 && rebuildHourlyFromRaw() < 0) {
+                    return; // a rebuild is already running
+                }
+                mongoTemplate.upsert(marker, new Update().set("completedAt", new Date()), MIGRATIONS_COLLECTION);
+            } catch (Exception e) {
+                log.warn("Govee hourly history migration failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * (Re)build the hourly documents of every complete hour from the raw samples. Idempotent: an hour is
+     * overwritten with the values of its raw samples; hours whose raw samples were purged are left unchanged,
+     * the current hour is left to {@link #recordHourlySample}.
+     *
+     * @return number of hourly documents written, -1 when a rebuild is already running
+     */
+    public long rebuildHourlyFromRaw() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return -1;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Query query = new Query(Criteria.where("timestamp").lt(currentHour))
+                .with(Sort.by(Sort.Direction.ASC, "deviceId").and(Sort.by(Sort.Direction.ASC, "timestamp")));
+        long written = 0;
+        try (Stream<GoveeThermometerHistory> stream =
+                     mongoTemplate.stream(query, GoveeThermometerHistory.class, HISTORY_COLLECTION)) {
+            Iterator<GoveeThermometerHistory> samples = stream.iterator();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HOURLY_COLLECTION);
+            int pending = 0;
+            GoveeThermometerHourly bucket = null;
+            while (samples.hasNext()) {
+                GoveeThermometerHistory sample = samples.next();
+                if (sample.getDeviceId() == null || sample.getTimestamp() == null) {
+                    continue;
+                }
+                LocalDateTime hour = sample.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+                if (bucket == null || !bucket.getDeviceId().equals(sample.getDeviceId()) || !bucket.getHour().equals(hour)) {
+                    if (bucket != null) {
+                        bulk.upsert(new Query(Criteria.where("_id").is(bucket.getId())), replaceUpdate(bucket));
+                        written++;
+                        if (++pending >= BULK_BATCH) {
+                            bulk.execute();
+                            bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HOURLY_COLLECTION);
+                            pending = 0;
+                        }
+                    }
+                    bucket = new GoveeThermometerHourly();
+                    bucket.setId(hourlyId(sample.getDeviceId(), hour));
+                    bucket.setDeviceId(sample.getDeviceId());
+                    bucket.setHour(hour);
+                }
+                accumulate(bucket, sample);
+            }
+            if (bucket != null) {
+                bulk.upsert(new Query(Criteria.where("_id").is(bucket.getId())), replaceUpdate(bucket));
+                written++;
+                pending++;
+            }
+            if (pending > 0) {
+                bulk.execute();
+            }
+            log.info("Govee hourly history rebuilt from raw samples: {} hour(s) in {} ms",
+                    written, System.currentTimeMillis() - start);
+            return written;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * History per device over {@code [from, to]} (either may be {@code null}), at most {@code points} entries
+     * per device. Hourly documents are returned as entries holding the hour average at mid-hour, with a
+     * {@code null} id.
+     *
+     * @param mode {@code "minmax"} keeps the lowest and highest temperature of each slot, anything else uses LTTB
+     */
+    public Map<String, List<GoveeThermometerHistory>> getHistory(
+            String deviceId, LocalDateTime from, LocalDateTime to, int points, String mode) {
+        int budget = Math.max(2, Math.min(MAX_POINTS, points));
+        Criteria rawCriteria = rangeCriteria(deviceId, "timestamp", from, to);
+        Query rawQuery = new Query(rawCriteria)
+                .with(Sort.by(Sort.Direction.ASC, "deviceId").and(Sort.by(Sort.Direction.ASC, "timestamp")));
+        Map<String, List<GoveeThermometerHistory>> rawByDevice = new LinkedHashMap<>();
+        for (GoveeThermometerHistory sample : mongoTemplate.find(rawQuery, GoveeThermometerHistory.class, HISTORY_COLLECTION)) {
+            if (sample.getDeviceId() != null && sample.getTimestamp() != null) {
+                rawByDevice.computeIfAbsent(sample.getDeviceId(), k -> new ArrayList<>()).add(sample);
+            }
+        }
+
+        Query hourlyQuery = new Query(rangeCriteria(deviceId, "hour",
+                from != null ? from.truncatedTo(ChronoUnit.HOURS) : null, to))
+                .with(Sort.by(Sort.Direction.ASC, "deviceId").and(Sort.by(Sort.Direction.ASC, "hour")));
+        Map<String, List<GoveeThermometerHistory>> hourlyByDevice = new LinkedHashMap<>();
+        for (GoveeThermometerHourly hourly : mongoTemplate.find(hourlyQuery, GoveeThermometerHourly.class, HOURLY_COLLECTION)) {
+            List<GoveeThermometerHistory> raw = rawByDevice.get(hourly.getDeviceId());
+            // Hours still covered by raw samples come from the raw collection
+            if (raw != null && !hourly.getHour().isBefore(raw.get(0).getTimestamp().truncatedTo(ChronoUnit.HOURS))) {
+                continue;
+            }
+            hourlyByDevice.computeIfAbsent(hourly.getDeviceId(), k -> new ArrayList<>()).add(toEntry(hourly));
+        }
+
+        Map<String, List<GoveeThermometerHistory>> result = new LinkedHashMap<>();
+        for (String id : deviceIds(hourlyByDevice, rawByDevice)) {
+            List<GoveeThermometerHistory> series = new ArrayList<>(hourlyByDevice.getOrDefault(id, List.of()));
+            series.addAll(rawByDevice.getOrDefault(id, List.of()));
+            result.put(id, "minmax".equalsIgnoreCase(mode)
+                    ? SeriesDownsampling.minMax(series, GoveeThermometerHistoryService::epochSeconds,
+                            GoveeThermometerHistoryService::chartValue, budget)
+                    : SeriesDownsampling.lttb(series, GoveeThermometerHistoryService::epochSeconds,
+                            GoveeThermometerHistoryService::chartValue, budget));
+        }
+        return result;
+    }
+
+    /** Delete raw and hourly history of one device, or of all devices when {@code deviceId} is blank. */
+    public long clear(String deviceId) {
+        Query query = deviceId == null || deviceId.isBlank()
+                ? new Query()
+                : new Query(Criteria.where("deviceId").is(deviceId));
+        long deleted = mongoTemplate.remove(query, HISTORY_COLLECTION).getDeletedCount();
+        mongoTemplate.remove(query, HOURLY_COLLECTION);
+        return deleted;
+    }
+
+    private static void accumulate(GoveeThermometerHourly bucket, GoveeThermometerHistory sample) {
+        bucket.setDeviceName(sample.getDeviceName());
+        bucket.setModel(sample.getModel());
+        bucket.setLastTimestamp(sample.getTimestamp());
+        bucket.setSampleCount(bucket.getSampleCount() + 1);
+        Double t = sample.getTemperature();
+        if (t != null) {
+            bucket.setTemperatureCount(bucket.getTemperatureCount() + 1);
+            bucket.setTemperatureSum(bucket.getTemperatureSum() == null ? t : bucket.getTemperatureSum() + t);
+            bucket.setTemperatureMin(bucket.getTemperatureMin() == null ? t : Math.min(bucket.getTemperatureMin(), t));
+            bucket.setTemperatureMax(bucket.getTemperatureMax() == null ? t : Math.max(bucket.getTemperatureMax(), t));
+        }
+        Double h = sample.getHumidity();
+        if (h != null) {
+            bucket.setHumidityCount(bucket.getHumidityCount() + 1);
+            bucket.setHumiditySum(bucket.getHumiditySum() == null ? h : bucket.getHumiditySum() + h);
+            bucket.setHumidityMin(bucket.getHumidityMin() == null ? h : Math.min(bucket.getHumidityMin(), h));
+            bucket.setHumidityMax(bucket.getHumidityMax() == null ? h : Math.max(bucket.getHumidityMax(), h));
+        }
+    }
+
+    private static Update replaceUpdate(GoveeThermometerHourly bucket) {
+        return new Update()
+                .set("deviceId", bucket.getDeviceId())
+                .set("deviceName", bucket.getDeviceName())
+                .set("model", bucket.getModel())
+                .set("hour", bucket.getHour())
+                .set("lastTimestamp", bucket.getLastTimestamp())
+                .set("sampleCount", bucket.getSampleCount())
+                .set("temperatureCount", bucket.getTemperatureCount())
+                .set("temperatureSum", bucket.getTemperatureSum())
+                .set("temperatureMin", bucket.getTemperatureMin())
+                .set("temperatureMax", bucket.getTemperatureMax())
+                .set("humidityCount", bucket.getHumidityCount())
+                .set("humiditySum", bucket.getHumiditySum())
+                .set("humidityMin", bucket.getHumidityMin())
+                .set("humidityMax", bucket.getHumidityMax());
+    }
+
+    private static GoveeThermometerHistory toEntry(GoveeThermometerHourly hourly) {
+        GoveeThermometerHistory entry = new GoveeThermometerHistory(hourly.getDeviceId(), hourly.getDeviceName(),
+                hourly.getModel(), hourly.getTemperatureAvg(), hourly.getHumidityAvg(), null);
+        entry.setTimestamp(hourly.getHour().plusMinutes(30));
+        return entry;
+    }
+
+    private static Criteria rangeCriteria(String deviceId, String field, LocalDateTime from, LocalDateTime to) {
+        Criteria criteria = deviceId != null && !deviceId.isBlank()
+                ? Criteria.where("deviceId").is(deviceId)
+                : new Criteria();
+        if (from != null && to != null) {
+            criteria = criteria.and(field).gte(from).lte(to);
+        } else if (from != null) {
+            criteria = criteria.and(field).gte(from);
+        } else if (to != null) {
+            criteria = criteria.and(field).lte(to);
+        }
+        return criteria;
+    }
+
+    private static List<String> deviceIds(Map<String, ?> first, Map<String, ?> second) {
+        List<String> ids = new ArrayList<>(first.keySet());
+        for (String id : second.keySet()) {
+            if (!first.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static String hourlyId(String deviceId, LocalDateTime hour) {
+        return deviceId + "|" + HOUR_KEY.format(hour);
+    }
+
+    private static double epochSeconds(GoveeThermometerHistory entry) {
+        return entry.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /** Value driving the downsampling: temperature, humidity for devices without one. */
+    private static double chartValue(GoveeThermometerHistory entry) {
+        if (entry.getTemperature() != null) {
+            return entry.getTemperature();
+        }
+        return entry.getHumidity() != null ? entry.getHumidity() : 0;
+    }
+}
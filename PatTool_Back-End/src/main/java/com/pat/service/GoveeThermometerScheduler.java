@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.ResourceAccessException;
@@ -17,6 +18,7 @@ import jakarta.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Scheduled task to refresh Govee thermometers and save history to MongoDB
@@ -35,6 +37,12 @@ public class GoveeThermometerScheduler {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private GoveeThermometerHistoryService historyService;
+
+    /** Last entry written per device, so the next sample is compared without reading it back. */
+    private final Map<String, GoveeThermometerHistory> lastSavedByDevice = new ConcurrentHashMap<>();
+
     @Value("${govee.thermometer.auto.refresh.enabled:true}")
     private boolean schedulerEnabledDefault;
 
@@ -322,28 +330,30 @@ public class GoveeThermometerScheduler {
             if (temperature != null || humidity != null) {
                 // Get the last entry stored in MongoDB for this device (the one with the most recent timestamp)
                 // This is the previous measurement that we will compare with the new measurement from Govee API
-                // Using MongoTemplate with Query and limit(1) for optimal performance and reliability
-                GoveeThermometerHistory lastEntryInDb = null;
-                try {
-                    Query query = new Query(Criteria.where("deviceId").is(deviceId));
-                    query.with(org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "timestamp"));
-                    query.limit(1);
-                    List<GoveeThermometerHistory> results = mongoTemplate.find(query, GoveeThermometerHistory.class, "govee_thermometer_history");
-                    if (results != null && !results.isEmpty()) {
-                        lastEntryInDb = results.get(0);
-                        log.debug("Found last entry for device {}: timestamp={}, temp={}°C, humidity={}%, id={}", 
-                                deviceId, lastEntryInDb.getTimestamp(), 
-                                lastEntryInDb.getTemperature(), lastEntryInDb.getHumidity(), lastEntryInDb.getId());
-                    } else {
-                        log.debug("No previous entries found for device {}", deviceId);
+                // Kept in memory since the last save; read with limit(1) after a restart
+                GoveeThermometerHistory lastEntryInDb = lastSavedByDevice.get(deviceId);
+                if (lastEntryInDb == null) {
+                    try {
+                        Query query = new Query(Criteria.where("deviceId").is(deviceId));
+                        query.with(org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "timestamp"));
+                        query.limit(1);
+                        List<GoveeThermometerHistory> results = mongoTemplate.find(query, GoveeThermometerHistory.class, "govee_thermometer_history");
+                        if (results != null && !results.isEmpty()) {
+                            lastEntryInDb = results.get(0);
+                            log.debug("Found last entry for device {}: timestamp={}, temp={}°C, humidity={}%, id={}", 
+                                    deviceId, lastEntryInDb.getTimestamp(), 
+                                    lastEntryInDb.getTemperature(), lastEntryInDb.getHumidity(), lastEntryInDb.getId());
+                        } else {
+                            log.debug("No previous entries found for device {}", deviceId);
+                        }
+                    } catch (Exception e) {
+                        log.error("Error fetching last entry for device {}: {}", deviceId, e.getMessage(), e);
                     }
-                } catch (Exception e) {
-                    log.error("Error fetching last entry for device {}: {}", deviceId, e.getMessage(), e);
                 }
                 
                 // Compare the new measurement (from Govee API, with current timestamp) 
                 // with the last entry in MongoDB (previous measurement)
-                // If values are equal (rounded to 2 decimals), we will delete the old entry and save the new one
+                // If values are equal (rounded to 2 decimals), the old entry is moved to the new timestamp
                 boolean valuesAreEqual = false;
                 if (lastEntryInDb != null) {
                     // Compare temperature from new Govee measurement with last entry in MongoDB (rounded to 2 decimals)
@@ -385,55 +395,58 @@ public class GoveeThermometerScheduler {
                     log.debug("Values comparison result for device {}: tempMatch={}, humMatch={}, valuesAreEqual={}", 
                             deviceId, tempMatches, humMatches, valuesAreEqual);
                     
-                    // If values are equal: delete the old entry in MongoDB before saving the new measurement with current timestamp
-                    if (valuesAreEqual) {
-                        String oldEntryId = lastEntryInDb.getId();
-                        if (oldEntryId == null || oldEntryId.isEmpty()) {
-                            log.error("Cannot delete last entry for device {}: ID is null or empty", deviceId);
-                        } else {
-                            java.time.LocalDateTime oldTimestamp = lastEntryInDb.getTimestamp();
-                            try {
-                                historyRepository.deleteById(oldEntryId);
-                                log.debug("Successfully deleted last entry in MongoDB for device {} (same values: temp={}°C, humidity={}%, old timestamp={}, old id={}) - will replace with new measurement from Govee", 
-                                        deviceId, temperature, humidity, oldTimestamp, oldEntryId);
-                            } catch (Exception deleteEx) {
-                                log.error("Failed to delete last entry for device {} with id {}: {}", 
-                                        deviceId, oldEntryId, deleteEx.getMessage(), deleteEx);
-                            }
-                        }
-                    } else {
+                    if (!valuesAreEqual) {
                         log.debug("Values are different for device {}, keeping old entry and adding new one", deviceId);
                     }
                 } else {
                     log.debug("No previous entry found for device {}, will add new entry", deviceId);
                 }
-                
-                // Always save the new measurement from Govee API with current timestamp
-                // Create new measurement object (without ID to ensure it's a new document)
-                GoveeThermometerHistory newMeasurement = new GoveeThermometerHistory();
-                newMeasurement.setDeviceId(deviceId);
-                newMeasurement.setDeviceName(deviceName != null ? deviceName : "Unknown Device");
-                newMeasurement.setModel(model != null ? model : "Unknown Model");
-                newMeasurement.setTemperature(temperature);  // New temperature from Govee API
-                newMeasurement.setHumidity(humidity);          // New humidity from Govee API
-                newMeasurement.setOnline(online);
-                
-                // Ensure ID is null so MongoDB creates a new document (not update existing)
-                newMeasurement.setId(null);
-                
-                // Explicitly set timestamp to current time to ensure it's always updated
-                // This is the timestamp of the measurement taken from Govee API right now
+
+                // Timestamp of the measurement taken from Govee API right now
                 java.time.LocalDateTime currentTimestamp = java.time.LocalDateTime.now();
-                newMeasurement.setTimestamp(currentTimestamp);
-                
-                log.debug("About to save new measurement: device={}, temp={}°C, humidity={}%, timestamp={}, id={}", 
-                        deviceId, temperature, humidity, currentTimestamp, newMeasurement.getId());
-                
-                historyRepository.save(newMeasurement);
-                
-                log.debug("Saved new measurement from Govee API: device={}, temp={}°C, humidity={}%, timestamp={}, id={}{}", 
-                        deviceId, temperature, humidity, newMeasurement.getTimestamp(), newMeasurement.getId(),
-                        valuesAreEqual ? " (replaced old entry with same values)" : " (added as new entry)");
+                String name = deviceName != null ? deviceName : "Unknown Device";
+                String modelName = model != null ? model : "Unknown Model";
+
+                // Same values as the last entry: move that entry to the current timestamp (one update instead of
+                // delete + insert); it may be gone (history cleared), then the measurement is inserted
+                boolean updatedInPlace = false;
+                if (valuesAreEqual && lastEntryInDb.getId() != null && !lastEntryInDb.getId().isEmpty()) {
+                    updatedInPlace = mongoTemplate.updateFirst(
+                            new Query(Criteria.where("_id").is(lastEntryInDb.getId())),
+                            new Update().set("timestamp", currentTimestamp).set("online", online)
+                                    .set("deviceName", name).set("model", modelName),
+                            GoveeThermometerHistory.class, "govee_thermometer_history").getMatchedCount() > 0;
+                }
+                GoveeThermometerHistory saved;
+                if (updatedInPlace) {
+                    saved = lastEntryInDb;
+                    saved.setTimestamp(currentTimestamp);
+                    saved.setOnline(online);
+                } else {
+                    // Create new measurement object (without ID to ensure it's a new document)
+                    saved = new GoveeThermometerHistory();
+                    saved.setDeviceId(deviceId);
+                    saved.setDeviceName(name);
+                    saved.setModel(modelName);
+                    saved.setTemperature(temperature);  // New temperature from Govee API
+                    saved.setHumidity(humidity);          // New humidity from Govee API
+                    saved.setOnline(online);
+                    saved.setId(null);
+                    saved.setTimestamp(currentTimestamp);
+                    historyRepository.save(saved);
+                }
+                lastSavedByDevice.put(deviceId, saved);
+
+                log.debug("Saved new measurement from Govee API: device={}, temp={}°C, humidity={}%, timestamp={}, id={}{}",
+                        deviceId, temperature, humidity, currentTimestamp, saved.getId(),
+                        updatedInPlace ? " (moved last entry with same values)" : " (added as new entry)");
+
+                // Every sample counts in the hourly min / max / average, collapsed or not
+                try {
+                    historyService.recordHourlySample(deviceId, name, modelName, temperature, humidity, currentTimestamp);
+                } catch (Exception e) {
+                    log.warn("Could not update hourly thermometer history for device {}: {}", deviceId, e.getMessage());
+                }
             }
         } catch (Exception e) {
             log.error("Error saving thermometer history for device {}: {}", 
@@ -0,0 +1,339 @@
+package com.pat.service;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Content addressing for the event files stored in GridFS.
+ * <p>
+ * Every event upload is stored with the SHA-256 of its bytes in {@code metadata.sha256}; when a file with the same
+ * digest and length already exists the new copy is dropped and the existing {@code _id} is returned, so the same
+ * photo attached to several events shares one set of chunks (and one wall-preview cache entry). Compressed uploads
+ * also record the digest of the original in {@code metadata.sourceSha256}, which lets a re-upload skip compression.
+ * <p>
+ * The reference count of a file is the number of events whose {@code fileUploadeds} (or thumbnail) point at it,
+ * queried when a file is removed rather than stored: events are saved as whole documents all over the code base,
+ * a stored counter would drift. {@link #mergeDuplicates()} deduplicates files stored before this existed; for the
+ * same reason a merged copy is only marked ({@code metadata.mergedInto}) and deleted by a later run, once an event
+ * save that was in flight during the merge can no longer write it back.
+ */
+@Service
+public class GridFsDeduplicationService {
+
+    private static final Logger log = LoggerFactory.getLogger(GridFsDeduplicationService.class);
+
+    public static final String SHA256 = "sha256";
+    public static final String SOURCE_SHA256 = "sourceSha256";
+    /** {@code app.imagemaxsizekb} a compressed file was produced with: other settings give other bytes. */
+    public static final String COMPRESSED_MAX_KB = "compressedMaxKb";
+    /** Copy repointed to an older identical file, deleted by a later merge run once unreferenced. */
+    public static final String MERGED_INTO = "mergedInto";
+    private static final String MERGED_AT = "mergedAt";
+    /** Minimum age of a merge mark before the copy may be deleted (event saves in flight have landed). */
+    private static final long MERGE_GRACE_MS = 60L * 60L * 1000L;
+
+    private static final String FILES_COLLECTION = "fs.files";
+    private static final String EVENTS_COLLECTION = "evenements";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${app.gridfs.dedup.enabled:true}")
+    private boolean enabled;
+
+    /** Upper bound of bytes read to hash older files in one {@link #mergeDuplicates()} run. */
+    @Value("${app.gridfs.dedup.hash-budget-mb:4096}")
+    private long hashBudgetMb;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private GridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private ImageCompressionService imageCompressionService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicBoolean merging = new AtomicBoolean();
+
+    /**
+     * Published after events were repointed from {@code duplicate} to {@code keeper} with a direct update: unlike
+     * repository saves, such updates raise no mapping events for the caches built from event documents.
+     */
+    public record EventFilesRepointed(String duplicate, String keeper) {
+    }
+
+    /**
+     * Store {@code content} unless identical bytes are already in GridFS.
+     *
+     * @return the {@code _id} (hex) of the stored or of the existing identical file
+     */
+    public String store(InputStream content, String filename, String contentType, Document metadata) throws IOException {
+        DigestInputStream digestStream = new DigestInputStream(content, newDigest());
+        Document meta = metadata != null ? new Document(metadata) : new Document();
+        ObjectId storedId = gridFsTemplate.store(digestStream, filename, contentType, meta);
+        String sha256 = HexFormat.of().formatHex(digestStream.getMessageDigest().digest());
+        if (!enabled) {
+            setDigest(storedId, sha256);
+            return storedId.toHexString();
+        }
+        GridFSFile stored = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(storedId)));
+        long length = stored != null ? stored.getLength() : -1;
+        String existing = findByContent(sha256, length);
+        if (existing != null && !existing.equals(storedId.toHexString())) {
+            gridFsTemplate.delete(new Query(Criteria.where("_id").is(storedId)));
+            log.debug("[DEDUP] {} ({} bytes) already stored as {}, new copy dropped", filename, length, existing);
+            return existing;
+        }
+        setDigest(storedId, sha256);
+        return storedId.toHexString();
+    }
+
+    /** Oldest file with these bytes, or {@code null}. */
+    public String findByContent(String sha256, long length) {
+        if (!enabled || sha256 == null) {
+            return null;
+        }
+        Query query = new Query(Criteria.where("metadata." + SHA256).is(sha256).and("length").is(length)
+                        .and("metadata." + MERGED_INTO).exists(false))
+                .with(Sort.by(Sort.Direction.ASC, "uploadDate"));
+        query.fields().include("_id");
+        Document found = mongoTemplate.findOne(query, Document.class, FILES_COLLECTION);
+        return found != null ? idOf(found.get("_id")) : null;
+    }
+
+    /** A file compressed from the bytes with digest {@code sourceSha256} with the given settings, or {@code null}. */
+    public String findCompressed(String sourceSha256, int maxSizeKb) {
+        if (!enabled || sourceSha256 == null) {
+            return null;
+        }
+        Query query = new Query(Criteria.where("metadata." + SOURCE_SHA256).is(sourceSha256)
+                .and("metadata." + COMPRESSED_MAX_KB).is(maxSizeKb)
+                .and("metadata." + MERGED_INTO).exists(false))
+                .with(Sort.by(Sort.Direction.ASC, "uploadDate"));
+        query.fields().include("_id");
+        Document found = mongoTemplate.findOne(query, Document.class, FILES_COLLECTION);
+        return found != null ? idOf(found.get("_id")) : null;
+    }
+
+    /** Number of events pointing at {@code fileId} (file list or thumbnail), {@code excludeEvenementId} aside. */
+    public long countReferences(String fileId, String excludeEvenementId) {
+        Criteria criteria = new Criteria().orOperator(
+                Criteria.where("fileUploadeds.fieldId").is(fileId),
+                Criteria.where("thumbnail.fieldId").is(fileId));
+        if (excludeEvenementId != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("_id").ne(toId(excludeEvenementId)));
+        }
+        return mongoTemplate.count(new Query(criteria), EVENTS_COLLECTION);
+    }
+
+    /**
+     * Offline pass: deletes the copies merged by an earlier run that no event uses any more, hashes event files
+     * stored without a digest (within {@code app.gridfs.dedup.hash-budget-mb}), then points every event at the
+     * oldest copy of each set of identical files and marks the other copies for a later run.
+     * An event that already holds both copies keeps them (one event must not list the same file twice).
+     */
+    public Map<String, Object> mergeDuplicates() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!enabled || !merging.compareAndSet(false, true)) {
+            result.put("skipped", true);
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            long[] reclaimed = dropMergedCopies();
+            int hashed = hashMissingDigests();
+            int groups = 0;
+            int merged = 0;
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("metadata." + SHA256).exists(true)),
+                    Aggregation.sort(Sort.by(Sort.Direction.ASC, "uploadDate")),
+                    Aggregation.group("metadata." + SHA256, "length").push("_id").as("ids").count().as("count"),
+                    Aggregation.match(Criteria.where("count").gt(1))
+            ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+            for (Document group : mongoTemplate.aggregate(aggregation, FILES_COLLECTION, Document.class)) {
+                groups++;
+                List<?> ids = group.getList("ids", Object.class);
+                // Only event files are merged: other GridFS users (recordings, …) keep their copies
+                String keeper = null;
+                for (Object rawId : ids) {
+                    String id = idOf(rawId);
+                    if (countReferences(id, null) == 0) {
+                        continue;
+                    }
+                    if (keeper == null) {
+                        keeper = id; // oldest copy used by an event
+                        continue;
+                    }
+                    repoint(id, keeper);
+                    // Not deleted yet: a whole-event save read before the repoint may still write this id back
+                    if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(rawId)
+                                            .and("metadata." + MERGED_INTO).exists(false)),
+                                    new Update().set("metadata." + MERGED_INTO, keeper)
+                                            .set("metadata." + MERGED_AT, new Date()),
+                                    FILES_COLLECTION)
+                            .getModifiedCount() > 0) {
+                        merged++;
+                    }
+                }
+            }
+            result.put("hashed", hashed);
+            result.put("duplicateGroups", groups);
+            result.put("filesMerged", merged);
+            result.put("filesDeleted", reclaimed[0]);
+            result.put("reclaimedBytes", reclaimed[1]);
+            result.put("durationMs", System.currentTimeMillis() - start);
+            log.info("[DEDUP] GridFS merge: {} file(s) hashed, {} duplicate group(s), {} file(s) merged, {} earlier copies deleted ({} MB) in {} ms",
+                    hashed, groups, merged, reclaimed[0], reclaimed[1] / (1024 * 1024), System.currentTimeMillis() - start);
+            return result;
+        } finally {
+            merging.set(false);
+        }
+    }
+
+    /**
+     * Copies marked by an earlier run (at least {@link #MERGE_GRACE_MS} ago): deleted when no event uses them,
+     * otherwise repointed again (an in-flight save wrote them back) and left for the next run.
+     *
+     * @return number of files deleted and their total length
+     */
+    private long[] dropMergedCopies() {
+        Query marked = new Query(Criteria.where("metadata." + MERGED_INTO).exists(true)
+                .and("metadata." + MERGED_AT).lt(new Date(System.currentTimeMillis() - MERGE_GRACE_MS)));
+        marked.fields().include("_id").include("length").include("metadata." + MERGED_INTO);
+        long deleted = 0;
+        long bytes = 0;
+        for (Document copy : mongoTemplate.find(marked, Document.class, FILES_COLLECTION)) {
+            String id = idOf(copy.get("_id"));
+            Document metadata = copy.get("metadata", Document.class);
+            String keeper = metadata != null ? metadata.getString(MERGED_INTO) : null;
+            if (countReferences(id, null) == 0) {
+                gridFsTemplate.delete(new Query(Criteria.where("_id").is(copy.get("_id"))));
+                imageCompressionService.evictWallPreviews(id);
+                deleted++;
+                bytes += copy.get("length") instanceof Number n ? n.longValue() : 0L;
+            } else if (keeper != null) {
+                repoint(id, keeper);
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(copy.get("_id"))),
+                        new Update().set("metadata." + MERGED_AT, new Date()), FILES_COLLECTION);
+            }
+        }
+        return new long[]{deleted, bytes};
+    }
+
+    /** Point the events using {@code duplicate} at {@code keeper}, except those already holding {@code keeper}. */
+    private void repoint(String duplicate, String keeper) {
+        long modified = mongoTemplate.updateMulti(
+                new Query(new Criteria().andOperator(
+                        Criteria.where("fileUploadeds.fieldId").is(duplicate),
+                        Criteria.where("fileUploadeds.fieldId").ne(keeper))),
+                new Update().set("fileUploadeds.$[f].fieldId", keeper)
+                        .filterArray(Criteria.where("f.fieldId").is(duplicate)),
+                EVENTS_COLLECTION).getModifiedCount();
+        modified += mongoTemplate.updateMulti(
+                new Query(Criteria.where("thumbnail.fieldId").is(duplicate)),
+                new Update().set("thumbnail.fieldId", keeper),
+                EVENTS_COLLECTION).getModifiedCount();
+        if (modified > 0) {
+            eventPublisher.publishEvent(new EventFilesRepointed(duplicate, keeper));
+        }
+    }
+
+    private int hashMissingDigests() {
+        long budget = Math.max(0L, hashBudgetMb) * 1024L * 1024L;
+        // Files of other GridFS users (HLS renditions, TV recordings, assistant images) are never event files
+        Query missing = new Query(Criteria.where("metadata." + SHA256).exists(false)
+                        .and("metadata." + VideoTranscodingService.HLS_OF).exists(false)
+                        .and("metadata.kind").exists(false)
+                        .and("metadata." + AssistantConversationAssetService.GRIDFS_OWNER_FIELD).exists(false))
+                .with(Sort.by(Sort.Direction.ASC, "uploadDate"));
+        missing.fields().include("_id").include("length");
+        List<Document> candidates = new ArrayList<>(mongoTemplate.find(missing, Document.class, FILES_COLLECTION));
+        int hashed = 0;
+        for (Document candidate : candidates) {
+            long length = candidate.get("length") instanceof Number n ? n.longValue() : 0L;
+            if (length > budget) {
+                break;
+            }
+            String id = idOf(candidate.get("_id"));
+            if (countReferences(id, null) == 0) {
+                continue; // not an event file
+            }
+            GridFSFile file = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(candidate.get("_id"))));
+            if (file == null) {
+                continue;
+            }
+            try (InputStream in = gridFsTemplate.getResource(file).getInputStream()) {
+                MessageDigest digest = newDigest();
+                byte[] buffer = new byte[HASH_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(candidate.get("_id"))),
+                        new Update().set("metadata." + SHA256, HexFormat.of().formatHex(digest.digest())),
+                        FILES_COLLECTION);
+                budget -= length;
+                hashed++;
+            } catch (IOException e) {
+                log.warn("[DEDUP] Could not hash GridFS file {}: {}", id, e.getMessage());
+            }
+        }
+        return hashed;
+    }
+
+    private void setDigest(ObjectId fileId, String sha256) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(fileId)),
+                new Update().set("metadata." + SHA256, sha256), FILES_COLLECTION);
+    }
+
+    private static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static String idOf(Object id) {
+        return id instanceof ObjectId oid ? oid.toHexString() : String.valueOf(id);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Hex SHA-256 of {@code data}. */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+}
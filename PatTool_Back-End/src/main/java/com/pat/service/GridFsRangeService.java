@@ -0,0 +1,372 @@
+package com.pat.service;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * HTTP caching and byte-range helpers for GridFS files.
+ * <p>
+ * Ranges are served straight from {@code fs.chunks}: only the chunks overlapping the requested
+ * bytes are queried, so seeking in a large video never re-reads the beginning of the file.
+ * ETags are strong and derived from the GridFS {@code _id} and length (GridFS files are immutable).
+ */
+@Service
+public class GridFsRangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(GridFsRangeService.class);
+
+    /** Default GridFS bucket used by {@link org.springframework.data.mongodb.gridfs.GridFsTemplate}. */
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+
+    /** Chunks are 255 KB by default: a few per batch keeps the cursor buffer small. */
+    private static final int CHUNK_BATCH_SIZE = 4;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * One resolved byte range (inclusive bounds) of a GridFS file.
+     */
+    public static final class ByteSpan {
+        private final long start;
+        private final long end;
+
+        public ByteSpan(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Multi-range body ({@code multipart/byteranges}) ready to be streamed.
+     */
+    public static final class MultipartRangeBody {
+        private final String boundary;
+        private final long contentLength;
+        private final InputStream stream;
+
+        MultipartRangeBody(String boundary, long contentLength, InputStream stream) {
+            this.boundary = boundary;
+            this.contentLength = contentLength;
+            this.stream = stream;
+        }
+
+        public String getBoundary() {
+            return boundary;
+        }
+
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        public InputStream getStream() {
+            return stream;
+        }
+    }
+
+    /**
+     * Strong ETag for a GridFS file: {@code "<objectId>-<hex length>"}.
+     * An optional variant suffix distinguishes derived representations (e.g. wall previews).
+     */
+    public String strongEtag(GridFSFile file, String variant) {
+        String id = file.getObjectId() != null ? file.getObjectId().toHexString() : String.valueOf(file.getId());
+        StringBuilder sb = new StringBuilder(48).append('"').append(id).append('-').append(Long.toHexString(file.getLength()));
+        if (variant != null && !variant.isEmpty()) {
+            sb.append('-').append(variant);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Last-Modified value (epoch ms, truncated to seconds as sent over HTTP), or -1 when unknown.
+     */
+    public long lastModified(GridFSFile file) {
+        Date uploadDate = file.getUploadDate();
+        return uploadDate != null ? (uploadDate.getTime() / 1000L) * 1000L : -1L;
+    }
+
+    /**
+     * RFC 9110 conditional GET: {@code If-None-Match} wins over {@code If-Modified-Since}.
+     *
+     * @param ifModifiedSince epoch ms parsed from the request header, or -1 when absent
+     */
+    public boolean isNotModified(String etag, long lastModified, String ifNoneMatch, long ifModifiedSince) {
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            return etagListMatches(ifNoneMatch, etag, true);
+        }
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * {@code If-Range}: the Range header only applies when the validator still matches.
+     * Strong comparison for ETags, exact date for Last-Modified.
+     *
+     * @param ifRangeDate epoch ms when the header carries a date, or -1
+     */
+    public boolean ifRangeMatches(String ifRange, long ifRangeDate, String etag, long lastModified) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return etagListMatches(value, etag, false);
+        }
+        return ifRangeDate >= 0 && lastModified >= 0 && ifRangeDate == lastModified;
+    }
+
+    private static boolean etagListMatches(String header, String etag, boolean weakComparison) {
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if ("*".equals(c)) {
+                return true;
+            }
+            if (c.startsWith("W/")) {
+                if (!weakComparison) {
+                    continue;
+                }
+                c = c.substring(2);
+            }
+            if (c.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a {@code Range} header against the file length.
+     *
+     * @return resolved spans, or {@code null} when the header is unusable and the full body should be sent
+     * @throws IllegalArgumentException when the ranges are syntactically valid but not satisfiable (416)
+     */
+    public List<ByteSpan> resolveRanges(String rangeHeader, long fileLength) {
+        if (rangeHeader == null || !rangeHeader.trim().startsWith("bytes=")) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed Range header '{}': {}", rangeHeader, e.getMessage());
+            return null;
+        }
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        List<ByteSpan> spans = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(fileLength);
+            long end = range.getRangeEnd(fileLength);
+            if (fileLength <= 0 || start >= fileLength || start > end) {
+                continue;
+            }
+            spans.add(new ByteSpan(start, end));
+            total += end - start + 1;
+        }
+        if (spans.isEmpty()) {
+            throw new IllegalArgumentException("No satisfiable range in '" + rangeHeader + "' for length " + fileLength);
+        }
+        if (spans.size() > 1 && total > fileLength) {
+            // Overlapping ranges that add up to more than the file are a classic amplification trick.
+            throw new IllegalArgumentException("Requested ranges exceed content length " + fileLength);
+        }
+        return spans;
+    }
+
+    /**
+     * Stream {@code [start, end]} (inclusive) of a GridFS file, reading only the chunks that cover it.
+     */
+    public InputStream openRange(GridFSFile file, long start, long end) {
+        int chunkSize = file.getChunkSize();
+        if (chunkSize <= 0) {
+            throw new IllegalStateException("Invalid GridFS chunk size for " + file.getId());
+        }
+        int firstChunk = (int) (start / chunkSize);
+        int lastChunk = (int) (end / chunkSize);
+        int skipInFirst = (int) (start - (long) firstChunk * chunkSize);
+        return new ChunkRangeInputStream(file, firstChunk, lastChunk, skipInFirst, end - start + 1);
+    }
+
+    /**
+     * Build a {@code multipart/byteranges} body; each part opens its chunk cursor only when reached.
+     */
+    public MultipartRangeBody openMultipartRanges(GridFSFile file, List<ByteSpan> spans, String contentType) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        long length = file.getLength();
+        List<byte[]> partHeaders = new ArrayList<>(spans.size());
+        long contentLength = 0;
+        for (int i = 0; i < spans.size(); i++) {
+            ByteSpan span = spans.get(i);
+            String header = (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + span.getStart() + "-" + span.getEnd() + "/" + length + "\r\n\r\n";
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            contentLength += headerBytes.length + span.length();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private int index = 0; // even = header, odd = body, 2*n = trailer
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= spans.size() * 2;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                int i = index++;
+                if (i == spans.size() * 2) {
+                    return new ByteArrayInputStream(trailer);
+                }
+                ByteSpan span = spans.get(i / 2);
+                return (i % 2 == 0)
+                        ? new ByteArrayInputStream(partHeaders.get(i / 2))
+                        : openRange(file, span.getStart(), span.getEnd());
+            }
+        };
+        return new MultipartRangeBody(boundary, contentLength, new SequenceInputStream(parts));
+    }
+
+    /**
+     * Reads chunks {@code n in [firstChunk, lastChunk]} of one file in order, trimming the first and last.
+     * The cursor is opened lazily so a response that is never written costs no chunk reads.
+     */
+    private final class ChunkRangeInputStream extends InputStream {
+        private final GridFSFile file;
+        private final int firstChunk;
+        private final int lastChunk;
+        private int skipInFirst;
+        private long remaining;
+        private MongoCursor<Document> cursor;
+        private int expectedChunk;
+        private byte[] buffer;
+        private int bufferPos;
+        private boolean closed;
+
+        ChunkRangeInputStream(GridFSFile file, int firstChunk, int lastChunk, int skipInFirst, long length) {
+            this.file = file;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.skipInFirst = skipInFirst;
+            this.remaining = length;
+            this.expectedChunk = firstChunk;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n <= 0 ? -1 : (one[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            while (buffer == null || bufferPos >= buffer.length) {
+                if (!nextChunk()) {
+                    throw new IOException("GridFS file " + file.getId() + " is missing chunk " + expectedChunk);
+                }
+            }
+            int n = (int) Math.min(Math.min(len, buffer.length - bufferPos), remaining);
+            System.arraycopy(buffer, bufferPos, b, off, n);
+            bufferPos += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer == null ? 0 : (int) Math.min(buffer.length - bufferPos, remaining);
+        }
+
+        private boolean nextChunk() {
+            if (cursor == null) {
+                MongoCollection<Document> chunks = mongoTemplate.getCollection(CHUNKS_COLLECTION);
+                FindIterable<Document> found = chunks.find(Filters.and(
+                                Filters.eq("files_id", file.getId()),
+                                Filters.gte("n", firstChunk),
+                                Filters.lte("n", lastChunk)))
+                        .projection(Projections.include("n", "data"))
+                        .sort(Sorts.ascending("n"))
+                        .batchSize(CHUNK_BATCH_SIZE);
+                cursor = found.iterator();
+            }
+            if (!cursor.hasNext()) {
+                return false;
+            }
+            Document chunk = cursor.next();
+            Number n = chunk.get("n", Number.class);
+            if (n == null || n.intValue() != expectedChunk) {
+                return false;
+            }
+            expectedChunk++;
+            Binary data = chunk.get("data", Binary.class);
+            buffer = data != null ? data.getData() : new byte[0];
+            bufferPos = Math.min(skipInFirst, buffer.length);
+            skipInFirst = 0;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            buffer = null;
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+}
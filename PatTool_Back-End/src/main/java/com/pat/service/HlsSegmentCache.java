@@ -0,0 +1,301 @@
+package com.pat.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Shared RAM cache for proxied HLS responses (playlists and media segments), keyed by upstream URL.
+ * <ul>
+ *   <li>byte-bounded LRU;</li>
+ *   <li>TTLs derived from the playlist: a live media playlist lives half a target duration, its segments three
+ *       target durations (they leave the sliding window after that);</li>
+ *   <li>single flight: concurrent requests for the same URL wait for one upstream fetch;</li>
+ *   <li>playlist bookkeeping so callers can prefetch the segments after the one a viewer just asked for.</li>
+ * </ul>
+ * A channel is thus fetched once from upstream however many viewers watch it.
+ */
+final class HlsSegmentCache<V> {
+
+    private static final long MIN_SEGMENT_TTL_MS = 10_000L;
+    private static final long MAX_SEGMENT_TTL_MS = 120_000L;
+    private static final long MASTER_PLAYLIST_TTL_MS = 30_000L;
+    private static final long VOD_PLAYLIST_TTL_MS = 60_000L;
+    /** Playlists not refreshed for that long are forgotten (viewers left). */
+    private static final long PLAYLIST_IDLE_MS = 5 * 60_000L;
+    private static final int MAX_PLAYLISTS = 64;
+    /** hls.js {@code liveSyncDurationCount}: a new live viewer starts three segments behind the edge. */
+    private static final int LIVE_EDGE_SEGMENTS = 3;
+
+    private record Entry<V>(V value, long weight, long expiresAtMs) {
+    }
+
+    /** Segments of one media playlist, in order. */
+    private static final class PlaylistInfo {
+        volatile List<String> segments = List.of();
+        volatile long targetDurationMs;
+        volatile boolean live = true;
+        volatile String lastRequested;
+        volatile long updatedAtMs;
+    }
+
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PlaylistInfo> playlists = new ConcurrentHashMap<>();
+    /** segment URL → playlist listing it */
+    private final ConcurrentHashMap<String, PlaylistInfo> listings = new ConcurrentHashMap<>();
+
+    HlsSegmentCache(long maxBytes, ToLongFunction<V> weigher) {
+        this.maxBytes = Math.max(1L, maxBytes);
+        this.weigher = weigher;
+    }
+
+    /** Fresh cached value, or {@code null}. */
+    V getIfFresh(String url) {
+        synchronized (this) {
+            Entry<V> entry = entries.get(url);
+            if (entry != null && System.currentTimeMillis() < entry.expiresAtMs()) {
+                return entry.value();
+            }
+            if (entry != null) {
+                entries.remove(url);
+                bytes -= entry.weight();
+            }
+            return null;
+        }
+    }
+
+    synchronized boolean containsFresh(String url) {
+        Entry<V> entry = entries.get(url);
+        return entry != null && System.currentTimeMillis() < entry.expiresAtMs();
+    }
+
+    void put(String url, V value, long ttlMs) {
+        if (url == null || value == null || ttlMs <= 0) {
+            return;
+        }
+        long weight = Math.max(0L, weigher.applyAsLong(value));
+        if (weight > maxBytes / 4) {
+            return; // one huge body must not flush every channel
+        }
+        synchronized (this) {
+            Entry<V> previous = entries.put(url, new Entry<>(value, weight, System.currentTimeMillis() + ttlMs));
+            if (previous != null) {
+                bytes -= previous.weight();
+            }
+            bytes += weight;
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+            while (it.hasNext() && bytes > maxBytes) {
+                Map.Entry<String, Entry<V>> eldest = it.next();
+                if (eldest.getKey().equals(url) && eldest.getValue().expiresAtMs() > now) {
+                    continue;
+                }
+                bytes -= eldest.getValue().weight();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs {@code loader} once for concurrent callers of the same URL; the others wait (bounded by
+     * {@code timeoutMs}) and get the same result.
+     */
+    V load(String url, Callable<V> loader, long timeoutMs) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(url, mine);
+        if (running != null) {
+            try {
+                return running.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            V value = loader.call();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(url, mine);
+        }
+    }
+
+    boolean isLoading(String url) {
+        return inFlight.containsKey(url);
+    }
+
+    /**
+     * Records a fetched playlist: media playlists register their segments (for TTLs and prefetch).
+     *
+     * @param playlistUrl cache key of the playlist
+     * @param baseUrl     URL relative segment URIs resolve against (after redirects)
+     * @return how long the playlist itself may be served from cache
+     */
+    long onPlaylist(String playlistUrl, String rawPlaylist, String baseUrl) {
+        if (rawPlaylist == null) {
+            return 0;
+        }
+        long targetMs = targetDurationMs(rawPlaylist);
+        boolean vod = rawPlaylist.contains("#EXT-X-ENDLIST");
+        if (targetMs <= 0) {
+            // master / multivariant playlist: nothing to register
+            return rawPlaylist.contains("#EXT-X-STREAM-INF") ? MASTER_PLAYLIST_TTL_MS : 0;
+        }
+        List<String> segments = segmentUrls(rawPlaylist, baseUrl);
+        PlaylistInfo info = playlists.computeIfAbsent(playlistUrl, k -> new PlaylistInfo());
+        List<String> previous = info.segments;
+        info.segments = segments;
+        info.targetDurationMs = targetMs;
+        info.live = !vod;
+        info.updatedAtMs = System.currentTimeMillis();
+        for (String segment : segments) {
+            listings.put(segment, info);
+        }
+        if (!previous.isEmpty()) {
+            java.util.Set<String> current = new java.util.HashSet<>(segments);
+            for (String old : previous) {
+                if (!current.contains(old)) {
+                    listings.remove(old, info);
+                }
+            }
+        }
+        forgetIdlePlaylists();
+        return vod ? VOD_PLAYLIST_TTL_MS : Math.max(1_000L, Math.min(6_000L, targetMs / 2));
+    }
+
+    /** TTL for a segment listed in a known playlist; {@code 0} if the URL is not a known segment. */
+    long segmentTtlMs(String url) {
+        PlaylistInfo info = listings.get(url);
+        if (info == null) {
+            return 0;
+        }
+        if (!info.live) {
+            return MAX_SEGMENT_TTL_MS;
+        }
+        return Math.max(MIN_SEGMENT_TTL_MS, Math.min(MAX_SEGMENT_TTL_MS, 3 * info.targetDurationMs));
+    }
+
+    boolean isKnownSegment(String url) {
+        return listings.containsKey(url);
+    }
+
+    /** Notes that a viewer asked for {@code segmentUrl} and returns up to {@code count} following segments. */
+    List<String> segmentsAfter(String segmentUrl, int count) {
+        PlaylistInfo info = listings.get(segmentUrl);
+        if (info == null || count <= 0) {
+            return List.of();
+        }
+        info.lastRequested = segmentUrl;
+        List<String> segments = info.segments;
+        int index = segments.indexOf(segmentUrl);
+        if (index < 0) {
+            return List.of();
+        }
+        return new ArrayList<>(segments.subList(index + 1, Math.min(segments.size(), index + 1 + count)));
+    }
+
+    /**
+     * Segments to warm after a playlist refresh: those after the last one a viewer fetched, or the live-edge
+     * start for a playlist nobody has played yet.
+     */
+    List<String> prefetchCandidates(String playlistUrl, int count) {
+        PlaylistInfo info = playlists.get(playlistUrl);
+        if (info == null || count <= 0) {
+            return List.of();
+        }
+        List<String> segments = info.segments;
+        String last = info.lastRequested;
+        int from = last != null ? segments.indexOf(last) + 1 : -1;
+        if (from <= 0) {
+            if (!info.live) {
+                return last == null ? new ArrayList<>(segments.subList(0, Math.min(segments.size(), count)))
+                        : List.of();
+            }
+            from = Math.max(0, segments.size() - LIVE_EDGE_SEGMENTS);
+        }
+        return new ArrayList<>(segments.subList(from, Math.min(segments.size(), from + count)));
+    }
+
+    private void forgetIdlePlaylists() {
+        long now = System.currentTimeMillis();
+        if (playlists.size() <= MAX_PLAYLISTS && playlists.values().stream().noneMatch(p -> now - p.updatedAtMs > PLAYLIST_IDLE_MS)) {
+            return;
+        }
+        List<Map.Entry<String, PlaylistInfo>> all = new ArrayList<>(playlists.entrySet());
+        all.sort((a, b) -> Long.compare(a.getValue().updatedAtMs, b.getValue().updatedAtMs));
+        int excess = all.size() - MAX_PLAYLISTS;
+        for (Map.Entry<String, PlaylistInfo> e : all) {
+            boolean idle = now - e.getValue().updatedAtMs > PLAYLIST_IDLE_MS;
+            if (!idle && excess <= 0) {
+                break;
+            }
+            if (playlists.remove(e.getKey(), e.getValue())) {
+                listings.values().removeIf(p -> p == e.getValue());
+                excess--;
+            }
+        }
+    }
+
+    static long targetDurationMs(String playlist) {
+        int at = playlist.indexOf("#EXT-X-TARGETDURATION:");
+        if (at < 0) {
+            return 0;
+        }
+        int start = at + "#EXT-X-TARGETDURATION:".length();
+        int end = start;
+        while (end < playlist.length() && (Character.isDigit(playlist.charAt(end)) || playlist.charAt(end) == '.')) {
+            end++;
+        }
+        try {
+            return Math.round(Double.parseDouble(playlist.substring(start, end)) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Absolute URIs of the media segments of a media playlist, in order. */
+    static List<String> segmentUrls(String playlist, String baseUrl) {
+        URI base;
+        try {
+            base = URI.create(baseUrl);
+        } catch (Exception e) {
+            return List.of();
+        }
+        List<String> out = new ArrayList<>();
+        for (String line : playlist.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                URI resolved = base.resolve(trimmed);
+                String scheme = resolved.getScheme();
+                if (scheme != null && scheme.toLowerCase(Locale.ROOT).startsWith("http")) {
+                    out.add(resolved.toString());
+                }
+            } catch (Exception ignored) {
+                // malformed line: the player would fail on it too
+            }
+        }
+        return Collections.unmodifiableList(out);
+    }
+}
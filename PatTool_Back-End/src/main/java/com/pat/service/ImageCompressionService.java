@@ -9,6 +9,7 @@ import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.drew.metadata.exif.GpsDirectory;
 import com.drew.lang.GeoLocation;
+import com.pat.util.WeightedLfuCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +18,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
@@ -31,15 +33,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.nio.charset.StandardCharsets;
 
 @Service
@@ -47,7 +47,7 @@ public class ImageCompressionService {
 
     private static final Logger log = LoggerFactory.getLogger(ImageCompressionService.class);
     private final Semaphore compressionSemaphore;
-    private final Map<String, CacheEntry> compressionCache;
+    private final WeightedLfuCache<String, CacheEntry> compressionCache;
     private final long cacheTtlMillis;
     private final int cacheMaxEntries;
     private final long cacheMaxSizeBytes; // Maximum total cache size in bytes
@@ -55,6 +55,14 @@ public class ImageCompressionService {
     @Autowired(required = false)
     private MemoryMonitoringService memoryMonitoringService;
 
+    @Autowired(required = false)
+    private WallPreviewDiskCache wallPreviewDiskCache;
+
+    /** Read-through to the persisted cache file, registered by {@link CachePersistenceService} at startup. */
+    private volatile Function<String, CacheEntry> persistedCacheLookup;
+    /** Drops persisted entries by key prefix, registered by {@link CachePersistenceService}. */
+    private volatile Consumer<String> persistedCacheEviction;
+
     // Maximum dimensions to prevent OutOfMemoryError
     // For TYPE_INT_RGB: width * height * 4 bytes per pixel
     // 8000x8000 = 64M pixels * 4 bytes = 256 MB per image (before processing)
@@ -125,9 +133,11 @@ public class ImageCompressionService {
     ) {
         int permits = Math.max(1, maxConcurrentCompressions);
         this.compressionSemaphore = new Semaphore(permits, true);
-        this.compressionCache = new ConcurrentHashMap<>();
         this.cacheMaxEntries = Math.max(1, cacheMaxEntries);
         this.cacheMaxSizeBytes = Math.max(50L * 1024 * 1024, (long) cacheMaxSizeMB * 1024 * 1024); // Minimum 50MB, default 500MB
+        // Byte-weighted, frequency-aware (W-TinyLFU) cache: O(1) store/lookup, running size counter
+        this.compressionCache = new WeightedLfuCache<>(this.cacheMaxSizeBytes, this.cacheMaxEntries,
+                entry -> entry.result != null ? entry.result.getCompressedSize() : 0L);
         Duration effectiveTtl = cacheTtl != null ? cacheTtl : Duration.ofHours(1);
         this.cacheTtlMillis = Math.max(0L, effectiveTtl.toMillis());
         log.debug(
@@ -226,8 +236,11 @@ public class ImageCompressionService {
                 return cached;
             }
 
+            // Decode at (at least) twice the target edge only: a 6000x4000 photo for a 512px preview is read
+            // with 1-in-5 source subsampling (~4 MB raster instead of ~96 MB).
             int[] dims = getImageDimensions(fileBytes);
-            if (dims != null && (dims[0] > MAX_IMAGE_WIDTH || dims[1] > MAX_IMAGE_HEIGHT)) {
+            int subsampling = dims != null ? previewSubsampling(dims[0], dims[1], edge) : 1;
+            if (dims != null && (dims[0] / subsampling > MAX_IMAGE_WIDTH || dims[1] / subsampling > MAX_IMAGE_HEIGHT)) {
                 throw new IOException("Image dimensions too large for wall preview");
             }
 
@@ -235,7 +248,7 @@ public class ImageCompressionService {
                 throw new IOException("Memory usage critical, skip wall preview");
             }
 
-            BufferedImage raw = ImageIO.read(new ByteArrayInputStream(fileBytes));
+            BufferedImage raw = decodeSubsampled(fileBytes, subsampling);
             if (raw == null) {
                 throw new IOException("Cannot decode image");
             }
@@ -256,6 +269,11 @@ public class ImageCompressionService {
                 th = Math.max(1, (int) Math.round(h * sc));
             }
 
+            BufferedImage source = halveWhileLarger(oriented, tw, th);
+            if (source != oriented) {
+                oriented.flush();
+            }
+
             BufferedImage target = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
             Graphics2D g = target.createGraphics();
             try {
@@ -264,17 +282,20 @@ public class ImageCompressionService {
                 g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
                 g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
                 g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g.drawImage(oriented, 0, 0, tw, th, null);
+                g.drawImage(source, 0, 0, tw, th, null);
             } finally {
                 g.dispose();
             }
-            oriented.flush();
+            source.flush();
 
             byte[] jpeg = compressWithQuality(target, "jpeg", 0.94f);
             target.flush();
 
             CompressionResult result = new CompressionResult(jpeg, originalSize, Collections.emptyMap());
             storeInCache(cacheKey, result);
+            if (wallPreviewDiskCache != null) {
+                wallPreviewDiskCache.put(cacheKey, jpeg);
+            }
             return result;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -286,6 +307,106 @@ public class ImageCompressionService {
         }
     }
 
+    /**
+     * Source subsampling for a preview whose longest edge is {@code targetEdge}: keeps at least twice the
+     * target resolution so the final bicubic resample still has real detail to work with.
+     */
+    static int previewSubsampling(int width, int height, int targetEdge) {
+        int maxDim = Math.max(width, height);
+        return Math.max(1, maxDim / (Math.max(1, targetEdge) * 2));
+    }
+
+    /**
+     * Source subsampling for upload compression. The result must fit in {@code maxSize} bytes; even at the
+     * lowest quality step a JPEG photo needs well over 1/32 byte per pixel, so anything above
+     * {@code 32 * maxSize} pixels would be thrown away by the resize loop anyway.
+     */
+    static int uploadSubsampling(int width, int height, long maxSize) {
+        double pixels = (double) width * height;
+        double budget = Math.max(4_000_000d, maxSize * 32d);
+        return Math.max(1, (int) Math.floor(Math.sqrt(pixels / budget)));
+    }
+
+    /**
+     * Heap needed by {@link #decodeForCompression} for an image of the given size (TYPE_INT_RGB raster).
+     */
+    public static long estimateDecodedBytesForCompression(int width, int height, long maxSize) {
+        int s = uploadSubsampling(width, height, maxSize);
+        return (long) ((width + s - 1) / s) * ((height + s - 1) / s) * 4L;
+    }
+
+    /**
+     * Decode an uploaded image for {@link #resizeImageIfNeeded}: subsampled while decoding when the source is
+     * far larger than what {@code maxSize} bytes can hold, full resolution otherwise.
+     *
+     * @return decoded image, or {@code null} if no ImageIO reader understands the bytes
+     */
+    public BufferedImage decodeForCompression(byte[] fileBytes, long maxSize) throws IOException {
+        int[] dims = getImageDimensions(fileBytes);
+        int subsampling = dims != null ? uploadSubsampling(dims[0], dims[1], maxSize) : 1;
+        if (subsampling > 1) {
+            log.debug("Decoding {}x{} upload with 1/{} source subsampling", dims[0], dims[1], subsampling);
+        }
+        return decodeSubsampled(fileBytes, subsampling);
+    }
+
+    /**
+     * Decode keeping every {@code subsampling}-th pixel of every {@code subsampling}-th row. The reader
+     * drops the other pixels while decoding, so the full-resolution raster is never allocated.
+     *
+     * @return decoded image, or {@code null} if no ImageIO reader understands the bytes
+     */
+    static BufferedImage decodeSubsampled(byte[] fileBytes, int subsampling) throws IOException {
+        if (subsampling <= 1) {
+            return ImageIO.read(new ByteArrayInputStream(fileBytes));
+        }
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(fileBytes))) {
+            if (iis == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halve with bilinear filtering while the image is more than twice the target size, so the final
+     * bicubic step never skips source pixels (avoids the aliasing of a single large downscale).
+     */
+    private static BufferedImage halveWhileLarger(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            int w = Math.max(targetWidth, current.getWidth() / 2);
+            int h = Math.max(targetHeight, current.getHeight() / 2);
+            int type = current.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage half = new BufferedImage(w, h, type);
+            Graphics2D g = half.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            if (current != image) {
+                current.flush();
+            }
+            current = half;
+        }
+        return current;
+    }
+
     private CompressionResult performResize(
         String filename,
         BufferedImage originalImage,
@@ -661,20 +782,26 @@ public class ImageCompressionService {
     }
 
     private CompressionResult getFromCache(String cacheKey, Consumer<String> logConsumer) {
-        if (!isCacheEnabled() || cacheKey == null) {
+        if (cacheKey == null) {
             return null;
         }
+        if (!isCacheEnabled()) {
+            return getFromDiskTier(cacheKey, logConsumer);
+        }
 
         CacheEntry entry = compressionCache.get(cacheKey);
         if (entry == null) {
-            return null;
+            return getFromDiskTier(cacheKey, logConsumer);
         }
 
         long now = System.currentTimeMillis();
         if (isExpired(entry, now)) {
             compressionCache.remove(cacheKey, entry);
-            emitLog(logConsumer, "🗑️ Cached compression expired, regenerating");
-            return null;
+            CompressionResult fromDisk = getFromDiskTier(cacheKey, logConsumer);
+            if (fromDisk == null) {
+                emitLog(logConsumer, "🗑️ Cached compression expired, regenerating");
+            }
+            return fromDisk;
         }
 
         emitLog(logConsumer, "⚡ Serving compressed image from cache");
@@ -686,6 +813,56 @@ public class ImageCompressionService {
         return entry.result;
     }
 
+    /**
+     * Second tier for wall previews: on a heap miss, read from disk and promote back into the heap cache.
+     */
+    private CompressionResult getFromDiskTier(String cacheKey, Consumer<String> logConsumer) {
+        if (wallPreviewDiskCache == null || !wallPreviewDiskCache.handles(cacheKey)) {
+            return getFromPersistedCache(cacheKey, logConsumer);
+        }
+        byte[] data = wallPreviewDiskCache.get(cacheKey);
+        if (data == null) {
+            return getFromPersistedCache(cacheKey, logConsumer);
+        }
+        CompressionResult result = new CompressionResult(data, data.length, Collections.emptyMap());
+        storeInCache(cacheKey, result);
+        emitLog(logConsumer, "💾 Serving wall preview from disk cache");
+        return result;
+    }
+
+    /**
+     * Last tier: entry saved by {@link CachePersistenceService} and not loaded in memory yet (the file is
+     * read lazily after a restart). Keeps its original creation time when promoted.
+     */
+    private CompressionResult getFromPersistedCache(String cacheKey, Consumer<String> logConsumer) {
+        Function<String, CacheEntry> lookup = persistedCacheLookup;
+        if (lookup == null || !isCacheEnabled()) {
+            return null;
+        }
+        CacheEntry entry = lookup.apply(cacheKey);
+        if (entry == null || entry.result == null || isExpired(entry, System.currentTimeMillis())) {
+            return null;
+        }
+        compressionCache.put(cacheKey, entry);
+        emitLog(logConsumer, "💾 Serving compressed image from persisted cache");
+        return entry.result;
+    }
+
+    /**
+     * @param lookup key → persisted entry (or {@code null}); {@code null} detaches the persisted tier
+     */
+    public void setPersistedCacheLookup(Function<String, CacheEntry> lookup) {
+        this.persistedCacheLookup = lookup;
+    }
+
+    public void setPersistedCacheEviction(Consumer<String> eviction) {
+        this.persistedCacheEviction = eviction;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
     private void storeInCache(String cacheKey, CompressionResult result) {
         if (!isCacheEnabled() || cacheKey == null || result == null) {
             if (log.isDebugEnabled()) {
@@ -696,67 +873,27 @@ public class ImageCompressionService {
         }
 
         long now = System.currentTimeMillis();
-        compressionCache.put(cacheKey, new CacheEntry(result, now));
-        
-        // Check cache size and do aggressive cleanup if needed
-        long currentCacheSizeBytes = getCurrentCacheSizeBytes();
-        boolean cacheSizeCritical = currentCacheSizeBytes > cacheMaxSizeBytes * 0.8;
-        boolean cacheEntriesCritical = compressionCache.size() > cacheMaxEntries * 0.8;
-        
-        // Check if JVM memory is critical - if so, aggressively clean cache
-        boolean memoryCritical = false;
-        if (memoryMonitoringService != null) {
-            double memoryUsagePercent = memoryMonitoringService.getMemoryUsagePercent();
-            memoryCritical = memoryUsagePercent >= 85.0; // Critical if memory usage >= 85%
-        }
-        
-        if (cacheSizeCritical || cacheEntriesCritical || memoryCritical) {
-            // Aggressive cleanup when cache is getting large OR memory is critical
-            // This helps free memory faster when slideshow loads many images
-            cleanupExpiredEntries(now);
-            enforceCacheLimit(); // This will enforce both size and entry limits
-            
-            // If memory is critical, reduce cache to 50% to free memory immediately
-            if (memoryCritical) {
-                long targetSize = cacheMaxSizeBytes / 2; // Reduce to 50% of max size
-                long currentSize = getCurrentCacheSizeBytes();
-                if (currentSize > targetSize) {
-                    List<Map.Entry<String, CacheEntry>> entries = new ArrayList<>(compressionCache.entrySet());
-                    entries.sort((a, b) -> Long.compare(a.getValue().createdAt, b.getValue().createdAt));
-                    
-                    long sizeToRemove = currentSize - targetSize;
-                    long removedSize = 0;
-                    for (Map.Entry<String, CacheEntry> entry : entries) {
-                        if (removedSize >= sizeToRemove) {
-                            break;
-                        }
-                        CacheEntry cacheEntry = entry.getValue();
-                        if (cacheEntry.result != null && cacheEntry.result.getData() != null) {
-                            long entrySize = cacheEntry.result.getCompressedSize();
-                            compressionCache.remove(entry.getKey(), cacheEntry);
-                            removedSize += entrySize;
-                        }
-                    }
-                    log.warn("Memory critical ({}%), aggressively reduced cache from {} MB to {} MB (freed {} MB)", 
-                            String.format("%.1f", memoryMonitoringService.getMemoryUsagePercent()),
-                            currentSize / (1024 * 1024),
-                            getCurrentCacheSizeBytes() / (1024 * 1024),
-                            removedSize / (1024 * 1024));
-                }
-                System.gc(); // Force GC when memory is critical
-            } else if (currentCacheSizeBytes > cacheMaxSizeBytes * 0.9 || compressionCache.size() > cacheMaxEntries * 0.9) {
-                System.gc(); // Suggest GC when cache is > 90% full
+        boolean admitted = compressionCache.put(cacheKey, new CacheEntry(result, now));
+
+        // Size and entry limits are enforced by the cache itself; only JVM memory pressure needs extra work
+        if (memoryMonitoringService != null && memoryMonitoringService.getMemoryUsagePercent() >= 85.0) {
+            long currentSize = compressionCache.weightedSize();
+            long targetSize = cacheMaxSizeBytes / 2; // Reduce to 50% of max size
+            if (currentSize > targetSize) {
+                long removedSize = compressionCache.shrinkTo(targetSize);
+                log.warn("Memory critical ({}%), aggressively reduced cache from {} MB to {} MB (freed {} MB)",
+                        String.format("%.1f", memoryMonitoringService.getMemoryUsagePercent()),
+                        currentSize / (1024 * 1024),
+                        compressionCache.weightedSize() / (1024 * 1024),
+                        removedSize / (1024 * 1024));
             }
-        } else {
-            // Normal cleanup
-            cleanupExpiredEntries(now);
-            enforceCacheLimit();
         }
-        
+
         // Log cache storage for debugging
-        log.debug("Stored image in compression cache: key={}, size={} KB, cacheSize={}", 
+        log.debug("Stored image in compression cache: key={}, size={} KB, admitted={}, cacheSize={}", 
                 cacheKey.substring(0, Math.min(50, cacheKey.length())), 
                 result.getCompressedSize() / 1024,
+                admitted,
                 compressionCache.size());
     }
 
@@ -772,59 +909,9 @@ public class ImageCompressionService {
         if (!isCacheEnabled()) {
             return;
         }
-        compressionCache.forEach((key, entry) -> {
-            if (isExpired(entry, now)) {
-                compressionCache.remove(key, entry);
-            }
-        });
+        compressionCache.removeIf((key, entry) -> isExpired(entry, now));
     }
 
-    private void enforceCacheLimit() {
-        if (!isCacheEnabled()) {
-            return;
-        }
-
-        // First, enforce size limit (in bytes) - more important than entry count
-        long currentCacheSizeBytes = getCurrentCacheSizeBytes();
-        if (currentCacheSizeBytes > cacheMaxSizeBytes) {
-            // Cache exceeds size limit - remove oldest entries until under limit
-            List<Map.Entry<String, CacheEntry>> entries = new ArrayList<>(compressionCache.entrySet());
-            entries.sort((a, b) -> Long.compare(a.getValue().createdAt, b.getValue().createdAt));
-            
-            long sizeToRemove = currentCacheSizeBytes - (cacheMaxSizeBytes * 9 / 10); // Remove until 90% of limit
-            long removedSize = 0;
-            for (Map.Entry<String, CacheEntry> entry : entries) {
-                if (removedSize >= sizeToRemove) {
-                    break;
-                }
-                CacheEntry cacheEntry = entry.getValue();
-                if (cacheEntry.result != null && cacheEntry.result.getData() != null) {
-                    long entrySize = cacheEntry.result.getCompressedSize();
-                    compressionCache.remove(entry.getKey(), cacheEntry);
-                    removedSize += entrySize;
-                }
-            }
-            log.debug("Cache size limit exceeded ({} MB > {} MB), removed entries to free {} MB", 
-                    currentCacheSizeBytes / (1024 * 1024),
-                    cacheMaxSizeBytes / (1024 * 1024),
-                    removedSize / (1024 * 1024));
-        }
-
-        // Then, enforce entry count limit
-        int overshoot = compressionCache.size() - cacheMaxEntries;
-        if (overshoot <= 0) {
-            return;
-        }
-
-        List<Map.Entry<String, CacheEntry>> entries = new ArrayList<>(compressionCache.entrySet());
-        entries.sort((a, b) -> Long.compare(a.getValue().createdAt, b.getValue().createdAt));
-
-        for (int i = 0; i < overshoot && i < entries.size(); i++) {
-            Map.Entry<String, CacheEntry> entry = entries.get(i);
-            compressionCache.remove(entry.getKey(), entry.getValue());
-        }
-    }
-    
     /**
      * Periodic cleanup of compression cache (runs every 5 minutes)
      * This prevents memory leaks from cache entries that were not properly cleaned up
@@ -834,7 +921,6 @@ public class ImageCompressionService {
         try {
             long now = System.currentTimeMillis();
             cleanupExpiredEntries(now);
-            enforceCacheLimit();
             
             // Log cache statistics periodically
             if (log.isDebugEnabled()) {
@@ -847,25 +933,12 @@ public class ImageCompressionService {
         }
     }
     
-    /**
-     * Calculate current total cache size in bytes
-     */
-    private long getCurrentCacheSizeBytes() {
-        long totalSize = 0;
-        for (CacheEntry entry : compressionCache.values()) {
-            if (entry.result != null && entry.result.getData() != null) {
-                totalSize += entry.result.getCompressedSize();
-            }
-        }
-        return totalSize;
-    }
-
     /**
      * Get all cache entries for persistence (exposes internal cache map)
      * @return Map of cache key to CacheEntry
      */
     public Map<String, CacheEntry> getAllCacheEntries() {
-        return new LinkedHashMap<>(compressionCache);
+        return compressionCache.snapshot();
     }
     
     /**
@@ -874,6 +947,24 @@ public class ImageCompressionService {
     public void clearAllCacheEntries() {
         compressionCache.clear();
     }
+
+    /**
+     * Drop every cached wall preview of a GridFS file (heap and disk tiers), e.g. after the file is deleted.
+     */
+    public void evictWallPreviews(String fileId) {
+        if (fileId == null) {
+            return;
+        }
+        String prefix = "gfs-wall:" + fileId + ":";
+        compressionCache.removeIf((k, entry) -> k.startsWith(prefix));
+        Consumer<String> eviction = persistedCacheEviction;
+        if (eviction != null) {
+            eviction.accept(prefix);
+        }
+        if (wallPreviewDiskCache != null) {
+            wallPreviewDiskCache.invalidateFile(fileId);
+        }
+    }
     
     /**
      * Add cache entry (for loading from persistence)
@@ -900,22 +991,26 @@ public class ImageCompressionService {
             stats.put("totalSizeBytes", 0);
             stats.put("totalSizeMB", 0.0);
             stats.put("maxEntries", cacheMaxEntries);
+            if (wallPreviewDiskCache != null) {
+                stats.put("diskTier", wallPreviewDiskCache.getStatistics());
+            }
             return stats;
         }
         
         long now = System.currentTimeMillis();
-        int validEntryCount = 0;
-        long totalSizeBytes = 0;
+        long[] valid = new long[2]; // [entries, bytes]
         
         // Count valid (non-expired) entries and calculate total size
-        for (CacheEntry entry : compressionCache.values()) {
+        compressionCache.forEach((key, entry) -> {
             if (!isExpired(entry, now)) {
-                validEntryCount++;
+                valid[0]++;
                 if (entry.result != null && entry.result.getData() != null) {
-                    totalSizeBytes += entry.result.getCompressedSize();
+                    valid[1] += entry.result.getCompressedSize();
                 }
             }
-        }
+        });
+        int validEntryCount = (int) valid[0];
+        long totalSizeBytes = valid[1];
         
         // Calculate total size in MB with proper precision
         double totalSizeMB = totalSizeBytes / (1024.0 * 1024.0);
@@ -928,6 +1023,17 @@ public class ImageCompressionService {
         stats.put("totalSizeMB", totalSizeMB);
         stats.put("maxEntries", cacheMaxEntries);
         stats.put("cacheSize", compressionCache.size()); // Total entries including expired
+        stats.put("maxSizeMB", cacheMaxSizeBytes / (1024 * 1024));
+        long hits = compressionCache.hitCount();
+        long misses = compressionCache.missCount();
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses > 0 ? Math.round(hits * 1000.0 / (hits + misses)) / 10.0 : 0.0); // percent
+        stats.put("evictionCount", compressionCache.evictionCount());
+        stats.put("admissionRejectedCount", compressionCache.rejectionCount());
+        if (wallPreviewDiskCache != null) {
+            stats.put("diskTier", wallPreviewDiskCache.getStatistics());
+        }
         
         // Debug log to verify calculation
         if (log.isDebugEnabled()) {
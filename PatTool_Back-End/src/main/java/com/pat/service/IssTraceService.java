@@ -1,21 +1,43 @@
 package com.pat.service;
 
 import com.pat.repo.IssTracePointRepository;
+import com.pat.repo.domain.IssTraceDay;
 import com.pat.repo.domain.IssTracePoint;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
- * Persists ISS ground-track samples and serves a decimated trace for globe display.
+ * Persists ISS ground-track samples and serves a simplified trace for globe display.
+ * <p>
+ * Samples are packed per UTC day ({@link IssTraceDay}: int arrays of fixed-point lat / lon and second of day,
+ * appended with {@code $push}), so a 30-day trace is read as 30 documents without boxing. The display trace
+ * is reduced with Douglas-Peucker on the ground track (split at antimeridian crossings and recording gaps) to
+ * the display limit. Points of the former one-document-per-sample collection are moved on startup.
  */
 @Service
 public class IssTraceService {
@@ -25,8 +47,13 @@ public class IssTraceService {
     /** MongoDB {@code appParameters} key for the display point-count limit toggle (survives restarts). */
     public static final String PARAM_DISPLAY_LIMIT_ENABLED = "globe.iss.trace.display.limit.enabled";
 
+    private static final String DAYS_COLLECTION = "iss_trace_days";
+    /** Recording pause after which the track is not joined (kept as a break for the simplification). */
+    private static final long TRACK_GAP_SECONDS = 3600;
+
     private final IssTracePointRepository repository;
     private final AppParameterService appParameterService;
+    private final MongoTemplate mongoTemplate;
 
     @Value("${globe.iss.trace.retention.days:30}")
     private int retentionDays;
@@ -47,9 +74,16 @@ public class IssTraceService {
     /** When {@code true} the trace is decimated to {@link #limitedDisplayPoints}; otherwise every point is returned. */
     private volatile boolean displayLimitEnabled;
 
-    public IssTraceService(IssTracePointRepository repository, AppParameterService appParameterService) {
+    /** Time of the last stored sample ({@code null}: not loaded yet or nothing stored); guarded by {@code this}. */
+    private Instant lastRecordedAt;
+
+    public IssTraceService(
+            IssTracePointRepository repository,
+            AppParameterService appParameterService,
+            MongoTemplate mongoTemplate) {
         this.repository = repository;
         this.appParameterService = appParameterService;
+        this.mongoTemplate = mongoTemplate;
     }
 
     @PostConstruct
@@ -100,96 +134,352 @@ public class IssTraceService {
      * @param minIntervalSeconds minimum spacing between samples (e.g. 900 for 15-minute background sampling)
      * @return {@code true} when a new document was stored
      */
-    public boolean recordPoint(double latitude, double longitude, Instant recordedAt, int minIntervalSeconds) {
+    public synchronized boolean recordPoint(double latitude, double longitude, Instant recordedAt, int minIntervalSeconds) {
         if (!isValidCoordinate(latitude, longitude)) {
             return false;
         }
         int minSec = Math.max(1, minIntervalSeconds);
-        Instant at = recordedAt != null ? recordedAt : Instant.now();
-        var lastOpt = repository.findTopByOrderByRecordedAtDesc();
-        if (lastOpt.isPresent()) {
-            IssTracePoint last = lastOpt.get();
-            Instant lastAt = last.getRecordedAt();
-            if (lastAt != null) {
-                long elapsedSec = Duration.between(lastAt, at).getSeconds();
-                if (elapsedSec < minSec) {
-                    return false;
-                }
+        Instant at = (recordedAt != null ? recordedAt : Instant.now()).truncatedTo(ChronoUnit.SECONDS);
+        Instant lastAt = lastRecordedAt != null ? lastRecordedAt : findLatestPoint().map(IssTracePointView::recordedAt).orElse(null);
+        if (lastAt != null) {
+            long elapsedSec = Duration.between(lastAt, at).getSeconds();
+            if (elapsedSec < minSec) {
+                lastRecordedAt = lastAt;
+                return false;
             }
         }
-        repository.save(new IssTracePoint(latitude, longitude, at));
-        purgeOlderThanRetention();
+        Instant day = at.truncatedTo(ChronoUnit.DAYS);
+        mongoTemplate.upsert(
+                new Query(Criteria.where("_id").is(dayKey(at))),
+                new Update()
+                        .setOnInsert("day", day)
+                        .push("lat", toFixed(latitude))
+                        .push("lon", toFixed(longitude))
+                        .push("t", (int) Duration.between(day, at).getSeconds())
+                        .max("lastAt", at)
+                        .inc("count", 1),
+                DAYS_COLLECTION);
+        lastRecordedAt = at;
+        if (lastAt == null || !lastAt.truncatedTo(ChronoUnit.DAYS).equals(day)) {
+            purgeOlderThanRetention(); // whole days: once per new day document
+        }
         return true;
     }
 
     public List<IssTracePointView> getTraceForDisplay() {
         Instant cutoff = Instant.now().minusSeconds(retentionDays * 86400L);
-        List<IssTracePoint> raw = repository.findByRecordedAtAfterOrderByRecordedAtAsc(cutoff);
+        PackedTrace trace = readTrace(cutoff);
         if (!displayLimitEnabled) {
-            return raw.stream().map(IssTracePointView::from).toList();
+            return trace.views(null);
+        }
+        int cap = Math.min(Math.max(100, maxDisplayPoints), getLimitedDisplayPoints());
+        if (trace.size() <= cap) {
+            return trace.views(null);
         }
-        return decimateForDisplay(raw, getLimitedDisplayPoints());
+        return trace.views(simplify(trace.lat, trace.lon, trace.epochSeconds, trace.size(), cap));
+    }
+
+    /**
+     * Samples recorded strictly after {@code since} (for clients that already hold the trace up to that time),
+     * not simplified: at most {@code globe.iss.trace.max-display-points}, the most recent ones.
+     */
+    public List<IssTracePointView> getTraceSince(Instant since) {
+        Instant cutoff = Instant.now().minusSeconds(retentionDays * 86400L);
+        Instant after = since != null && since.isAfter(cutoff) ? since : cutoff;
+        List<IssTracePointView> points = readTrace(after).views(null);
+        int cap = Math.max(100, maxDisplayPoints);
+        return points.size() > cap ? points.subList(points.size() - cap, points.size()) : points;
     }
 
     /** Most recent stored sample (fast Mongo lookup for ISS-now fallback). */
     public Optional<IssTracePointView> findLatestPoint() {
-        return repository.findTopByOrderByRecordedAtDesc().map(IssTracePointView::from);
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "_id")).limit(1);
+        IssTraceDay latest = mongoTemplate.findOne(query, IssTraceDay.class, DAYS_COLLECTION);
+        if (latest == null || latest.getT() == null || latest.getT().length == 0) {
+            return Optional.empty();
+        }
+        PackedTrace trace = new PackedTrace(latest.getT().length);
+        trace.append(latest, Long.MIN_VALUE);
+        return trace.size() > 0 ? Optional.of(trace.view(trace.size() - 1)) : Optional.empty();
     }
 
     public long purgeOlderThanRetention() {
         Instant cutoff = Instant.now().minusSeconds(retentionDays * 86400L);
-        long deleted = repository.deleteByRecordedAtBefore(cutoff);
+        long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").lt(dayKey(cutoff))), DAYS_COLLECTION)
+                .getDeletedCount();
         if (deleted > 0) {
-            log.debug("ISS trace purge: removed {} point(s) older than {} days", deleted, retentionDays);
+            log.debug("ISS trace purge: removed {} day(s) older than {} days", deleted, retentionDays);
         }
         return deleted;
     }
 
     /** Removes every stored ISS trace sample (admin / user clear from globe UI). */
-    public long clearAll() {
-        long count = repository.count();
+    public synchronized long clearAll() {
+        long count = 0;
+        for (IssTraceDay day : mongoTemplate.findAll(IssTraceDay.class, DAYS_COLLECTION)) {
+            count += day.getCount();
+        }
+        mongoTemplate.remove(new Query(), DAYS_COLLECTION);
+        count += repository.count();
+        repository.deleteAll();
+        lastRecordedAt = null;
         if (count > 0) {
-            repository.deleteAll();
             log.info("ISS trace cleared: {} point(s) removed", count);
         }
         return count;
     }
 
-    private List<IssTracePointView> decimateForDisplay(List<IssTracePoint> raw, int requestedCap) {
-        if (raw == null || raw.isEmpty()) {
-            return List.of();
-        }
-        int cap = Math.min(Math.max(100, maxDisplayPoints), Math.max(100, requestedCap));
-        if (raw.size() <= cap) {
-            return raw.stream().map(IssTracePointView::from).toList();
-        }
-        List<IssTracePointView> out = new ArrayList<>(cap);
-        long minStepMs = getSampleIntervalSeconds() * 1000L;
-        IssTracePoint first = raw.get(0);
-        Instant firstAt = first.getRecordedAt() != null ? first.getRecordedAt() : Instant.EPOCH;
-        Instant lastAt = raw.get(raw.size() - 1).getRecordedAt();
-        long spanMs = lastAt != null ? Duration.between(firstAt, lastAt).toMillis() : 0L;
-        long stepMs = Math.max(minStepMs, spanMs / Math.max(1L, cap - 1L));
-
-        out.add(IssTracePointView.from(first));
-        long nextPickMs = firstAt.toEpochMilli() + stepMs;
-        for (int i = 1; i < raw.size() - 1; i++) {
-            IssTracePoint p = raw.get(i);
-            Instant at = p.getRecordedAt();
-            if (at == null) {
+    /** Moves the samples of the former {@code iss_trace_points} collection (one document each) to day documents. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyPointsOnStartup() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                if (repository.count() > 0) {
+                    migrateLegacyPoints();
+                }
+            } catch (Exception e) {
+                log.warn("ISS trace migration to day documents failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    void migrateLegacyPoints() {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "recordedAt"));
+        int moved = 0;
+        Instant lastMoved = null;
+        try (Stream<IssTracePoint> stream = mongoTemplate.stream(query, IssTracePoint.class)) {
+            Iterator<IssTracePoint> points = stream.iterator();
+            List<IssTracePoint> dayPoints = new ArrayList<>();
+            String currentDay = null;
+            while (points.hasNext()) {
+                IssTracePoint p = points.next();
+                if (p.getRecordedAt() == null || p.getLatitude() == null || p.getLongitude() == null
+                        || !isValidCoordinate(p.getLatitude(), p.getLongitude())) {
+                    continue;
+                }
+                String key = dayKey(p.getRecordedAt());
+                if (currentDay != null && !currentDay.equals(key)) {
+                    moved += mergeIntoDay(currentDay, dayPoints);
+                    dayPoints.clear();
+                }
+                currentDay = key;
+                dayPoints.add(p);
+                lastMoved = p.getRecordedAt();
+            }
+            if (currentDay != null) {
+                moved += mergeIntoDay(currentDay, dayPoints);
+            }
+        }
+        if (lastMoved != null) {
+            mongoTemplate.remove(new Query(Criteria.where("recordedAt").lte(lastMoved)), IssTracePoint.class);
+        }
+        log.info("ISS trace: {} point(s) moved to day documents", moved);
+    }
+
+    /** Rewrites one day document with its current samples plus {@code points} (time order, one sample per second). */
+    private synchronized int mergeIntoDay(String key, List<IssTracePoint> points) {
+        IssTraceDay existing = mongoTemplate.findById(key, IssTraceDay.class, DAYS_COLLECTION);
+        Instant day = LocalDate.parse(key).atStartOfDay().toInstant(ZoneOffset.UTC);
+        int existingCount = existing != null && existing.getT() != null ? existing.getT().length : 0;
+        int n = existingCount + points.size();
+        int[] t = new int[n];
+        int[] lat = new int[n];
+        int[] lon = new int[n];
+        for (int i = 0; i < existingCount; i++) {
+            t[i] = existing.getT()[i];
+            lat[i] = existing.getLat()[i];
+            lon[i] = existing.getLon()[i];
+        }
+        for (int i = 0; i < points.size(); i++) {
+            IssTracePoint p = points.get(i);
+            t[existingCount + i] = (int) Duration.between(day, p.getRecordedAt()).getSeconds();
+            lat[existingCount + i] = toFixed(p.getLatitude());
+            lon[existingCount + i] = toFixed(p.getLongitude());
+        }
+        // Order by second of day (index in the low bits keeps the sort stable), then one sample per second
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) t[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] mergedT = new int[n];
+        int[] mergedLat = new int[n];
+        int[] mergedLon = new int[n];
+        int count = 0;
+        for (long entry : order) {
+            int i = (int) entry;
+            if (count > 0 && mergedT[count - 1] == t[i]) {
+                continue;
+            }
+            mergedT[count] = t[i];
+            mergedLat[count] = lat[i];
+            mergedLon[count] = lon[i];
+            count++;
+        }
+        mongoTemplate.upsert(
+                new Query(Criteria.where("_id").is(key)),
+                new Update()
+                        .set("day", day)
+                        .set("lastAt", day.plusSeconds(mergedT[count - 1]))
+                        .set("count", count)
+                        .set("t", Arrays.copyOf(mergedT, count))
+                        .set("lat", Arrays.copyOf(mergedLat, count))
+                        .set("lon", Arrays.copyOf(mergedLon, count)),
+                DAYS_COLLECTION);
+        return count - existingCount;
+    }
+
+    private PackedTrace readTrace(Instant after) {
+        Query query = new Query(Criteria.where("_id").gte(dayKey(after))).with(Sort.by(Sort.Direction.ASC, "_id"));
+        List<IssTraceDay> days = mongoTemplate.find(query, IssTraceDay.class, DAYS_COLLECTION);
+        int total = 0;
+        for (IssTraceDay day : days) {
+            total += day.getT() != null ? day.getT().length : 0;
+        }
+        PackedTrace trace = new PackedTrace(total);
+        long afterSec = after.getEpochSecond();
+        for (IssTraceDay day : days) {
+            trace.append(day, afterSec);
+        }
+        return trace;
+    }
+
+    /**
+     * Douglas-Peucker ranking of a ground track: every point gets the distance at which the simplification
+     * would keep it (bounded by its parent's), runs split at antimeridian crossings and recording gaps keep
+     * their ends, and the {@code cap} highest ranked points are returned in time order.
+     */
+    static int[] simplify(double[] lat, double[] lon, long[] epochSeconds, int n, int cap) {
+        if (n <= cap) {
+            int[] all = new int[n];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+        double[] rank = new double[n];
+        Deque<int[]> stack = new ArrayDeque<>();
+        int runStart = 0;
+        for (int i = 1; i <= n; i++) {
+            boolean runEnds = i == n
+                    || Math.abs(lon[i] - lon[i - 1]) > 180.0
+                    || epochSeconds[i] - epochSeconds[i - 1] > TRACK_GAP_SECONDS;
+            if (!runEnds) {
                 continue;
             }
-            if (at.toEpochMilli() >= nextPickMs) {
-                out.add(IssTracePointView.from(p));
-                nextPickMs = at.toEpochMilli() + stepMs;
+            int runEnd = i - 1;
+            rank[runStart] = Double.POSITIVE_INFINITY;
+            rank[runEnd] = Double.POSITIVE_INFINITY;
+            if (runEnd - runStart > 1) {
+                stack.push(new int[]{runStart, runEnd});
             }
+            while (!stack.isEmpty()) {
+                int[] segment = stack.pop();
+                int first = segment[0];
+                int last = segment[1];
+                double bound = Math.min(rank[first], rank[last]);
+                int farthest = -1;
+                double maxDistance = -1;
+                for (int k = first + 1; k < last; k++) {
+                    double d = segmentDistance(lat, lon, k, first, last);
+                    if (d > maxDistance) {
+                        maxDistance = d;
+                        farthest = k;
+                    }
+                }
+                rank[farthest] = Math.min(maxDistance, bound);
+                if (farthest - first > 1) {
+                    stack.push(new int[]{first, farthest});
+                }
+                if (last - farthest > 1) {
+                    stack.push(new int[]{farthest, last});
+                }
+            }
+            runStart = i;
         }
-        IssTracePoint last = raw.get(raw.size() - 1);
-        if (out.isEmpty() || !out.get(out.size() - 1).recordedAt().equals(
-                last.getRecordedAt() != null ? last.getRecordedAt() : Instant.EPOCH)) {
-            out.add(IssTracePointView.from(last));
+        Integer[] byRank = new Integer[n];
+        Arrays.setAll(byRank, i -> i);
+        Arrays.sort(byRank, (a, b) -> Double.compare(rank[b], rank[a]));
+        int[] kept = new int[cap];
+        for (int i = 0; i < cap; i++) {
+            kept[i] = byRank[i];
+        }
+        Arrays.sort(kept);
+        return kept;
+    }
+
+    /** Distance (degrees, longitude scaled by cos(latitude)) from point {@code k} to segment {@code a}-{@code b}. */
+    private static double segmentDistance(double[] lat, double[] lon, int k, int a, int b) {
+        double scale = Math.cos(Math.toRadians((lat[a] + lat[b]) / 2));
+        double ax = lon[a] * scale;
+        double bx = lon[b] * scale;
+        double px = lon[k] * scale;
+        double dx = bx - ax;
+        double dy = lat[b] - lat[a];
+        double lengthSq = dx * dx + dy * dy;
+        double u = lengthSq > 0 ? ((px - ax) * dx + (lat[k] - lat[a]) * dy) / lengthSq : 0;
+        u = Math.max(0, Math.min(1, u));
+        double ex = px - (ax + u * dx);
+        double ey = lat[k] - (lat[a] + u * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+    private static String dayKey(Instant at) {
+        return LocalDate.ofInstant(at, ZoneOffset.UTC).toString();
+    }
+
+    private static int toFixed(double degrees) {
+        return (int) Math.round(degrees * IssTraceDay.COORDINATE_SCALE);
+    }
+
+    /** Decoded samples in primitive arrays (time order). */
+    private static final class PackedTrace {
+        private final double[] lat;
+        private final double[] lon;
+        private final long[] epochSeconds;
+        private int size;
+
+        PackedTrace(int capacity) {
+            lat = new double[capacity];
+            lon = new double[capacity];
+            epochSeconds = new long[capacity];
+        }
+
+        /** Append the samples of {@code day} recorded strictly after {@code afterEpochSecond}. */
+        void append(IssTraceDay day, long afterEpochSecond) {
+            int[] t = day.getT();
+            if (t == null || day.getDay() == null || day.getLat() == null || day.getLon() == null) {
+                return;
+            }
+            long base = day.getDay().getEpochSecond();
+            int n = Math.min(t.length, Math.min(day.getLat().length, day.getLon().length));
+            for (int i = 0; i < n; i++) {
+                long at = base + t[i];
+                if (at <= afterEpochSecond) {
+                    continue;
+                }
+                lat[size] = day.getLat()[i] / IssTraceDay.COORDINATE_SCALE;
+                lon[size] = day.getLon()[i] / IssTraceDay.COORDINATE_SCALE;
+                epochSeconds[size] = at;
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        IssTracePointView view(int i) {
+            return new IssTracePointView(lat[i], lon[i], Instant.ofEpochSecond(epochSeconds[i]));
+        }
+
+        /** Views of the given indices, or of every sample when {@code indices} is {@code null}. */
+        List<IssTracePointView> views(int[] indices) {
+            int count = indices != null ? indices.length : size;
+            List<IssTracePointView> out = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                out.add(view(indices != null ? indices[i] : i));
+            }
+            return out;
         }
-        return out;
     }
 
     private static boolean isValidCoordinate(double latitude, double longitude) {
@@ -198,11 +488,5 @@ public class IssTraceService {
     }
 
     public record IssTracePointView(double latitude, double longitude, Instant recordedAt) {
-        static IssTracePointView from(IssTracePoint p) {
-            return new IssTracePointView(
-                    p.getLatitude() != null ? p.getLatitude() : 0.0,
-                    p.getLongitude() != null ? p.getLongitude() : 0.0,
-                    p.getRecordedAt() != null ? p.getRecordedAt() : Instant.EPOCH);
-        }
     }
 }
@@ -17,8 +17,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
- * Scheduled task to save the image compression cache to file system daily at 6:00 AM
- * and clean up old Govee thermometer history records.
+ * Scheduled task to save the image compression cache to file system daily at 6:00 AM,
+ * clean up old Govee thermometer history records and merge duplicate GridFS event files.
  */
 @Component
 public class MaintenanceTask {
@@ -36,6 +36,12 @@ public class MaintenanceTask {
 
     @Autowired(required = false)
     private IssTraceService issTraceService;
+
+    @Autowired(required = false)
+    private GridFsDeduplicationService gridFsDeduplicationService;
+
+    @Autowired(required = false)
+    private VideoTranscodingService videoTranscodingService;
     
     @Autowired(required = false)
     private MailController mailController;
@@ -75,6 +81,23 @@ public class MaintenanceTask {
                     log.debug("ISS trace maintenance purge: {} point(s) removed", issDeleted);
                 }
             }
+
+            // Merge event files uploaded twice (GridFS content deduplication)
+            if (gridFsDeduplicationService != null) {
+                try {
+                    gridFsDeduplicationService.mergeDuplicates();
+                } catch (Exception e) {
+                    log.error("Error during GridFS duplicate merge", e);
+                }
+            }
+
+            if (videoTranscodingService != null) {
+                try {
+                    videoTranscodingService.purgeOrphans();
+                } catch (Exception e) {
+                    log.error("Error purging renditions of deleted videos", e);
+                }
+            }
             
             // Send email notification with both cache and Govee cleanup results
             if (cacheResult != null) {
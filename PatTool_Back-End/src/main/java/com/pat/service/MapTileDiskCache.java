@@ -0,0 +1,282 @@
+package com.pat.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store for proxied map tiles ({@link MapTileProxyService}).
+ * <p>
+ * Layout under {@code app.map.tile-cache.dir}: {@code <style>/<z>/<x>/<y>.png}. The file modification time is the
+ * upstream fetch time (freshness is decided by the caller). The index is rebuilt from the tree at startup; eviction
+ * is least-recently-used, bounded in bytes (after a restart the order falls back to fetch time).
+ */
+@Service
+public class MapTileDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MapTileDiskCache.class);
+
+    private static final String TILE_SUFFIX = ".png";
+
+    /** Raster tiles are a few dozen KB; anything bigger is not a tile. */
+    private static final int MAX_TILE_BYTES = 2 * 1024 * 1024;
+
+    /** Tile bytes and the time they were fetched from upstream. */
+    public record Tile(byte[] data, long fetchedAtMs) {
+    }
+
+    @Value("${app.map.tile-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.tile-cache.dir:./cache/map-tiles}")
+    private String cacheDir;
+
+    @Value("${app.map.tile-cache.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private Path root;
+    private volatile boolean ready;
+
+    /** {@code style/z/x/y} → size in bytes, in access order (eldest = least recently used). Guarded by itself. */
+    private final LinkedHashMap<String, Long> tiles = new LinkedHashMap<>(1024, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            log.info("Map tile disk cache disabled (app.map.tile-cache.enabled=false)");
+            return;
+        }
+        try {
+            root = Paths.get(cacheDir).toAbsolutePath().normalize();
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            log.warn("Map tile disk cache unavailable ({}): {}", cacheDir, e.getMessage());
+            return;
+        }
+        Thread loader = new Thread(this::rebuildIndex, "map-tile-disk-index");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the stored tile, or {@code null} on miss (or while the index is still loading)
+     */
+    public Tile get(String style, int z, int x, int y) {
+        if (!ready) {
+            return null;
+        }
+        String key = key(style, z, x, y);
+        boolean known;
+        synchronized (tiles) {
+            known = tiles.get(key) != null; // touch for LRU order
+        }
+        if (!known) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Path path = tilePath(style, z, x, y);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.size() <= 0 || attrs.size() > MAX_TILE_BYTES) {
+                throw new IOException("unexpected tile size " + attrs.size());
+            }
+            byte[] data = Files.readAllBytes(path);
+            hits.incrementAndGet();
+            return new Tile(data, attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            log.debug("Map tile unreadable, dropping {}: {}", key, e.getMessage());
+            drop(key, path);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** Whether a tile fetched after {@code notBeforeMs} is stored (no read, no statistics). */
+    public boolean containsFresh(String style, int z, int x, int y, long notBeforeMs) {
+        if (!ready) {
+            return false;
+        }
+        synchronized (tiles) {
+            if (!tiles.containsKey(key(style, z, x, y))) {
+                return false;
+            }
+        }
+        try {
+            return Files.getLastModifiedTime(tilePath(style, z, x, y)).toMillis() >= notBeforeMs;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Store a tile fetched just now. Failures are logged and ignored: the disk tier is best effort.
+     */
+    public void put(String style, int z, int x, int y, byte[] data) {
+        if (!ready || data == null || data.length == 0 || data.length > MAX_TILE_BYTES) {
+            return;
+        }
+        String key = key(style, z, x, y);
+        try {
+            writeAtomically(tilePath(style, z, x, y), data);
+            Long previous;
+            synchronized (tiles) {
+                previous = tiles.put(key, (long) data.length);
+            }
+            totalBytes.addAndGet(data.length - (previous != null ? previous : 0L));
+            writes.incrementAndGet();
+            evictIfNeeded();
+        } catch (IOException e) {
+            log.debug("Could not write map tile to disk cache ({}): {}", key, e.getMessage());
+        }
+    }
+
+    public void clear() {
+        if (root == null) {
+            return;
+        }
+        List<String> keys;
+        synchronized (tiles) {
+            keys = new ArrayList<>(tiles.keySet());
+        }
+        for (String key : keys) {
+            drop(key, root.resolve(key + TILE_SUFFIX));
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled && root != null);
+        stats.put("ready", ready);
+        synchronized (tiles) {
+            stats.put("tileCount", tiles.size());
+        }
+        stats.put("totalSizeBytes", totalBytes.get());
+        stats.put("totalSizeMB", Math.round(totalBytes.get() / (1024.0 * 1024.0) * 100.0) / 100.0);
+        stats.put("maxSizeMB", maxSizeMb);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writes.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        List<Map.Entry<String, BasicFileAttributes>> found = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 4)) {
+            files.filter(p -> p.getFileName().toString().endsWith(TILE_SUFFIX)).forEach(p -> {
+                try {
+                    String rel = root.relativize(p).toString().replace('\\', '/');
+                    found.add(Map.entry(rel.substring(0, rel.length() - TILE_SUFFIX.length()),
+                            Files.readAttributes(p, BasicFileAttributes.class)));
+                } catch (IOException ignored) {
+                    // vanished while scanning
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Map tile disk cache: could not scan {}: {}", root, e.getMessage());
+        }
+        found.sort((a, b) -> a.getValue().lastModifiedTime().compareTo(b.getValue().lastModifiedTime()));
+
+        long total = 0;
+        synchronized (tiles) {
+            for (Map.Entry<String, BasicFileAttributes> e : found) {
+                tiles.put(e.getKey(), e.getValue().size());
+                total += e.getValue().size();
+            }
+        }
+        totalBytes.set(total);
+        ready = true;
+        log.info("Map tile disk cache ready: {} tiles, {} MB in {} ms ({})",
+                found.size(), total / (1024 * 1024), System.currentTimeMillis() - start, root);
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long limit = Math.max(1L, maxSizeMb) * 1024L * 1024L;
+        if (totalBytes.get() <= limit) {
+            return;
+        }
+        long target = limit * 9 / 10;
+        List<String> victims = new ArrayList<>();
+        synchronized (tiles) {
+            long projected = totalBytes.get();
+            Iterator<Map.Entry<String, Long>> it = tiles.entrySet().iterator();
+            while (projected > target && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                victims.add(eldest.getKey());
+                projected -= eldest.getValue();
+            }
+        }
+        for (String key : victims) {
+            drop(key, root.resolve(key + TILE_SUFFIX));
+            evictions.incrementAndGet();
+        }
+        log.debug("Map tile disk cache evicted {} tile(s), now {} MB", victims.size(), totalBytes.get() / (1024 * 1024));
+    }
+
+    private void drop(String key, Path path) {
+        Long size;
+        synchronized (tiles) {
+            size = tiles.remove(key);
+        }
+        if (size != null) {
+            totalBytes.addAndGet(-size);
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String key(String style, int z, int x, int y) {
+        return style + "/" + z + "/" + x + "/" + y;
+    }
+
+    private Path tilePath(String style, int z, int x, int y) {
+        return root.resolve(style).resolve(Integer.toString(z)).resolve(Integer.toString(x)).resolve(y + TILE_SUFFIX);
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "tmp-", ".part");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
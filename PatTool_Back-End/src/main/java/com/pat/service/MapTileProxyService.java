@@ -1,7 +1,13 @@
 package com.pat.service;
 
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -9,16 +15,33 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Proxies public raster map tiles for the GPS 3D view (avoids browser CORS / CSP connect-src issues
  * with Three.js TextureLoader).
+ * <p>
+ * Tiles are kept in {@link MapTileDiskCache}; concurrent misses for the same tile share one upstream request.
+ * Tiles around the most recently edited GPS itineraries can be pre-seeded (scheduled or on demand).
  */
 @Service
 public class MapTileProxyService {
@@ -26,11 +49,62 @@ public class MapTileProxyService {
     private static final Logger log = LoggerFactory.getLogger(MapTileProxyService.class);
 
     private static final Set<String> ALLOWED_STYLES = Set.of("voyager", "osm");
+    /** The OSM tile usage policy forbids bulk downloads: only the Carto basemap is seeded. */
+    private static final Set<String> SEEDABLE_STYLES = Set.of("voyager");
+    private static final int MAX_ZOOM = 19;
+    private static final double MAX_MERCATOR_LAT = 85.05112878;
+    private static final long FOLLOWER_WAIT_MS = 30_000L;
 
     private final RestTemplate restTemplate;
+    private final MapTileDiskCache diskCache;
+    private final MongoTemplate mongoTemplate;
 
-    public MapTileProxyService(RestTemplate restTemplate) {
+    @Value("${app.map.tile-cache.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${app.map.tile-cache.seed.itineraries:20}")
+    private int seedItineraries;
+
+    @Value("${app.map.tile-cache.seed.min-zoom:10}")
+    private int seedMinZoom;
+
+    @Value("${app.map.tile-cache.seed.max-zoom:15}")
+    private int seedMaxZoom;
+
+    @Value("${app.map.tile-cache.seed.padding-km:2}")
+    private double seedPaddingKm;
+
+    @Value("${app.map.tile-cache.seed.max-tiles:20000}")
+    private int seedMaxTiles;
+
+    @Value("${app.map.tile-cache.seed.delay-ms:250}")
+    private long seedDelayMs;
+
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong upstreamFetches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    private final ExecutorService seedExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "map-tile-seed");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean seeding = new AtomicBoolean();
+    private volatile boolean shuttingDown;
+    private final AtomicReference<Map<String, Object>> lastSeed = new AtomicReference<>(Map.of());
+
+    public MapTileProxyService(RestTemplate restTemplate, MapTileDiskCache diskCache, MongoTemplate mongoTemplate) {
         this.restTemplate = restTemplate;
+        this.diskCache = diskCache;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PreDestroy
+    void shutdownSeed() {
+        shuttingDown = true;
+        seedExecutor.shutdownNow();
     }
 
     public ResponseEntity<byte[]> getTile(String style, int z, int x, int y) {
@@ -38,7 +112,7 @@ public class MapTileProxyService {
         if (!ALLOWED_STYLES.contains(safeStyle)) {
             return ResponseEntity.badRequest().build();
         }
-        if (z < 0 || z > 19 || x < 0 || y < 0) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0) {
             return ResponseEntity.badRequest().build();
         }
         int n = 1 << z;
@@ -46,36 +120,262 @@ public class MapTileProxyService {
             return ResponseEntity.badRequest().build();
         }
 
-        String url = switch (safeStyle) {
+        MapTileDiskCache.Tile cached = diskCache.get(safeStyle, z, x, y);
+        if (cached != null && cached.fetchedAtMs() >= freshAfterMs()) {
+            return tileResponse(cached.data(), "HIT");
+        }
+        try {
+            return tileResponse(load(safeStyle, z, x, y), "MISS");
+        } catch (Exception e) {
+            if (cached != null) {
+                // upstream down, throttling (429) or tile withdrawn: an old tile beats a hole in the map
+                staleServed.incrementAndGet();
+                return tileResponse(cached.data(), "STALE");
+            }
+            if (e instanceof HttpClientErrorException clientError) {
+                return ResponseEntity.status(clientError.getStatusCode()).build();
+            }
+            log.debug("Map tile fetch failed (style={}, z={}, x={}, y={}): {}", safeStyle, z, x, y, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    /**
+     * Seeds every tile of a bounding box for a zoom range, in the background.
+     *
+     * @return {@code false} if a seed run is already in progress or the request is invalid
+     */
+    public boolean seedBoundingBox(String style, double south, double west, double north, double east,
+                                   int minZoom, int maxZoom) {
+        String safeStyle = style == null || style.isBlank() ? "voyager" : style.trim().toLowerCase();
+        if (!SEEDABLE_STYLES.contains(safeStyle) || south > north || west > east
+                || minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+            return false;
+        }
+        return startSeed("bbox", () -> {
+            Set<Long> tiles = new LinkedHashSet<>();
+            for (int z = minZoom; z <= maxZoom && tiles.size() < seedMaxTiles; z++) {
+                addTiles(tiles, z, south, west, north, east);
+            }
+            return seedTiles(safeStyle, tiles);
+        });
+    }
+
+    /** Seeds a corridor around the most recently updated itineraries, in the background. */
+    public boolean seedItineraries() {
+        return startSeed("itineraries", () -> {
+            Set<Long> tiles = itineraryTiles();
+            return seedTiles("voyager", tiles);
+        });
+    }
+
+    @Scheduled(cron = "${app.map.tile-cache.seed.cron:-}")
+    public void scheduledItinerarySeed() {
+        if (!seedItineraries()) {
+            log.debug("Map tile seed skipped: a run is already in progress");
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("disk", diskCache.getStatistics());
+        stats.put("upstreamFetches", upstreamFetches.get());
+        stats.put("coalescedRequests", coalesced.get());
+        stats.put("staleServed", staleServed.get());
+        stats.put("inFlight", inFlight.size());
+        stats.put("seeding", seeding.get());
+        stats.put("lastSeed", lastSeed.get());
+        return stats;
+    }
+
+    /** Upstream fetch shared by concurrent callers of the same tile; the result is written to disk. */
+    private byte[] load(String style, int z, int x, int y) throws Exception {
+        String key = style + "/" + z + "/" + x + "/" + y;
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.get(FOLLOWER_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            byte[] body = fetchUpstream(style, z, x, y);
+            diskCache.put(style, z, x, y, body);
+            mine.complete(body);
+            return body;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private byte[] fetchUpstream(String style, int z, int x, int y) {
+        String url = switch (style) {
             case "osm" -> "https://tile.openstreetmap.org/" + z + "/" + x + "/" + y + ".png";
             default -> "https://a.basemaps.cartocdn.com/rastertiles/voyager/" + z + "/" + x + "/" + y + ".png";
         };
 
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.USER_AGENT, "PatTool-MapTileProxy/1.0 (GPS 3D nav; contact via patrickdeschamps.com)");
+        headers.set(HttpHeaders.ACCEPT, "image/png,image/*;q=0.8,*/*;q=0.5");
+
+        upstreamFetches.incrementAndGet();
+        ResponseEntity<byte[]> response = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                byte[].class
+        );
+        byte[] body = response.getBody();
+        if (body == null || body.length == 0) {
+            throw new IllegalStateException("empty tile body");
+        }
+        return body;
+    }
+
+    private static ResponseEntity<byte[]> tileResponse(byte[] body, String cacheState) {
+        HttpHeaders out = new HttpHeaders();
+        out.setContentType(MediaType.IMAGE_PNG);
+        out.setCacheControl(CacheControl.maxAge(Duration.ofHours(6)).cachePublic());
+        out.set("X-PatTool-Tile-Cache", cacheState);
+        return new ResponseEntity<>(body, out, HttpStatus.OK);
+    }
+
+    private long freshAfterMs() {
+        return System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Math.max(1, maxAgeDays));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Seeding
+
+    private interface SeedJob {
+        Map<String, Object> run() throws InterruptedException;
+    }
+
+    private boolean startSeed(String kind, SeedJob job) {
+        if (!seeding.compareAndSet(false, true)) {
+            return false;
+        }
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set(HttpHeaders.USER_AGENT, "PatTool-MapTileProxy/1.0 (GPS 3D nav; contact via patrickdeschamps.com)");
-            headers.set(HttpHeaders.ACCEPT, "image/png,image/*;q=0.8,*/*;q=0.5");
-
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    new HttpEntity<>(headers),
-                    byte[].class
-            );
-            byte[] body = response.getBody();
-            if (body == null || body.length == 0) {
-                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+            seedExecutor.execute(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("kind", kind);
+                    result.putAll(job.run());
+                    result.put("durationMs", System.currentTimeMillis() - start);
+                    lastSeed.set(result);
+                    log.info("Map tile seed ({}) done: {}", kind, result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.warn("Map tile seed ({}) failed: {}", kind, e.getMessage());
+                } finally {
+                    seeding.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            seeding.set(false);
+            return false;
+        }
+    }
+
+    private Map<String, Object> seedTiles(String style, Set<Long> tiles) throws InterruptedException {
+        long freshAfter = freshAfterMs();
+        int fetched = 0;
+        int present = 0;
+        int failed = 0;
+        for (long packed : tiles) {
+            if (shuttingDown) {
+                break;
+            }
+            int z = (int) (packed >>> 56);
+            int x = (int) ((packed >>> 28) & 0xFFFFFFF);
+            int y = (int) (packed & 0xFFFFFFF);
+            if (diskCache.containsFresh(style, z, x, y, freshAfter)) {
+                present++;
+                continue;
+            }
+            try {
+                load(style, z, x, y);
+                fetched++;
+            } catch (Exception e) {
+                failed++;
+                log.debug("Map tile seed fetch failed ({}/{}/{}/{}): {}", style, z, x, y, e.getMessage());
+            }
+            Thread.sleep(Math.max(0L, seedDelayMs)); // be polite with the tile server
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("style", style);
+        result.put("tiles", tiles.size());
+        result.put("alreadyCached", present);
+        result.put("fetched", fetched);
+        result.put("failed", failed);
+        return result;
+    }
+
+    /** Tiles within {@code padding-km} of the route points of the latest itineraries, low zooms first. */
+    private Set<Long> itineraryTiles() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "updatedAt")).limit(Math.max(1, seedItineraries));
+        query.fields().include("coordinates");
+        List<Document> itineraries = mongoTemplate.find(query, Document.class, "gps_itineraries");
+        int minZoom = Math.max(0, seedMinZoom);
+        int maxZoom = Math.min(MAX_ZOOM, seedMaxZoom);
+        double padLat = seedPaddingKm / 111.32;
+        Set<Long> tiles = new LinkedHashSet<>();
+        for (int z = minZoom; z <= maxZoom; z++) {
+            for (Document itinerary : itineraries) {
+                if (!(itinerary.get("coordinates") instanceof List<?> points)) {
+                    continue;
+                }
+                for (Object point : points) {
+                    if (!(point instanceof List<?> latLon) || latLon.size() < 2
+                            || !(latLon.get(0) instanceof Number lat) || !(latLon.get(1) instanceof Number lon)) {
+                        continue;
+                    }
+                    double padLon = padLat / Math.max(0.01, Math.cos(Math.toRadians(lat.doubleValue())));
+                    addTiles(tiles, z, lat.doubleValue() - padLat, lon.doubleValue() - padLon,
+                            lat.doubleValue() + padLat, lon.doubleValue() + padLon);
+                    if (tiles.size() >= seedMaxTiles) {
+                        return tiles;
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    private void addTiles(Set<Long> tiles, int z, double south, double west, double north, double east) {
+        int minX = tileX(west, z);
+        int maxX = tileX(east, z);
+        int minY = tileY(north, z);
+        int maxY = tileY(south, z);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                if (tiles.size() >= seedMaxTiles) {
+                    return;
+                }
+                tiles.add(((long) z << 56) | ((long) x << 28) | y);
             }
-            HttpHeaders out = new HttpHeaders();
-            MediaType contentType = response.getHeaders().getContentType();
-            out.setContentType(contentType != null ? contentType : MediaType.IMAGE_PNG);
-            out.setCacheControl(CacheControl.maxAge(Duration.ofHours(6)).cachePublic());
-            return new ResponseEntity<>(body, out, HttpStatus.OK);
-        } catch (HttpClientErrorException e) {
-            return ResponseEntity.status(e.getStatusCode()).build();
-        } catch (Exception e) {
-            log.debug("Map tile fetch failed (style={}, z={}, x={}, y={}): {}", safeStyle, z, x, y, e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
         }
     }
+
+    static int tileX(double lon, int z) {
+        int n = 1 << z;
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    static int tileY(double lat, int z) {
+        int n = 1 << z;
+        double rad = Math.toRadians(Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, lat)));
+        int y = (int) Math.floor((1.0 - Math.log(Math.tan(rad) + 1.0 / Math.cos(rad)) / Math.PI) / 2.0 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
 }
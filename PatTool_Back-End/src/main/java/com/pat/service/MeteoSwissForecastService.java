@@ -429,6 +429,11 @@ public class MeteoSwissForecastService {
         List<Long> epochs = precipByEpoch.keySet().stream().sorted().toList();
         Map<Long, byte[]> pngByEpoch = new LinkedHashMap<>();
         Map<Long, Double> maxMmByEpoch = new LinkedHashMap<>();
+        // Frames of a forecast run never change: an hourly refresh of the same item reuses them
+        PrecipMapCache previous = precipMapCache;
+        Map<Long, byte[]> previousPngs = previous != null && previous.itemId().equals(itemId)
+                ? previous.pngByEpoch()
+                : Map.of();
         try {
             for (long epoch : epochs) {
                 Map<Integer, Double> byPoint = precipByEpoch.get(epoch);
@@ -440,9 +445,12 @@ public class MeteoSwissForecastService {
                         .orElse(0)
                         : 0;
                 maxMmByEpoch.put(epoch, maxMm);
-                byte[] png = MeteoSwissPrecipRasterizer.renderFrame(
-                        CH_MIN_LAT, CH_MAX_LAT, CH_MIN_LON, CH_MAX_LON,
-                        points, byPoint);
+                byte[] png = previousPngs.get(epoch);
+                if (png == null) {
+                    png = MeteoSwissPrecipRasterizer.renderFrame(
+                            CH_MIN_LAT, CH_MAX_LAT, CH_MIN_LON, CH_MAX_LON,
+                            points, byPoint);
+                }
                 pngByEpoch.put(epoch, png);
             }
         } catch (Exception e) {
@@ -2,12 +2,13 @@ package com.pat.service;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Interpolates MeteoSwiss local point precipitation (mm/h) onto a raster PNG for map overlay.
@@ -22,6 +23,9 @@ final class MeteoSwissPrecipRasterizer {
     private static final double IDW_POWER = 2.0;
     private static final double MIN_MM = 0.001;
 
+    private static volatile WeightTable lastTable;
+    private static volatile byte[] transparentPng;
+
     private MeteoSwissPrecipRasterizer() {
     }
 
@@ -36,87 +40,190 @@ final class MeteoSwissPrecipRasterizer {
             return transparentPng();
         }
 
-        @SuppressWarnings("unchecked")
-        List<MeteoSwissForecastService.PointRecord>[][] buckets =
-                (List<MeteoSwissForecastService.PointRecord>[][]) new List[BUCKET_ROWS][BUCKET_COLS];
-        for (MeteoSwissForecastService.PointRecord point : points) {
-            Double mm = precipByPointId.get(point.id());
-            if (mm == null) {
-                continue;
-            }
-            int bx = bucketCol(point.lon(), west, east);
-            int by = bucketRow(point.lat(), south, north);
-            if (buckets[by][bx] == null) {
-                buckets[by][bx] = new ArrayList<>(16);
+        int n = points.size();
+        boolean[] present = new boolean[n];
+        double[] values = new double[n];
+        boolean any = false;
+        for (int i = 0; i < n; i++) {
+            Double mm = precipByPointId.get(points.get(i).id());
+            if (mm != null) {
+                present[i] = true;
+                values[i] = mm;
+                any = true;
             }
-            buckets[by][bx].add(point);
         }
+        if (!any) {
+            return transparentPng();
+        }
+        WeightTable table = weightTable(south, north, west, east, points, present);
 
         BufferedImage image = new BufferedImage(GRID_W, GRID_H, BufferedImage.TYPE_INT_ARGB);
-        double latStep = GRID_H > 1 ? (north - south) / (GRID_H - 1) : 0;
-        double lonStep = GRID_W > 1 ? (east - west) / (GRID_W - 1) : 0;
-
-        for (int row = 0; row < GRID_H; row++) {
-            double lat = GRID_H > 1 ? north - row * latStep : (north + south) / 2;
-            for (int col = 0; col < GRID_W; col++) {
-                double lon = GRID_W > 1 ? west + col * lonStep : (west + east) / 2;
-                double mm = interpolateMm(lat, lon, south, north, west, east, buckets, precipByPointId);
-                image.setRGB(col, row, colorForMm(mm));
+        int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, GRID_H).parallel().forEach(row -> {
+            int pixel = row * GRID_W;
+            for (int col = 0; col < GRID_W; col++, pixel++) {
+                raster[pixel] = colorForMm(table.interpolate(pixel, values));
             }
-        }
+        });
 
         ByteArrayOutputStream out = new ByteArrayOutputStream(GRID_W * GRID_H);
         ImageIO.write(image, "png", out);
         return out.toByteArray();
     }
 
-    private static double interpolateMm(
-            double lat,
-            double lon,
+    /**
+     * Table of the last point set rendered: the points with a value are the same for all the frames of a
+     * forecast run, so the neighbours and IDW weights of every pixel are computed once per run.
+     */
+    private static WeightTable weightTable(
             double south,
             double north,
             double west,
             double east,
-            List<MeteoSwissForecastService.PointRecord>[][] buckets,
-            Map<Integer, Double> precipByPointId) {
-        int bx = bucketCol(lon, west, east);
-        int by = bucketRow(lat, south, north);
-        List<Neighbor> neighbors = new ArrayList<>(12);
-        for (int dy = -1; dy <= 1; dy++) {
-            for (int dx = -1; dx <= 1; dx++) {
-                int cx = bx + dx;
-                int cy = by + dy;
-                if (cx < 0 || cy < 0 || cx >= BUCKET_COLS || cy >= BUCKET_ROWS) {
-                    continue;
+            List<MeteoSwissForecastService.PointRecord> points,
+            boolean[] present) {
+        WeightTable table = lastTable;
+        if (table == null || !table.matches(south, north, west, east, points, present)) {
+            table = new WeightTable(south, north, west, east, points, present);
+            lastTable = table;
+        }
+        return table;
+    }
+
+    /** Up to {@link #IDW_NEIGHBORS} nearest points with a value and their weights, per pixel (row major). */
+    private static final class WeightTable {
+        private final double south;
+        private final double north;
+        private final double west;
+        private final double east;
+        private final List<MeteoSwissForecastService.PointRecord> points;
+        private final boolean[] present;
+        /** Point index per pixel and neighbour slot, -1 when the pixel has fewer neighbours. */
+        private final int[] neighbors = new int[GRID_W * GRID_H * IDW_NEIGHBORS];
+        private final double[] weights = new double[GRID_W * GRID_H * IDW_NEIGHBORS];
+        private final double[] weightSums = new double[GRID_W * GRID_H];
+
+        WeightTable(
+                double south,
+                double north,
+                double west,
+                double east,
+                List<MeteoSwissForecastService.PointRecord> points,
+                boolean[] present) {
+            this.south = south;
+            this.north = north;
+            this.west = west;
+            this.east = east;
+            this.points = points;
+            this.present = present.clone();
+
+            int n = points.size();
+            double[] lats = new double[n];
+            double[] lons = new double[n];
+            int[] bucketCounts = new int[BUCKET_ROWS * BUCKET_COLS + 1];
+            int[] bucketOf = new int[n];
+            for (int i = 0; i < n; i++) {
+                MeteoSwissForecastService.PointRecord point = points.get(i);
+                lats[i] = point.lat();
+                lons[i] = point.lon();
+                if (present[i]) {
+                    bucketOf[i] = bucketRow(point.lat(), south, north) * BUCKET_COLS + bucketCol(point.lon(), west, east);
+                    bucketCounts[bucketOf[i] + 1]++;
                 }
-                List<MeteoSwissForecastService.PointRecord> bucket = buckets[cy][cx];
-                if (bucket == null) {
-                    continue;
+            }
+            // Point indices grouped by bucket, in list order (same tie order as a per-pixel scan)
+            for (int b = 0; b < BUCKET_ROWS * BUCKET_COLS; b++) {
+                bucketCounts[b + 1] += bucketCounts[b];
+            }
+            int[] bucketStart = bucketCounts.clone();
+            int[] bucketPoints = new int[bucketCounts[BUCKET_ROWS * BUCKET_COLS]];
+            for (int i = 0; i < n; i++) {
+                if (present[i]) {
+                    bucketPoints[bucketStart[bucketOf[i]]++] = i;
                 }
-                for (MeteoSwissForecastService.PointRecord point : bucket) {
-                    Double mm = precipByPointId.get(point.id());
-                    if (mm == null) {
-                        continue;
+            }
+
+            double latStep = GRID_H > 1 ? (north - south) / (GRID_H - 1) : 0;
+            double lonStep = GRID_W > 1 ? (east - west) / (GRID_W - 1) : 0;
+            int[] candidates = new int[bucketPoints.length];
+            double[] distances = new double[bucketPoints.length];
+            for (int row = 0; row < GRID_H; row++) {
+                double lat = GRID_H > 1 ? north - row * latStep : (north + south) / 2;
+                for (int col = 0; col < GRID_W; col++) {
+                    double lon = GRID_W > 1 ? west + col * lonStep : (west + east) / 2;
+                    int bx = bucketCol(lon, west, east);
+                    int by = bucketRow(lat, south, north);
+                    int count = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int cx = bx + dx;
+                            int cy = by + dy;
+                            if (cx < 0 || cy < 0 || cx >= BUCKET_COLS || cy >= BUCKET_ROWS) {
+                                continue;
+                            }
+                            int bucket = cy * BUCKET_COLS + cx;
+                            for (int k = bucketCounts[bucket]; k < bucketCounts[bucket + 1]; k++) {
+                                int i = bucketPoints[k];
+                                candidates[count] = i;
+                                distances[count] = Math.max(0.05, haversineKm(lat, lon, lats[i], lons[i]));
+                                count++;
+                            }
+                        }
+                    }
+                    int pixel = row * GRID_W + col;
+                    int base = pixel * IDW_NEIGHBORS;
+                    double weightSum = 0;
+                    for (int slot = 0; slot < IDW_NEIGHBORS; slot++) {
+                        // Selection of the nearest remaining candidate, first one on ties (stable order)
+                        int best = -1;
+                        for (int c = 0; c < count; c++) {
+                            if (candidates[c] >= 0 && (best < 0 || distances[c] < distances[best])) {
+                                best = c;
+                            }
+                        }
+                        if (best < 0) {
+                            neighbors[base + slot] = -1;
+                            continue;
+                        }
+                        double w = 1.0 / Math.pow(distances[best], IDW_POWER);
+                        neighbors[base + slot] = candidates[best];
+                        weights[base + slot] = w;
+                        weightSum += w;
+                        candidates[best] = -1;
                     }
-                    double dist = Math.max(0.05, haversineKm(lat, lon, point.lat(), point.lon()));
-                    neighbors.add(new Neighbor(dist, mm));
+                    weightSums[pixel] = weightSum;
                 }
             }
         }
-        if (neighbors.isEmpty()) {
-            return 0;
+
+        boolean matches(
+                double south,
+                double north,
+                double west,
+                double east,
+                List<MeteoSwissForecastService.PointRecord> points,
+                boolean[] present) {
+            return this.points == points
+                    && this.south == south && this.north == north && this.west == west && this.east == east
+                    && Arrays.equals(this.present, present);
         }
-        neighbors.sort(Comparator.comparingDouble(Neighbor::dist));
-        int count = Math.min(IDW_NEIGHBORS, neighbors.size());
-        double weightSum = 0;
-        double valueSum = 0;
-        for (int i = 0; i < count; i++) {
-            Neighbor n = neighbors.get(i);
-            double w = 1.0 / Math.pow(n.dist(), IDW_POWER);
-            weightSum += w;
-            valueSum += w * n.mm();
+
+        double interpolate(int pixel, double[] values) {
+            double weightSum = weightSums[pixel];
+            if (weightSum <= 0) {
+                return 0;
+            }
+            int base = pixel * IDW_NEIGHBORS;
+            double valueSum = 0;
+            for (int slot = 0; slot < IDW_NEIGHBORS; slot++) {
+                int i = neighbors[base + slot];
+                if (i < 0) {
+                    break;
+                }
+                valueSum += weights[base + slot] * values[i];
+            }
+            return valueSum / weightSum;
         }
-        return weightSum > 0 ? valueSum / weightSum : 0;
     }
 
     private static int bucketCol(double lon, double west, double east) {
@@ -157,10 +264,15 @@ final class MeteoSwissPrecipRasterizer {
     }
 
     private static byte[] transparentPng() throws IOException {
-        BufferedImage image = new BufferedImage(GRID_W, GRID_H, BufferedImage.TYPE_INT_ARGB);
-        ByteArrayOutputStream out = new ByteArrayOutputStream(GRID_W * GRID_H);
-        ImageIO.write(image, "png", out);
-        return out.toByteArray();
+        byte[] png = transparentPng;
+        if (png == null) {
+            BufferedImage image = new BufferedImage(GRID_W, GRID_H, BufferedImage.TYPE_INT_ARGB);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(GRID_W * GRID_H);
+            ImageIO.write(image, "png", out);
+            png = out.toByteArray();
+            transparentPng = png;
+        }
+        return png;
     }
 
     private static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
@@ -172,6 +284,4 @@ final class MeteoSwissPrecipRasterizer {
                 * Math.sin(dLon / 2) * Math.sin(dLon / 2);
         return r * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
     }
-
-    private record Neighbor(double dist, double mm) {}
 }
@@ -9,6 +9,8 @@ import com.pat.controller.dto.AssistantTurnDto;
 import com.pat.service.assistant.AssistantHttpErrorParser;
 import com.pat.service.assistant.AssistantMessageSupport;
 import com.pat.service.assistant.AssistantMessageSupport.ResolvedImage;
+import com.pat.service.assistant.AssistantSseSupport;
+import com.pat.service.assistant.AssistantStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -77,6 +79,18 @@ public class MistralAssistantService {
     }
 
     public AssistantChatResponseDto complete(AssistantChatRequestDto request) {
+        return complete(request, null);
+    }
+
+    /**
+     * Comme {@link #complete}, en relayant les fragments Chat Completions ({@code stream: true}) à {@code stream}.
+     * La recherche web ({@code /v1/conversations}) n’est pas diffusée : réponse complète en fin d’appel.
+     */
+    public AssistantChatResponseDto stream(AssistantChatRequestDto request, AssistantStream stream) {
+        return complete(request, stream);
+    }
+
+    private AssistantChatResponseDto complete(AssistantChatRequestDto request, AssistantStream stream) {
         if (apiKey == null || apiKey.isBlank()) {
             log.error("Mistral API key is not configured (mistral.key).");
             return AssistantChatResponseDto.err(
@@ -137,11 +151,15 @@ public class MistralAssistantService {
         body.put("model", requestModel);
         body.put("messages", chatMessages);
         body.put("max_tokens", maxTokens);
+        if (stream != null) {
+            body.put("stream", true);
+        }
 
         return postMistralJson(
                 apiUrl.trim(),
                 body,
                 requestModel,
+                stream,
                 (json, modelFallback, elapsedMs) -> {
                     AssistantChatResponseDto parsed = parseChatCompletionsResponse(json, modelFallback);
                     if (parsed.error() != null) {
@@ -183,6 +201,7 @@ public class MistralAssistantService {
                 resolveConversationsApiUrl(),
                 body,
                 requestModel,
+                null,
                 (json, modelFallback, elapsedMs) -> {
                     AssistantChatResponseDto parsed = parseConversationsResponse(json, modelFallback);
                     if (parsed.error() != null) {
@@ -206,8 +225,13 @@ public class MistralAssistantService {
         AssistantChatResponseDto parse(String json, String modelFallback, int elapsedMs);
     }
 
+    /** {@code stream} non nul : réponse SSE lue par {@link AssistantSseSupport} au lieu de {@code parser}. */
     private AssistantChatResponseDto postMistralJson(
-            String url, Map<String, Object> body, String modelFallback, MistralResponseParser parser) {
+            String url,
+            Map<String, Object> body,
+            String modelFallback,
+            AssistantStream stream,
+            MistralResponseParser parser) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setBearerAuth(apiKey.trim());
@@ -215,6 +239,15 @@ public class MistralAssistantService {
         try {
             long startNs = System.nanoTime();
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            if (stream != null) {
+                String label =
+                        assistantProviderLabel != null && !assistantProviderLabel.isBlank()
+                                ? assistantProviderLabel.trim()
+                                : "Mistral";
+                return AssistantSseSupport.exchange(
+                                restTemplate, objectMapper, url, entity, stream, AssistantSseSupport.CHAT_COMPLETIONS)
+                        .toResponse(label, modelFallback, startNs);
+            }
             ResponseEntity<String> response =
                     restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
             int elapsedMs = (int) Math.min((System.nanoTime() - startNs) / 1_000_000L, Integer.MAX_VALUE);
@@ -9,6 +9,8 @@ import com.pat.controller.dto.AssistantTurnDto;
 import com.pat.service.assistant.AssistantHttpErrorParser;
 import com.pat.service.assistant.AssistantMessageSupport;
 import com.pat.service.assistant.AssistantMessageSupport.ResolvedImage;
+import com.pat.service.assistant.AssistantSseSupport;
+import com.pat.service.assistant.AssistantStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -80,6 +82,18 @@ public class OpenAiAssistantService {
     }
 
     public AssistantChatResponseDto complete(AssistantChatRequestDto request) {
+        return complete(request, null);
+    }
+
+    /**
+     * Comme {@link #complete}, en relayant les fragments Chat Completions ({@code stream: true}) à {@code stream}.
+     * Les tours avec outils (API Responses) ne sont pas diffusés : la réponse complète est renvoyée en fin d’appel.
+     */
+    public AssistantChatResponseDto stream(AssistantChatRequestDto request, AssistantStream stream) {
+        return complete(request, stream);
+    }
+
+    private AssistantChatResponseDto complete(AssistantChatRequestDto request, AssistantStream stream) {
         if (apiKey == null || apiKey.isBlank()) {
             log.error("OpenAI API key is not configured for assistant (openai.key).");
             return AssistantChatResponseDto.err(
@@ -145,6 +159,10 @@ public class OpenAiAssistantService {
         body.put("model", requestModel);
         body.put("messages", chatMessages);
         body.put("max_completion_tokens", maxTokens);
+        if (stream != null) {
+            body.put("stream", true);
+            body.put("stream_options", Map.of("include_usage", true));
+        }
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -153,6 +171,11 @@ public class OpenAiAssistantService {
         try {
             long startNs = System.nanoTime();
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            if (stream != null) {
+                return AssistantSseSupport.exchange(
+                                restTemplate, objectMapper, apiUrl, entity, stream, AssistantSseSupport.CHAT_COMPLETIONS)
+                        .toResponse(providerLabelOrDefault(), requestModel, startNs);
+            }
             ResponseEntity<String> response =
                     restTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
             int elapsedMs = (int) Math.min((System.nanoTime() - startNs) / 1_000_000L, Integer.MAX_VALUE);
@@ -336,6 +359,12 @@ public class OpenAiAssistantService {
         }
     }
 
+    private String providerLabelOrDefault() {
+        return assistantProviderLabel != null && !assistantProviderLabel.isBlank()
+                ? assistantProviderLabel.trim()
+                : "OpenAI";
+    }
+
     /** Modèle envoyé à l’API pour ce tour (priorité au champ {@code model} du corps de requête REST). */
     private String resolveRequestModel(AssistantChatRequestDto request) {
         if (request != null && request.model() != null && !request.model().isBlank()) {
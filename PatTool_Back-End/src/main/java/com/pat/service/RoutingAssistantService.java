@@ -2,11 +2,24 @@ package com.pat.service;
 
 import com.pat.controller.dto.AssistantChatRequestDto;
 import com.pat.controller.dto.AssistantChatResponseDto;
+import com.pat.service.assistant.AssistantStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 /**
  * Routage de l’assistant latéral selon {@code assistant.provider} ({@code openai} par défaut,
  * {@code anthropic} pour Claude, {@code gemini} pour Google Gemini, {@code mistral} pour Mistral AI).
@@ -23,16 +36,40 @@ public class RoutingAssistantService {
     private final AnthropicAssistantService anthropicAssistantService;
     private final GeminiAssistantService geminiAssistantService;
     private final MistralAssistantService mistralAssistantService;
+    /** Tours diffusés en cours : une lecture SSE fournisseur bloquante par thread, jusqu’au read-timeout. */
+    private final ExecutorService streamExecutor;
+
+    /** Registre Micrometer de l’actuator. */
+    private final MeterRegistry meterRegistry;
 
     public RoutingAssistantService(
             OpenAiAssistantService openAiAssistantService,
             AnthropicAssistantService anthropicAssistantService,
             GeminiAssistantService geminiAssistantService,
-            MistralAssistantService mistralAssistantService) {
+            MistralAssistantService mistralAssistantService,
+            MeterRegistry meterRegistry,
+            @Value("${assistant.stream.threads:16}") int streamThreads) {
         this.openAiAssistantService = openAiAssistantService;
         this.anthropicAssistantService = anthropicAssistantService;
         this.geminiAssistantService = geminiAssistantService;
         this.mistralAssistantService = mistralAssistantService;
+        this.meterRegistry = meterRegistry;
+        int poolSize = Math.max(1, streamThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(poolSize * 2),
+                r -> {
+                    Thread t = new Thread(r, "assistant-stream");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.streamExecutor = executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streamExecutor.shutdownNow();
     }
 
     public AssistantChatResponseDto complete(AssistantChatRequestDto request) {
@@ -50,6 +87,98 @@ public class RoutingAssistantService {
         };
     }
 
+    /**
+     * Tour diffusé : {@code onDelta} reçoit les fragments de texte au fil de l’eau (thread {@code assistant-stream}),
+     * puis {@code onDone} la réponse finale, identique à {@link #complete} (texte complet, jetons, durée) ou
+     * l’erreur. Les tours non diffusables (outils) envoient leur texte en un seul fragment.
+     * Le {@link AssistantStream} renvoyé permet d’annuler (déconnexion du client) ; {@code onDone} n’est alors
+     * plus appelé utilement, le client étant parti.
+     */
+    public AssistantStream startStream(
+            AssistantChatRequestDto request,
+            Consumer<String> onDelta,
+            Consumer<AssistantChatResponseDto> onDone) {
+        String slug = resolveEffectiveSlug(request);
+        AssistantStream stream = new AssistantStream(onDelta);
+        try {
+            streamExecutor.execute(() -> onDone.accept(runStream(slug, request, stream)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Assistant stream rejected: {} streams already running or queued", streamThreadsInUse());
+            onDone.accept(AssistantChatResponseDto.err(
+                    "Trop de réponses d’assistant en cours sur le serveur. Réessayez dans un instant."));
+        }
+        return stream;
+    }
+
+    private AssistantChatResponseDto runStream(String slug, AssistantChatRequestDto request, AssistantStream stream) {
+        AssistantChatResponseDto result;
+        try {
+            result = switch (slug) {
+                case "anthropic" -> anthropicAssistantService.stream(request, stream);
+                case "gemini" -> geminiAssistantService.stream(request, stream);
+                case "mistral" -> mistralAssistantService.stream(request, stream);
+                default -> openAiAssistantService.stream(request, stream);
+            };
+        } catch (RuntimeException e) {
+            log.error("Assistant stream failed (provider={})", slug, e);
+            result = AssistantChatResponseDto.err("Erreur technique lors de l’appel à l’assistant.");
+        }
+        boolean streamedUpstream = stream.getDeltaCount() > 0;
+        recordStreamMetrics(slug, stream, result, streamedUpstream);
+        if (!streamedUpstream && result.error() == null && result.content() != null) {
+            stream.delta(result.content());
+        }
+        return result;
+    }
+
+    /**
+     * {@code pattool.assistant.stream.requests} (provider, outcome) pour tous les tours ; délai du premier jeton
+     * et débit (jetons de sortie / s après le premier jeton) seulement quand le fournisseur a réellement diffusé.
+     */
+    private void recordStreamMetrics(
+            String slug, AssistantStream stream, AssistantChatResponseDto result, boolean streamedUpstream) {
+        String outcome = stream.isCancelled() ? "cancelled" : result.error() != null ? "error" : "ok";
+        Counter.builder("pattool.assistant.stream.requests")
+                .description("Streamed assistant turns")
+                .tag("provider", slug)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        if (!streamedUpstream) {
+            return;
+        }
+        long firstNs = stream.getFirstDeltaNanos();
+        long ttftNs = firstNs - stream.getStartNanos();
+        Timer.builder("pattool.assistant.stream.ttft")
+                .description("Time to first streamed token")
+                .tag("provider", slug)
+                .register(meterRegistry)
+                .record(ttftNs, TimeUnit.NANOSECONDS);
+        long generationNs = System.nanoTime() - firstNs;
+        int tokens = result.outputTokens() != null ? result.outputTokens() : stream.getDeltaCount();
+        double tokensPerSecond = generationNs > 0 && tokens > 1 ? tokens / (generationNs / 1e9) : -1;
+        if ("ok".equals(outcome) && tokensPerSecond > 0) {
+            DistributionSummary.builder("pattool.assistant.stream.tokens_per_second")
+                    .description("Output tokens per second after the first streamed token")
+                    .baseUnit("tokens/s")
+                    .tag("provider", slug)
+                    .register(meterRegistry)
+                    .record(tokensPerSecond);
+        }
+        log.debug(
+                "Assistant stream done: provider={} outcome={} ttftMs={} tokens={} tokensPerSecond={}",
+                slug,
+                outcome,
+                ttftNs / 1_000_000L,
+                tokens,
+                tokensPerSecond > 0 ? String.format("%.1f", tokensPerSecond) : "-");
+    }
+
+    private int streamThreadsInUse() {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) streamExecutor;
+        return executor.getActiveCount() + executor.getQueue().size();
+    }
+
     public String getConfiguredProviderLabel() {
         return switch (configuredServerSlug()) {
             case "anthropic" -> anthropicAssistantService.getConfiguredProviderLabel();
@@ -1,5 +1,8 @@
 package com.pat.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +12,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.ByteArrayOutputStream;
@@ -63,29 +68,32 @@ public class TvStreamProxyService {
     private static final int MAX_BYTES = 12 * 1024 * 1024;
 
     /**
-     * Cap Terre ({@code 145.239.5.177/359a}): lone 1080p @ ~5 Mbps on a ~20 s window.
-     * Segment download ≈ segment duration → player underruns unless the proxy
-     * prefetches the tiny playlist into RAM before hls.js asks for each .ts.
+     * Shared cache for every HLS channel: playlists and segments are fetched once from upstream whatever the
+     * number of viewers, and the segments after the one a viewer asks for are prefetched. Slow mirrors
+     * (e.g. Cap Terre, 1080p @ ~5 Mbps where a segment downloads in about its own duration) otherwise underrun.
      */
-    private static final long CAP_TERRE_SEGMENT_TTL_MS = 45_000L;
-    private static final int CAP_TERRE_CACHE_MAX = 8;
-
-    private final ConcurrentHashMap<String, CapTerreCachedSegment> capTerreSegmentCache =
-            new ConcurrentHashMap<>();
-    private final Set<String> capTerrePrefetchInFlight =
-            ConcurrentHashMap.newKeySet();
-    private final ExecutorService capTerrePrefetchExecutor = Executors.newFixedThreadPool(3, r -> {
-        Thread t = new Thread(r, "cap-terre-prefetch");
+    @Value("${app.tv.segment-cache.max-size-mb:128}")
+    private int segmentCacheMaxSizeMb;
+
+    @Value("${app.tv.segment-cache.prefetch-count:3}")
+    private int segmentPrefetchCount;
+
+    private HlsSegmentCache<FetchResult> segmentCache;
+
+    /** Relay copy buffers, reused across streamed responses (at most 32 kept). */
+    private static final int RELAY_BUFFER_SIZE = 16 * 1024;
+    private static final java.util.concurrent.ArrayBlockingQueue<byte[]> RELAY_BUFFERS =
+            new java.util.concurrent.ArrayBlockingQueue<>(32);
+
+    /** Micrometer registry of the actuator. */
+    private final MeterRegistry meterRegistry;
+    private final Set<String> segmentPrefetchInFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService segmentPrefetchExecutor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "hls-prefetch");
         t.setDaemon(true);
         return t;
     });
 
-    private record CapTerreCachedSegment(byte[] body, String contentType, long expiresAtMs) {
-        boolean alive() {
-            return body != null && body.length > 0 && System.currentTimeMillis() < expiresAtMs;
-        }
-    }
-
     @Value("${app.tv.proxy-referrer:}")
     private String defaultReferrer;
 
@@ -100,6 +108,16 @@ public class TvStreamProxyService {
             .followRedirects(HttpClient.Redirect.NORMAL)
             .build();
 
+    public TvStreamProxyService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void initSegmentCache() {
+        segmentCache = new HlsSegmentCache<>(Math.max(8L, segmentCacheMaxSizeMb) * 1024 * 1024,
+                r -> r.body != null ? r.body.length : 0);
+    }
+
     static {
         // Streamlink: French DM CDN often 403s when TLS session tickets are enabled.
         System.setProperty("jdk.tls.client.enableSessionTicketExtension", "false");
@@ -231,6 +249,20 @@ public class TvStreamProxyService {
      * @param rangeHeader optional browser {@code Range} header
      */
     public ResponseEntity<byte[]> proxy(String upstreamUrl, String proxyBase, String rangeHeader) {
+        return proxy(upstreamUrl, proxyBase, rangeHeader, null);
+    }
+
+    /**
+     * Same as {@link #proxy(String, String, String)}, but media bodies (segments, ranges, progressive files) are
+     * piped straight from upstream to {@code response} instead of being buffered. Playlists (rewritten), cache hits
+     * and errors are still returned as an entity.
+     *
+     * @param response servlet response to stream to, or {@code null} to always buffer
+     * @return {@code null} when the body was streamed to {@code response}
+     */
+    public ResponseEntity<byte[]> proxy(String upstreamUrl, String proxyBase, String rangeHeader,
+                                        HttpServletResponse response) {
+        long startNanos = System.nanoTime();
         URI uri;
         try {
             uri = URI.create(upstreamUrl);
@@ -253,22 +285,43 @@ public class TvStreamProxyService {
 
         String referer = resolveReferer(host);
 
-        // Cap Terre: serve .ts from RAM when prefetched (player otherwise waits ~5–6 s/seg).
-        if (isCapTerreUpstream(upstreamUrl) && rangeHeader == null) {
-            CapTerreCachedSegment cached = getCapTerreCachedSegment(upstreamUrl);
+        // Playlists and the HLS segments they list go through the shared cache (one upstream fetch per URL for all
+        // viewers); other media (progressive files, live streams) and byte ranges are relayed as they are.
+        String cacheState = null;
+        FetchResult fetched;
+        if (rangeHeader == null) {
+            FetchResult cached = segmentCache.getIfFresh(upstreamUrl);
+            cacheState = cached != null ? "HIT" : (segmentCache.isLoading(upstreamUrl) ? "SHARED" : "MISS");
             if (cached != null) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.set(HttpHeaders.CONTENT_TYPE,
-                        cached.contentType() != null
-                                ? cached.contentType()
-                                : MediaType.APPLICATION_OCTET_STREAM_VALUE);
-                headers.set(HttpHeaders.CACHE_CONTROL, "no-store");
-                headers.set("X-PatTool-CapTerre-Cache", "HIT");
-                return ResponseEntity.ok().headers(headers).body(cached.body());
+                fetched = cached;
+            } else if (response != null && segmentCache.isKnownSegment(upstreamUrl)) {
+                RelayResult relayed = sharedRelay(upstreamUrl, referer, response, startNanos);
+                if (relayed.streamed) {
+                    prefetchSegments(segmentCache.segmentsAfter(upstreamUrl, segmentPrefetchCount), referer);
+                    return null;
+                }
+                fetched = relayed.buffered;
+            } else if (response != null && !looksLikePlaylistUrl(upstreamUrl)) {
+                cacheState = null;
+                RelayResult relayed = new RelayResult();
+                fetched = relayOrBuffer(upstreamUrl, null, referer, response, startNanos, relayed);
+                if (relayed.streamed) {
+                    return null;
+                }
+                // Buffered: a playlist behind an URL without .m3u8 (registers its segments) or an upstream error
+                cacheIfShareable(upstreamUrl, fetched);
+            } else {
+                fetched = sharedFetch(upstreamUrl, referer);
+            }
+        } else if (response != null) {
+            RelayResult relayed = new RelayResult();
+            fetched = relayOrBuffer(upstreamUrl, rangeHeader, referer, response, startNanos, relayed);
+            if (relayed.streamed) {
+                return null;
             }
+        } else {
+            fetched = fetch(upstreamUrl, rangeHeader, referer);
         }
-
-        FetchResult fetched = fetch(upstreamUrl, rangeHeader, referer);
         if (fetched == null) {
             return jsonError(HttpStatus.BAD_GATEWAY, "upstream_unreachable",
                     "Flux distant inaccessible ou bloqué (" + host + ")", host, null);
@@ -301,15 +354,19 @@ public class TvStreamProxyService {
             // against the post-redirect URL or the CDN returns edge-vhost/invalid-token (403).
             String playlistBase = (fetched.finalUrl != null && !fetched.finalUrl.isBlank())
                     ? fetched.finalUrl : upstreamUrl;
-            String rawPlaylist = new String(body, StandardCharsets.UTF_8);
-            if (isCapTerreUpstream(upstreamUrl) || isCapTerreUpstream(playlistBase)) {
-                scheduleCapTerrePrefetch(rawPlaylist, playlistBase, referer);
+            byte[] rewritten = fetched.rewrittenByProxyBase.get(proxyBase);
+            if (rewritten == null) {
+                String rawPlaylist = new String(body, StandardCharsets.UTF_8);
+                rewritten = rewritePlaylist(rawPlaylist, playlistBase, proxyBase).getBytes(StandardCharsets.UTF_8);
+                fetched.rewrittenByProxyBase.put(proxyBase, rewritten);
             }
-            String rewritten = rewritePlaylist(rawPlaylist, playlistBase, proxyBase);
-            body = rewritten.getBytes(StandardCharsets.UTF_8);
+            body = rewritten;
             contentType = "application/vnd.apple.mpegurl; charset=utf-8";
-        } else if (isCapTerreUpstream(upstreamUrl)) {
-            putCapTerreCachedSegment(upstreamUrl, body, contentType);
+            if (rangeHeader == null) {
+                prefetchSegments(segmentCache.prefetchCandidates(upstreamUrl, segmentPrefetchCount), referer);
+            }
+        } else if (rangeHeader == null) {
+            prefetchSegments(segmentCache.segmentsAfter(upstreamUrl, segmentPrefetchCount), referer);
         }
 
         HttpHeaders headers = new HttpHeaders();
@@ -323,14 +380,208 @@ public class TvStreamProxyService {
         if (fetched.acceptRanges != null) {
             headers.set(HttpHeaders.ACCEPT_RANGES, fetched.acceptRanges);
         }
-        if (isCapTerreUpstream(upstreamUrl) && !isPlaylist(upstreamUrl, contentType, body)) {
-            headers.set("X-PatTool-CapTerre-Cache", "MISS");
+        if (cacheState != null) {
+            headers.set("X-PatTool-Segment-Cache", cacheState);
         }
 
         HttpStatus status = fetched.status == 206 ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK;
+        recordRelay("HIT".equals(cacheState) ? "cache" : "buffered", body.length, startNanos);
         return ResponseEntity.status(status).headers(headers).body(body);
     }
 
+    /**
+     * Streamed counterpart of {@link #sharedFetch} for known HLS segments: the first viewer of a URL gets the
+     * upstream body piped to its response and teed into the segment cache; concurrent viewers wait for that copy.
+     */
+    private RelayResult sharedRelay(String url, String referer, HttpServletResponse response, long startNanos) {
+        RelayResult result = new RelayResult();
+        try {
+            FetchResult shared = segmentCache.load(url, () -> {
+                result.loaded = true;
+                FetchResult fetched = relayOrBuffer(url, null, referer, response, startNanos, result);
+                cacheIfShareable(url, fetched);
+                return fetched;
+            }, CONNECT_TIMEOUT_MS + READ_TIMEOUT_MS);
+            if (!result.streamed) {
+                result.buffered = shared;
+            }
+        } catch (Exception e) {
+            log.debug("Shared upstream relay failed {}: {}", url, e.toString());
+        }
+        if (!result.loaded && !result.streamed && result.buffered == null) {
+            // Waited for a viewer whose copy could not be shared (not a known segment, aborted): fetch our own
+            result.buffered = relayOrBuffer(url, null, referer, response, startNanos, result);
+        }
+        return result;
+    }
+
+    /**
+     * Open upstream and either stream the body to {@code response} (media) or read it into memory (playlists,
+     * which need rewriting, and upstream errors, which are mapped to JSON by the caller).
+     *
+     * @return the buffered response; when streamed, the complete body if it was teed for the cache, else {@code null}
+     */
+    private FetchResult relayOrBuffer(String url, String rangeHeader, String referer, HttpServletResponse response,
+                                      long startNanos, RelayResult result) {
+        try (Upstream upstream = open(url, rangeHeader, referer)) {
+            if (upstream == null) {
+                return null;
+            }
+            if (upstream.status >= 400 || upstream.body == null) {
+                FetchResult failed = new FetchResult();
+                failed.status = upstream.status;
+                return failed;
+            }
+            java.io.BufferedInputStream in = new java.io.BufferedInputStream(upstream.body, 8 * 1024);
+            in.mark(64);
+            byte[] head = in.readNBytes(64);
+            in.reset();
+            String contentType = upstream.contentType != null
+                    ? stripSpuriousCharset(upstream.contentType) : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            if (head.length == 0 || isPlaylist(url, contentType, head)) {
+                return readBuffered(upstream, in, rangeHeader);
+            }
+            result.streamed = true;
+            return stream(upstream, in, contentType, url, rangeHeader, response, startNanos);
+        } catch (Exception e) {
+            log.debug("TV proxy relay failed for {}: {}", url, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Pipe an upstream media body to the client with a pooled buffer. Progressive files keep the former 12 MiB
+     * first-chunk behaviour (206 + Content-Range); other bodies are relayed whole, whatever their size.
+     */
+    private FetchResult stream(Upstream upstream, InputStream in, String contentType, String url, String rangeHeader,
+                               HttpServletResponse response, long startNanos) throws IOException {
+        int status = upstream.status;
+        String contentRange = upstream.contentRange;
+        String acceptRanges = upstream.acceptRanges;
+        long contentLength = upstream.contentLength;
+        long limit = Long.MAX_VALUE;
+        boolean allowTruncate = upstream.progressive || (rangeHeader != null && !rangeHeader.isBlank());
+        if (allowTruncate && (contentLength < 0 || contentLength > MAX_BYTES)) {
+            limit = MAX_BYTES;
+            if (contentLength > MAX_BYTES) {
+                status = 206;
+                contentRange = contentRangeForTruncated(contentRange, contentLength, MAX_BYTES);
+                contentLength = MAX_BYTES;
+            }
+        }
+        if (allowTruncate && (acceptRanges == null || acceptRanges.isBlank())) {
+            acceptRanges = "bytes";
+        }
+        boolean tee = rangeHeader == null && status == 200 && segmentCache.segmentTtlMs(url) > 0
+                && contentLength <= MAX_BYTES;
+
+        response.setStatus(status == 206 ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        response.setHeader(HttpHeaders.CONTENT_TYPE, contentType);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        if (contentRange != null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        if (acceptRanges != null) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, acceptRanges);
+        }
+        if (contentLength >= 0) {
+            response.setContentLengthLong(contentLength);
+        }
+        if (rangeHeader == null) {
+            response.setHeader("X-PatTool-Segment-Cache", "MISS");
+        }
+
+        ByteArrayOutputStream copy = tee
+                ? new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : 256 * 1024) : null;
+        byte[] buf = RELAY_BUFFERS.poll();
+        if (buf == null) {
+            buf = new byte[RELAY_BUFFER_SIZE];
+        }
+        long total = 0;
+        boolean firstByte = true;
+        try {
+            java.io.OutputStream out = response.getOutputStream();
+            int n;
+            while (total < limit && (n = in.read(buf, 0, (int) Math.min(buf.length, limit - total))) >= 0) {
+                if (n == 0) {
+                    continue;
+                }
+                out.write(buf, 0, n);
+                if (firstByte) {
+                    out.flush();
+                    firstByteTimer("streamed").record(System.nanoTime() - startNanos, java.util.concurrent.TimeUnit.NANOSECONDS);
+                    firstByte = false;
+                }
+                total += n;
+                if (copy != null) {
+                    if (copy.size() + n > MAX_BYTES) {
+                        copy = null;
+                    } else {
+                        copy.write(buf, 0, n);
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client abort (player seek / channel switch) or upstream drop
+            log.debug("TV proxy stream ended early for {} after {} bytes: {}", url, total, e.toString());
+            copy = null;
+        } finally {
+            RELAY_BUFFERS.offer(buf);
+            relayedBytes("streamed").increment(total);
+        }
+        if (copy == null || (upstream.contentLength >= 0 && total != upstream.contentLength)) {
+            return null;
+        }
+        FetchResult teed = new FetchResult();
+        teed.status = 200;
+        teed.body = copy.toByteArray();
+        teed.contentType = contentType;
+        teed.acceptRanges = upstream.acceptRanges;
+        teed.finalUrl = upstream.finalUrl;
+        return teed;
+    }
+
+    private static boolean looksLikePlaylistUrl(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.contains(".m3u8") || lower.contains(".m3u");
+    }
+
+    private void recordRelay(String mode, long bytes, long startNanos) {
+        relayedBytes(mode).increment(bytes);
+        firstByteTimer(mode).record(System.nanoTime() - startNanos, java.util.concurrent.TimeUnit.NANOSECONDS);
+    }
+
+    private Counter relayedBytes(String mode) {
+        return Counter.builder("pattool.tv.proxy.relayed")
+                .baseUnit("bytes")
+                .description("Bytes sent to TV / HLS proxy clients")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private Timer firstByteTimer(String mode) {
+        return Timer.builder("pattool.tv.proxy.first-byte")
+                .description("Time from proxy request to the first body byte (buffered: whole body ready)")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /** Totals since startup, per mode (streamed / buffered / cache). */
+    public Map<String, Object> getRelayStatistics() {
+        Map<String, Object> stats = new java.util.LinkedHashMap<>();
+        for (String mode : List.of("streamed", "buffered", "cache")) {
+            Timer timer = firstByteTimer(mode);
+            Map<String, Object> m = new java.util.LinkedHashMap<>();
+            m.put("responses", timer.count());
+            m.put("bytes", (long) relayedBytes(mode).count());
+            m.put("firstByteMeanMs", timer.mean(java.util.concurrent.TimeUnit.MILLISECONDS));
+            m.put("firstByteMaxMs", timer.max(java.util.concurrent.TimeUnit.MILLISECONDS));
+            stats.put(mode, m);
+        }
+        return stats;
+    }
+
     /**
      * Lightweight upstream probe for the TV channel status button.
      * Does not rewrite playlists; only checks reachability and playlist/media shape.
@@ -444,122 +695,128 @@ public class TvStreamProxyService {
         return true;
     }
 
-    /** Cap Terre iptv-org FR entry: {@code http://145.239.5.177/359a/…}. */
-    static boolean isCapTerreUpstream(String url) {
-        if (url == null || url.isBlank()) {
-            return false;
-        }
-        String u = url.toLowerCase(Locale.ROOT);
-        return u.contains("145.239.5.177") && u.contains("/359a/");
-    }
-
-    private CapTerreCachedSegment getCapTerreCachedSegment(String upstreamUrl) {
-        CapTerreCachedSegment hit = capTerreSegmentCache.get(upstreamUrl);
-        if (hit == null || !hit.alive()) {
-            if (hit != null) {
-                capTerreSegmentCache.remove(upstreamUrl, hit);
-            }
+    /**
+     * Whole-body upstream fetch shared by concurrent callers of the same URL; successful playlists and
+     * segments of known playlists are cached for the TTL the playlist implies.
+     */
+    private FetchResult sharedFetch(String url, String referer) {
+        try {
+            return segmentCache.load(url, () -> {
+                FetchResult fetched = fetch(url, null, referer);
+                cacheIfShareable(url, fetched);
+                return fetched;
+            }, CONNECT_TIMEOUT_MS + READ_TIMEOUT_MS);
+        } catch (Exception e) {
+            log.debug("Shared upstream fetch failed {}: {}", url, e.toString());
             return null;
         }
-        return hit;
     }
 
-    private void putCapTerreCachedSegment(String upstreamUrl, byte[] body, String contentType) {
-        if (upstreamUrl == null || body == null || body.length == 0) {
+    private void cacheIfShareable(String url, FetchResult fetched) {
+        if (fetched == null || fetched.status != 200 || fetched.body == null || fetched.body.length == 0) {
             return;
         }
-        evictExpiredCapTerreCache();
-        if (capTerreSegmentCache.size() >= CAP_TERRE_CACHE_MAX
-                && !capTerreSegmentCache.containsKey(upstreamUrl)) {
-            // Drop an arbitrary entry (tiny cache; order is irrelevant).
-            var victim = capTerreSegmentCache.keySet().iterator();
-            if (victim.hasNext()) {
-                capTerreSegmentCache.remove(victim.next());
+        String contentType = fetched.contentType != null ? stripSpuriousCharset(fetched.contentType) : null;
+        if (isPlaylist(url, contentType, fetched.body)) {
+            String base = (fetched.finalUrl != null && !fetched.finalUrl.isBlank()) ? fetched.finalUrl : url;
+            long ttl = segmentCache.onPlaylist(url, new String(fetched.body, StandardCharsets.UTF_8), base);
+            segmentCache.put(url, fetched, ttl);
+        } else {
+            segmentCache.put(url, fetched, segmentCache.segmentTtlMs(url));
+        }
+    }
+
+    /** Warm the next segments of a playlist in the background (skips cached and in-flight ones). */
+    private void prefetchSegments(List<String> segmentUrls, String referer) {
+        for (String segUrl : segmentUrls) {
+            if (segmentCache.containsFresh(segUrl) || segmentCache.isLoading(segUrl)
+                    || !segmentPrefetchInFlight.add(segUrl)) {
+                continue;
+            }
+            try {
+                segmentPrefetchExecutor.execute(() -> {
+                    try {
+                        if (!segmentCache.containsFresh(segUrl)) {
+                            sharedFetch(segUrl, referer);
+                        }
+                    } finally {
+                        segmentPrefetchInFlight.remove(segUrl);
+                    }
+                });
+            } catch (RuntimeException e) {
+                segmentPrefetchInFlight.remove(segUrl);
             }
         }
-        capTerreSegmentCache.put(
-                upstreamUrl,
-                new CapTerreCachedSegment(
-                        body,
-                        contentType,
-                        System.currentTimeMillis() + CAP_TERRE_SEGMENT_TTL_MS));
     }
 
-    private void evictExpiredCapTerreCache() {
-        long now = System.currentTimeMillis();
-        capTerreSegmentCache.entrySet().removeIf(e ->
-                e.getValue() == null || e.getValue().expiresAtMs() <= now);
+    @PreDestroy
+    void shutdownSegmentPrefetch() {
+        segmentPrefetchExecutor.shutdownNow();
+    }
+
+    private FetchResult fetch(String url, String rangeHeader, String referer) {
+        try (Upstream upstream = open(url, rangeHeader, referer)) {
+            if (upstream == null) {
+                return null;
+            }
+            return readBuffered(upstream, upstream.body, rangeHeader);
+        } catch (Exception e) {
+            log.debug("TV proxy fetch failed for {}: {}", url, e.toString());
+            return null;
+        }
     }
 
     /**
-     * When Cap Terre's media playlist is served, pull every listed .ts into RAM so the
-     * next player requests are cache HITs (parallel fetch; playlist has only ~4 segments).
+     * Read an opened upstream body into memory (capped at {@link #MAX_BYTES}).
+     *
+     * @param body {@code upstream.body}, or a wrapper of it that already buffered a few bytes
      */
-    private void scheduleCapTerrePrefetch(String rawPlaylist, String playlistBase, String referer) {
-        if (rawPlaylist == null || playlistBase == null) {
-            return;
-        }
-        URI base;
-        try {
-            base = URI.create(playlistBase);
-        } catch (Exception e) {
-            return;
+    private FetchResult readBuffered(Upstream upstream, InputStream body, String rangeHeader) throws IOException {
+        FetchResult result = new FetchResult();
+        result.status = upstream.status;
+        result.contentType = upstream.contentType;
+        result.contentRange = upstream.contentRange;
+        result.acceptRanges = upstream.acceptRanges;
+        result.finalUrl = upstream.finalUrl;
+        if (body == null) {
+            return result;
+        }
+        boolean allowTruncate = upstream.progressive
+                || (rangeHeader != null && !rangeHeader.isBlank());
+        ReadChunk chunk = readLimited(body, MAX_BYTES);
+        if (chunk.truncated && !allowTruncate) {
+            log.warn("TV proxy response too large for {}", upstream.finalUrl);
+            return null;
         }
-        for (String line : rawPlaylist.split("\\R", -1)) {
-            if (line == null) {
-                continue;
-            }
-            String trimmed = line.trim();
-            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
-                continue;
+        result.body = chunk.body;
+        if (chunk.truncated && chunk.body != null && chunk.body.length > 0) {
+            // Upstream ignored Range (common on some Archive.org CDN nodes) and
+            // streamed the whole VOD. Return the first chunk as 206 so the browser
+            // can continue with subsequent Range requests instead of failing.
+            log.debug("TV proxy truncated {} to {} bytes (progressive/ranged)",
+                    upstream.finalUrl, chunk.body.length);
+            result.status = 206;
+            result.contentRange = contentRangeForTruncated(
+                    result.contentRange, upstream.contentLength, chunk.body.length);
+            if (result.acceptRanges == null || result.acceptRanges.isBlank()) {
+                result.acceptRanges = "bytes";
             }
-            URI absolute = resolveUri(base, trimmed);
-            if (absolute == null) {
-                continue;
-            }
-            String segUrl = absolute.toString();
-            if (!isCapTerreUpstream(segUrl)) {
-                continue;
-            }
-            String path = absolute.getPath();
-            if (path == null || !path.toLowerCase(Locale.ROOT).endsWith(".ts")) {
-                continue;
-            }
-            if (getCapTerreCachedSegment(segUrl) != null) {
-                continue;
-            }
-            if (!capTerrePrefetchInFlight.add(segUrl)) {
-                continue;
-            }
-            final String refererFinal = referer;
-            capTerrePrefetchExecutor.execute(() -> {
-                try {
-                    if (getCapTerreCachedSegment(segUrl) != null) {
-                        return;
-                    }
-                    FetchResult fetched = fetch(segUrl, null, refererFinal);
-                    if (fetched != null && fetched.status >= 200 && fetched.status < 300
-                            && fetched.body != null && fetched.body.length > 0) {
-                        String ct = fetched.contentType != null
-                                ? stripSpuriousCharset(fetched.contentType)
-                                : MediaType.APPLICATION_OCTET_STREAM_VALUE;
-                        putCapTerreCachedSegment(segUrl, fetched.body, ct);
-                        log.debug("Cap Terre prefetch OK ({} bytes) {}", fetched.body.length, segUrl);
-                    }
-                } catch (Exception e) {
-                    log.debug("Cap Terre prefetch failed {}: {}", segUrl, e.toString());
-                } finally {
-                    capTerrePrefetchInFlight.remove(segUrl);
-                }
-            });
+        } else if (upstream.progressive && (result.acceptRanges == null || result.acceptRanges.isBlank())) {
+            result.acceptRanges = "bytes";
         }
+        return result;
     }
 
-    private FetchResult fetch(String url, String rangeHeader, String referer) {
+    /**
+     * Open the upstream response (redirects followed, headers read, body not consumed).
+     *
+     * @return the open response, to be closed by the caller; {@code null} when unreachable or blocked
+     */
+    private Upstream open(String url, String rangeHeader, String referer) {
         try {
             URI probe = URI.create(url);
             if (needsHttpClientFetch(probe.getHost())) {
-                return fetchViaHttpClient(url, rangeHeader, referer);
+                return openViaHttpClient(url, rangeHeader, referer);
             }
         } catch (Exception e) {
             log.debug("TV proxy HttpClient route check failed for {}: {}", url, e.toString());
@@ -583,9 +840,10 @@ public class TvStreamProxyService {
                 conn.setRequestProperty("Accept", "*/*");
                 String ref = referer != null ? referer : resolveReferer(uri.getHost());
                 applyBrowserHeaders(conn, ref);
+                boolean progressive = looksLikeProgressiveMedia(current);
                 if (rangeHeader != null && !rangeHeader.isBlank()) {
                     conn.setRequestProperty("Range", rangeHeader);
-                } else if (looksLikeProgressiveMedia(current)) {
+                } else if (progressive) {
                     // Progressive MP4 (e.g. Internet Archive) can be hundreds of MB.
                     // Without Range the 12 MiB cap would abort; seed a first chunk instead.
                     conn.setRequestProperty("Range", "bytes=0-" + (MAX_BYTES - 1));
@@ -594,6 +852,7 @@ public class TvStreamProxyService {
                 int code = conn.getResponseCode();
                 if (code >= 300 && code < 400) {
                     String location = conn.getHeaderField("Location");
+                    conn.disconnect();
                     if (location == null || location.isBlank()) {
                         return null;
                     }
@@ -601,55 +860,23 @@ public class TvStreamProxyService {
                     continue;
                 }
 
-                InputStream raw = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
-                if (raw == null) {
-                    FetchResult empty = new FetchResult();
-                    empty.status = code;
-                    return empty;
-                }
-                try (InputStream stream = raw) {
-                    boolean progressive = looksLikeProgressiveMedia(current);
-                    boolean allowTruncate = progressive
-                            || (rangeHeader != null && !rangeHeader.isBlank());
-                    ReadChunk chunk = readLimited(stream, MAX_BYTES);
-                    if (chunk.truncated && !allowTruncate) {
-                        log.warn("TV proxy response too large for {}", current);
-                        return null;
-                    }
-                    if (chunk.truncated) {
-                        // Upstream ignored Range (common on some Archive.org CDN nodes) and
-                        // streamed the whole VOD. Return the first chunk as 206 so the browser
-                        // can continue with subsequent Range requests instead of failing.
-                        log.debug("TV proxy truncated {} to {} bytes (progressive/ranged)",
-                                current, chunk.body.length);
-                    }
-                    FetchResult result = new FetchResult();
-                    result.status = code;
-                    result.body = chunk.body;
-                    result.contentType = conn.getContentType();
-                    result.contentRange = conn.getHeaderField("Content-Range");
-                    result.acceptRanges = conn.getHeaderField("Accept-Ranges");
-                    result.finalUrl = current;
-                    long declaredLength = conn.getContentLengthLong();
-                    if (chunk.truncated && chunk.body != null && chunk.body.length > 0) {
-                        result.status = 206;
-                        result.contentRange = contentRangeForTruncated(
-                                result.contentRange, declaredLength, chunk.body.length);
-                        if (result.acceptRanges == null || result.acceptRanges.isBlank()) {
-                            result.acceptRanges = "bytes";
-                        }
-                    } else if (progressive && (result.acceptRanges == null || result.acceptRanges.isBlank())) {
-                        result.acceptRanges = "bytes";
-                    }
-                    return result;
-                }
+                Upstream upstream = new Upstream();
+                upstream.status = code;
+                upstream.body = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+                upstream.contentType = conn.getContentType();
+                upstream.contentRange = conn.getHeaderField("Content-Range");
+                upstream.acceptRanges = conn.getHeaderField("Accept-Ranges");
+                upstream.contentLength = conn.getContentLengthLong();
+                upstream.finalUrl = current;
+                upstream.progressive = progressive;
+                upstream.connection = conn;
+                return upstream;
             } catch (Exception e) {
                 log.debug("TV proxy fetch failed for {}: {}", current, e.toString());
-                return null;
-            } finally {
                 if (conn != null) {
                     conn.disconnect();
                 }
+                return null;
             }
         }
         return null;
@@ -659,7 +886,7 @@ public class TvStreamProxyService {
      * Dailymotion live CDN rejects {@link HttpURLConnection} with HTTP 403 (same URL works
      * with {@link HttpClient} / curl). Used for CNews, CStar, L'Équipe playlists and segments.
      */
-    private FetchResult fetchViaHttpClient(String url, String rangeHeader, String referer) {
+    private Upstream openViaHttpClient(String url, String rangeHeader, String referer) {
         try {
             URI uri = stripFragment(URI.create(url));
             if (isBlockedHost(uri.getHost())) {
@@ -672,50 +899,25 @@ public class TvStreamProxyService {
                     .header("User-Agent", userAgentForHost(uri.getHost()))
                     .header("Accept", "*/*");
             applyBrowserHeaders(builder, ref);
+            boolean progressive = looksLikeProgressiveMedia(url);
             if (rangeHeader != null && !rangeHeader.isBlank()) {
                 builder.header("Range", rangeHeader);
-            } else if (looksLikeProgressiveMedia(url)) {
+            } else if (progressive) {
                 builder.header("Range", "bytes=0-" + (MAX_BYTES - 1));
             }
             HttpResponse<InputStream> resp = httpClient.send(
                     builder.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
-            int code = resp.statusCode();
-            InputStream raw = resp.body();
-            if (raw == null) {
-                FetchResult empty = new FetchResult();
-                empty.status = code;
-                return empty;
-            }
-            try (InputStream stream = raw) {
-                boolean progressive = looksLikeProgressiveMedia(url);
-                boolean allowTruncate = progressive
-                        || (rangeHeader != null && !rangeHeader.isBlank());
-                ReadChunk chunk = readLimited(stream, MAX_BYTES);
-                if (chunk.truncated && !allowTruncate) {
-                    log.warn("TV proxy response too large for {}", url);
-                    return null;
-                }
-                FetchResult result = new FetchResult();
-                result.status = code;
-                result.body = chunk.body;
-                result.contentType = resp.headers().firstValue("Content-Type").orElse(null);
-                result.contentRange = resp.headers().firstValue("Content-Range").orElse(null);
-                result.acceptRanges = resp.headers().firstValue("Accept-Ranges").orElse(null);
-                // HttpClient follows redirects — use the effective URI for HLS rewrite.
-                result.finalUrl = resp.uri() != null ? resp.uri().toString() : url;
-                long declaredLength = resp.headers().firstValueAsLong("Content-Length").orElse(-1L);
-                if (chunk.truncated && chunk.body != null && chunk.body.length > 0) {
-                    result.status = 206;
-                    result.contentRange = contentRangeForTruncated(
-                            result.contentRange, declaredLength, chunk.body.length);
-                    if (result.acceptRanges == null || result.acceptRanges.isBlank()) {
-                        result.acceptRanges = "bytes";
-                    }
-                } else if (progressive && (result.acceptRanges == null || result.acceptRanges.isBlank())) {
-                    result.acceptRanges = "bytes";
-                }
-                return result;
-            }
+            Upstream upstream = new Upstream();
+            upstream.status = resp.statusCode();
+            upstream.body = resp.body();
+            upstream.contentType = resp.headers().firstValue("Content-Type").orElse(null);
+            upstream.contentRange = resp.headers().firstValue("Content-Range").orElse(null);
+            upstream.acceptRanges = resp.headers().firstValue("Accept-Ranges").orElse(null);
+            upstream.contentLength = resp.headers().firstValueAsLong("Content-Length").orElse(-1L);
+            // HttpClient follows redirects — use the effective URI for HLS rewrite.
+            upstream.finalUrl = resp.uri() != null ? resp.uri().toString() : url;
+            upstream.progressive = progressive;
+            return upstream;
         } catch (Exception e) {
             log.debug("TV proxy HttpClient fetch failed for {}: {}", url, e.toString());
             return null;
@@ -1138,6 +1340,45 @@ public class TvStreamProxyService {
         private String acceptRanges;
         /** Effective URL after redirects (needed to resolve relative HLS URIs correctly). */
         private String finalUrl;
+        /** Rewritten playlist per proxy base (the result is shared while it sits in the segment cache). */
+        private final Map<String, byte[]> rewrittenByProxyBase = new ConcurrentHashMap<>();
+    }
+
+    private static final class RelayResult {
+        /** Body already piped to the servlet response. */
+        private boolean streamed;
+        /** This request performed the upstream fetch (it did not wait for another viewer's). */
+        private boolean loaded;
+        private FetchResult buffered;
+    }
+
+    /** Open upstream response; the body has not been read yet. */
+    private static final class Upstream implements AutoCloseable {
+        private int status;
+        private InputStream body;
+        private String contentType;
+        private String contentRange;
+        private String acceptRanges;
+        private long contentLength = -1;
+        private String finalUrl;
+        /** A first-chunk {@code Range} was added because the URL looks like a progressive file. */
+        private boolean progressive;
+        private HttpURLConnection connection;
+
+        @Override
+        public void close() {
+            try {
+                if (body != null) {
+                    body.close();
+                }
+            } catch (IOException ignored) {
+                // connection is dropped below anyway
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
     }
 
     private static final class ReadChunk {
@@ -0,0 +1,701 @@
+package com.pat.service;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Background transcoding of uploaded videos into HLS renditions (360p / 720p / 1080p, never above the source)
+ * plus a poster frame, so players on mobile data pick a bitrate instead of downloading the original.
+ * <p>
+ * The queue is the {@code video_transcode_jobs} collection (one document per source file, {@code _id} = GridFS id):
+ * jobs are claimed with a find-and-modify and a lease, so a job left {@code RUNNING} by a stopped server is picked
+ * up again once the lease expires, and at most {@code app.video.transcode.max-workers} ffmpeg processes run at a time.
+ * The original is streamed from GridFS to a temp file (ffmpeg needs a seekable input for MP4 / MOV) and decoded
+ * once for all renditions. Segments, playlists and the poster are GridFS files tagged with {@code metadata.hlsOf};
+ * the master playlist is built from the job on request ({@link #masterPlaylist}).
+ */
+@Service
+public class VideoTranscodingService {
+
+    private static final Logger log = LoggerFactory.getLogger(VideoTranscodingService.class);
+
+    static final String JOBS_COLLECTION = "video_transcode_jobs";
+    private static final String FILES_COLLECTION = "fs.files";
+
+    /** GridFS metadata of the generated files: source file id, rendition name (or {@code poster}), file name. */
+    public static final String HLS_OF = "hlsOf";
+    public static final String RENDITION = "rendition";
+    public static final String NAME = "name";
+
+    public static final String POSTER = "poster";
+    private static final String POSTER_FILE = "poster.jpg";
+    private static final String PLAYLIST_FILE = "index.m3u8";
+    private static final int SEGMENT_SECONDS = 6;
+    private static final int POSTER_SHORT_SIDE = 720;
+    private static final int LOG_TAIL_CHARS = 2000;
+    /** ffmpeg runs of one job, each bounded by the timeout: probe, HLS ladder, poster at 1 s then at 0 s. */
+    private static final int FFMPEG_RUNS_PER_JOB = 4;
+    /** Lease margin for copying the source out of GridFS and storing the renditions back. */
+    private static final long LEASE_MARGIN_MINUTES = 30;
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    /** One step of the bitrate ladder, sized by the short side so portrait phone videos get the same treatment. */
+    record Rung(String name, int shortSide, int videoKbps, int maxKbps, int audioKbps) {
+        int bandwidth() {
+            return (maxKbps + audioKbps) * 1000;
+        }
+    }
+
+    static final List<Rung> LADDER = List.of(
+            new Rung("360p", 360, 800, 1000, 96),
+            new Rung("720p", 720, 2500, 3000, 128),
+            new Rung("1080p", 1080, 4500, 5500, 160));
+
+    /** A stored rendition, as listed in the master playlist. */
+    public record Rendition(String name, int width, int height, int bandwidth) {
+    }
+
+    /** Transcoding state of one video. */
+    public record Job(String fileId, Status status, int attempts, List<Rendition> renditions, String posterId,
+                      String error, Date updatedAt) {
+    }
+
+    /** What ffmpeg reports about the source: display size (rotation applied) and whether there is sound. */
+    record Probe(int width, int height, boolean hasAudio) {
+        int shortSide() {
+            return Math.min(width, height);
+        }
+    }
+
+    private static final Pattern VIDEO_STREAM = Pattern.compile("Stream #\\d+:\\d+.*?: Video: .*?(\\d{2,5})x(\\d{2,5})");
+    private static final Pattern ROTATION = Pattern.compile("(?:rotate\\s*:\\s*|rotation of )(-?\\d+)");
+    private static final Pattern VIDEO_EXTENSION = Pattern.compile(
+            "\\.(mp4|webm|ogg|ogv|mov|avi|mkv|flv|wmv|m4v|3gp)$", Pattern.CASE_INSENSITIVE);
+
+    @Value("${app.video.transcode.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.video.ffmpeg.path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${app.video.transcode.tempdir:${java.io.tmpdir}}")
+    private String tempDir;
+
+    /** Failed runs before a job is left {@code FAILED}; retries wait 15 min × attempts. */
+    @Value("${app.video.transcode.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.video.transcode.timeout-minutes:180}")
+    private long timeoutMinutes;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private GridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private GridFsDeduplicationService gridFsDeduplicationService;
+
+    private final int maxWorkers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final ExecutorService workers;
+    private volatile boolean available;
+
+    public VideoTranscodingService(@Value("${app.video.transcode.max-workers:1}") int maxWorkers) {
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.workers = new ThreadPoolExecutor(
+            this.maxWorkers, this.maxWorkers, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "video-transcode");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (!enabled) {
+            return;
+        }
+        available = isFFmpegAvailable();
+        if (available) {
+            log.info("Video transcoding enabled ({} worker(s), ffmpeg: {})", maxWorkers, ffmpegPath);
+            wake();
+        } else {
+            log.warn("Video transcoding enabled but ffmpeg is not available at '{}', jobs stay queued", ffmpegPath);
+        }
+    }
+
+    /** {@code true} when jobs are processed on this server. */
+    public boolean isEnabled() {
+        return enabled && available;
+    }
+
+    /**
+     * Queue {@code fileId} for transcoding. An existing job is left alone unless {@code force}, which starts it
+     * over (a running job is not interrupted).
+     *
+     * @return {@code false} when transcoding is disabled
+     */
+    public boolean enqueue(String fileId, boolean force) {
+        if (!enabled || fileId == null || fileId.isBlank()) {
+            return false;
+        }
+        try {
+            Date now = new Date();
+            if (force) {
+                mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(fileId).and("status").ne(Status.RUNNING.name())),
+                        new Update().set("status", Status.PENDING.name()).set("attempts", 0)
+                                .set("nextAttemptAt", now).set("updatedAt", now).unset("error"),
+                        JOBS_COLLECTION);
+            }
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(fileId)),
+                    new Update().setOnInsert("status", Status.PENDING.name()).setOnInsert("attempts", 0)
+                            .setOnInsert("createdAt", now).setOnInsert("nextAttemptAt", now)
+                            .setOnInsert("updatedAt", now),
+                    JOBS_COLLECTION);
+            wake();
+            return true;
+        } catch (Exception e) {
+            log.warn("[TRANSCODE] Could not queue video {}: {}", fileId, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Queue every event video that has no job yet. */
+    public int enqueueEventVideos() {
+        if (!enabled) {
+            return 0;
+        }
+        Query videos = new Query(Criteria.where("filename").regex(VIDEO_EXTENSION)
+                .and("metadata." + HLS_OF).exists(false));
+        videos.fields().include("_id");
+        Set<String> known = new LinkedHashSet<>(mongoTemplate.findDistinct(new Query(), "_id", JOBS_COLLECTION, String.class));
+        int queued = 0;
+        for (Document video : mongoTemplate.find(videos, Document.class, FILES_COLLECTION)) {
+            String id = idOf(video.get("_id"));
+            if (!known.contains(id) && gridFsDeduplicationService.countReferences(id, null) > 0 && enqueue(id, false)) {
+                queued++;
+            }
+        }
+        log.info("[TRANSCODE] {} event video(s) queued", queued);
+        return queued;
+    }
+
+    public Job getJob(String fileId) {
+        Document job = mongoTemplate.findById(fileId, Document.class, JOBS_COLLECTION);
+        if (job == null) {
+            return null;
+        }
+        List<Rendition> renditions = new ArrayList<>();
+        for (Document r : job.getList("renditions", Document.class, List.of())) {
+            renditions.add(new Rendition(r.getString("name"), r.getInteger("width", 0), r.getInteger("height", 0),
+                    r.getInteger("bandwidth", 0)));
+        }
+        return new Job(fileId, Status.valueOf(job.getString("status")), job.getInteger("attempts", 0), renditions,
+                job.getString("posterId"), job.getString("error"), job.getDate("updatedAt"));
+    }
+
+    /** Number of jobs per status. */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ffmpegAvailable", available);
+        stats.put("maxWorkers", maxWorkers);
+        stats.put("activeWorkers", activeWorkers.get());
+        for (Status status : Status.values()) {
+            stats.put(status.name().toLowerCase(),
+                    mongoTemplate.count(new Query(Criteria.where("status").is(status.name())), JOBS_COLLECTION));
+        }
+        return stats;
+    }
+
+    /**
+     * Master playlist of a transcoded video, {@code null} until its job is done. {@code maxQuality} LOW / MEDIUM
+     * keeps the renditions up to 360p / 720p (at least the smallest one); {@code uriSuffix} is appended to each
+     * rendition URI (access token for players that cannot send headers).
+     */
+    public String masterPlaylist(String fileId, VideoService.VideoQuality maxQuality, String uriSuffix) {
+        Job job = getJob(fileId);
+        if (job == null || job.status() != Status.DONE || job.renditions().isEmpty()) {
+            return null;
+        }
+        int cap = switch (maxQuality) {
+            case LOW -> 360;
+            case MEDIUM -> 720;
+            default -> Integer.MAX_VALUE;
+        };
+        List<Rendition> selected = job.renditions().stream()
+                .filter(r -> Math.min(r.width(), r.height()) <= cap)
+                .toList();
+        if (selected.isEmpty()) {
+            selected = List.of(job.renditions().get(0));
+        }
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-INDEPENDENT-SEGMENTS\n");
+        for (Rendition rendition : selected) {
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(rendition.bandwidth())
+                    .append(",RESOLUTION=").append(rendition.width()).append('x').append(rendition.height())
+                    .append('\n').append(rendition.name()).append('/').append(PLAYLIST_FILE)
+                    .append(uriSuffix != null ? uriSuffix : "").append('\n');
+        }
+        return playlist.toString();
+    }
+
+    /** A generated file: playlist or segment of {@code rendition}, or the poster ({@link #POSTER}). */
+    public GridFsResource findOutput(String fileId, String rendition, String name) {
+        GridFSFile file = gridFsTemplate.findOne(new Query(Criteria.where("metadata." + HLS_OF).is(fileId)
+                .and("metadata." + RENDITION).is(rendition)
+                .and("metadata." + NAME).is(name)));
+        return file != null ? gridFsTemplate.getResource(file) : null;
+    }
+
+    public GridFsResource findPoster(String fileId) {
+        return findOutput(fileId, POSTER, POSTER_FILE);
+    }
+
+    /** Rendition playlist with {@code uriSuffix} appended to the segment URIs. */
+    public String renditionPlaylist(GridFsResource playlist, String uriSuffix) throws IOException {
+        String text;
+        try (InputStream in = playlist.getInputStream()) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (uriSuffix == null || uriSuffix.isEmpty()) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length() + 64);
+        for (String line : text.split("\n")) {
+            out.append(line);
+            if (!line.isBlank() && !line.startsWith("#")) {
+                out.append(uriSuffix);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    /** Drop the job and the generated files of a deleted video. */
+    public void forget(String fileId) {
+        if (fileId == null) {
+            return;
+        }
+        try {
+            removeOutputs(fileId);
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(fileId)), JOBS_COLLECTION);
+        } catch (Exception e) {
+            log.warn("[TRANSCODE] Could not remove renditions of {}: {}", fileId, e.getMessage());
+        }
+    }
+
+    /** Renditions and jobs whose original is no longer in GridFS (deleted by a path that does not call {@link #forget}). */
+    public int purgeOrphans() {
+        Set<String> sources = new LinkedHashSet<>(mongoTemplate.findDistinct(new Query(), "_id", JOBS_COLLECTION, String.class));
+        sources.addAll(mongoTemplate.findDistinct(new Query(Criteria.where("metadata." + HLS_OF).exists(true)),
+                "metadata." + HLS_OF, FILES_COLLECTION, String.class));
+        int purged = 0;
+        for (String source : sources) {
+            if (!mongoTemplate.exists(new Query(Criteria.where("_id").is(toId(source))), FILES_COLLECTION)) {
+                forget(source);
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            log.info("[TRANSCODE] Renditions of {} deleted video(s) purged", purged);
+        }
+        return purged;
+    }
+
+    /** Picks up jobs queued by other servers, retries that are due and jobs of a server that stopped. */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void poll() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            // A job whose worker died too often (e.g. killed by the OS) is not claimed again
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("status").is(Status.RUNNING.name())
+                            .and("leaseUntil").lt(new Date()).and("attempts").gte(maxAttempts)),
+                    new Update().set("status", Status.FAILED.name()).set("error", "worker lost")
+                            .set("updatedAt", new Date()),
+                    JOBS_COLLECTION);
+        } catch (Exception e) {
+            log.warn("[TRANSCODE] Could not fail abandoned jobs: {}", e.getMessage());
+        }
+        wake();
+    }
+
+    private void wake() {
+        if (!isEnabled()) {
+            return;
+        }
+        while (true) {
+            int active = activeWorkers.get();
+            if (active >= maxWorkers) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                try {
+                    workers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    activeWorkers.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Document job;
+            while (!Thread.currentThread().isInterrupted() && (job = claimNext()) != null) {
+                process(job);
+            }
+        } catch (Exception e) {
+            log.warn("[TRANSCODE] Worker stopped: {}", e.getMessage());
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private Document claimNext() {
+        Date now = new Date();
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("attempts").lt(maxAttempts),
+                new Criteria().orOperator(
+                        Criteria.where("status").is(Status.PENDING.name()).and("nextAttemptAt").lte(now),
+                        Criteria.where("status").is(Status.RUNNING.name()).and("leaseUntil").lt(now))))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        Update claim = new Update().set("status", Status.RUNNING.name()).set("leaseUntil", leaseEnd())
+                .set("startedAt", now).set("updatedAt", now).inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, claim, FindAndModifyOptions.options().returnNew(true),
+                Document.class, JOBS_COLLECTION);
+    }
+
+    private Date leaseEnd() {
+        long leaseMinutes = FFMPEG_RUNS_PER_JOB * Math.max(1, timeoutMinutes) + LEASE_MARGIN_MINUTES;
+        return new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(leaseMinutes));
+    }
+
+    private void process(Document job) {
+        String fileId = job.getString("_id");
+        int attempts = job.getInteger("attempts", 1);
+        long start = System.currentTimeMillis();
+        GridFSFile source = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(toId(fileId))));
+        if (source == null) {
+            log.debug("[TRANSCODE] Video {} no longer exists, job dropped", fileId);
+            forget(fileId);
+            return;
+        }
+        Path workDir = null;
+        try {
+            workDir = Files.createTempDirectory(Paths.get(tempDir), "hls_");
+            Path input = workDir.resolve("source" + extension(source.getFilename()));
+            try (InputStream in = gridFsTemplate.getResource(source).getInputStream()) {
+                Files.copy(in, input);
+            }
+            Probe probe = probe(input, workDir);
+            List<Rung> rungs = ladderFor(probe.shortSide());
+            removeOutputs(fileId); // leftovers of an interrupted attempt
+
+            run(hlsCommand(input, workDir, rungs, probe.hasAudio()), workDir.resolve("hls.log"));
+            List<Document> renditions = new ArrayList<>();
+            for (Rung rung : rungs) {
+                storeDirectory(fileId, rung.name(), workDir.resolve(rung.name()));
+                int[] size = outputSize(probe, rung.shortSide());
+                renditions.add(new Document("name", rung.name()).append("width", size[0]).append("height", size[1])
+                        .append("bandwidth", rung.bandwidth()));
+            }
+            String posterId = storePoster(fileId, input, workDir, probe);
+
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(fileId)),
+                    new Update().set("status", Status.DONE.name()).set("renditions", renditions)
+                            .set("posterId", posterId).set("finishedAt", new Date()).set("updatedAt", new Date())
+                            .unset("error").unset("leaseUntil"),
+                    JOBS_COLLECTION);
+            log.info("[TRANSCODE] {} ({} MB, {}x{}) -> {} in {} s", source.getFilename(),
+                    source.getLength() / (1024 * 1024), probe.width(), probe.height(),
+                    rungs.stream().map(Rung::name).toList(), (System.currentTimeMillis() - start) / 1000);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            removeOutputs(fileId);
+            boolean retry = attempts < maxAttempts && !Thread.currentThread().isInterrupted();
+            Update failed = new Update().set("status", retry ? Status.PENDING.name() : Status.FAILED.name())
+                    .set("error", String.valueOf(e.getMessage())).set("updatedAt", new Date()).unset("leaseUntil");
+            if (retry) {
+                failed.set("nextAttemptAt", new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(15L * attempts)));
+            }
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(fileId)), failed, JOBS_COLLECTION);
+            log.warn("[TRANSCODE] {} failed (attempt {}/{}): {}", fileId, attempts, maxAttempts, e.getMessage());
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /** Rungs not larger than the source; a source below the first rung gets one rendition at its own size. */
+    static List<Rung> ladderFor(int sourceShortSide) {
+        List<Rung> rungs = LADDER.stream().filter(r -> r.shortSide() <= sourceShortSide).toList();
+        if (!rungs.isEmpty()) {
+            return rungs;
+        }
+        Rung first = LADDER.get(0);
+        return List.of(new Rung(first.name(), Math.max(2, sourceShortSide & ~1), first.videoKbps(), first.maxKbps(),
+                first.audioKbps()));
+    }
+
+    /** Display size once scaled to {@code shortSide}, even on both sides (x264 / yuv420p). */
+    static int[] outputSize(Probe probe, int shortSide) {
+        int longSide = Math.max(probe.width(), probe.height());
+        int scaledLong = (int) Math.round((double) longSide * shortSide / Math.max(1, probe.shortSide()));
+        scaledLong += scaledLong & 1;
+        return probe.width() >= probe.height()
+                ? new int[] {scaledLong, shortSide}
+                : new int[] {shortSide, scaledLong};
+    }
+
+    /** Scales the short side to {@code side} whatever the orientation (commas escaped for the filter graph). */
+    static String scaleFilter(int side) {
+        return "scale=w=if(gt(iw\\,ih)\\,-2\\," + side + "):h=if(gt(iw\\,ih)\\," + side + "\\,-2)";
+    }
+
+    /** Single ffmpeg run: the source is decoded once and split into one scaled x264 stream per rung. */
+    private List<String> hlsCommand(Path input, Path workDir, List<Rung> rungs, boolean hasAudio) throws IOException {
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-hide_banner", "-nostdin", "-y",
+                "-i", input.toString()));
+        StringBuilder graph = new StringBuilder("[0:v:0]split=").append(rungs.size());
+        for (int i = 0; i < rungs.size(); i++) {
+            graph.append("[s").append(i).append(']');
+        }
+        for (int i = 0; i < rungs.size(); i++) {
+            int side = rungs.get(i).shortSide();
+            graph.append(";[s").append(i).append(']').append(scaleFilter(side)).append(",format=yuv420p[v")
+                    .append(i).append(']');
+        }
+        command.addAll(List.of("-filter_complex", graph.toString()));
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < rungs.size(); i++) {
+            Rung rung = rungs.get(i);
+            command.addAll(List.of("-map", "[v" + i + "]"));
+            command.addAll(List.of("-b:v:" + i, rung.videoKbps() + "k", "-maxrate:v:" + i, rung.maxKbps() + "k",
+                    "-bufsize:v:" + i, (rung.maxKbps() * 2) + "k"));
+            if (hasAudio) {
+                command.addAll(List.of("-map", "0:a:0", "-b:a:" + i, rung.audioKbps() + "k"));
+            }
+            streamMap.append(i > 0 ? " " : "").append("v:").append(i)
+                    .append(hasAudio ? ",a:" + i : "").append(",name:").append(rung.name());
+            Files.createDirectories(workDir.resolve(rung.name()));
+        }
+        command.addAll(List.of("-c:v", "libx264", "-preset", "veryfast", "-profile:v", "main",
+                "-force_key_frames", "expr:gte(t,n_forced*" + SEGMENT_SECONDS + ")", "-sc_threshold", "0"));
+        if (hasAudio) {
+            command.addAll(List.of("-c:a", "aac", "-ac", "2"));
+        }
+        command.addAll(List.of("-f", "hls", "-hls_time", String.valueOf(SEGMENT_SECONDS),
+                "-hls_playlist_type", "vod", "-hls_flags", "independent_segments",
+                "-hls_segment_filename", workDir.resolve("%v").resolve("seg_%05d.ts").toString(),
+                "-var_stream_map", streamMap.toString(),
+                workDir.resolve("%v").resolve(PLAYLIST_FILE).toString()));
+        return command;
+    }
+
+    private Probe probe(Path input, Path workDir) throws IOException, InterruptedException {
+        Path output = workDir.resolve("probe.log");
+        // Without an output ffmpeg exits with an error after printing the stream description
+        runProcess(List.of(ffmpegPath, "-hide_banner", "-nostdin", "-i", input.toString()), output);
+        String description = Files.readString(output, StandardCharsets.UTF_8);
+        Matcher video = VIDEO_STREAM.matcher(description);
+        if (!video.find()) {
+            throw new IOException("no video stream found");
+        }
+        int width = Integer.parseInt(video.group(1));
+        int height = Integer.parseInt(video.group(2));
+        Matcher rotation = ROTATION.matcher(description);
+        if (rotation.find() && Math.abs(Integer.parseInt(rotation.group(1))) % 180 == 90) {
+            int swap = width;
+            width = height;
+            height = swap;
+        }
+        return new Probe(width, height, description.contains(": Audio: "));
+    }
+
+    private String storePoster(String fileId, Path input, Path workDir, Probe probe) {
+        Path poster = workDir.resolve(POSTER_FILE);
+        int side = Math.min(POSTER_SHORT_SIDE, probe.shortSide());
+        try {
+            // One second in skips black first frames; very short clips fall back to the first frame
+            for (String seek : List.of("1", "0")) {
+                run(List.of(ffmpegPath, "-hide_banner", "-nostdin", "-y", "-ss", seek, "-i", input.toString(),
+                        "-frames:v", "1", "-vf", scaleFilter(side), "-q:v", "3", poster.toString()), workDir.resolve("poster.log"));
+                if (Files.exists(poster) && Files.size(poster) > 0) {
+                    return storeFile(fileId, POSTER, poster, "image/jpeg");
+                }
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.debug("[TRANSCODE] No poster for {}: {}", fileId, e.getMessage());
+        }
+        return null;
+    }
+
+    private void storeDirectory(String fileId, String rendition, Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.sorted().toList();
+        }
+        if (files.stream().noneMatch(p -> p.getFileName().toString().equals(PLAYLIST_FILE))) {
+            throw new IOException("ffmpeg produced no playlist for " + rendition);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            storeFile(fileId, rendition, file, name.endsWith(".m3u8") ? "application/vnd.apple.mpegurl" : "video/mp2t");
+        }
+    }
+
+    private String storeFile(String fileId, String rendition, Path file, String contentType) throws IOException {
+        String name = file.getFileName().toString();
+        Document metadata = new Document(HLS_OF, fileId).append(RENDITION, rendition).append(NAME, name);
+        try (InputStream in = Files.newInputStream(file)) {
+            return gridFsTemplate.store(in, fileId + "_" + rendition + "_" + name, contentType, metadata).toHexString();
+        }
+    }
+
+    private void removeOutputs(String fileId) {
+        try {
+            gridFsTemplate.delete(new Query(Criteria.where("metadata." + HLS_OF).is(fileId)));
+        } catch (Exception e) {
+            log.warn("[TRANSCODE] Could not delete renditions of {}: {}", fileId, e.getMessage());
+        }
+    }
+
+    /** Runs ffmpeg, output to {@code logFile}; fails on timeout or non-zero exit with the end of the log. */
+    private void run(List<String> command, Path logFile) throws IOException, InterruptedException {
+        int exit = runProcess(command, logFile);
+        if (exit != 0) {
+            String output = Files.exists(logFile) ? Files.readString(logFile, StandardCharsets.UTF_8) : "";
+            throw new IOException("ffmpeg exit code " + exit + ": "
+                    + output.substring(Math.max(0, output.length() - LOG_TAIL_CHARS)).trim());
+        }
+    }
+
+    private int runProcess(List<String> command, Path logFile) throws IOException, InterruptedException {
+        log.debug("[TRANSCODE] {}", String.join(" ", command));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        try {
+            if (!process.waitFor(Math.max(1, timeoutMinutes), TimeUnit.MINUTES)) {
+                throw new IOException("ffmpeg timed out after " + timeoutMinutes + " min");
+            }
+            return process.exitValue();
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+                process.waitFor(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private boolean isFFmpegAvailable() {
+        try {
+            Process process = new ProcessBuilder(ffmpegPath, "-version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (Exception e) {
+            log.debug("FFmpeg not available: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    log.debug("Could not delete temp file {}: {}", p, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not clean up transcoding directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static String extension(String filename) {
+        if (filename != null) {
+            int dot = filename.lastIndexOf('.');
+            if (dot > 0 && dot < filename.length() - 1) {
+                return filename.substring(dot).toLowerCase();
+            }
+        }
+        return ".mp4";
+    }
+
+    private static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static String idOf(Object id) {
+        return id instanceof ObjectId oid ? oid.toHexString() : String.valueOf(id);
+    }
+}
@@ -0,0 +1,417 @@
+package com.pat.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second-tier, on-disk store for wall previews ({@code gfs-wall:<fileId>:<maxEdge>} JPEGs).
+ * <p>
+ * Layout under {@code app.image.wall-preview.disk-cache.dir}:
+ * <ul>
+ *   <li>{@code objects/<aa>/<sha256>.jpg} – preview bytes, content-addressed (identical previews share one file)</li>
+ *   <li>{@code keys/<aa>/<sha256(key)>.ref} – {@code <content sha256>\n<cache key>}</li>
+ * </ul>
+ * The index is rebuilt from these files at startup, so previews survive restarts and heap-tier eviction.
+ * Reads copy the object into a heap array with one plain read (previews are small and the bytes are copied
+ * into the response anyway; a memory map would stay mapped until GC and keep an evicted or replaced object's
+ * file pinned, which Windows refuses to delete). Eviction is least-recently-used by object, bounded in bytes.
+ */
+@Service
+public class WallPreviewDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WallPreviewDiskCache.class);
+
+    private static final String OBJECTS_DIR = "objects";
+    private static final String KEYS_DIR = "keys";
+    private static final String OBJECT_SUFFIX = ".jpg";
+    private static final String REF_SUFFIX = ".ref";
+
+    /** Largest preview accepted on disk (2048px JPEG at q=0.94 stays well under this). */
+    private static final int MAX_OBJECT_BYTES = 16 * 1024 * 1024;
+
+    @Value("${app.image.wall-preview.disk-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.image.wall-preview.disk-cache.dir:./cache/wall-previews}")
+    private String cacheDir;
+
+    @Value("${app.image.wall-preview.disk-cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    private Path root;
+    private volatile boolean ready;
+
+    /** Guards {@link #keyToObject}, {@link #objectKeys} and {@link #objects}. */
+    private final Object lock = new Object();
+    private final Map<String, String> keyToObject = new HashMap<>();
+    private final Map<String, Set<String>> objectKeys = new HashMap<>();
+    /** Content hash → size in bytes, in access order (eldest = least recently used). */
+    private final LinkedHashMap<String, Long> objects = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            log.info("Wall preview disk cache disabled (app.image.wall-preview.disk-cache.enabled=false)");
+            return;
+        }
+        try {
+            root = Paths.get(cacheDir).toAbsolutePath().normalize();
+            Files.createDirectories(root.resolve(OBJECTS_DIR));
+            Files.createDirectories(root.resolve(KEYS_DIR));
+        } catch (IOException e) {
+            log.warn("Wall preview disk cache unavailable ({}): {}", cacheDir, e.getMessage());
+            return;
+        }
+        Thread loader = new Thread(this::rebuildIndex, "wall-preview-disk-index");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Whether {@code cacheKey} belongs to this tier (only wall previews are stored on disk).
+     */
+    public boolean handles(String cacheKey) {
+        return cacheKey != null && cacheKey.startsWith("gfs-wall:");
+    }
+
+    /**
+     * @return preview bytes, or {@code null} on miss (or while the index is still loading)
+     */
+    public byte[] get(String cacheKey) {
+        if (!ready || !handles(cacheKey)) {
+            return null;
+        }
+        String hash;
+        synchronized (lock) {
+            hash = keyToObject.get(cacheKey);
+            if (hash != null) {
+                objects.get(hash); // touch for LRU order
+            }
+        }
+        if (hash == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        Path objectPath = objectPath(hash);
+        try {
+            long size = Files.size(objectPath);
+            if (size <= 0 || size > MAX_OBJECT_BYTES) {
+                throw new IOException("unexpected object size " + size);
+            }
+            byte[] data = Files.readAllBytes(objectPath);
+            hits.incrementAndGet();
+            touch(objectPath);
+            return data;
+        } catch (IOException e) {
+            log.debug("Wall preview disk object unreadable, dropping key={}: {}", cacheKey, e.getMessage());
+            dropObject(hash);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store a preview. Failures are logged and ignored: the disk tier is best effort.
+     */
+    public void put(String cacheKey, byte[] data) {
+        if (!ready || !handles(cacheKey) || data == null || data.length == 0 || data.length > MAX_OBJECT_BYTES) {
+            return;
+        }
+        try {
+            String hash = sha256Hex(data);
+            Path objectPath = objectPath(hash);
+            boolean objectKnown;
+            synchronized (lock) {
+                if (hash.equals(keyToObject.get(cacheKey))) {
+                    return;
+                }
+                objectKnown = objects.containsKey(hash);
+            }
+            if (!objectKnown || !Files.exists(objectPath)) {
+                writeAtomically(objectPath, data);
+            }
+            writeAtomically(refPath(cacheKey), (hash + "\n" + cacheKey).getBytes(StandardCharsets.UTF_8));
+            synchronized (lock) {
+                String previous = keyToObject.put(cacheKey, hash);
+                if (previous != null && !previous.equals(hash)) {
+                    unlinkKey(previous, cacheKey);
+                }
+                objectKeys.computeIfAbsent(hash, h -> new HashSet<>()).add(cacheKey);
+                if (objects.put(hash, (long) data.length) == null) {
+                    totalBytes.addAndGet(data.length);
+                }
+            }
+            writes.incrementAndGet();
+            evictIfNeeded();
+        } catch (IOException e) {
+            log.debug("Could not write wall preview to disk cache (key={}): {}", cacheKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove every preview of a GridFS file (all sizes), e.g. when the file is deleted.
+     */
+    public void invalidateFile(String fileId) {
+        if (!ready || fileId == null) {
+            return;
+        }
+        String prefix = "gfs-wall:" + fileId + ":";
+        List<String> keys = new ArrayList<>();
+        synchronized (lock) {
+            for (String key : keyToObject.keySet()) {
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                }
+            }
+        }
+        for (String key : keys) {
+            String hash;
+            synchronized (lock) {
+                hash = keyToObject.remove(key);
+                if (hash != null) {
+                    unlinkKey(hash, key);
+                }
+            }
+            deleteQuietly(refPath(key));
+        }
+    }
+
+    public void clear() {
+        if (root == null) {
+            return;
+        }
+        List<String> hashes;
+        synchronized (lock) {
+            hashes = new ArrayList<>(objects.keySet());
+        }
+        for (String hash : hashes) {
+            dropObject(hash);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled && root != null);
+        stats.put("ready", ready);
+        synchronized (lock) {
+            stats.put("keyCount", keyToObject.size());
+            stats.put("objectCount", objects.size());
+        }
+        stats.put("totalSizeBytes", totalBytes.get());
+        stats.put("totalSizeMB", Math.round(totalBytes.get() / (1024.0 * 1024.0) * 100.0) / 100.0);
+        stats.put("maxSizeMB", maxSizeMb);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writes.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        Map<String, Long> sizes = new HashMap<>();
+        List<Map.Entry<String, FileTime>> byAccess = new ArrayList<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root.resolve(OBJECTS_DIR))) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard, "*" + OBJECT_SUFFIX)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        String hash = name.substring(0, name.length() - OBJECT_SUFFIX.length());
+                        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                        sizes.put(hash, attrs.size());
+                        byAccess.add(Map.entry(hash, attrs.lastModifiedTime()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Wall preview disk cache: could not scan objects: {}", e.getMessage());
+        }
+        byAccess.sort(Map.Entry.comparingByValue());
+
+        Map<String, String> refs = new HashMap<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(root.resolve(KEYS_DIR))) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard, "*" + REF_SUFFIX)) {
+                    for (Path file : files) {
+                        String content = Files.readString(file, StandardCharsets.UTF_8);
+                        int nl = content.indexOf('\n');
+                        String hash = nl > 0 ? content.substring(0, nl) : null;
+                        String key = nl > 0 ? content.substring(nl + 1) : null;
+                        if (hash == null || key == null || key.isEmpty() || !sizes.containsKey(hash)) {
+                            deleteQuietly(file); // dangling reference
+                            continue;
+                        }
+                        refs.put(key, hash);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Wall preview disk cache: could not scan keys: {}", e.getMessage());
+        }
+
+        long total = 0;
+        synchronized (lock) {
+            for (Map.Entry<String, FileTime> e : byAccess) {
+                objects.put(e.getKey(), sizes.get(e.getKey()));
+                total += sizes.get(e.getKey());
+            }
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                keyToObject.put(ref.getKey(), ref.getValue());
+                objectKeys.computeIfAbsent(ref.getValue(), h -> new HashSet<>()).add(ref.getKey());
+            }
+        }
+        totalBytes.set(total);
+        ready = true;
+        log.info("Wall preview disk cache ready: {} previews, {} objects, {} MB in {} ms ({})",
+                refs.size(), sizes.size(), total / (1024 * 1024), System.currentTimeMillis() - start, root);
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long limit = Math.max(1L, maxSizeMb) * 1024L * 1024L;
+        if (totalBytes.get() <= limit) {
+            return;
+        }
+        long target = limit * 9 / 10;
+        List<String> victims = new ArrayList<>();
+        synchronized (lock) {
+            long projected = totalBytes.get();
+            Iterator<Map.Entry<String, Long>> it = objects.entrySet().iterator();
+            while (projected > target && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                victims.add(eldest.getKey());
+                projected -= eldest.getValue();
+            }
+        }
+        for (String hash : victims) {
+            dropObject(hash);
+            evictions.incrementAndGet();
+        }
+        log.debug("Wall preview disk cache evicted {} object(s), now {} MB", victims.size(), totalBytes.get() / (1024 * 1024));
+    }
+
+    private void dropObject(String hash) {
+        Set<String> keys;
+        synchronized (lock) {
+            Long size = objects.remove(hash);
+            if (size != null) {
+                totalBytes.addAndGet(-size);
+            }
+            keys = objectKeys.remove(hash);
+            if (keys != null) {
+                for (String key : keys) {
+                    keyToObject.remove(key, hash);
+                }
+            }
+        }
+        if (keys != null) {
+            for (String key : keys) {
+                deleteQuietly(refPath(key));
+            }
+        }
+        deleteQuietly(objectPath(hash));
+    }
+
+    /** Caller holds {@link #lock}. Deletes the object once no key references it any more. */
+    private void unlinkKey(String hash, String key) {
+        Set<String> keys = objectKeys.get(hash);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            objectKeys.remove(hash);
+            Long size = objects.remove(hash);
+            if (size != null) {
+                totalBytes.addAndGet(-size);
+            }
+            deleteQuietly(objectPath(hash));
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return root.resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash + OBJECT_SUFFIX);
+    }
+
+    private Path refPath(String cacheKey) {
+        String keyHash = sha256Hex(cacheKey.getBytes(StandardCharsets.UTF_8));
+        return root.resolve(KEYS_DIR).resolve(keyHash.substring(0, 2)).resolve(keyHash + REF_SUFFIX);
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "tmp-", ".part");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // LRU order across restarts is best effort
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
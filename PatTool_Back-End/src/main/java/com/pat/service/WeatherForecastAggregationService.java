@@ -1,21 +1,43 @@
 package com.pat.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Aggregates multi-day point forecasts from OpenWeatherMap, Open-Meteo and Météo-France (via Open-Meteo seamless)
  * on a unified timeline (horizon + step in minutes).
+ * <p>
+ * Upstream calls run on a dedicated bounded pool (blocking HTTP must not occupy the common ForkJoinPool) with a
+ * deadline per source: a provider that hangs is reported as a source error and the other sources are still
+ * returned / streamed on time. Identical requests in flight (same source, horizon, step and ~1 km grid cell)
+ * share one upstream call.
  */
 @Service
 public class WeatherForecastAggregationService {
@@ -25,17 +47,47 @@ public class WeatherForecastAggregationService {
     private static final List<String> SOURCE_KEYS = List.of("openweathermap", "open-meteo", "meteofrance");
     private static final List<String> PARAM_KEYS = List.of("tempC", "humidityPct", "precipMm", "windSpeedMs", "pop");
 
+    /** Coalescing grid cell (degrees): requests within the same cell share the upstream call. */
+    private static final double COALESCE_CELL_DEG = 0.01;
+
     private final OpenWeatherService openWeatherService;
     private final OpenMeteoService openMeteoService;
     private final MeteoFranceForecastPreferenceService forecastPreferenceService;
+    private final long sourceTimeoutMs;
+    private final ExecutorService upstreamExecutor;
+    /** Upstream calls in flight by coalescing key (source|cell|horizon|step). */
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    /** Micrometer registry of the actuator. */
+    private final MeterRegistry meterRegistry;
 
     public WeatherForecastAggregationService(
             OpenWeatherService openWeatherService,
             OpenMeteoService openMeteoService,
-            MeteoFranceForecastPreferenceService forecastPreferenceService) {
+            MeteoFranceForecastPreferenceService forecastPreferenceService,
+            MeterRegistry meterRegistry,
+            @Value("${weather.forecast.aggregation.source-timeout-ms:12000}") long sourceTimeoutMs,
+            @Value("${weather.forecast.aggregation.threads:8}") int threads) {
         this.openWeatherService = openWeatherService;
         this.openMeteoService = openMeteoService;
         this.forecastPreferenceService = forecastPreferenceService;
+        this.meterRegistry = meterRegistry;
+        this.sourceTimeoutMs = Math.max(1000L, sourceTimeoutMs);
+        int poolSize = Math.max(SOURCE_KEYS.size(), threads);
+        this.upstreamExecutor = new ThreadPoolExecutor(
+                poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(poolSize * 8),
+                r -> {
+                    Thread t = new Thread(r, "forecast-upstream");
+                    t.setDaemon(true);
+                    return t;
+                });
+        ((ThreadPoolExecutor) upstreamExecutor).allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        upstreamExecutor.shutdownNow();
     }
 
     public Map<String, Object> getAggregatedForecast(double lat, double lon, String jwtSubject) {
@@ -63,17 +115,13 @@ public class WeatherForecastAggregationService {
         List<String> sourcesAvailable = new ArrayList<>();
         Map<String, List<Map<String, Object>>> sourceItems = new LinkedHashMap<>();
 
-        CompletableFuture<Map<String, Object>> owmFuture = CompletableFuture.supplyAsync(() ->
-                openWeatherService.getForecastByCoordinates(lat, lon, null, horizon, step));
-        CompletableFuture<Map<String, Object>> omFuture = CompletableFuture.supplyAsync(() ->
-                openMeteoService.getForecastByCoordinates(lat, lon, jwtSubject, horizon, step));
-        CompletableFuture<Map<String, Object>> mfFuture = CompletableFuture.supplyAsync(() ->
-                openMeteoService.getMeteoFranceForecastByCoordinates(lat, lon, jwtSubject, horizon, step));
-        CompletableFuture.allOf(owmFuture, omFuture, mfFuture).join();
-
-        collectSource(sourceItems, sourcesAvailable, sourceErrors, "openweathermap", owmFuture.join());
-        collectSource(sourceItems, sourcesAvailable, sourceErrors, "open-meteo", omFuture.join());
-        collectSource(sourceItems, sourcesAvailable, sourceErrors, "meteofrance", mfFuture.join());
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new LinkedHashMap<>();
+        for (String sourceKey : SOURCE_KEYS) {
+            futures.put(sourceKey, fetchSource(sourceKey, lat, lon, jwtSubject, horizon, step));
+        }
+        for (Map.Entry<String, CompletableFuture<Map<String, Object>>> entry : futures.entrySet()) {
+            collectSource(sourceItems, sourcesAvailable, sourceErrors, entry.getKey(), awaitPayload(entry.getValue()));
+        }
 
         List<Map<String, Object>> steps = buildAlignedSteps(slots, toleranceSec, sourceItems);
         result.put("steps", steps);
@@ -109,38 +157,130 @@ public class WeatherForecastAggregationService {
             }
         };
 
-        CompletableFuture
-                .supplyAsync(() -> openWeatherService.getForecastByCoordinates(lat, lon, null, horizon, step))
-                .whenComplete((payload, error) -> {
-                    if (onSource != null) {
-                        onSource.accept(wrapStreamSourcePayload("openweathermap", payload, error));
-                    }
-                    finishOne.run();
-                });
-        CompletableFuture
-                .supplyAsync(() -> openMeteoService.getForecastByCoordinates(lat, lon, jwtSubject, horizon, step))
-                .whenComplete((payload, error) -> {
-                    if (onSource != null) {
-                        onSource.accept(wrapStreamSourcePayload("open-meteo", payload, error));
-                    }
-                    finishOne.run();
-                });
-        CompletableFuture
-                .supplyAsync(() -> openMeteoService.getMeteoFranceForecastByCoordinates(lat, lon, jwtSubject, horizon, step))
-                .whenComplete((payload, error) -> {
-                    if (onSource != null) {
-                        onSource.accept(wrapStreamSourcePayload("meteofrance", payload, error));
-                    }
-                    finishOne.run();
-                });
+        for (String sourceKey : SOURCE_KEYS) {
+            fetchSource(sourceKey, lat, lon, jwtSubject, horizon, step)
+                    .whenComplete((payload, error) -> {
+                        if (onSource != null) {
+                            onSource.accept(wrapStreamSourcePayload(sourceKey, payload, error));
+                        }
+                        finishOne.run();
+                    });
+        }
+    }
+
+    /**
+     * Upstream forecast of one source, completed exceptionally (with a {@link TimeoutException}) after
+     * {@code weather.forecast.aggregation.source-timeout-ms}; the call is then cancelled (its thread interrupted).
+     * A call already in flight for the same source, grid cell, horizon and step is shared.
+     */
+    private CompletableFuture<Map<String, Object>> fetchSource(
+            String sourceKey, double lat, double lon, String jwtSubject, int horizon, int step) {
+        String key = String.format(Locale.ROOT, "%s|%d|%d|%d|%d", sourceKey,
+                Math.round(lat / COALESCE_CELL_DEG), Math.round(lon / COALESCE_CELL_DEG), horizon, step);
+        CompletableFuture<Map<String, Object>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalescedCounter(sourceKey).increment();
+            return existing;
+        }
+        Supplier<Map<String, Object>> call = switch (sourceKey) {
+            case "openweathermap" -> () -> openWeatherService.getForecastByCoordinates(lat, lon, null, horizon, step);
+            case "open-meteo" -> () -> openMeteoService.getForecastByCoordinates(lat, lon, jwtSubject, horizon, step);
+            default -> () -> openMeteoService.getMeteoFranceForecastByCoordinates(lat, lon, jwtSubject, horizon, step);
+        };
+        long startNanos = System.nanoTime();
+        Future<?> task;
+        try {
+            task = upstreamExecutor.submit(() -> {
+                try {
+                    created.complete(call.get());
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            upstreamTimer(sourceKey, "rejected").record(0, TimeUnit.NANOSECONDS);
+            created.completeExceptionally(new RejectedExecutionException("too many forecast requests in progress"));
+            return created;
+        }
+        created.orTimeout(sourceTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((payload, error) -> {
+            inFlight.remove(key, created);
+            String outcome = error == null ? "ok" : error instanceof TimeoutException ? "timeout" : "error";
+            upstreamTimer(sourceKey, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (error instanceof TimeoutException) {
+                task.cancel(true);
+                log.warn("Forecast source {} did not answer within {} ms (lat={}, lon={})",
+                        sourceKey, sourceTimeoutMs, lat, lon);
+            }
+        });
+        return created;
+    }
+
+    /** Payload of a source future, or a payload carrying {@code error} when it failed or timed out. */
+    private Map<String, Object> awaitPayload(CompletableFuture<Map<String, Object>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of("error", "interrupted");
+        } catch (ExecutionException e) {
+            return Map.of("error", describeError(e.getCause()));
+        }
+    }
+
+    private String describeError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "timed out after " + sourceTimeoutMs + " ms";
+        }
+        return cause != null && cause.getMessage() != null ? cause.getMessage() : "request failed";
+    }
+
+    private Timer upstreamTimer(String sourceKey, String outcome) {
+        return Timer.builder("pattool.weather.forecast.upstream")
+                .description("Upstream forecast call latency per source (outcome ok / error / timeout / rejected)")
+                .tag("source", sourceKey)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter coalescedCounter(String sourceKey) {
+        return Counter.builder("pattool.weather.forecast.coalesced")
+                .description("Forecast requests served by an upstream call already in flight")
+                .tag("source", sourceKey)
+                .register(meterRegistry);
+    }
+
+    /** Calls, mean and max latency per source and outcome since startup. */
+    public Map<String, Object> getSourceStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String sourceKey : SOURCE_KEYS) {
+            Map<String, Object> bySource = new LinkedHashMap<>();
+            for (String outcome : List.of("ok", "error", "timeout", "rejected")) {
+                Timer timer = upstreamTimer(sourceKey, outcome);
+                if (timer.count() == 0) {
+                    continue;
+                }
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("calls", timer.count());
+                m.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+                m.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+                bySource.put(outcome, m);
+            }
+            bySource.put("coalesced", (long) coalescedCounter(sourceKey).count());
+            stats.put(sourceKey, bySource);
+        }
+        stats.put("inFlight", inFlight.size());
+        return stats;
     }
 
-    private static Map<String, Object> wrapStreamSourcePayload(
+    private Map<String, Object> wrapStreamSourcePayload(
             String sourceKey, Map<String, Object> payload, Throwable error) {
         Map<String, Object> event = new LinkedHashMap<>();
         event.put("source", sourceKey);
         if (error != null) {
-            event.put("error", error.getMessage() != null ? error.getMessage() : "request failed");
+            event.put("error", describeError(error));
             return event;
         }
         if (payload == null) {
@@ -0,0 +1,303 @@
+package com.pat.service.assistant;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pat.controller.dto.AssistantChatResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lecture des réponses {@code text/event-stream} des fournisseurs (OpenAI / Mistral Chat Completions,
+ * Anthropic Messages, Gemini {@code streamGenerateContent?alt=sse}) via le {@link RestTemplate} du fournisseur :
+ * chaque événement {@code data:} JSON est confié au {@link EventHandler} propre au fournisseur, qui alimente un
+ * {@link StreamedCompletion}.
+ * <p>
+ * Les erreurs HTTP (4xx / 5xx) remontent comme avec {@code exchange} ({@code HttpStatusCodeException}), ce qui
+ * permet aux services de garder leurs blocs {@code catch} existants.
+ */
+public final class AssistantSseSupport {
+
+    private static final Logger log = LoggerFactory.getLogger(AssistantSseSupport.class);
+
+    private AssistantSseSupport() {
+    }
+
+    /** Traitement d’un événement SSE décodé ({@code event} vaut {@code null} si la ligne {@code event:} est absente). */
+    @FunctionalInterface
+    public interface EventHandler {
+        void onEvent(String event, JsonNode data, StreamedCompletion out);
+    }
+
+    /**
+     * Événements Chat Completions compatibles OpenAI (OpenAI, Mistral) : {@code choices[0].delta.content},
+     * {@code usage} dans le dernier fragment (OpenAI : {@code stream_options.include_usage}).
+     */
+    public static final EventHandler CHAT_COMPLETIONS = (event, data, out) -> {
+        JsonNode err = data.get("error");
+        if (err != null && !err.isNull()) {
+            out.setError(err.isTextual() ? err.asText() : err.path("message").asText("Erreur du fournisseur IA"));
+            return;
+        }
+        out.setId(data.path("id").asText(""));
+        out.setModel(data.path("model").asText(""));
+        JsonNode choices = data.get("choices");
+        if (choices != null && choices.isArray() && !choices.isEmpty()) {
+            JsonNode choice = choices.get(0);
+            JsonNode delta = choice.path("delta");
+            out.appendText(deltaText(delta.get("content")));
+            out.appendText(deltaText(delta.get("refusal")));
+            out.setFinishReason(choice.path("finish_reason").asText(""));
+        }
+        JsonNode usage = data.get("usage");
+        if (usage != null && !usage.isNull()) {
+            if (usage.has("prompt_tokens")) {
+                out.setInputTokens(usage.get("prompt_tokens").asInt());
+            }
+            if (usage.has("completion_tokens")) {
+                out.setOutputTokens(usage.get("completion_tokens").asInt());
+            }
+        }
+    };
+
+    /**
+     * Texte d’un fragment {@code delta} : chaîne, ou tableau de parties {@code {type, text}}.
+     * Jamais {@code trim()} : les espaces en tête / fin font partie du texte diffusé.
+     */
+    public static String deltaText(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return "";
+        }
+        if (node.isTextual()) {
+            return node.asText();
+        }
+        if (node.isArray()) {
+            StringBuilder sb = new StringBuilder();
+            for (JsonNode part : node) {
+                JsonNode t = part.isTextual() ? part : part.get("text");
+                if (t != null && t.isTextual()) {
+                    sb.append(t.asText());
+                }
+            }
+            return sb.toString();
+        }
+        return "";
+    }
+
+    /**
+     * POST {@code entity} vers {@code url} et lit le flux SSE jusqu’à la fin, {@code [DONE]} ou l’annulation
+     * de {@code stream}. En cas d’annulation, le texte déjà reçu est conservé dans le résultat.
+     */
+    public static StreamedCompletion exchange(
+            RestTemplate restTemplate,
+            ObjectMapper objectMapper,
+            String url,
+            HttpEntity<?> entity,
+            AssistantStream stream,
+            EventHandler handler) {
+        StreamedCompletion out = new StreamedCompletion(stream);
+        try {
+            restTemplate.execute(url, HttpMethod.POST, restTemplate.httpEntityCallback(entity), response -> {
+                readEvents(response.getBody(), objectMapper, handler, out);
+                return null;
+            });
+        } catch (ResourceAccessException e) {
+            if (!stream.isCancelled()) {
+                throw e;
+            }
+            log.debug("Assistant stream I/O error after cancellation: {}", e.getMessage());
+        }
+        return out;
+    }
+
+    /**
+     * Le lecteur est fermé directement (sans vider le corps comme le ferait {@code ClientHttpResponse.close()}) :
+     * sur annulation, la connexion amont est coupée au lieu de lire la fin de la génération.
+     */
+    private static void readEvents(
+            InputStream body, ObjectMapper objectMapper, EventHandler handler, StreamedCompletion out)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String event = null;
+            StringBuilder data = new StringBuilder();
+            String line;
+            while (!out.isCancelled() && (line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (!dispatch(event, data, objectMapper, handler, out)) {
+                        return;
+                    }
+                    event = null;
+                    data.setLength(0);
+                } else if (line.startsWith("data:")) {
+                    if (!data.isEmpty()) {
+                        data.append('\n');
+                    }
+                    data.append(fieldValue(line, 5));
+                } else if (line.startsWith("event:")) {
+                    event = fieldValue(line, 6);
+                }
+                // ":" (commentaire / keep-alive), "id:", "retry:" : ignorés
+            }
+            if (!out.isCancelled()) {
+                dispatch(event, data, objectMapper, handler, out);
+            }
+        }
+    }
+
+    /** @return {@code false} quand le fournisseur signale la fin du flux ({@code [DONE]}). */
+    private static boolean dispatch(
+            String event, StringBuilder data, ObjectMapper objectMapper, EventHandler handler, StreamedCompletion out) {
+        if (data.isEmpty()) {
+            return true;
+        }
+        String payload = data.toString();
+        if ("[DONE]".equals(payload.trim())) {
+            return false;
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(payload);
+        } catch (IOException e) {
+            log.debug("Ignoring non-JSON assistant stream event: {}", e.getMessage());
+            return true;
+        }
+        handler.onEvent(event, node, out);
+        return true;
+    }
+
+    private static String fieldValue(String line, int prefixLength) {
+        String v = line.substring(prefixLength);
+        return v.startsWith(" ") ? v.substring(1) : v;
+    }
+
+    /** Réponse reconstituée au fil des événements d’un flux fournisseur. */
+    public static final class StreamedCompletion {
+
+        private final AssistantStream stream;
+        private final StringBuilder text = new StringBuilder();
+        private String id = "";
+        private String model;
+        private Integer inputTokens;
+        private Integer outputTokens;
+        private String finishReason;
+        private String error;
+
+        StreamedCompletion(AssistantStream stream) {
+            this.stream = stream;
+        }
+
+        /** Ajoute un fragment à la réponse et le relaie immédiatement au client. */
+        public void appendText(String fragment) {
+            if (fragment == null || fragment.isEmpty()) {
+                return;
+            }
+            text.append(fragment);
+            stream.delta(fragment);
+        }
+
+        public boolean isCancelled() {
+            return stream.isCancelled();
+        }
+
+        public String getText() {
+            return text.toString();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            if (id != null && !id.isBlank()) {
+                this.id = id;
+            }
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            if (model != null && !model.isBlank()) {
+                this.model = model;
+            }
+        }
+
+        public Integer getInputTokens() {
+            return inputTokens;
+        }
+
+        public void setInputTokens(Integer inputTokens) {
+            this.inputTokens = inputTokens;
+        }
+
+        public Integer getOutputTokens() {
+            return outputTokens;
+        }
+
+        public void setOutputTokens(Integer outputTokens) {
+            this.outputTokens = outputTokens;
+        }
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        public void setFinishReason(String finishReason) {
+            if (finishReason != null && !finishReason.isBlank()) {
+                this.finishReason = finishReason;
+            }
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        /**
+         * Même forme que la réponse non diffusée ({@code okTimed}) ; erreur si le fournisseur a signalé une erreur
+         * en cours de flux, si le client a annulé ou si aucun texte n’a été produit.
+         */
+        public AssistantChatResponseDto toResponse(String providerLabel, String modelFallback, long startNs) {
+            if (error != null) {
+                return AssistantChatResponseDto.err(error);
+            }
+            if (stream.isCancelled()) {
+                return AssistantChatResponseDto.err("Réponse interrompue à la demande du client.");
+            }
+            String content = text.toString().trim();
+            if (content.isEmpty()) {
+                if ("max_tokens".equals(finishReason) || "length".equals(finishReason)
+                        || "MAX_TOKENS".equals(finishReason)) {
+                    return AssistantChatResponseDto.err(
+                            "Réponse vide du fournisseur IA (limite de jetons de sortie atteinte).");
+                }
+                return AssistantChatResponseDto.err(
+                        "Réponse du fournisseur IA sans texte exploitable"
+                                + (finishReason == null ? "." : " (" + finishReason + ")."));
+            }
+            int elapsedMs = (int) Math.min((System.nanoTime() - startNs) / 1_000_000L, Integer.MAX_VALUE);
+            return AssistantChatResponseDto.okTimed(
+                    id,
+                    model != null ? model : modelFallback,
+                    providerLabel,
+                    "assistant",
+                    content,
+                    inputTokens,
+                    outputTokens,
+                    elapsedMs);
+        }
+    }
+}
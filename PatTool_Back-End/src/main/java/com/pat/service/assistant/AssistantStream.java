@@ -0,0 +1,59 @@
+package com.pat.service.assistant;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Tour d’assistant diffusé jeton par jeton : reçoit les fragments de texte des services fournisseurs,
+ * mesure le délai du premier jeton et porte l’annulation demandée par le client.
+ * <p>
+ * L’annulation est vérifiée entre deux événements SSE du fournisseur ; le flux HTTP amont est alors fermé
+ * sans être vidé (voir {@link AssistantSseSupport}), ce qui coupe la connexion et arrête la génération
+ * côté fournisseur.
+ */
+public final class AssistantStream {
+
+    private final Consumer<String> deltaSink;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final long startNs = System.nanoTime();
+    private volatile long firstDeltaNs;
+    private volatile int deltaCount;
+
+    public AssistantStream(Consumer<String> deltaSink) {
+        this.deltaSink = deltaSink;
+    }
+
+    /** Fragment de texte de la réponse, relayé tel quel au client. */
+    public void delta(String text) {
+        if (text == null || text.isEmpty() || cancelled.get()) {
+            return;
+        }
+        if (firstDeltaNs == 0L) {
+            firstDeltaNs = System.nanoTime();
+        }
+        deltaCount++;
+        deltaSink.accept(text);
+    }
+
+    /** Demande d’arrêt (déconnexion du client) : le prochain événement amont ferme la connexion fournisseur. */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public int getDeltaCount() {
+        return deltaCount;
+    }
+
+    public long getStartNanos() {
+        return startNs;
+    }
+
+    /** {@code 0} tant qu’aucun fragment n’a été reçu. */
+    public long getFirstDeltaNanos() {
+        return firstDeltaNs;
+    }
+}
@@ -0,0 +1,97 @@
+package com.pat.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Reduces a time series (sorted by x) to a point budget for charts. Both methods return a subset of the input
+ * points in their original order, or the input itself when it already fits.
+ */
+public final class SeriesDownsampling {
+
+    private SeriesDownsampling() {
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last points and, in each of {@code threshold - 2}
+     * buckets, the point forming the largest triangle with the previous kept point and the next bucket average.
+     */
+    public static <T> List<T> lttb(List<T> data, ToDoubleFunction<T> x, ToDoubleFunction<T> y, int threshold) {
+        int n = data.size();
+        if (threshold >= n || threshold < 3) {
+            return data;
+        }
+        List<T> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        sampled.add(data.get(0));
+        for (int i = 0; i < threshold - 2; i++) {
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(n, (int) Math.floor((i + 2) * bucketSize) + 1);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x.applyAsDouble(data.get(j));
+                avgY += y.applyAsDouble(data.get(j));
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double ax = x.applyAsDouble(data.get(a));
+            double ay = y.applyAsDouble(data.get(a));
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (y.applyAsDouble(data.get(j)) - ay)
+                        - (ax - x.applyAsDouble(data.get(j))) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            sampled.add(data.get(chosen));
+            a = chosen;
+        }
+        sampled.add(data.get(n - 1));
+        return sampled;
+    }
+
+    /** {@code threshold / 2} slots of equal width in x, each reduced to its lowest and highest point (in x order). */
+    public static <T> List<T> minMax(List<T> data, ToDoubleFunction<T> x, ToDoubleFunction<T> y, int threshold) {
+        int n = data.size();
+        if (threshold >= n || threshold < 2) {
+            return data;
+        }
+        int slots = threshold / 2;
+        double x0 = x.applyAsDouble(data.get(0));
+        double span = x.applyAsDouble(data.get(n - 1)) - x0;
+        List<T> sampled = new ArrayList<>(threshold);
+        int i = 0;
+        for (int slot = 0; slot < slots && i < n; slot++) {
+            double slotEnd = slot == slots - 1 ? Double.POSITIVE_INFINITY : x0 + span * (slot + 1) / slots;
+            int min = -1;
+            int max = -1;
+            for (; i < n && x.applyAsDouble(data.get(i)) < slotEnd; i++) {
+                double v = y.applyAsDouble(data.get(i));
+                if (min < 0 || v < y.applyAsDouble(data.get(min))) {
+                    min = i;
+                }
+                if (max < 0 || v > y.applyAsDouble(data.get(max))) {
+                    max = i;
+                }
+            }
+            if (min < 0) {
+                continue;
+            }
+            sampled.add(data.get(Math.min(min, max)));
+            if (min != max) {
+                sampled.add(data.get(Math.max(min, max)));
+            }
+        }
+        return sampled;
+    }
+}
@@ -0,0 +1,395 @@
+package com.pat.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Byte-weighted in-memory cache with W-TinyLFU style admission (small LRU window in front of a
+ * segmented LRU main area; a count-min sketch decides whether a window candidate may displace the
+ * coldest main entry). All operations are O(1) apart from {@link #removeIf}, {@link #forEach} and
+ * {@link #snapshot}; total weight is tracked with running counters.
+ * <p>
+ * Thread-safe through a single monitor: critical sections only relink a few nodes.
+ */
+public final class WeightedLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maxWeight;
+    private final int maxEntries;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final ToLongFunction<V> weigher;
+
+    private final Map<K, Node<K, V>> index = new HashMap<>();
+    private final Segment<K, V>[] segments;
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param maxWeight  upper bound for the sum of entry weights (e.g. bytes)
+     * @param maxEntries upper bound for the number of entries
+     * @param weigher    weight of a value; must be stable while the value is cached
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WeightedLfuCache(long maxWeight, int maxEntries, ToLongFunction<V> weigher) {
+        this.maxWeight = Math.max(1L, maxWeight);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.weigher = weigher;
+        this.windowMaxWeight = Math.max(1L, this.maxWeight / 100);
+        this.protectedMaxWeight = (this.maxWeight - this.windowMaxWeight) * 4 / 5;
+        this.segments = new Segment[] { new Segment<K, V>(), new Segment<K, V>(), new Segment<K, V>() };
+        this.sketch = new FrequencySketch(this.maxEntries);
+    }
+
+    /** Lookup that counts towards hit/miss statistics and entry frequency. */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /** Lookup without side effects. */
+    public synchronized V peek(K key) {
+        Node<K, V> node = index.get(key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Insert or replace. Values heavier than the whole cache are not stored.
+     *
+     * @return {@code true} if the value is cached after the call
+     */
+    public synchronized boolean put(K key, V value) {
+        long weight = Math.max(0L, weigher.applyAsLong(value));
+        sketch.increment(key);
+        Node<K, V> existing = index.get(key);
+        if (weight > maxWeight) {
+            if (existing != null) {
+                unlink(existing);
+                index.remove(key);
+            }
+            rejections++;
+            return false;
+        }
+        if (existing != null) {
+            Segment<K, V> segment = segments[existing.segment];
+            segment.weight += weight - existing.weight;
+            existing.value = value;
+            existing.weight = weight;
+            onAccess(existing);
+        } else {
+            Node<K, V> node = new Node<>(key, value, weight);
+            index.put(key, node);
+            link(node, WINDOW);
+        }
+        evictIfNeeded();
+        return index.containsKey(key);
+    }
+
+    public synchronized V remove(K key) {
+        Node<K, V> node = index.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    /** Removes the mapping only if it still points at {@code value}. */
+    public synchronized boolean remove(K key, V value) {
+        Node<K, V> node = index.get(key);
+        if (node == null || node.value != value) {
+            return false;
+        }
+        index.remove(key);
+        unlink(node);
+        return true;
+    }
+
+    /** O(n) sweep, e.g. for TTL expiry or prefix invalidation. */
+    public synchronized int removeIf(BiPredicate<? super K, ? super V> filter) {
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            Node<K, V> node = segment.head;
+            while (node != null) {
+                Node<K, V> next = node.next;
+                if (filter.test(node.key, node.value)) {
+                    index.remove(node.key);
+                    unlink(node);
+                    removed++;
+                }
+                node = next;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Evicts coldest entries (probation, then window, then protected) until the total weight is at most
+     * {@code targetWeight}. Used under memory pressure.
+     *
+     * @return weight released
+     */
+    public synchronized long shrinkTo(long targetWeight) {
+        long released = 0;
+        int[] order = { PROBATION, WINDOW, PROTECTED };
+        for (int s : order) {
+            while (weightedSize() > targetWeight && segments[s].head != null) {
+                Node<K, V> victim = segments[s].head;
+                released += victim.weight;
+                evict(victim);
+            }
+        }
+        return released;
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        for (Segment<K, V> segment : segments) {
+            segment.head = null;
+            segment.tail = null;
+            segment.weight = 0;
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long weightedSize() {
+        return segments[WINDOW].weight + segments[PROBATION].weight + segments[PROTECTED].weight;
+    }
+
+    public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Segment<K, V> segment : segments) {
+            for (Node<K, V> node = segment.head; node != null; node = node.next) {
+                action.accept(node.key, node.value);
+            }
+        }
+    }
+
+    /** Copy of the content, coldest first within each segment (window, probation, protected). */
+    public synchronized LinkedHashMap<K, V> snapshot() {
+        LinkedHashMap<K, V> copy = new LinkedHashMap<>(Math.max(16, index.size() * 4 / 3 + 1));
+        forEach(copy::put);
+        return copy;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Inserts refused because the value is heavier than the cache, or dropped by admission (candidate
+     * colder than the main-area victim; those are also counted in {@link #evictionCount()}).
+     */
+    public synchronized long rejectionCount() {
+        return rejections;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW, PROTECTED -> moveToTail(node);
+            default -> {
+                // probation hit: promote, demoting protected overflow back to probation
+                unlink(node);
+                link(node, PROTECTED);
+                Segment<K, V> prot = segments[PROTECTED];
+                while (prot.weight > protectedMaxWeight && prot.head != null && prot.head != node) {
+                    Node<K, V> demoted = prot.head;
+                    unlink(demoted);
+                    link(demoted, PROBATION);
+                }
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        Segment<K, V> window = segments[WINDOW];
+        while (window.weight > windowMaxWeight && window.head != null) {
+            Node<K, V> candidate = window.head;
+            unlink(candidate);
+            link(candidate, PROBATION);
+        }
+        while (weightedSize() > maxWeight || index.size() > maxEntries) {
+            Node<K, V> candidate = segments[PROBATION].tail; // latest arrival from the window
+            if (candidate == null) {
+                evict(segments[WINDOW].head != null ? segments[WINDOW].head : segments[PROTECTED].head);
+                continue;
+            }
+            Node<K, V> victim = segments[PROBATION].head != candidate
+                    ? segments[PROBATION].head
+                    : segments[PROTECTED].head;
+            if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                if (victim != null) {
+                    rejections++;
+                }
+                evict(candidate);
+            } else {
+                evict(victim);
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        index.remove(node.key);
+        unlink(node);
+        evictions++;
+    }
+
+    private void moveToTail(Node<K, V> node) {
+        int s = node.segment;
+        unlink(node);
+        link(node, s);
+    }
+
+    private void link(Node<K, V> node, int s) {
+        Segment<K, V> segment = segments[s];
+        node.segment = s;
+        node.prev = segment.tail;
+        node.next = null;
+        if (segment.tail != null) {
+            segment.tail.next = node;
+        } else {
+            segment.head = node;
+        }
+        segment.tail = node;
+        segment.weight += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        Segment<K, V> segment = segments[node.segment];
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            segment.head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            segment.tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        segment.weight -= node.weight;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        long weight;
+        int segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        Node<K, V> head; // least recently used
+        Node<K, V> tail; // most recently used
+        long weight;
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (4 rows). Counters are halved every {@code 10 * width}
+     * increments so that old popularity fades.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97cb3127, 0x5c6b2f4d, 0x2c1b3c6d, 0x7ed55d16 };
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int wanted = Math.max(64, Math.min(1 << 22, expectedEntries * 2));
+            int width = Integer.highestOneBit(wanted - 1) << 1;
+            this.table = new byte[width * DEPTH];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = slot(hash, row);
+                if (table[i] < MAX_COUNT) {
+                    table[i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (byte) (table[i] >>> 1);
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, table[slot(hash, row)]);
+            }
+            return min;
+        }
+
+        private int slot(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xed5ad4bb;
+            h ^= h >>> 11;
+            return h;
+        }
+    }
+}
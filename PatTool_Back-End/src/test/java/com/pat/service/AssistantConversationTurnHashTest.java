@@ -0,0 +1,54 @@
+package com.pat.service;
+
+import com.pat.repo.domain.AssistantConversationTurn;
+import com.pat.repo.domain.AssistantConversationTurnMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class AssistantConversationTurnHashTest {
+
+    private static AssistantConversationTurn turn(String role, String content) {
+        AssistantConversationTurn t = new AssistantConversationTurn();
+        t.setRole(role);
+        t.setContent(content);
+        return t;
+    }
+
+    @Test
+    void hashIsStableAndCoversEveryPersistedField() {
+        AssistantConversationTurn a = turn("assistant", "Bonjour");
+        String base = AssistantConversationService.turnHash(a);
+        assertEquals(base, AssistantConversationService.turnHash(turn("assistant", "Bonjour")));
+        assertEquals(22, base.length());
+
+        assertNotEquals(base, AssistantConversationService.turnHash(turn("user", "Bonjour")));
+        assertNotEquals(base, AssistantConversationService.turnHash(turn("assistant", "Bonjour ")));
+
+        AssistantConversationTurn withAsset = turn("assistant", "Bonjour");
+        withAsset.setGeneratedImageAssetIds(List.of("a1"));
+        assertNotEquals(base, AssistantConversationService.turnHash(withAsset));
+
+        AssistantConversationTurn withMeta = turn("assistant", "Bonjour");
+        AssistantConversationTurnMeta meta = new AssistantConversationTurnMeta();
+        meta.setOutputTokens(12);
+        withMeta.setMeta(meta);
+        assertNotEquals(base, AssistantConversationService.turnHash(withMeta));
+
+        // Field boundaries are part of the hash: "ab" + "" differs from "a" + "b"
+        AssistantConversationTurn split = turn("assistant", "Bonjou");
+        split.setImageDataUrl("r");
+        assertNotEquals(base, AssistantConversationService.turnHash(split));
+    }
+
+    @Test
+    void commonPrefixStopsAtFirstDifference() {
+        assertEquals(2, AssistantConversationService.commonPrefix(List.of("a", "b"), List.of("a", "b", "c")));
+        assertEquals(1, AssistantConversationService.commonPrefix(List.of("a", "b", "c"), List.of("a", "x", "c")));
+        assertEquals(0, AssistantConversationService.commonPrefix(List.of(), List.of("a")));
+        assertEquals(1, AssistantConversationService.commonPrefix(List.of("a", "b"), List.of("a")));
+    }
+}
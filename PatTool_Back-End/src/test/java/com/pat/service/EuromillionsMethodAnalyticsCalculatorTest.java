@@ -0,0 +1,83 @@
+package com.pat.service;
+
+import com.pat.repo.domain.EuromillionsDraw;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EuromillionsMethodAnalyticsCalculatorTest {
+
+    private static EuromillionsDraw draw(LocalDate date, List<Integer> numbers, List<Integer> stars) {
+        EuromillionsDraw d = new EuromillionsDraw();
+        d.setDrawDate(date);
+        d.setNumbers(new ArrayList<>(numbers));
+        d.setStars(new ArrayList<>(stars));
+        return d;
+    }
+
+    private static List<EuromillionsDraw> sample() {
+        List<EuromillionsDraw> draws = new ArrayList<>();
+        LocalDate day = LocalDate.of(2020, 1, 3);
+        draws.add(draw(day, List.of(1, 2, 3, 4, 5), List.of(1, 2)));
+        draws.add(draw(day.plusDays(3), List.of(1, 10, 20, 30, 40), List.of(3, 12)));
+        draws.add(draw(day.plusDays(7), List.of(2, 11, 21, 31, 41), List.of(1, 5)));
+        draws.add(draw(day.plusDays(10), List.of(1, 2, 22, 32, 42), List.of(2, 13)));
+        return draws;
+    }
+
+    @Test
+    void gapUsesFirstAndLastAppearance() {
+        Map<String, Object> gap = EuromillionsMethodAnalyticsCalculator.computeAll(sample(), 10)
+                .get(EuromillionsMethodIds.GAP_RECURRENCE);
+        // ball 1 at 0, 1, 3 -> mean gap 1.5 ; ball 2 at 0, 2, 3 -> 1.5
+        assertEquals(2, gap.get("ballsWithAtLeastTwoAppearances"));
+        assertEquals(1.5, gap.get("meanOfMeanGaps"));
+    }
+
+    @Test
+    void correlationSkipsGridsWithInvalidStar() {
+        Map<String, Object> correlation = EuromillionsMethodAnalyticsCalculator.computeAll(sample(), 10)
+                .get(EuromillionsMethodIds.SUM_CORRELATION);
+        assertEquals(3, correlation.get("drawsUsedCompleteGrid"));
+    }
+
+    @Test
+    void appendingToPersistedAccumulatorsMatchesFullPass() {
+        List<EuromillionsDraw> draws = sample();
+        EuromillionsMethodAnalyticsCalculator.DrawMatrix incremental =
+                EuromillionsMethodAnalyticsCalculator.DrawMatrix.fromAccumulators(
+                        EuromillionsMethodAnalyticsCalculator.DrawMatrix.of(draws.subList(0, 2)).toAccumulators());
+        incremental.append(draws.get(2));
+        incremental.append(draws.get(3));
+        assertEquals(
+                EuromillionsMethodAnalyticsCalculator.computeDescriptive(EuromillionsMethodAnalyticsCalculator.DrawMatrix.of(draws)),
+                EuromillionsMethodAnalyticsCalculator.computeDescriptive(incremental));
+        assertEquals(draws.get(3).getDrawDate(), incremental.lastDrawDate);
+    }
+
+    @Test
+    void monteCarloIsReproducible() {
+        Map<String, Object> first = EuromillionsMethodAnalyticsCalculator.computeAll(sample(), 5000)
+                .get(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ);
+        Map<String, Object> second = EuromillionsMethodAnalyticsCalculator.computeAll(sample(), 5000)
+                .get(EuromillionsMethodIds.MONTE_CARLO_MAXFREQ);
+        assertEquals(first, second);
+        assertEquals(5000, first.get("monteCarloReplications"));
+    }
+
+    @Test
+    void simulatedDrawsHoldFiveDistinctBalls() {
+        // One draw: the max count is 1, so every replication reaches maxObs = 1 and none reaches 2
+        assertEquals(200, EuromillionsMethodAnalyticsCalculator.countMaxAtLeast(new SplittableRandom(1), 200, 1, 1));
+        assertEquals(0, EuromillionsMethodAnalyticsCalculator.countMaxAtLeast(new SplittableRandom(1), 200, 1, 2));
+        // 10 draws: a ball appears in all of them with probability 50 * 0.1^10
+        assertTrue(EuromillionsMethodAnalyticsCalculator.countMaxAtLeast(new SplittableRandom(2), 500, 10, 10) == 0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.pat.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IssTraceSimplifyTest {
+
+    /** Synthetic ground track: 51.6° inclination, 92.7 min orbit, one sample per minute. */
+    private static int track(double[] lat, double[] lon, long[] t, int n) {
+        for (int i = 0; i < n; i++) {
+            double phase = 2 * Math.PI * i / 92.7;
+            lat[i] = 51.6 * Math.sin(phase);
+            double l = (i * (360.0 / 92.7 - 0.25)) % 360.0;
+            lon[i] = l > 180 ? l - 360 : l;
+            t[i] = 1_700_000_000L + i * 60L;
+        }
+        return n;
+    }
+
+    @Test
+    void keepsCapPointsInTimeOrderWithRunEnds() {
+        int n = 43_200; // 30 days
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        long[] t = new long[n];
+        track(lat, lon, t, n);
+        int cap = 1000;
+        int[] kept = IssTraceService.simplify(lat, lon, t, n, cap);
+        assertEquals(cap, kept.length);
+        for (int i = 1; i < kept.length; i++) {
+            assertTrue(kept[i] > kept[i - 1]);
+        }
+        assertEquals(0, kept[0]);
+        assertEquals(n - 1, kept[kept.length - 1]);
+    }
+
+    @Test
+    void keepsPointsAroundAntimeridianCrossing() {
+        int n = 200;
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        long[] t = new long[n];
+        track(lat, lon, t, n);
+        int wrap = -1;
+        for (int i = 1; i < n; i++) {
+            if (Math.abs(lon[i] - lon[i - 1]) > 180) {
+                wrap = i;
+                break;
+            }
+        }
+        assertTrue(wrap > 0);
+        int[] kept = IssTraceService.simplify(lat, lon, t, n, 20);
+        boolean before = false;
+        boolean after = false;
+        for (int k : kept) {
+            before |= k == wrap - 1;
+            after |= k == wrap;
+        }
+        assertTrue(before && after);
+    }
+
+    @Test
+    void returnsEveryPointWithinCap() {
+        double[] lat = new double[50];
+        double[] lon = new double[50];
+        long[] t = new long[50];
+        track(lat, lon, t, 50);
+        assertEquals(50, IssTraceService.simplify(lat, lon, t, 50, 100).length);
+    }
+}
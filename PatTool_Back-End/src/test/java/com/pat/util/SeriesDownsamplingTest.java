@@ -0,0 +1,56 @@
+package com.pat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesDownsamplingTest {
+
+    private static List<double[]> series(int n) {
+        List<double[]> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(new double[]{i * 600.0, 20 + 5 * Math.sin(i / 50.0)});
+        }
+        return points;
+    }
+
+    @Test
+    void seriesWithinBudgetIsReturnedAsIs() {
+        List<double[]> points = series(100);
+        assertSame(points, SeriesDownsampling.lttb(points, p -> p[0], p -> p[1], 100));
+        assertSame(points, SeriesDownsampling.minMax(points, p -> p[0], p -> p[1], 500));
+    }
+
+    @Test
+    void lttbKeepsEndsAndSpikesWithinBudget() {
+        List<double[]> points = series(50_000);
+        points.get(20_000)[1] = 60; // one spike must survive
+        List<double[]> sampled = SeriesDownsampling.lttb(points, p -> p[0], p -> p[1], 1000);
+        assertEquals(1000, sampled.size());
+        assertSame(points.get(0), sampled.get(0));
+        assertSame(points.get(points.size() - 1), sampled.get(sampled.size() - 1));
+        assertTrue(sampled.contains(points.get(20_000)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i)[0] > sampled.get(i - 1)[0]);
+        }
+    }
+
+    @Test
+    void minMaxKeepsExtremesInOrder() {
+        List<double[]> points = series(50_000);
+        points.get(123)[1] = -40;
+        points.get(45_000)[1] = 80;
+        List<double[]> sampled = SeriesDownsampling.minMax(points, p -> p[0], p -> p[1], 1000);
+        assertTrue(sampled.size() <= 1000);
+        assertTrue(sampled.contains(points.get(123)));
+        assertTrue(sampled.contains(points.get(45_000)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i)[0] > sampled.get(i - 1)[0]);
+        }
+    }
+}
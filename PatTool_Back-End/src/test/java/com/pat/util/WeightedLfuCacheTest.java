@@ -0,0 +1,103 @@
+package com.pat.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightedLfuCacheTest {
+
+    private static WeightedLfuCache<String, byte[]> cache(long maxBytes, int maxEntries) {
+        return new WeightedLfuCache<>(maxBytes, maxEntries, v -> v.length);
+    }
+
+    @Test
+    void weightIsTrackedOnPutReplaceAndRemove() {
+        WeightedLfuCache<String, byte[]> c = cache(10_000, 100);
+        c.put("a", new byte[100]);
+        c.put("b", new byte[200]);
+        assertEquals(300, c.weightedSize());
+        c.put("a", new byte[50]);
+        assertEquals(250, c.weightedSize());
+        c.remove("b");
+        assertEquals(50, c.weightedSize());
+        assertEquals(1, c.size());
+    }
+
+    @Test
+    void staysWithinByteBudget() {
+        WeightedLfuCache<String, byte[]> c = cache(1_000, 1_000);
+        for (int i = 0; i < 200; i++) {
+            c.put("k" + i, new byte[37]);
+            assertTrue(c.weightedSize() <= 1_000);
+        }
+        assertTrue(c.evictionCount() > 0);
+    }
+
+    @Test
+    void staysWithinEntryBudget() {
+        WeightedLfuCache<String, byte[]> c = cache(1_000_000, 10);
+        for (int i = 0; i < 50; i++) {
+            c.put("k" + i, new byte[1]);
+        }
+        assertEquals(10, c.size());
+    }
+
+    @Test
+    void oversizedValueIsRejected() {
+        WeightedLfuCache<String, byte[]> c = cache(100, 10);
+        assertFalse(c.put("big", new byte[101]));
+        assertNull(c.peek("big"));
+        assertEquals(1, c.rejectionCount());
+    }
+
+    @Test
+    void frequentlyUsedEntriesSurviveAScan() {
+        WeightedLfuCache<String, byte[]> c = cache(100 * 10, 1_000);
+        for (int i = 0; i < 50; i++) {
+            c.put("hot" + i, new byte[10]);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                c.get("hot" + i);
+            }
+        }
+        // one-hit wonders must not flush the popular set
+        for (int i = 0; i < 1_000; i++) {
+            c.put("scan" + i, new byte[10]);
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (c.peek("hot" + i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue(survivors >= 45, "hot entries kept: " + survivors);
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        WeightedLfuCache<String, byte[]> c = cache(1_000, 10);
+        c.put("a", new byte[1]);
+        assertNotNull(c.get("a"));
+        assertNull(c.get("b"));
+        assertEquals(1, c.hitCount());
+        assertEquals(1, c.missCount());
+    }
+
+    @Test
+    void shrinkToReleasesColdEntriesFirst() {
+        WeightedLfuCache<String, byte[]> c = cache(1_000, 100);
+        for (int i = 0; i < 10; i++) {
+            c.put("k" + i, new byte[50]);
+        }
+        c.get("k0");
+        c.get("k0");
+        c.shrinkTo(100);
+        assertTrue(c.weightedSize() <= 100);
+        assertNotNull(c.peek("k0"));
+    }
+}
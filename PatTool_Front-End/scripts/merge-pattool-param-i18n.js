@@ -57,6 +57,10 @@ const DESC = {
     en: 'Threshold (KB) above which the UI may prompt users to compress images before upload.',
     fr: 'Seuil (Ko) au-delà duquel l\'interface peut proposer de compresser les images avant envoi.'
   },
+  'app.upload.pipeline.max-parallel': {
+    en: 'Maximum files of one upload compressed and stored in parallel (reduced automatically when the heap is busy).',
+    fr: 'Nombre max de fichiers d\'un même envoi compressés et enregistrés en parallèle (réduit automatiquement si le tas est chargé).'
+  },
   'keycloak.realm': {
     en: 'Keycloak realm name used to validate JWT tokens and resolve user roles for PatTool.',
     fr: 'Nom du realm Keycloak utilisé pour valider les jetons JWT et résoudre les rôles utilisateur PatTool.'
@@ -653,6 +657,42 @@ const DESC = {
     en: 'ISO-8601 duration after which cached compressed images expire (e.g. PT2H).',
     fr: 'Durée ISO-8601 d\'expiration des images compressées en cache (ex. PT2H).'
   },
+  'app.image.wall-preview.disk-cache.enabled': {
+    en: 'Keep generated wall previews on disk as a second cache tier that survives restarts.',
+    fr: 'Conserver les aperçus du mur sur disque (second niveau de cache qui survit aux redémarrages).'
+  },
+  'app.image.wall-preview.disk-cache.dir': {
+    en: 'Directory of the on-disk wall preview cache.',
+    fr: 'Répertoire du cache disque des aperçus du mur.'
+  },
+  'app.image.wall-preview.disk-cache.max-size-mb': {
+    en: 'Maximum megabytes for the on-disk wall preview cache (least recently used previews are evicted).',
+    fr: 'Taille maximale en Mo du cache disque des aperçus du mur (les moins récemment utilisés sont évincés).'
+  },
+  'app.map.tile-cache.enabled': {
+    en: 'Keep proxied GPS map tiles on disk',
+    fr: 'Conserver sur disque les tuiles cartographiques GPS proxifiées'
+  },
+  'app.map.tile-cache.dir': {
+    en: 'Map tile disk cache directory',
+    fr: 'Répertoire du cache disque des tuiles cartographiques'
+  },
+  'app.map.tile-cache.max-size-mb': {
+    en: 'Map tile disk cache size limit (MB, LRU eviction)',
+    fr: 'Taille maximale du cache disque des tuiles (Mo, éviction LRU)'
+  },
+  'app.map.tile-cache.max-age-days': {
+    en: 'Days before a cached map tile is fetched again',
+    fr: 'Jours avant de recharger une tuile en cache'
+  },
+  'app.map.tile-cache.seed.cron': {
+    en: 'Cron of the tile pre-seeding around recent itineraries (- = disabled)',
+    fr: 'Cron du préchargement des tuiles autour des itinéraires récents (- = désactivé)'
+  },
+  'app.map.tile-cache.seed.max-tiles': {
+    en: 'Maximum tiles fetched by one pre-seeding run',
+    fr: 'Nombre maximal de tuiles chargées par préchargement'
+  },
   'app.video.ffmpeg.path': {
     en: 'Filesystem path to the ffmpeg binary used for server-side video compression.',
     fr: 'Chemin du binaire ffmpeg pour la compression vidéo côté serveur.'
@@ -701,6 +741,14 @@ const DESC = {
     en: 'MongoDB ObjectId of the default discussion room opened for new users.',
     fr: 'ObjectId MongoDB de la discussion ouverte par défaut pour les nouveaux utilisateurs.'
   },
+  'app.discussion.visibility-index.enabled': {
+    en: 'Keep an in-memory index of visible discussions (events, groups, friendships) instead of scanning all events on each listing.',
+    fr: 'Maintenir un index mémoire des discussions visibles (événements, groupes, amitiés) au lieu de parcourir tous les événements à chaque liste.'
+  },
+  'app.discussion.visibility-index.verify-ms': {
+    en: 'Interval (ms) at which the discussion visibility index is rebuilt and compared with the database.',
+    fr: 'Intervalle (ms) de reconstruction et de vérification de l\'index de visibilité des discussions.'
+  },
   'app.websocket.max-connections': {
     en: 'Maximum concurrent WebSocket connections for live discussion/chat.',
     fr: 'Nombre max de connexions WebSocket simultanées (discussion/chat temps réel).'